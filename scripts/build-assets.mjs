@@ -0,0 +1,78 @@
+// Bước build cho tài nguyên tĩnh trong static/assets:
+//  - ghi asset-manifest.json: đường dẫn -> MD5 nội dung, dùng làm dấu vân tay trong tên file
+//    (AssetManifestVersionStrategy đọc file này, cùng thuật toán với ContentVersionStrategy của Spring)
+//  - ghi bản nén sẵn .br và .gz bên cạnh các file văn bản để EncodedResourceResolver phục vụ trực tiếp
+//
+// Cách dùng: node scripts/build-assets.mjs [thư mục assets]
+// Mặc định là target/classes/static/assets, tức là bản đã được Maven sao chép, không sửa mã nguồn.
+
+import { createHash } from 'node:crypto';
+import { existsSync, readdirSync, readFileSync, statSync, writeFileSync } from 'node:fs';
+import { extname, join, relative, sep } from 'node:path';
+import { brotliCompressSync, constants, gzipSync } from 'node:zlib';
+
+const root = process.argv[2] ?? 'target/classes/static/assets';
+const MANIFEST = 'asset-manifest.json';
+
+// Chỉ nén các định dạng văn bản; ảnh đã được nén sẵn
+const COMPRESSIBLE = new Set(['.css', '.js', '.map', '.svg', '.json', '.txt', '.ico']);
+// Nguồn SCSS không được phục vụ, bản nén cũ được ghi lại
+const SKIPPED = new Set(['.scss', '.br', '.gz']);
+// File nhỏ hơn thì header nén còn lớn hơn phần tiết kiệm được
+const MIN_COMPRESS_SIZE = 256;
+
+if (!existsSync(root)) {
+    console.error(`Assets directory not found: ${root}`);
+    process.exit(1);
+}
+
+function* walk(dir) {
+    for (const name of readdirSync(dir).sort()) {
+        const path = join(dir, name);
+        if (statSync(path).isDirectory()) {
+            yield* walk(path);
+        } else {
+            yield path;
+        }
+    }
+}
+
+const manifest = {};
+let originalBytes = 0;
+let brotliBytes = 0;
+
+for (const file of walk(root)) {
+    const path = relative(root, file).split(sep).join('/');
+    const ext = extname(file).toLowerCase();
+    if (path === MANIFEST || SKIPPED.has(ext)) {
+        continue;
+    }
+
+    const content = readFileSync(file);
+    manifest[path] = createHash('md5').update(content).digest('hex');
+
+    if (!COMPRESSIBLE.has(ext) || content.length < MIN_COMPRESS_SIZE) {
+        continue;
+    }
+
+    const br = brotliCompressSync(content, {
+        params: {
+            [constants.BROTLI_PARAM_QUALITY]: constants.BROTLI_MAX_QUALITY,
+            [constants.BROTLI_PARAM_SIZE_HINT]: content.length,
+        },
+    });
+    const gz = gzipSync(content, { level: constants.Z_BEST_COMPRESSION });
+    // Chỉ giữ bản nén khi nó thực sự nhỏ hơn bản gốc
+    if (br.length < content.length) {
+        writeFileSync(file + '.br', br);
+    }
+    if (gz.length < content.length) {
+        writeFileSync(file + '.gz', gz);
+    }
+    originalBytes += content.length;
+    brotliBytes += Math.min(br.length, content.length);
+}
+
+writeFileSync(join(root, MANIFEST), JSON.stringify(manifest, null, 2) + '\n');
+console.log(`Fingerprinted ${Object.keys(manifest).length} assets; `
+    + `precompressed ${originalBytes} bytes to ${brotliBytes} bytes (brotli)`);
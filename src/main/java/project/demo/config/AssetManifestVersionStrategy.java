@@ -0,0 +1,96 @@
+package project.demo.config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.resource.AbstractVersionStrategy;
+import org.springframework.web.servlet.resource.ContentVersionStrategy;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Version strategy that puts the content hash of an asset in its file name
+ * (e.g. main-5d41402abc4b2a76b9719d911017c592.css), reading the hashes from
+ * the manifest written at build time by scripts/build-assets.mjs. Assets
+ * missing from the manifest, e.g. when running from sources without the
+ * asset build, are hashed on first use with the same MD5 content hash.
+ */
+@Component
+public class AssetManifestVersionStrategy extends AbstractVersionStrategy {
+
+    private static final Logger logger = LoggerFactory.getLogger(AssetManifestVersionStrategy.class);
+
+    private static final String MANIFEST_LOCATION = "classpath:/static/assets/asset-manifest.json";
+    private static final String ASSETS_ROOT = "/static/assets/";
+
+    private final ContentVersionStrategy contentVersionStrategy = new ContentVersionStrategy();
+    // Đường dẫn tương đối trong /assets/ -> MD5 nội dung
+    private final Map<String, String> versions;
+
+    public AssetManifestVersionStrategy(ResourceLoader resourceLoader, ObjectMapper objectMapper) {
+        super(new FileNameVersionPathStrategy() {
+        });
+        this.versions = loadManifest(resourceLoader.getResource(MANIFEST_LOCATION), objectMapper);
+    }
+
+    /**
+     * @return true if the asset build ran and its manifest was found
+     */
+    public boolean hasManifest() {
+        return !versions.isEmpty();
+    }
+
+    /**
+     * Check whether a fingerprinted path carries the current hash of its asset
+     *
+     * @param path the path within /assets/ (e.g. "css/main-5d41...c592.css")
+     * @return true if the path is versioned with the hash from the manifest
+     */
+    public boolean isCurrentVersion(String path) {
+        String version = extractVersion(path);
+        return version != null && version.equals(versions.get(removeVersion(path, version)));
+    }
+
+    @Override
+    public String getResourceVersion(Resource resource) {
+        String path = assetPath(resource);
+        String version = path != null ? versions.get(path) : null;
+        return version != null ? version : contentVersionStrategy.getResourceVersion(resource);
+    }
+
+    private static String assetPath(Resource resource) {
+        try {
+            String url = resource.getURL().toString();
+            int index = url.lastIndexOf(ASSETS_ROOT);
+            return index < 0 ? null : url.substring(index + ASSETS_ROOT.length());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static Map<String, String> loadManifest(Resource manifest, ObjectMapper objectMapper) {
+        if (!manifest.exists()) {
+            logger.info("No asset manifest at {}, asset versions are hashed at runtime", MANIFEST_LOCATION);
+            return Collections.emptyMap();
+        }
+
+        try (InputStream in = manifest.getInputStream()) {
+            Map<String, String> versions = objectMapper.readValue(in, new TypeReference<Map<String, String>>() {
+            });
+            logger.info("Loaded asset manifest with {} entries", versions.size());
+            return versions;
+        } catch (IOException e) {
+            logger.warn("Could not read asset manifest {}, asset versions are hashed at runtime",
+                    MANIFEST_LOCATION, e);
+            return Collections.emptyMap();
+        }
+    }
+}
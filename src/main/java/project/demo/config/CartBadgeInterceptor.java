@@ -0,0 +1,69 @@
+package project.demo.config;
+
+import java.util.Objects;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import project.demo.model.Customer;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.IGuestCartService;
+import project.demo.util.GuestCartCookie;
+
+/**
+ * Interceptor that puts the cart item count of a logged-in customer into the
+ * session before a page is handled, where the layout renders it as the cart
+ * badge. The count comes from ICartBadgeService, so the header costs no
+ * query until the cart changes. Shoppers who are not logged in see the size
+ * of their guest cart, which is held in memory.
+ */
+@Component
+public class CartBadgeInterceptor implements HandlerInterceptor {
+
+    private final ICartBadgeService cartBadgeService;
+    private final IGuestCartService guestCartService;
+
+    public CartBadgeInterceptor(ICartBadgeService cartBadgeService, IGuestCartService guestCartService) {
+        this.cartBadgeService = cartBadgeService;
+        this.guestCartService = guestCartService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Chỉ trang do controller xử lý mới hiển thị layout, bỏ qua tài nguyên tĩnh
+        if (!(handler instanceof HandlerMethod)
+                || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return true;
+        }
+
+        HttpSession session = request.getSession(false);
+        if (session == null) {
+            return true;
+        }
+
+        Integer count;
+        if (!Boolean.TRUE.equals(session.getAttribute("isLoggedIn"))) {
+            String token = guestCartService.isEnabled() ? GuestCartCookie.resolve(request) : null;
+            if (token == null) {
+                return true;
+            }
+            count = guestCartService.getItemCount(token);
+        } else {
+            Customer customer = (Customer) session.getAttribute("customer");
+            if (customer == null) {
+                return true;
+            }
+            count = cartBadgeService.getItemCount(customer.getCustomerId());
+        }
+
+        // Chỉ ghi vào session khi số lượng thay đổi
+        if (!Objects.equals(count, session.getAttribute("cartItemCount"))) {
+            session.setAttribute("cartItemCount", count);
+        }
+        return true;
+    }
+}
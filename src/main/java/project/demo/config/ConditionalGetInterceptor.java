@@ -0,0 +1,170 @@
+package project.demo.config;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.support.RequestContextUtils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import project.demo.dto.ProductCardDTO;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IFragmentCacheService;
+
+/**
+ * Interceptor that answers conditional GETs (If-None-Match / If-Modified-Since)
+ * for the product and promotion pages before the controller runs.
+ * A page's validator is rolled up from the in-memory entity versions of
+ * IFragmentCacheService, so a 304 costs no repository call and no template
+ * rendering. The versions follow the catalog snapshot, so validators are
+ * only sent while the snapshot is enabled.
+ */
+@Component
+public class ConditionalGetInterceptor implements HandlerInterceptor {
+
+    /** Thuộc tính session được layout hiển thị: trạng thái đăng nhập, tên khách hàng, số lượng giỏ hàng */
+    private static final String[] SESSION_ATTRIBUTES = { "isLoggedIn", "customerName", "cartItemCount" };
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final IFragmentCacheService fragmentCacheService;
+    private final boolean enabled;
+
+    public ConditionalGetInterceptor(ICatalogSnapshotService catalogSnapshotService,
+            IFragmentCacheService fragmentCacheService,
+            @Value("${app.conditional-get.enabled:true}") boolean enabled) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.fragmentCacheService = fragmentCacheService;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!enabled || !catalogSnapshotService.isEnabled()
+                || !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod()))) {
+            return true;
+        }
+
+        // Trang có thông báo flash chỉ hiển thị một lần, không trả 304
+        Map<String, ?> flashMap = RequestContextUtils.getInputFlashMap(request);
+        if (flashMap != null && !flashMap.isEmpty()) {
+            return true;
+        }
+
+        String pattern = (String) request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        long version = pageVersion(pattern, request);
+        if (version < 0) {
+            return true;
+        }
+
+        // Layout hiển thị dữ liệu của session nên trang của khách đã đăng nhập chỉ được lưu riêng
+        String variant = sessionVariant(request.getSession(false));
+        CacheControl cacheControl = variant == null ? CacheControl.noCache() : CacheControl.noCache().cachePrivate();
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+
+        String etag = "W/\"" + Long.toString(version, 36) + (variant == null ? "" : "-" + variant) + "\"";
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        // Last-Modified không phân biệt session nên chỉ dùng cho khách chưa đăng nhập
+        boolean notModified = variant == null
+                ? webRequest.checkNotModified(etag, version)
+                : webRequest.checkNotModified(etag);
+        return !notModified;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler,
+            ModelAndView modelAndView) {
+        // Trang báo lỗi không được lưu để lần sau hiển thị lại dữ liệu đầy đủ
+        if (modelAndView != null && modelAndView.getModel().containsKey("errorMessage")) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noStore().getHeaderValue());
+        }
+    }
+
+    /**
+     * Roll the versions of the entities shown on a page up into one
+     *
+     * @return the page version, or -1 if the page has no validator
+     */
+    private long pageVersion(String pattern, HttpServletRequest request) {
+        if (pattern == null) {
+            return -1;
+        }
+
+        switch (pattern) {
+            case "/products":
+                // Danh sách, bộ lọc và số lượng theo danh mục phụ thuộc vào mọi sản phẩm
+                return Math.max(fragmentCacheService.getLatestVersion(IFragmentCacheService.PRODUCT),
+                        fragmentCacheService.getLatestVersion(IFragmentCacheService.CATALOG));
+            case "/products/{id}": {
+                Integer productId = pathId(request);
+                ProductCardDTO card = productId == null ? null : catalogSnapshotService.getSnapshot().getProduct(productId);
+                if (card == null) {
+                    return -1;
+                }
+                // Sản phẩm liên quan lấy từ cùng danh mục
+                return Math.max(fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, productId),
+                        fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, card.getCatalogId()));
+            }
+            case "/promotions":
+                return Math.max(fragmentCacheService.getLatestVersion(IFragmentCacheService.PROMOTION), startOfToday());
+            case "/promotions/{id}": {
+                Integer promotionId = pathId(request);
+                if (promotionId == null) {
+                    return -1;
+                }
+                // Trang chi tiết hiển thị tên các sản phẩm áp dụng
+                long version = Math.max(fragmentCacheService.getVersion(IFragmentCacheService.PROMOTION, promotionId),
+                        fragmentCacheService.getLatestVersion(IFragmentCacheService.PRODUCT));
+                return Math.max(version, startOfToday());
+            }
+            default:
+                return -1;
+        }
+    }
+
+    private static Integer pathId(HttpServletRequest request) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request
+                .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables == null || variables.get("id") == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(variables.get("id"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Promotion pages show what is active today, so they change at midnight
+     */
+    private static long startOfToday() {
+        return LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static String sessionVariant(HttpSession session) {
+        if (session == null) {
+            return null;
+        }
+
+        int hash = 1;
+        boolean present = false;
+        for (String name : SESSION_ATTRIBUTES) {
+            Object value = session.getAttribute(name);
+            present |= value != null;
+            hash = 31 * hash + Objects.hashCode(value);
+        }
+        return present ? Integer.toHexString(hash) : null;
+    }
+}
@@ -0,0 +1,99 @@
+package project.demo.config;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.thymeleaf.context.ITemplateContext;
+import org.thymeleaf.engine.AttributeName;
+import org.thymeleaf.engine.TemplateManager;
+import org.thymeleaf.engine.TemplateModel;
+import org.thymeleaf.exceptions.TemplateProcessingException;
+import org.thymeleaf.inline.NoOpInliner;
+import org.thymeleaf.model.IModel;
+import org.thymeleaf.model.IProcessableElementTag;
+import org.thymeleaf.processor.element.AbstractAttributeModelProcessor;
+import org.thymeleaf.processor.element.IElementModelStructureHandler;
+import org.thymeleaf.standard.expression.StandardExpressions;
+import org.thymeleaf.templatemode.TemplateMode;
+
+import project.demo.service.IFragmentCacheService;
+
+/**
+ * Processor for the cache:key attribute. The value is a literal
+ * substitution (the surrounding |...| may be left out). On a miss the element
+ * and its body are rendered with the current context and stored; on a hit the
+ * stored HTML replaces the element without evaluating its body.
+ * Do not use it on fragments with per-user content such as CSRF tokens.
+ */
+public class FragmentCacheAttributeProcessor extends AbstractAttributeModelProcessor {
+
+    private static final String ATTRIBUTE_NAME = "key";
+    // Sau th:each (200) và th:if/th:unless (300), trước th:text (1300)
+    private static final int PRECEDENCE = 400;
+
+    private final IFragmentCacheService fragmentCacheService;
+
+    public FragmentCacheAttributeProcessor(String dialectPrefix, IFragmentCacheService fragmentCacheService) {
+        super(TemplateMode.HTML, dialectPrefix, null, false, ATTRIBUTE_NAME, true, PRECEDENCE, true);
+        this.fragmentCacheService = fragmentCacheService;
+    }
+
+    @Override
+    protected void doProcess(ITemplateContext context, IModel model, AttributeName attributeName,
+            String attributeValue, IElementModelStructureHandler structureHandler) {
+        if (!fragmentCacheService.isEnabled()) {
+            return;
+        }
+
+        String key = evaluateKey(context, attributeValue);
+        if (key.isEmpty()) {
+            return;
+        }
+
+        String html = fragmentCacheService.get(key);
+        if (html == null) {
+            html = render(context, model, attributeName);
+            fragmentCacheService.put(key, html);
+        }
+
+        model.reset();
+        model.add(context.getModelFactory().createText(html));
+        // HTML đã xử lý xong: không để inliner đánh giá lại [[...]] có trong dữ liệu
+        structureHandler.setInliner(NoOpInliner.INSTANCE);
+    }
+
+    private static String evaluateKey(ITemplateContext context, String attributeValue) {
+        String expression = attributeValue.trim();
+        if (!expression.startsWith("|")) {
+            expression = "|" + expression + "|";
+        }
+
+        Object key = StandardExpressions.getExpressionParser(context.getConfiguration())
+                .parseExpression(context, expression)
+                .execute(context);
+        return key == null ? "" : key.toString();
+    }
+
+    /**
+     * Render the element with the current context, without the cache
+     * attribute, by parsing its markup as a template fragment
+     */
+    private static String render(ITemplateContext context, IModel model, AttributeName attributeName) {
+        IModel element = model.cloneModel();
+        IProcessableElementTag tag = (IProcessableElementTag) element.get(0);
+        element.replace(0, context.getModelFactory().removeAttribute(tag, attributeName));
+
+        StringWriter markup = new StringWriter();
+        StringWriter output = new StringWriter();
+        try {
+            element.write(markup);
+            TemplateManager templateManager = context.getConfiguration().getTemplateManager();
+            TemplateModel fragment = templateManager.parseString(context.getTemplateData(), markup.toString(),
+                    0, 0, context.getTemplateMode(), true);
+            templateManager.process(fragment, context, output);
+        } catch (IOException e) {
+            throw new TemplateProcessingException("Could not render cached fragment", e);
+        }
+        return output.toString();
+    }
+}
@@ -0,0 +1,88 @@
+package project.demo.config;
+
+import java.util.Set;
+
+import org.thymeleaf.context.IExpressionContext;
+import org.thymeleaf.dialect.AbstractProcessorDialect;
+import org.thymeleaf.dialect.IExpressionObjectDialect;
+import org.thymeleaf.expression.IExpressionObjectFactory;
+import org.thymeleaf.processor.IProcessor;
+import org.thymeleaf.standard.StandardDialect;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.IFragmentCacheService;
+
+/**
+ * Thymeleaf dialect for the rendered-fragment cache.
+ * {@code cache:key="product-card:${product.productId}:${#cacheVersions.of('product', product.productId)}"}
+ * renders the element once and serves the stored HTML while the key is
+ * unchanged. {@code #cacheVersions} gives the entity versions to put in keys.
+ */
+@Component
+public class FragmentCacheDialect extends AbstractProcessorDialect implements IExpressionObjectDialect {
+
+    public static final String PREFIX = "cache";
+    private static final String VERSIONS_OBJECT = "cacheVersions";
+
+    private final IFragmentCacheService fragmentCacheService;
+
+    public FragmentCacheDialect(IFragmentCacheService fragmentCacheService) {
+        // Cùng mức ưu tiên với Standard dialect để xếp xen kẽ với các thuộc tính th:*
+        super("Fragment Cache", PREFIX, StandardDialect.PROCESSOR_PRECEDENCE);
+        this.fragmentCacheService = fragmentCacheService;
+    }
+
+    @Override
+    public Set<IProcessor> getProcessors(String dialectPrefix) {
+        return Set.of(new FragmentCacheAttributeProcessor(dialectPrefix, fragmentCacheService));
+    }
+
+    @Override
+    public IExpressionObjectFactory getExpressionObjectFactory() {
+        return new IExpressionObjectFactory() {
+            @Override
+            public Set<String> getAllExpressionObjectNames() {
+                return Set.of(VERSIONS_OBJECT);
+            }
+
+            @Override
+            public Object buildObject(IExpressionContext context, String expressionObjectName) {
+                return VERSIONS_OBJECT.equals(expressionObjectName) ? new CacheVersions(fragmentCacheService) : null;
+            }
+
+            @Override
+            public boolean isCacheable(String expressionObjectName) {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * The {@code #cacheVersions} expression object
+     */
+    public static final class CacheVersions {
+
+        private final IFragmentCacheService fragmentCacheService;
+
+        CacheVersions(IFragmentCacheService fragmentCacheService) {
+            this.fragmentCacheService = fragmentCacheService;
+        }
+
+        /**
+         * @param entity the entity type
+         * @param id     the entity ID
+         * @return the current version of the entity
+         */
+        public long of(String entity, Object id) {
+            return fragmentCacheService.getVersion(entity, id);
+        }
+
+        /**
+         * @param entity the entity type
+         * @return the current version of the entity type as a whole
+         */
+        public long of(String entity) {
+            return fragmentCacheService.getVersion(entity, null);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package project.demo.config;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Interceptor that marks fingerprinted assets as immutable. The content of
+ * a fingerprinted URL never changes, so browsers can keep it for a year
+ * without revalidating. Plain asset URLs keep the default headers, since
+ * their content changes with each release.
+ */
+@Component
+public class ImmutableAssetInterceptor implements HandlerInterceptor {
+
+    private static final String IMMUTABLE = CacheControl.maxAge(365, TimeUnit.DAYS)
+            .cachePublic()
+            .immutable()
+            .getHeaderValue();
+
+    private final AssetManifestVersionStrategy versionStrategy;
+
+    public ImmutableAssetInterceptor(AssetManifestVersionStrategy versionStrategy) {
+        this.versionStrategy = versionStrategy;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // Chỉ tin dấu vân tay đã được kiểm tra với manifest lúc build
+        if (!versionStrategy.hasManifest()) {
+            return true;
+        }
+
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        if (path != null && versionStrategy.isCurrentVersion(path)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,12 @@
+package project.demo.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables the @Scheduled jobs in project.demo.scheduler
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -1,10 +1,14 @@
 package project.demo.config;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.springframework.web.servlet.resource.ResourceUrlEncodingFilter;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
 
 /**
  * Web configuration để đảm bảo xử lý 404 error đúng cách
@@ -15,11 +19,31 @@ public class WebConfig implements WebMvcConfigurer {
     @Autowired
     private FlashMessageInterceptor flashMessageInterceptor;
 
+    @Autowired
+    private CartBadgeInterceptor cartBadgeInterceptor;
+
+    @Autowired
+    private ConditionalGetInterceptor conditionalGetInterceptor;
+
+    @Autowired
+    private ImmutableAssetInterceptor immutableAssetInterceptor;
+
+    @Autowired
+    private AssetManifestVersionStrategy assetManifestVersionStrategy;
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // Expose error-messages.json file for client-side validation
         registry.addResourceHandler("/error-messages.json")
                 .addResourceLocations("classpath:error-messages.json");
+
+        // Assets are served under fingerprinted names (main-<md5>.css), from the
+        // .br / .gz siblings written by scripts/build-assets.mjs when the browser accepts them
+        registry.addResourceHandler("/assets/**")
+                .addResourceLocations("classpath:/static/assets/")
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
+                .addResolver(new VersionResourceResolver().addVersionStrategy(assetManifestVersionStrategy, "/**"));
                 
         // Add any other resource handlers here
     }
@@ -28,5 +52,23 @@ public class WebConfig implements WebMvcConfigurer {
     public void addInterceptors(InterceptorRegistry registry) {
         // Add flash message interceptor to convert error/success messages to message codes
         registry.addInterceptor(flashMessageInterceptor);
+
+        // Put the cart badge count into the session before the page (and its ETag) is built
+        registry.addInterceptor(cartBadgeInterceptor);
+
+        // Answer If-None-Match / If-Modified-Since with 304 before product and promotion pages are rendered
+        registry.addInterceptor(conditionalGetInterceptor)
+                .addPathPatterns("/products", "/products/*", "/promotions", "/promotions/*");
+
+        // Fingerprinted assets never change, let browsers keep them
+        registry.addInterceptor(immutableAssetInterceptor).addPathPatterns("/assets/**");
+    }
+
+    /**
+     * Rewrite asset links built by Thymeleaf (@{/assets/...}) to their fingerprinted names
+     */
+    @Bean
+    public ResourceUrlEncodingFilter resourceUrlEncodingFilter() {
+        return new ResourceUrlEncodingFilter();
     }
 } 
\ No newline at end of file
@@ -17,6 +17,8 @@ import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import project.demo.enums.CustomerStatus;
 import project.demo.exception.CustomerException;
@@ -27,7 +29,9 @@ import project.demo.service.IAddressService;
 import project.demo.service.ICartService;
 import project.demo.service.ICustomerService;
 import project.demo.service.IEmailService;
+import project.demo.service.IGuestCartService;
 import project.demo.util.CustomerOAuth2Utils;
+import project.demo.util.GuestCartCookie;
 
 /**
  * Controller for handling authentication operations
@@ -41,6 +45,7 @@ public class AuthController {
     private final AuthenticationService authenticationService;
     private final IAddressService addressService;
     private final IEmailService emailService;
+    private final IGuestCartService guestCartService;
 
     // Regular expression for email validation
     private static final Pattern EMAIL_PATTERN = Pattern.compile("^[A-Za-z0-9._%+-]+@[A-Za-z0-9.-]+\\.[A-Za-z]{2,6}$"); // email
@@ -60,12 +65,13 @@ public class AuthController {
 
     public AuthController(ICustomerService customerService, ICartService cartService,
             AuthenticationService authenticationService, IAddressService addressService,
-            IEmailService emailService) {
+            IEmailService emailService, IGuestCartService guestCartService) {
         this.customerService = customerService;
         this.cartService = cartService;
         this.authenticationService = authenticationService;
         this.addressService = addressService;
         this.emailService = emailService;
+        this.guestCartService = guestCartService;
     }
 
     /**
@@ -204,11 +210,16 @@ public class AuthController {
             @RequestParam String password,
             @RequestParam(required = false) String redirect,
             HttpSession session,
+            HttpServletRequest request,
+            HttpServletResponse response,
             Model model,
             RedirectAttributes redirectAttributes) {
         try {
             // Authenticate user using AuthenticationService
-            authenticationService.login(email, password);
+            Customer customer = authenticationService.login(email, password);
+
+            // Gộp giỏ hàng tạm (nếu có) vào giỏ hàng của khách hàng
+            mergeGuestCart(request, response, customer);
 
             // Check if there's a pending cart item to add
             Integer pendingProductId = (Integer) session.getAttribute("pendingProductId");
@@ -797,4 +808,22 @@ public class AuthController {
             default -> "Mạng xã hội";
         };
     }
-}
\ No newline at end of file
+
+    /**
+     * Merge the guest cart of the browser, if any, into the cart of a customer
+     * who just logged in. A failed merge is logged and does not fail the login.
+     */
+    private void mergeGuestCart(HttpServletRequest request, HttpServletResponse response, Customer customer) {
+        String token = GuestCartCookie.resolve(request);
+        if (token == null || customer == null || !guestCartService.isEnabled()) {
+            return;
+        }
+
+        try {
+            guestCartService.mergeInto(token, customer.getCustomerId());
+            GuestCartCookie.clear(request, response);
+        } catch (Exception e) {
+            System.err.println("Error merging guest cart: " + e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package project.demo.controller;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -7,25 +8,38 @@ import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
+import project.demo.dto.CartOperationDTO;
+import project.demo.dto.CartStateDTO;
+import project.demo.dto.CartView;
+import project.demo.dto.ProductCardDTO;
 import project.demo.exception.CustomerException;
 import project.demo.model.Cart;
 import project.demo.model.CartItem;
 import project.demo.model.Customer;
-import project.demo.model.Product;
+import project.demo.service.ICartBadgeService;
 import project.demo.service.ICartService;
+import project.demo.service.ICartViewService;
 import project.demo.service.ICustomerService;
+import project.demo.service.IGuestCartService;
 import project.demo.service.IProductDetailService;
 import project.demo.service.IProductService;
+import project.demo.util.GuestCartCookie;
 
 /**
  * Controller for managing shopping cart
@@ -38,23 +52,35 @@ public class CartController {
     private final ICustomerService customerService;
     private final IProductService productService;
     private final IProductDetailService productDetailService; // Added product detail service
+    private final ICartBadgeService cartBadgeService;
+    private final IGuestCartService guestCartService;
+    private final ICartViewService cartViewService;
 
     @Autowired
     public CartController(ICartService cartService, ICustomerService customerService, 
-                         IProductService productService, IProductDetailService productDetailService) {
+                         IProductService productService, IProductDetailService productDetailService,
+                         ICartBadgeService cartBadgeService, IGuestCartService guestCartService,
+                         ICartViewService cartViewService) {
         this.cartService = cartService;
         this.customerService = customerService;
         this.productService = productService;
         this.productDetailService = productDetailService; // Initialize product detail service
+        this.cartBadgeService = cartBadgeService;
+        this.guestCartService = guestCartService;
+        this.cartViewService = cartViewService;
     }
 
     /**
      * Display cart contents
      */
     @GetMapping
-    public String viewCart(Model model, HttpSession session, RedirectAttributes redirectAttributes) {
+    public String viewCart(Model model, HttpSession session, HttpServletRequest request,
+            RedirectAttributes redirectAttributes) {
         // Check if user is logged in
         if (session.getAttribute("isLoggedIn") == null || !(Boolean) session.getAttribute("isLoggedIn")) {
+            if (guestCartService.isEnabled()) {
+                return viewGuestCart(model, request);
+            }
             // User is not logged in, redirect to login page with message
             redirectAttributes.addFlashAttribute("loginMessage", "Please log in to view your cart");
             return "redirect:/auth/login?redirect=cart";
@@ -78,96 +104,35 @@ public class CartController {
                 return "cart/view";
             }
 
-            List<CartItem> activeItems;
-            List<CartItem> savedItems;
-            List<Product> recommendations;
-            
+            CartView cartView;
             try {
-                // Get active cart items (not saved for later)
-                activeItems = cartService.getActiveCartItems(cart.getCartId());
-                
-                // Get saved for later items
-                savedItems = cartService.getSavedForLaterItems(cart.getCartId());
-                
-                // Get product recommendations
-                recommendations = cartService.getRecommendations(cart.getCartId(), 4);
+                // Các mục, sản phẩm, tồn kho, hình ảnh và gợi ý với số truy vấn cố định
+                cartView = cartViewService.getCartView(cart, 4);
             } catch (Exception e) {
                 // Ghi log chi tiết lỗi khi lấy dữ liệu giỏ hàng
                 System.err.println("Error getting cart data: " + e.getMessage());
                 e.printStackTrace();
                 
-                // Khởi tạo danh sách trống để tránh null
-                activeItems = new ArrayList<>();
-                savedItems = new ArrayList<>();
-                recommendations = new ArrayList<>();
+                // Khởi tạo dữ liệu trống để tránh null
+                cartView = new CartView(cart, new ArrayList<>(), new HashMap<>(), new HashMap<>(),
+                        new ArrayList<>(), BigDecimal.ZERO, BigDecimal.ZERO);
                 
                 model.addAttribute("errorMessage", "Lỗi khi lấy dữ liệu giỏ hàng: " + e.getMessage());
                 // Tiếp tục hiển thị trang giỏ hàng nhưng với dữ liệu trống
             }
 
-            // Get product images for recommendations
-            Map<Integer, String> productImages = new HashMap<>();
-            for (Product product : recommendations) {
-                try {
-                    if (product.getProductDetails() != null && !product.getProductDetails().isEmpty() &&
-                            product.getProductDetails().get(0).getImageUrl() != null) {
-                        productImages.put(product.getProductId(), product.getProductDetails().get(0).getImageUrl());
-                    }
-                } catch (Exception e) {
-                    // If product detail not found, continue without image
-                }
-            }
-
-            // Create a map to store stock quantities for each product
-            Map<Integer, Integer> stockQuantities = new HashMap<>();
-            for (CartItem item : activeItems) {
-                try {
-                    int availableStock = productDetailService.getQuantityInStock(item.getProduct().getProductId());
-                    stockQuantities.put(item.getProduct().getProductId(), availableStock);
-                } catch (Exception e) {
-                    // If error occurs, default to 0 stock
-                    stockQuantities.put(item.getProduct().getProductId(), 0);
-                }
-            }
-
-            // Tính toán tổng tiền giỏ hàng
-            double cartTotal = 0.0;
-            double discountAmount = 0.0;
-            double finalTotal = 0.0;
-            
-            try {
-                // Cập nhật tổng giỏ hàng nếu có thể
-                cartService.calculateTotal(cart.getCartId());
-            } catch (Exception e) {
-                System.err.println("Error calculating cart total: " + e.getMessage());
-                // Không dừng xử lý, tiếp tục với tổng giỏ hàng được tính thủ công
-            }
-            
-            // Tính tổng giá trị hàng trong giỏ
-            for (CartItem item : activeItems) {
-                cartTotal += item.getUnitPrice().doubleValue() * item.getQuantity();
-            }
-            
-            // Lấy giảm giá từ cart nếu có
-            if (cart.getDiscountAmount() != null) {
-                discountAmount = cart.getDiscountAmount().doubleValue();
-            }
-            
-            // Tính tổng cần thanh toán (không bao gồm phí vận chuyển ở trang giỏ hàng)
-            finalTotal = cartTotal - discountAmount;
-            
             // Truyền các thông tin giỏ hàng vào model
             model.addAttribute("cart", cart);
-            model.addAttribute("cartItems", activeItems);
-            model.addAttribute("savedItems", savedItems);
-            model.addAttribute("recommendations", recommendations);
-            model.addAttribute("productImages", productImages);
-            model.addAttribute("stockQuantities", stockQuantities); // Add stock quantities to model
+            model.addAttribute("cartItems", cartView.getItems());
+            model.addAttribute("savedItems", new ArrayList<CartItem>());
+            model.addAttribute("recommendations", cartView.getRecommendations());
+            model.addAttribute("productImages", cartView.getProductImages());
+            model.addAttribute("stockQuantities", cartView.getStockQuantities());
             
-            // Thêm các biến tổng tiền
-            model.addAttribute("cartTotal", cartTotal);
-            model.addAttribute("discountAmount", discountAmount);
-            model.addAttribute("finalTotal", finalTotal);
+            // Thêm các biến tổng tiền (không bao gồm phí vận chuyển ở trang giỏ hàng)
+            model.addAttribute("cartTotal", cartView.getCartTotal().doubleValue());
+            model.addAttribute("discountAmount", cartView.getDiscountAmount().doubleValue());
+            model.addAttribute("finalTotal", cartView.getFinalTotal().doubleValue());
 
             return "cart/view";
         } catch (Exception e) {
@@ -180,6 +145,44 @@ public class CartController {
         }
     }
 
+    /**
+     * Display the cart of a shopper who is not logged in
+     */
+    private String viewGuestCart(Model model, HttpServletRequest request) {
+        List<CartItem> items = new ArrayList<>();
+        Map<Integer, Integer> stockQuantities = new HashMap<>();
+        double cartTotal = 0.0;
+
+        String token = GuestCartCookie.resolve(request);
+        if (token != null) {
+            try {
+                items = guestCartService.getItems(token);
+
+                // Lấy tồn kho của tất cả sản phẩm trong giỏ bằng một truy vấn
+                List<Integer> productIds = new ArrayList<>();
+                for (CartItem item : items) {
+                    productIds.add(item.getProductId());
+                    cartTotal += item.getUnitPrice().doubleValue() * item.getQuantity();
+                }
+                stockQuantities = productDetailService.getQuantitiesInStock(productIds);
+            } catch (Exception e) {
+                System.err.println("Error getting guest cart: " + e.getMessage());
+                model.addAttribute("errorMessage", "Lỗi khi lấy dữ liệu giỏ hàng: " + e.getMessage());
+            }
+        }
+
+        model.addAttribute("guestCart", true);
+        model.addAttribute("cartItems", items);
+        model.addAttribute("savedItems", new ArrayList<CartItem>());
+        model.addAttribute("recommendations", new ArrayList<ProductCardDTO>());
+        model.addAttribute("productImages", new HashMap<Integer, String>());
+        model.addAttribute("stockQuantities", stockQuantities);
+        model.addAttribute("cartTotal", cartTotal);
+        model.addAttribute("discountAmount", 0.0);
+        model.addAttribute("finalTotal", cartTotal);
+        return "cart/view";
+    }
+
     /**
      * Add item to cart
      */
@@ -187,6 +190,8 @@ public class CartController {
     public String addToCart(@RequestParam("productId") Integer productId,
             @RequestParam(value = "quantity", required = false) Integer quantity,
             HttpSession session,
+            HttpServletRequest request,
+            HttpServletResponse response,
             RedirectAttributes redirectAttributes) {
         // Set default quantity to 1 if not provided
         if (quantity == null || quantity <= 0) {
@@ -195,6 +200,19 @@ public class CartController {
 
         // Check if user is logged in
         if (session.getAttribute("isLoggedIn") == null || !(Boolean) session.getAttribute("isLoggedIn")) {
+            if (guestCartService.isEnabled()) {
+                // Thêm vào giỏ hàng tạm, được gộp vào giỏ hàng của khách hàng khi đăng nhập
+                try {
+                    String token = GuestCartCookie.getOrCreate(request, response);
+                    guestCartService.addItem(token, productId, quantity);
+                    redirectAttributes.addFlashAttribute("successMessage", "Item added to cart");
+                    return "redirect:/cart";
+                } catch (Exception e) {
+                    redirectAttributes.addFlashAttribute("errorMessage", "Cannot add item to cart: " + e.getMessage());
+                    return "redirect:/products/" + productId;
+                }
+            }
+
             // Store the product info in session for later use after login
             session.setAttribute("pendingProductId", productId);
             session.setAttribute("pendingQuantity", quantity);
@@ -433,9 +451,6 @@ public class CartController {
                 return "redirect:/checkout";
             }
             
-            Cart cart = cartOpt.get();
-            cartService.calculateTotal(cart.getCartId()); // Recalculate total
-
             return "redirect:/checkout";
         } catch (Exception e) {
             redirectAttributes.addFlashAttribute("errorMessage", e.getMessage());
@@ -443,15 +458,54 @@ public class CartController {
         }
     }
 
+    /**
+     * Apply several cart edits in one request and return the new cart state.
+     * Errors (unknown item, invalid quantity, insufficient stock) are returned
+     * as JSON by the global exception handler and leave the cart unchanged.
+     */
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseBody
+    public ResponseEntity<?> applyBatch(@RequestBody List<CartOperationDTO> operations, HttpSession session) {
+        // Check if user is logged in
+        if (session.getAttribute("isLoggedIn") == null || !(Boolean) session.getAttribute("isLoggedIn")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+
+        // Get customer from session
+        Customer customer = (Customer) session.getAttribute("customer");
+        if (customer == null) {
+            throw new CustomerException("CUSTOMER_NOT_FOUND", "Customer not found in session");
+        }
+
+        Cart cart = cartService.getOrCreateCart(customer.getCustomerId());
+        List<CartItem> items = cartService.applyOperations(cart.getCartId(), operations);
+
+        // Lấy tồn kho của tất cả sản phẩm trong giỏ bằng một truy vấn
+        List<Integer> productIds = new ArrayList<>();
+        for (CartItem item : items) {
+            productIds.add(item.getProductId());
+        }
+        Map<Integer, Integer> stockQuantities = productDetailService.getQuantitiesInStock(productIds);
+
+        return ResponseEntity.ok(CartStateDTO.of(cart.getCartId(), items, stockQuantities));
+    }
+
     /**
      * Get cart item count for mini cart
      */
     @GetMapping("/count")
     @ResponseBody
-    public int getCartItemCount(HttpSession session) {
+    public int getCartItemCount(HttpSession session, HttpServletRequest request) {
         // Check if user is logged in
         if (session.getAttribute("isLoggedIn") == null || !(Boolean) session.getAttribute("isLoggedIn")) {
-            return 0;
+            if (!guestCartService.isEnabled()) {
+                return 0;
+            }
+            try {
+                return guestCartService.getItemCount(GuestCartCookie.resolve(request));
+            } catch (Exception e) {
+                return 0;
+            }
         }
 
         try {
@@ -461,8 +515,8 @@ public class CartController {
                 return 0;
             }
 
-            Cart cart = cartService.getOrCreateCart(customer.getCustomerId());
-            return cartService.getItemCount(cart.getCartId());
+            // Đọc từ cache theo khách hàng, không truy vấn và không tạo giỏ hàng
+            return cartBadgeService.getItemCount(customer.getCustomerId());
         } catch (Exception e) {
             return 0;
         }
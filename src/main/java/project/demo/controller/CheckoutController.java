@@ -18,9 +18,11 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import project.demo.dto.PlacedOrder;
 import project.demo.exception.AddressException;
 import project.demo.exception.CustomerException;
 import project.demo.exception.DuplicateAddressException;
+import project.demo.exception.ProductDetailException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Address;
 import project.demo.model.CardDetails;
@@ -33,12 +35,14 @@ import project.demo.model.OrderTimelineEvent;
 import project.demo.model.PaymentMethod;
 import project.demo.service.IAddressService;
 import project.demo.service.ICartService;
+import project.demo.service.ICheckoutTokenService;
 import project.demo.service.ICustomerService;
 import project.demo.service.IOrderService;
 import project.demo.service.IOrderTimelineEventsService;
 import project.demo.service.IPaymentMethodService;
 import project.demo.service.IPaymentService;
 import project.demo.service.IRevenueReportService;
+import project.demo.service.IStockReservationService;
 import project.demo.service.VNPayService;
 import project.demo.util.ValidationErrorMessages;
 
@@ -70,6 +74,12 @@ public class CheckoutController {
     @Autowired
     private VNPayService vnPayService;
 
+    @Autowired
+    private IStockReservationService stockReservationService;
+
+    @Autowired
+    private ICheckoutTokenService checkoutTokenService;
+
     private final IRevenueReportService revenueReportService;
 
     @Autowired
@@ -699,6 +709,14 @@ public class CheckoutController {
             model.addAttribute("shippingCost", shippingCost);
             model.addAttribute("total", total);
 
+            // Mã xác nhận của lần đặt hàng này; tải lại trang hoặc mở nhiều tab vẫn dùng cùng một mã
+            String checkoutToken = (String) session.getAttribute("checkoutToken");
+            if (checkoutToken == null) {
+                checkoutToken = checkoutTokenService.issue();
+                session.setAttribute("checkoutToken", checkoutToken);
+            }
+            model.addAttribute("checkoutToken", checkoutToken);
+
             return "checkout/confirmation";
             
         } catch (project.demo.exception.CartException e) {
@@ -717,6 +735,7 @@ public class CheckoutController {
     @PostMapping("/confirm")
     public String confirmOrder(@RequestParam(value = "orderNote", required = false) String orderNote,
                               @RequestParam(value = "termsAccepted", defaultValue = "false") boolean termsAccepted,
+                              @RequestParam(value = "checkoutToken", required = false) String checkoutToken,
                               HttpSession session,
                               HttpServletRequest request,
                               Model model,
@@ -729,11 +748,26 @@ public class CheckoutController {
             return "redirect:/checkout/confirmation";
         }
 
+        // Yêu cầu lặp lại sau khi đơn hàng đã được đặt (bấm hai lần, thử lại) trả về đơn hàng đó
+        String issuedToken = (String) session.getAttribute("checkoutToken");
+        if (checkoutToken != null && !checkoutToken.equals(issuedToken)) {
+            Integer placedOrderId = checkoutTokenService.findOrderId(checkoutToken,
+                    (Integer) session.getAttribute("customerId"));
+            if (placedOrderId != null) {
+                return showPlacedOrder(model, session, placedOrderId);
+            }
+        }
+
         Customer customer = getCustomerFromSession(session);
         if (customer == null) {
             System.out.println("Customer not found in session");
             return "redirect:/auth/login";
         }
+
+        if (checkoutToken == null || !checkoutToken.equals(issuedToken)) {
+            redirectAttributes.addFlashAttribute("errorMessage", "Trang xác nhận đã hết hạn, vui lòng kiểm tra lại đơn hàng và xác nhận lại");
+            return "redirect:/checkout/confirmation";
+        }
         
         System.out.println("Customer ID: " + customer.getCustomerId());
 
@@ -761,7 +795,7 @@ public class CheckoutController {
             }
 
             // For other payment methods, continue with normal flow
-            return processNormalOrder(orderNote, session, model, redirectAttributes, customer, addressId, shippingMethodId, paymentMethodId);
+            return processNormalOrder(orderNote, session, model, redirectAttributes, customer, addressId, shippingMethodId, paymentMethodId, checkoutToken);
             
         } catch (Exception e) {
             System.err.println("=== Error in confirmOrder method ===");
@@ -809,7 +843,23 @@ public class CheckoutController {
             session.setAttribute("vnpay_pending_total", total);
             
             // Generate temporary reference for VNPay transaction (not the actual order ID)
-            String vnpayReference = "VNP" + System.currentTimeMillis();
+            // Thêm ID khách hàng để hai khách thanh toán cùng một mili giây không trùng mã giữ hàng
+            String vnpayReference = "VNP" + System.currentTimeMillis() + customer.getCustomerId();
+            
+            // Giữ hàng trong thời gian thanh toán để hai người không cùng trả tiền cho món hàng cuối cùng;
+            // lượt giữ của lần xác nhận trước (nếu có) được giải phóng
+            stockReservationService.release((String) session.getAttribute("vnpay_pending_reference"));
+            Map<Integer, Integer> quantities = new HashMap<>();
+            for (CartItem item : cartItems) {
+                quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+            }
+            try {
+                stockReservationService.reserve(vnpayReference, quantities);
+            } catch (ProductDetailException e) {
+                session.removeAttribute("vnpay_pending_reference");
+                redirectAttributes.addFlashAttribute("errorMessage", "Một số sản phẩm trong giỏ hàng không còn đủ hàng");
+                return "redirect:/cart";
+            }
             session.setAttribute("vnpay_pending_reference", vnpayReference);
             
             // Create VNPay payment URL
@@ -823,6 +873,7 @@ public class CheckoutController {
         } catch (Exception e) {
             System.err.println("Error creating VNPay payment: " + e.getMessage());
             e.printStackTrace();
+            stockReservationService.release((String) session.getAttribute("vnpay_pending_reference"));
             redirectAttributes.addFlashAttribute("errorMessage", "Có lỗi xảy ra khi tạo thanh toán VNPay");
             return "redirect:/checkout/confirmation";
         }
@@ -830,7 +881,8 @@ public class CheckoutController {
 
     private String processNormalOrder(String orderNote, HttpSession session, Model model, 
                                     RedirectAttributes redirectAttributes, Customer customer, 
-                                    Integer addressId, String shippingMethodId, String paymentMethodId) {
+                                    Integer addressId, String shippingMethodId, String paymentMethodId,
+                                    String checkoutToken) {
         try {
             // Get shipping method details
             System.out.println("Finding shipping method with ID: " + shippingMethodId);
@@ -881,26 +933,31 @@ public class CheckoutController {
             BigDecimal shippingCost = (BigDecimal) shippingMethod.get("price");
             BigDecimal total = calculateTotal(subtotal, discount, shippingCost);
             
-            // Create order
-            Order order = orderService.createFromCart(
-                cart.getCartId(), 
-                addressId, 
-                databasePaymentMethodId, 
-                shippingMethodId,
-                orderNote
-            );
-            
-            if (order == null) {
-                throw new Exception("Order creation returned null");
+            // Create order - mỗi mã xác nhận đặt nhiều nhất một đơn hàng
+            PlacedOrder placedOrder = checkoutTokenService.placeOnce(checkoutToken, customer.getCustomerId(),
+                () -> orderService.createFromCart(
+                    cart.getCartId(), 
+                    addressId, 
+                    databasePaymentMethodId, 
+                    shippingMethodId,
+                    orderNote
+                ));
+            Integer orderId = placedOrder.getOrderId();
+            
+            if (placedOrder.isDuplicate()) {
+                // Một yêu cầu đồng thời với cùng mã đã đặt đơn hàng, thanh toán và dọn giỏ hàng
+                System.out.println("Order already placed with this checkout token: " + orderId);
+                clearCheckoutSession(session);
+                return showPlacedOrder(model, session, orderId);
             }
             
-            System.out.println("Order created successfully with ID: " + order.getOrderId());
-            session.setAttribute("orderId", order.getOrderId());
+            System.out.println("Order created successfully with ID: " + orderId);
+            session.setAttribute("orderId", orderId);
             
             // Create payment record if not COD
             if (!paymentMethodId.equals("cod")) {
                 try {
-                    paymentService.processPayment(order.getOrderId(), databasePaymentMethodId, total.doubleValue());
+                    paymentService.processPayment(orderId, databasePaymentMethodId, total.doubleValue());
                     System.out.println("Payment processed successfully");
                 } catch (Exception e) {
                     System.err.println("Error processing payment: " + e.getMessage());
@@ -922,13 +979,8 @@ public class CheckoutController {
             clearCheckoutSession(session);
             System.out.println("Checkout session data cleared");
             
-            // Set success information for confirmation page
-            model.addAttribute("orderPlaced", true);
-            model.addAttribute("orderId", order.getOrderId());
-            model.addAttribute("messageCode", "POST_SUCCESS");
-            
             System.out.println("=== Completed normal order successfully ===");
-            return "checkout/confirmation";
+            return showPlacedOrder(model, session, orderId);
             
         } catch (Exception e) {
             System.err.println("Error in processNormalOrder: " + e.getMessage());
@@ -1199,6 +1251,18 @@ public class CheckoutController {
         session.removeAttribute("checkoutAddressId");
         session.removeAttribute("checkoutShippingMethodId");
         session.removeAttribute("checkoutPaymentMethodId");
+        session.removeAttribute("checkoutToken");
+    }
+
+    /**
+     * Show the confirmation page of a placed order
+     */
+    private String showPlacedOrder(Model model, HttpSession session, Integer orderId) {
+        session.setAttribute("orderId", orderId);
+        model.addAttribute("orderPlaced", true);
+        model.addAttribute("orderId", orderId);
+        model.addAttribute("messageCode", "POST_SUCCESS");
+        return "checkout/confirmation";
     }
 
     /**
@@ -9,12 +9,12 @@ import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 
+import project.demo.dto.ProductCardDTO;
 import project.demo.model.Catalog;
 import project.demo.model.Product;
-import project.demo.model.ProductDetail;
 import project.demo.model.Promotion;
 import project.demo.service.ICatalogService;
-import project.demo.service.IProductService;
+import project.demo.service.IFeaturedProductService;
 import project.demo.service.IPromotionService;
 
 /**
@@ -23,15 +23,15 @@ import project.demo.service.IPromotionService;
 @Controller
 public class HomeController {
 
-    private final IProductService productService;
+    private final IFeaturedProductService featuredProductService;
     private final ICatalogService catalogService;
     private final IPromotionService promotionService;
 
     @Autowired
-    public HomeController(IProductService productService,
+    public HomeController(IFeaturedProductService featuredProductService,
             ICatalogService catalogService,
             IPromotionService promotionService) {
-        this.productService = productService;
+        this.featuredProductService = featuredProductService;
         this.catalogService = catalogService;
         this.promotionService = promotionService;
     }
@@ -42,23 +42,15 @@ public class HomeController {
     @GetMapping("/")
     public String home(Model model) {
         try {
-            // Lấy sản phẩm có số lượng tồn kho lớn nhất
-            Product featuredProduct = null;
-            ProductDetail featuredProductDetail = null;
+            // Lấy sản phẩm nổi bật từ danh sách đã xếp hạng sẵn
+            ProductCardDTO featuredProduct = null;
             String featuredProductImage = null;
             BigDecimal featuredProductPrice = null;
             
             try {
-                featuredProduct = productService.findProductWithHighestStock();
-                if (featuredProduct != null) {
-                    featuredProductDetail = productService.getProductDetail(featuredProduct.getProductId());
-                    if (featuredProductDetail != null) {
-                        featuredProductImage = featuredProductDetail.getImageUrl();
-                        featuredProductPrice = featuredProductDetail.getDiscountPrice() != null ? 
-                                               featuredProductDetail.getDiscountPrice() : 
-                                               featuredProduct.getPrice();
-                    }
-                }
+                featuredProduct = featuredProductService.getFeaturedProduct();
+                featuredProductImage = featuredProduct.getImageUrl();
+                featuredProductPrice = featuredProduct.getEffectivePrice();
             } catch (Exception e) {
                 System.err.println("Error loading featured product: " + e.getMessage());
             }
@@ -72,7 +64,6 @@ public class HomeController {
             
             // Thêm sản phẩm nổi bật vào model
             model.addAttribute("featuredProduct", featuredProduct);
-            model.addAttribute("featuredProductDetail", featuredProductDetail);
             model.addAttribute("featuredProductImage", featuredProductImage);
             model.addAttribute("featuredProductPrice", featuredProductPrice);
             
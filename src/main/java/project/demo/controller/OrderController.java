@@ -12,8 +12,10 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import project.demo.dto.KeysetPage;
 import project.demo.exception.CustomerException;
 import project.demo.exception.OrderException;
 import project.demo.exception.ResourceNotFoundException;
@@ -31,6 +33,8 @@ import project.demo.service.IOrderService;
 @RequestMapping("/account/orders")
 public class OrderController {
 
+    private static final int ORDERS_PAGE_SIZE = 10;
+
     private final IOrderService orderService;
     private final ICustomerService customerService;
 
@@ -41,13 +45,24 @@ public class OrderController {
     }
 
     /**
-     * Display all orders for the current customer
+     * Display the orders of the current customer, newest first, one page at a
+     * time using a cursor (keyset pagination)
      */
     @GetMapping
-    public String viewOrders(Model model) {
+    public String viewOrders(@RequestParam(required = false) String after, Model model) {
         Customer customer = getCurrentCustomer();
-        List<Order> orders = orderService.findByCustomerId(customer.getCustomerId());
-        model.addAttribute("orders", orders);
+        KeysetPage<Order> orderPage;
+        try {
+            orderPage = orderService.findByCustomerIdAfter(customer.getCustomerId(), after, ORDERS_PAGE_SIZE);
+        } catch (IllegalArgumentException e) {
+            // Con trỏ không hợp lệ: hiển thị trang đầu
+            after = null;
+            orderPage = orderService.findByCustomerIdAfter(customer.getCustomerId(), null, ORDERS_PAGE_SIZE);
+        }
+
+        model.addAttribute("orders", orderPage.getContent());
+        model.addAttribute("nextCursor", orderPage.getNextCursor());
+        model.addAttribute("cursorMode", after != null);
         return "account/orders";
     }
 
@@ -2,27 +2,34 @@ package project.demo.controller;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.JpaSort;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
 
+import project.demo.dto.KeysetPage;
+import project.demo.dto.ProductCardDTO;
+import project.demo.dto.SuggestionDTO;
 import project.demo.model.Catalog;
 import project.demo.model.Product;
 import project.demo.model.ProductDetail;
 import project.demo.service.ICatalogService;
+import project.demo.service.IFeaturedProductService;
+import project.demo.service.IProductFacetService;
 import project.demo.service.IProductService;
+import project.demo.service.IProductSuggestService;
+import project.demo.service.IRelatedProductService;
 
 /**
  * Controller for product-related operations
@@ -33,21 +40,31 @@ public class ProductController {
 
     private final IProductService productService;
     private final ICatalogService catalogService;
+    private final IProductFacetService productFacetService;
+    private final IRelatedProductService relatedProductService;
+    private final IFeaturedProductService featuredProductService;
+    private final IProductSuggestService productSuggestService;
 
     @Autowired
-    public ProductController(IProductService productService, ICatalogService catalogService) {
+    public ProductController(IProductService productService, ICatalogService catalogService,
+            IProductFacetService productFacetService, IRelatedProductService relatedProductService,
+            IFeaturedProductService featuredProductService, IProductSuggestService productSuggestService) {
         this.productService = productService;
         this.catalogService = catalogService;
+        this.productFacetService = productFacetService;
+        this.relatedProductService = relatedProductService;
+        this.featuredProductService = featuredProductService;
+        this.productSuggestService = productSuggestService;
     }
 
     /**
-     * Featured product endpoint - redirects to the product with highest stock
+     * Featured product endpoint - redirects to the top featured product
      */
     @GetMapping("/featured")
     public String featuredProduct(Model model) {
         try {
-            // Lấy sản phẩm có số lượng tồn kho lớn nhất
-            Product product = productService.findProductWithHighestStock();
+            // Lấy sản phẩm đứng đầu danh sách nổi bật
+            ProductCardDTO product = featuredProductService.getFeaturedProduct();
             
             // Chuyển hướng đến trang chi tiết sản phẩm
             return "redirect:/products/" + product.getProductId();
@@ -72,6 +89,7 @@ public class ProductController {
             @RequestParam(defaultValue = "8") int size,
             @RequestParam(defaultValue = "productName") String sort,
             @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(required = false) String after, // Con trỏ trang kế tiếp (keyset pagination)
             Model model) {
 
         // Xử lý các tham số rỗng
@@ -97,40 +115,6 @@ public class ProductController {
             search = query;
         }
 
-        // Create Pageable object with sorting
-        Sort.Direction sortDirection = direction.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
-        Pageable pageable = PageRequest.of(page, size, Sort.by(sortDirection, sort));
-
-        // Get products based on filters
-        Page<Product> productPage;
-
-        try {
-            if (categoryId != null) {
-                // Filter by category with pagination
-                productPage = productService.findByCatalogIdPaginated(categoryId, pageable);
-                model.addAttribute("selectedCategory", catalogService.findById(categoryId));
-            } else if (search != null && !search.trim().isEmpty()) {
-                // Search by name with pagination
-                productPage = productService.searchByNamePaginated(search, pageable);
-                model.addAttribute("searchTerm", search);
-            } else {
-                // Get all products with pagination
-                productPage = productService.findAllPaginated(pageable);
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-            model.addAttribute("errorMessage", "Error loading products: " + e.getMessage());
-            productPage = Page.empty(pageable);
-        }
-
-        List<Product> products = productPage.getContent();
-        List<Product> filteredProducts = new java.util.ArrayList<>();
-
-        // Get product images, discount prices, and stock information
-        Map<Integer, String> productImages = new HashMap<>();
-        Map<Integer, BigDecimal> productDiscountPrices = new HashMap<>();
-        Map<Integer, Boolean> productStockStatus = new HashMap<>();
-
         // Chuyển đổi các khoảng giá thành min-max để lọc
         List<PriceRange> priceRanges = new ArrayList<>();
         if (priceRange != null && !priceRange.isEmpty()) {
@@ -151,71 +135,119 @@ public class ProductController {
         // Xử lý trường hợp nhiều khoảng giá được chọn cùng lúc
         double[] effectivePriceRange = processMultiplePriceRanges(priceRanges);
 
-        for (Product product : products) {
-            try {
-                ProductDetail detail = productService.getProductDetail(product.getProductId());
-                if (detail != null) {
-                    // Store image URL if available
-                    if (detail.getImageUrl() != null) {
-                        productImages.put(product.getProductId(), detail.getImageUrl());
-                    }
+        // Create Pageable object with sorting
+        // Sắp xếp theo giá dùng giá hiển thị (effective price) được lưu sẵn trong ProductDetail
+        // "relevance": không sắp xếp, kết quả tìm kiếm giữ thứ tự theo độ liên quan
+        Sort.Direction sortDirection = direction.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Sort sortOrder;
+        if ("relevance".equals(sort)) {
+            sortOrder = Sort.unsorted();
+        } else if ("price".equals(sort)) {
+            // Sắp xếp phụ theo productId để thứ tự ổn định, khớp với phân trang bằng con trỏ
+            sortOrder = JpaSort.unsafe(sortDirection, "pd.effectivePrice").and(Sort.by(sortDirection, "productId"));
+        } else if ("productName".equals(sort)) {
+            sortOrder = Sort.by(sortDirection, sort).and(Sort.by(sortDirection, "productId"));
+        } else {
+            sortOrder = Sort.by(sortDirection, sort);
+        }
+        Pageable pageable = PageRequest.of(page, size, sortOrder);
 
-                    // Store discount price if available
-                    if (detail.getDiscountPrice() != null) {
-                        productDiscountPrices.put(product.getProductId(), detail.getDiscountPrice());
-                    }
+        // Danh sách duyệt (không tìm kiếm, không lọc giá) theo tên hoặc giá có thể sang trang bằng con trỏ
+        boolean cursorPaging = search == null && effectivePriceRange == null
+                && ("productName".equals(sort) || "price".equals(sort));
 
-                    // Check stock status (true = in stock, false = out of stock)
-                    boolean inStock = detail.getQuantityInStock() != null && detail.getQuantityInStock() > 0;
-                    productStockStatus.put(product.getProductId(), inStock);
-                    
-                    // Lấy giá hiển thị (giá khuyến mãi nếu có, nếu không thì giá gốc)
-                    BigDecimal displayPrice = detail.getDiscountPrice() != null ? 
-                                            detail.getDiscountPrice() : 
-                                            product.getPrice();
-                    
-                    // Thêm sản phẩm vào danh sách hiển thị không phụ thuộc tình trạng tồn kho
-                    // Chỉ lọc theo khoảng giá nếu có
-                    if (effectivePriceRange != null) {
-                        double productPrice = displayPrice.doubleValue();
-                        
-                        // Kiểm tra nếu giá sản phẩm nằm trong khoảng giá hiệu quả
-                        if (productPrice >= effectivePriceRange[0] && productPrice <= effectivePriceRange[1]) {
-                            filteredProducts.add(product);
-                        }
-                    } else {
-                        // Không có lọc giá, thêm tất cả sản phẩm
-                        filteredProducts.add(product);
-                    }
+        // Get product cards (product, detail and catalog name) in one query per page
+        Page<ProductCardDTO> productPage = null;
+        KeysetPage<ProductCardDTO> keysetPage = null;
+
+        try {
+            if (categoryId != null) {
+                model.addAttribute("selectedCategory", catalogService.findById(categoryId));
+            } else if (search != null) {
+                model.addAttribute("searchTerm", search);
+            }
+
+            if (cursorPaging && after != null && !after.isEmpty()) {
+                try {
+                    // Trang kế tiếp: tìm theo (khóa sắp xếp, productId), không OFFSET và không đếm tổng
+                    keysetPage = productService.findProductCardsAfter(categoryId, sort, sortDirection, after, size);
+                } catch (IllegalArgumentException e) {
+                    // Con trỏ không hợp lệ hoặc khác kiểu sắp xếp: quay về trang đầu
+                    page = 0;
+                    pageable = PageRequest.of(page, size, sortOrder);
+                }
+            }
+
+            if (keysetPage == null) {
+                if (effectivePriceRange != null) {
+                    // Lọc theo khoảng giá trong SQL để phân trang và tổng số trang chính xác
+                    productPage = productService.findProductCardsByPriceRangePaginated(categoryId, search,
+                            BigDecimal.valueOf(effectivePriceRange[0]), BigDecimal.valueOf(effectivePriceRange[1]),
+                            pageable);
+                } else if (categoryId != null) {
+                    // Filter by category with pagination
+                    productPage = productService.findProductCardsByCatalogIdPaginated(categoryId, pageable);
+                } else if (search != null) {
+                    // Search by name with pagination
+                    productPage = productService.searchProductCardsPaginated(search, pageable);
+                } else {
+                    // Get all products with pagination
+                    productPage = productService.findProductCardsPaginated(pageable);
                 }
-            } catch (Exception e) {
-                // If product detail not found, still add the product but mark as out of stock
-                productStockStatus.put(product.getProductId(), false);
-                filteredProducts.add(product);
             }
+        } catch (Exception e) {
+            e.printStackTrace();
+            model.addAttribute("errorMessage", "Error loading products: " + e.getMessage());
+            productPage = Page.empty(pageable);
+            keysetPage = null;
+        }
+
+        List<ProductCardDTO> products = keysetPage != null ? keysetPage.getContent() : productPage.getContent();
+
+        // Con trỏ của trang kế tiếp để nút "Trang sau" không phải bỏ qua OFFSET dòng
+        String nextCursor = null;
+        if (keysetPage != null) {
+            nextCursor = keysetPage.getNextCursor();
+        } else if (cursorPaging && productPage.hasNext() && !products.isEmpty()) {
+            nextCursor = productService.getProductCardCursor(products.get(products.size() - 1), sort, sortDirection);
         }
 
         // Get all categories for the filter dropdown
         List<Catalog> categories = catalogService.findAllActive();
 
         // Add data to the model
-        model.addAttribute("products", filteredProducts);
-        model.addAttribute("productImages", productImages);
-        model.addAttribute("productDiscountPrices", productDiscountPrices);
-        model.addAttribute("productStockStatus", productStockStatus);
+        model.addAttribute("products", products);
         model.addAttribute("categories", categories);
         
         // Khoảng giá đã chọn
         model.addAttribute("selectedPriceRanges", priceRange);
 
+        // Số lượng sản phẩm cho từng danh mục, khoảng giá và tình trạng kho, tính trong một lượt duyệt
+        model.addAttribute("priceBuckets", productFacetService.getPriceBuckets());
+        if (productFacetService.isEnabled()) {
+            try {
+                model.addAttribute("facets", productFacetService.computeFacets(categoryId, search,
+                        effectivePriceRange != null ? BigDecimal.valueOf(effectivePriceRange[0]) : null,
+                        effectivePriceRange != null ? BigDecimal.valueOf(effectivePriceRange[1]) : null));
+            } catch (Exception e) {
+                // Không hiển thị số lượng nếu không tính được
+            }
+        }
+
         // Add pagination data
         model.addAttribute("currentPage", page + 1); // Convert to 1-based for display
-        model.addAttribute("totalPages", Math.max(1, productPage.getTotalPages()));
-        model.addAttribute("totalProducts", productPage.getTotalElements());
+        if (keysetPage != null) {
+            // Trang theo con trỏ không có tổng số: chỉ biết còn trang sau hay không
+            model.addAttribute("totalPages", keysetPage.hasNext() ? page + 2 : page + 1);
+        } else {
+            model.addAttribute("totalPages", Math.max(1, productPage.getTotalPages()));
+            model.addAttribute("totalProducts", productPage.getTotalElements());
+        }
+        model.addAttribute("nextCursor", nextCursor);
         model.addAttribute("pageSize", size);
         
         // Thêm thông báo nếu không có sản phẩm
-        if (filteredProducts.isEmpty()) {
+        if (products.isEmpty()) {
             model.addAttribute("noProductsMessage", "Không tìm thấy sản phẩm nào.");
         }
 
@@ -304,33 +336,13 @@ public class ProductController {
                 // Product detail not found, continue with null
             }
 
-            // Get related products (products in the same category)
-            List<Product> relatedProducts = productService.findByCatalogId(product.getCatalogId());
-            relatedProducts.removeIf(p -> p.getProductId().equals(productId)); // Remove current product
-
-            // Limit to 4 related products
-            if (relatedProducts.size() > 4) {
-                relatedProducts = relatedProducts.subList(0, 4);
-            }
-
-            // Get images for related products
-            Map<Integer, String> relatedProductImages = new HashMap<>();
-            for (Product relatedProduct : relatedProducts) {
-                try {
-                    ProductDetail detail = productService.getProductDetail(relatedProduct.getProductId());
-                    if (detail != null && detail.getImageUrl() != null) {
-                        relatedProductImages.put(relatedProduct.getProductId(), detail.getImageUrl());
-                    }
-                } catch (Exception e) {
-                    // If product detail not found, continue without image
-                }
-            }
+            // Get related products: top products of the same category, cached per product
+            List<ProductCardDTO> relatedProducts = relatedProductService.findRelatedProductCards(productId);
 
             // Add data to the model
             model.addAttribute("product", product);
             model.addAttribute("productDetail", productDetail);
             model.addAttribute("relatedProducts", relatedProducts);
-            model.addAttribute("relatedProductImages", relatedProductImages);
 
             return "products/details";
         } catch (Exception e) {
@@ -339,6 +351,15 @@ public class ProductController {
         }
     }
 
+    /**
+     * Typeahead suggestions for the search box, served from memory
+     */
+    @GetMapping("/suggest")
+    @ResponseBody
+    public List<SuggestionDTO> suggest(@RequestParam(name = "q", defaultValue = "") String query) {
+        return productSuggestService.suggest(query);
+    }
+
     /**
      * Search for products
      */
@@ -347,14 +368,15 @@ public class ProductController {
             @RequestParam String query,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "8") int size,
-            @RequestParam(defaultValue = "productName") String sort,
-            @RequestParam(defaultValue = "asc") String direction,
+            @RequestParam(defaultValue = "relevance") String sort,
+            @RequestParam(defaultValue = "desc") String direction,
             Model model) {
         // For debugging
         System.out.println("Search endpoint called with query: " + query);
 
         // Truyền null cho tham số priceRange (không áp dụng lọc giá cho tìm kiếm)
         // Đảm bảo chuyển query thành String để xử lý đúng
-        return listProducts(null, null, query.trim().isEmpty() ? null : query, null, page, size, sort, direction, model);
+        return listProducts(null, null, query.trim().isEmpty() ? null : query, null, page, size, sort, direction, null,
+                model);
     }
 }
@@ -4,7 +4,10 @@ import java.util.Enumeration;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -17,22 +20,26 @@ import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import project.demo.dto.PlacedOrder;
 import project.demo.model.Cart;
-import project.demo.model.Order;
 import project.demo.model.Payment;
 import project.demo.model.PaymentMethod;
 import project.demo.model.PendingPayment;
 import project.demo.repository.PaymentRepository;
 import project.demo.service.ICartService;
+import project.demo.service.ICheckoutTokenService;
 import project.demo.service.IOrderService;
 import project.demo.service.IPaymentMethodService;
 import project.demo.service.IPaymentService;
+import project.demo.service.IStockReservationService;
 import project.demo.service.VNPayService;
 
 @Controller
 @RequestMapping("/vnpay")
 public class VNPayController {
 
+    private static final Logger logger = LoggerFactory.getLogger(VNPayController.class);
+
     @Autowired
     private VNPayService vnPayService;
 
@@ -50,6 +57,12 @@ public class VNPayController {
     
     @Autowired
     private PaymentRepository paymentRepository;
+
+    @Autowired
+    private IStockReservationService stockReservationService;
+
+    @Autowired
+    private ICheckoutTokenService checkoutTokenService;
     
     // Simple in-memory storage for pending payments (in production, use database)
     private static final Map<String, PendingPayment> pendingPayments = new ConcurrentHashMap<>();
@@ -119,6 +132,8 @@ public class VNPayController {
                 }
             } else {
                 // Payment actually failed at VNPay level
+                // Trả lại hàng đã giữ ngay thay vì chờ hết hạn
+                stockReservationService.release(orderCode);
                 model.addAttribute("paymentStatus", "failed");
                 model.addAttribute("transactionId", transactionId);
                 model.addAttribute("amount", amount);
@@ -164,6 +179,8 @@ public class VNPayController {
             // We need to create the order first if payment is successful
             if ("completed".equals(status)) {
                 createOrderFromVNPayPayment(orderId, transactionId, amount);
+            } else {
+                stockReservationService.release(orderId);
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -190,6 +207,17 @@ public class VNPayController {
             System.out.println("=== Creating order after successful VNPay payment ===");
             System.out.println("Order code: " + orderCode + ", Transaction ID: " + transactionId + ", Amount: " + amount);
             
+            // Mã thanh toán là mã xác nhận: tải lại trang kết quả trả về đơn hàng đã đặt
+            Integer sessionCustomerId = (Integer) session.getAttribute("vnpay_pending_customer_id");
+            if (sessionCustomerId == null) {
+                sessionCustomerId = (Integer) session.getAttribute("customerId");
+            }
+            Integer placedOrderId = checkoutTokenService.findOrderId(orderCode, sessionCustomerId);
+            if (placedOrderId != null) {
+                logger.debug("Order already placed for this payment with ID: {}", placedOrderId);
+                return placedOrderId;
+            }
+            
             // Get pending order information from session
             String orderNote = (String) session.getAttribute("vnpay_pending_order_note");
             Integer addressId = (Integer) session.getAttribute("vnpay_pending_address_id");
@@ -229,16 +257,6 @@ public class VNPayController {
                 return null;
             }
             
-            // Create VNPay payment method record
-            System.out.println("Creating VNPay payment method record...");
-            PaymentMethod vnpayMethod = new PaymentMethod();
-            vnpayMethod.setCustomerId(customerId);
-            vnpayMethod.setMethodName("VNPay");
-            vnpayMethod.setProvider("VNPay");
-            vnpayMethod.setDescription("Thanh toán trực tuyến qua cổng thanh toán VNPay");
-            vnpayMethod = paymentMethodService.save(vnpayMethod);
-            System.out.println("VNPay payment method created with ID: " + vnpayMethod.getPaymentMethodId());
-            
             // Get customer's cart
             System.out.println("Finding cart for customer: " + customerId);
             Optional<Cart> cartOpt = cartService.findByCustomerId(customerId);
@@ -253,24 +271,47 @@ public class VNPayController {
             // Create order
             System.out.println("Creating order from cart...");
             System.out.println("Parameters - cartId: " + cart.getCartId() + ", addressId: " + addressId + 
-                             ", paymentMethodId: " + vnpayMethod.getPaymentMethodId() + ", shippingMethodId: " + shippingMethodId);
-            Order order = orderService.createFromCart(
-                cart.getCartId(), 
-                addressId, 
-                vnpayMethod.getPaymentMethodId(), 
-                shippingMethodId,
-                orderNote
-            );
+                             ", shippingMethodId: " + shippingMethodId);
+            // Phương thức thanh toán, lượt giữ hàng và đơn hàng được ghi trong cùng giao dịch với mã thanh toán:
+            // yêu cầu trùng (tải lại trang, gọi đồng thời) không tạo thêm bản ghi nào
+            AtomicReference<Integer> paymentMethodId = new AtomicReference<>();
+            PlacedOrder placedOrder = checkoutTokenService.placeOnce(orderCode, customerId, () -> {
+                logger.debug("Creating VNPay payment method record");
+                PaymentMethod vnpayMethod = new PaymentMethod();
+                vnpayMethod.setCustomerId(customerId);
+                vnpayMethod.setMethodName("VNPay");
+                vnpayMethod.setProvider("VNPay");
+                vnpayMethod.setDescription("Thanh toán trực tuyến qua cổng thanh toán VNPay");
+                vnpayMethod = paymentMethodService.save(vnpayMethod);
+                paymentMethodId.set(vnpayMethod.getPaymentMethodId());
+                logger.debug("VNPay payment method created with ID: {}", vnpayMethod.getPaymentMethodId());
+                
+                return orderService.createFromCart(
+                    cart.getCartId(), 
+                    addressId, 
+                    vnpayMethod.getPaymentMethodId(), 
+                    shippingMethodId,
+                    orderNote,
+                    orderCode
+                );
+            });
+            
+            if (placedOrder.isDuplicate()) {
+                // Một yêu cầu đồng thời với cùng mã thanh toán đã đặt đơn hàng và ghi nhận thanh toán
+                logger.debug("Order already placed for this payment with ID: {}", placedOrder.getOrderId());
+                return placedOrder.getOrderId();
+            }
             
-            if (order != null) {
-                System.out.println("Order created successfully with ID: " + order.getOrderId());
+            Integer orderId = placedOrder.getOrderId();
+            if (orderId != null) {
+                logger.debug("Order created successfully with ID: {}", orderId);
                 
                 // Process payment with VNPay transaction ID
                 System.out.println("Processing VNPay payment...");
-                paymentService.processPayment(order.getOrderId(), vnpayMethod.getPaymentMethodId(), (double) amount);
+                paymentService.processPayment(orderId, paymentMethodId.get(), (double) amount);
                 
                 // Update payment with VNPay transaction ID (override the default TXN format)
-                updatePaymentWithVNPayTransactionId(order.getOrderId(), transactionId);
+                updatePaymentWithVNPayTransactionId(orderId, transactionId);
                 System.out.println("Payment processed with VNPay transaction ID: " + transactionId);
                 
                 // Try to clear cart (but handle if already converted)
@@ -284,7 +325,7 @@ public class VNPayController {
                 }
                 
                 System.out.println("=== Order creation completed successfully ===");
-                return order.getOrderId();
+                return orderId;
             } else {
                 System.err.println("Order creation returned null from orderService.createFromCart()");
                 return null;
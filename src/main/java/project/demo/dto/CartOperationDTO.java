@@ -0,0 +1,53 @@
+package project.demo.dto;
+
+/**
+ * One edit of a cart item in a batch request to /cart/batch.
+ */
+public class CartOperationDTO {
+
+    public static final String SET_QUANTITY = "set-quantity";
+    public static final String REMOVE = "remove";
+    public static final String SELECT = "select";
+    public static final String UNSELECT = "unselect";
+
+    private String type;
+    private Integer cartItemId;
+    private Integer quantity;
+
+    public CartOperationDTO() {
+    }
+
+    public CartOperationDTO(String type, Integer cartItemId, Integer quantity) {
+        this.type = type;
+        this.cartItemId = cartItemId;
+        this.quantity = quantity;
+    }
+
+    // Getters and Setters
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getCartItemId() {
+        return cartItemId;
+    }
+
+    public void setCartItemId(Integer cartItemId) {
+        this.cartItemId = cartItemId;
+    }
+
+    /**
+     * @return the new quantity, only used by {@link #SET_QUANTITY}
+     */
+    public Integer getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Integer quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,119 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import project.demo.model.CartItem;
+
+/**
+ * The state of a cart after a batch of edits: its items with their stock and
+ * the total of the selected items.
+ */
+public final class CartStateDTO {
+
+    private final Integer cartId;
+    private final List<Item> items;
+    private final BigDecimal total;
+
+    public CartStateDTO(Integer cartId, List<Item> items, BigDecimal total) {
+        this.cartId = cartId;
+        this.items = Collections.unmodifiableList(items);
+        this.total = total;
+    }
+
+    /**
+     * @param cartId the ID of the cart
+     * @param cartItems the items of the cart
+     * @param stockByProduct the stock of each product, missing products have none
+     */
+    public static CartStateDTO of(Integer cartId, List<CartItem> cartItems, Map<Integer, Integer> stockByProduct) {
+        List<Item> items = new ArrayList<>(cartItems.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (CartItem cartItem : cartItems) {
+            Item item = new Item(cartItem, stockByProduct.getOrDefault(cartItem.getProductId(), 0));
+            if (item.isSelected()) {
+                total = total.add(item.getLineTotal());
+            }
+            items.add(item);
+        }
+        return new CartStateDTO(cartId, items, total);
+    }
+
+    public Integer getCartId() {
+        return cartId;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public int getItemCount() {
+        return items.size();
+    }
+
+    /**
+     * @return the total of the selected items
+     */
+    public BigDecimal getTotal() {
+        return total;
+    }
+
+    /**
+     * A cart line as shown on the cart page.
+     */
+    public static final class Item {
+
+        private final Integer cartItemId;
+        private final Integer productId;
+        private final String productName;
+        private final Integer quantity;
+        private final BigDecimal unitPrice;
+        private final boolean selected;
+        private final Integer quantityInStock;
+
+        private Item(CartItem cartItem, Integer quantityInStock) {
+            this.cartItemId = cartItem.getCartItemId();
+            this.productId = cartItem.getProductId();
+            this.productName = cartItem.getProduct() != null ? cartItem.getProduct().getProductName() : null;
+            this.quantity = cartItem.getQuantity();
+            this.unitPrice = cartItem.getUnitPrice();
+            this.selected = Boolean.TRUE.equals(cartItem.getIsSelected());
+            this.quantityInStock = quantityInStock;
+        }
+
+        public Integer getCartItemId() {
+            return cartItemId;
+        }
+
+        public Integer getProductId() {
+            return productId;
+        }
+
+        public String getProductName() {
+            return productName;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public BigDecimal getUnitPrice() {
+            return unitPrice;
+        }
+
+        public boolean isSelected() {
+            return selected;
+        }
+
+        public BigDecimal getLineTotal() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+
+        public Integer getQuantityInStock() {
+            return quantityInStock;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+
+/**
+ * Everything the cart page shows, assembled from a fixed number of queries:
+ * the items with their products, the stock and image of each product, the
+ * recommendations and the totals.
+ */
+public final class CartView {
+    private final Cart cart;
+    private final List<CartItem> items;
+    private final Map<Integer, Integer> stockQuantities;
+    private final Map<Integer, String> productImages;
+    private final List<ProductCardDTO> recommendations;
+    private final BigDecimal cartTotal;
+    private final BigDecimal discountAmount;
+
+    public CartView(Cart cart, List<CartItem> items, Map<Integer, Integer> stockQuantities,
+            Map<Integer, String> productImages, List<ProductCardDTO> recommendations, BigDecimal cartTotal,
+            BigDecimal discountAmount) {
+        this.cart = cart;
+        this.items = items;
+        this.stockQuantities = stockQuantities;
+        this.productImages = productImages;
+        this.recommendations = recommendations;
+        this.cartTotal = cartTotal;
+        this.discountAmount = discountAmount;
+    }
+
+    public Cart getCart() {
+        return cart;
+    }
+
+    /**
+     * Items with their product and product details loaded
+     */
+    public List<CartItem> getItems() {
+        return items;
+    }
+
+    /**
+     * Quantity in stock by product ID, for the items and the recommendations
+     */
+    public Map<Integer, Integer> getStockQuantities() {
+        return stockQuantities;
+    }
+
+    /**
+     * Image URL by product ID, for the items and the recommendations
+     */
+    public Map<Integer, String> getProductImages() {
+        return productImages;
+    }
+
+    public List<ProductCardDTO> getRecommendations() {
+        return recommendations;
+    }
+
+    /**
+     * Sum of unit price times quantity over all items
+     */
+    public BigDecimal getCartTotal() {
+        return cartTotal;
+    }
+
+    public BigDecimal getDiscountAmount() {
+        return discountAmount;
+    }
+
+    public BigDecimal getFinalTotal() {
+        return cartTotal.subtract(discountAmount);
+    }
+}
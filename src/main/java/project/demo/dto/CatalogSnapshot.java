@@ -0,0 +1,354 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import project.demo.model.Catalog;
+
+/**
+ * Immutable in-memory view of the catalog: product cards (product, detail,
+ * effective price) and catalogs, indexed by id and by catalog.
+ * Product cards are kept presorted in every supported {@link ProductOrder},
+ * for the whole catalog and per catalog, so a listing page is a slice.
+ * A snapshot is never modified after construction; changes produce a new
+ * snapshot (copy-on-write) that replaces the current one atomically.
+ */
+public final class CatalogSnapshot {
+
+    /**
+     * Orders in which product cards are kept presorted. Each order ends with
+     * the product ID, so it is total and its reverse is the descending order.
+     */
+    public enum ProductOrder {
+        ID(Comparator.comparing(ProductCardDTO::getProductId)),
+        NAME(Comparator.comparing(ProductCardDTO::getProductName,
+                Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+                .thenComparing(ProductCardDTO::getProductId)),
+        PRICE(Comparator.comparing(ProductCardDTO::getEffectivePrice,
+                Comparator.nullsLast(Comparator.<BigDecimal>naturalOrder()))
+                .thenComparing(ProductCardDTO::getProductId));
+
+        private final Comparator<ProductCardDTO> comparator;
+
+        ProductOrder(Comparator<ProductCardDTO> comparator) {
+            this.comparator = comparator;
+        }
+
+        /**
+         * @return the ascending comparator of this order
+         */
+        public Comparator<ProductCardDTO> comparator() {
+            return comparator;
+        }
+    }
+
+    private static final CatalogSnapshot EMPTY = new CatalogSnapshot(0L, 0L,
+            Collections.emptyList(), Collections.emptyList());
+
+    private final long version;
+    private final long builtAtMillis;
+    private final Orderings products;
+    private final Map<Integer, Orderings> productsByCatalogId;
+    private final List<Catalog> catalogs;
+    private final List<Catalog> activeCatalogs;
+    private final Map<Integer, Catalog> catalogsById;
+    // ID danh mục đã sắp xếp; vị trí trong mảng là số thứ tự (ordinal) của danh mục
+    private final int[] catalogIds;
+
+    /**
+     * @param version       monotonically increasing snapshot version
+     * @param builtAtMillis the time the snapshot was built (epoch millis)
+     * @param products      product cards, in product ID order
+     * @param catalogs      all catalogs, in catalog ID order
+     */
+    public CatalogSnapshot(long version, long builtAtMillis, List<ProductCardDTO> products, List<Catalog> catalogs) {
+        this.version = version;
+        this.builtAtMillis = builtAtMillis;
+
+        Map<Integer, ProductCardDTO> byId = new LinkedHashMap<>();
+        for (ProductCardDTO card : products) {
+            byId.put(card.getProductId(), card);
+        }
+        Map<Integer, List<ProductCardDTO>> byCatalog = new HashMap<>();
+        for (ProductCardDTO card : byId.values()) {
+            byCatalog.computeIfAbsent(card.getCatalogId(), k -> new ArrayList<>()).add(card);
+        }
+        Map<Integer, Orderings> orderingsByCatalog = new HashMap<>();
+        byCatalog.forEach((catalogId, cards) -> orderingsByCatalog.put(catalogId, Orderings.of(cards)));
+
+        Map<Integer, Catalog> catalogById = new LinkedHashMap<>();
+        List<Catalog> active = new ArrayList<>();
+        int[] ids = new int[catalogs.size()];
+        for (Catalog catalog : catalogs) {
+            ids[catalogById.size()] = catalog.getCatalogId();
+            catalogById.put(catalog.getCatalogId(), catalog);
+            if (Boolean.TRUE.equals(catalog.getStatus())) {
+                active.add(catalog);
+            }
+        }
+
+        this.products = Orderings.of(new ArrayList<>(byId.values()));
+        this.productsByCatalogId = Collections.unmodifiableMap(orderingsByCatalog);
+        this.catalogs = Collections.unmodifiableList(new ArrayList<>(catalogs));
+        this.activeCatalogs = Collections.unmodifiableList(active);
+        this.catalogsById = Collections.unmodifiableMap(catalogById);
+        this.catalogIds = Arrays.copyOf(ids, catalogById.size());
+        Arrays.sort(this.catalogIds);
+    }
+
+    /**
+     * Copy of a snapshot with new product orderings; the catalogs are shared
+     */
+    private CatalogSnapshot(CatalogSnapshot source, long version, long builtAtMillis, Orderings products,
+            Map<Integer, Orderings> productsByCatalogId) {
+        this.version = version;
+        this.builtAtMillis = builtAtMillis;
+        this.products = products;
+        this.productsByCatalogId = Collections.unmodifiableMap(productsByCatalogId);
+        this.catalogs = source.catalogs;
+        this.activeCatalogs = source.activeCatalogs;
+        this.catalogsById = source.catalogsById;
+        this.catalogIds = source.catalogIds;
+    }
+
+    /**
+     * @return an empty snapshot (version 0)
+     */
+    public static CatalogSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Create a copy of this snapshot with the given product cards replaced (or
+     * added) and the given product IDs removed. The changed cards are merged
+     * into the existing orderings; catalogs without changes share their
+     * orderings with this snapshot.
+     *
+     * @param changed       product cards to put into the copy
+     * @param removedIds    product IDs to drop from the copy
+     * @param version       version of the copy
+     * @param builtAtMillis build time of the copy
+     * @return the new snapshot; this snapshot is left untouched
+     */
+    public CatalogSnapshot withProducts(Collection<ProductCardDTO> changed, Collection<Integer> removedIds,
+            long version, long builtAtMillis) {
+        Map<Integer, ProductCardDTO> added = new LinkedHashMap<>();
+        for (ProductCardDTO card : changed) {
+            added.put(card.getProductId(), card);
+        }
+        Set<Integer> replacedIds = new HashSet<>(removedIds);
+        replacedIds.addAll(added.keySet());
+
+        // Chỉ các danh mục có sản phẩm thay đổi (danh mục cũ và mới) được dựng lại
+        Map<Integer, Set<Integer>> replacedByCatalog = new HashMap<>();
+        Map<Integer, List<ProductCardDTO>> addedByCatalog = new HashMap<>();
+        for (Integer productId : replacedIds) {
+            ProductCardDTO previous = getProduct(productId);
+            if (previous != null) {
+                replacedByCatalog.computeIfAbsent(previous.getCatalogId(), k -> new HashSet<>()).add(productId);
+            }
+        }
+        for (ProductCardDTO card : added.values()) {
+            replacedByCatalog.computeIfAbsent(card.getCatalogId(), k -> new HashSet<>()).add(card.getProductId());
+            addedByCatalog.computeIfAbsent(card.getCatalogId(), k -> new ArrayList<>()).add(card);
+        }
+
+        Map<Integer, Orderings> byCatalog = new HashMap<>(productsByCatalogId);
+        replacedByCatalog.forEach((catalogId, ids) -> {
+            Orderings current = productsByCatalogId.getOrDefault(catalogId, Orderings.EMPTY);
+            Orderings patched = current.patch(ids, addedByCatalog.getOrDefault(catalogId, Collections.emptyList()));
+            if (patched.size() == 0) {
+                byCatalog.remove(catalogId);
+            } else {
+                byCatalog.put(catalogId, patched);
+            }
+        });
+
+        Orderings patchedProducts = products.patch(replacedIds, new ArrayList<>(added.values()));
+        return new CatalogSnapshot(this, version, builtAtMillis, patchedProducts, byCatalog);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public long getBuiltAtMillis() {
+        return builtAtMillis;
+    }
+
+    /**
+     * @return all product cards, in product ID order
+     */
+    public List<ProductCardDTO> getProducts() {
+        return products.get(ProductOrder.ID);
+    }
+
+    /**
+     * @param catalogId the ID of the catalog, or null for all products
+     * @param order     the order of the cards
+     * @return the product cards, ascending in the given order
+     */
+    public List<ProductCardDTO> getProducts(Integer catalogId, ProductOrder order) {
+        if (catalogId == null) {
+            return products.get(order);
+        }
+        Orderings orderings = productsByCatalogId.get(catalogId);
+        return orderings == null ? Collections.emptyList() : orderings.get(order);
+    }
+
+    /**
+     * @param productId the ID of the product
+     * @return the product card, or null if the product is not in the snapshot
+     */
+    public ProductCardDTO getProduct(Integer productId) {
+        if (productId == null) {
+            return null;
+        }
+
+        List<ProductCardDTO> byId = products.get(ProductOrder.ID);
+        int low = 0;
+        int high = byId.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = Integer.compare(byId.get(mid).getProductId(), productId);
+            if (compare < 0) {
+                low = mid + 1;
+            } else if (compare > 0) {
+                high = mid - 1;
+            } else {
+                return byId.get(mid);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param catalogId the ID of the catalog
+     * @return the product cards in the catalog, in product ID order
+     */
+    public List<ProductCardDTO> getProductsByCatalogId(Integer catalogId) {
+        return getProducts(catalogId, ProductOrder.ID);
+    }
+
+    /**
+     * @return all catalogs, in catalog ID order
+     */
+    public List<Catalog> getCatalogs() {
+        return catalogs;
+    }
+
+    /**
+     * @return the active catalogs, in catalog ID order
+     */
+    public List<Catalog> getActiveCatalogs() {
+        return activeCatalogs;
+    }
+
+    /**
+     * @param catalogId the ID of the catalog
+     * @return the catalog, or null if it does not exist
+     */
+    public Catalog getCatalog(Integer catalogId) {
+        return catalogsById.get(catalogId);
+    }
+
+    /**
+     * Dense ordinal of a catalog, from 0 to the number of catalogs - 1, so
+     * per-catalog counters can be kept in primitive arrays
+     *
+     * @param catalogId the ID of the catalog
+     * @return the ordinal, or -1 if the catalog does not exist
+     */
+    public int getCatalogOrdinal(Integer catalogId) {
+        if (catalogId == null) {
+            return -1;
+        }
+
+        int ordinal = Arrays.binarySearch(catalogIds, catalogId);
+        return ordinal >= 0 ? ordinal : -1;
+    }
+
+    public int getCatalogCount() {
+        return catalogIds.length;
+    }
+
+    public int getProductCount() {
+        return products.size();
+    }
+
+    /**
+     * The same product cards sorted in every ProductOrder
+     */
+    private static final class Orderings {
+
+        private static final Orderings EMPTY = of(Collections.emptyList());
+
+        private final Map<ProductOrder, List<ProductCardDTO>> sorted;
+
+        private Orderings(Map<ProductOrder, List<ProductCardDTO>> sorted) {
+            this.sorted = sorted;
+        }
+
+        static Orderings of(List<ProductCardDTO> cards) {
+            Map<ProductOrder, List<ProductCardDTO>> sorted = new EnumMap<>(ProductOrder.class);
+            for (ProductOrder order : ProductOrder.values()) {
+                ProductCardDTO[] array = cards.toArray(new ProductCardDTO[0]);
+                Arrays.sort(array, order.comparator());
+                sorted.put(order, Collections.unmodifiableList(Arrays.asList(array)));
+            }
+            return new Orderings(sorted);
+        }
+
+        List<ProductCardDTO> get(ProductOrder order) {
+            return sorted.get(order);
+        }
+
+        int size() {
+            return sorted.get(ProductOrder.ID).size();
+        }
+
+        /**
+         * Drop the cards with the given IDs and merge in the added cards, in
+         * one pass over each ordering; the existing cards are not re-sorted
+         */
+        Orderings patch(Set<Integer> replacedIds, List<ProductCardDTO> added) {
+            Map<ProductOrder, List<ProductCardDTO>> patched = new EnumMap<>(ProductOrder.class);
+            for (ProductOrder order : ProductOrder.values()) {
+                Comparator<ProductCardDTO> comparator = order.comparator();
+                List<ProductCardDTO> existing = sorted.get(order);
+                ProductCardDTO[] insert = added.toArray(new ProductCardDTO[0]);
+                Arrays.sort(insert, comparator);
+
+                ProductCardDTO[] merged = new ProductCardDTO[existing.size() + insert.length];
+                int size = 0;
+                int next = 0;
+                for (ProductCardDTO card : existing) {
+                    if (replacedIds.contains(card.getProductId())) {
+                        continue;
+                    }
+                    while (next < insert.length && comparator.compare(insert[next], card) < 0) {
+                        merged[size++] = insert[next++];
+                    }
+                    merged[size++] = card;
+                }
+                while (next < insert.length) {
+                    merged[size++] = insert[next++];
+                }
+                patched.put(order, Collections.unmodifiableList(
+                        Arrays.asList(size == merged.length ? merged : Arrays.copyOf(merged, size))));
+            }
+            return new Orderings(patched);
+        }
+    }
+}
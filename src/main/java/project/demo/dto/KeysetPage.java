@@ -0,0 +1,58 @@
+package project.demo.dto;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * One page of a keyset (cursor) paginated listing. Unlike a Spring Data Page
+ * it has no total count: the query fetches one row more than the page size
+ * to know whether a next page exists, and no COUNT query is issued.
+ *
+ * @param <T> the row type
+ */
+public final class KeysetPage<T> {
+
+    private final List<T> content;
+    private final String nextCursor;
+
+    public KeysetPage(List<T> content, String nextCursor) {
+        this.content = Collections.unmodifiableList(content);
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Build a page from rows fetched with a limit of size + 1
+     *
+     * @param rows     the fetched rows, at most size + 1
+     * @param size     the page size
+     * @param cursorOf encodes the cursor after a row; may return null if the
+     *                 row cannot be used as a seek position
+     * @param <T>      the row type
+     * @return the page, with a next cursor if more rows exist
+     */
+    public static <T> KeysetPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        if (rows.size() <= size) {
+            return new KeysetPage<>(new ArrayList<>(rows), null);
+        }
+
+        List<T> content = new ArrayList<>(rows.subList(0, size));
+        return new KeysetPage<>(content, cursorOf.apply(content.get(size - 1)));
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    /**
+     * @return the cursor of the next page, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public boolean hasNext() {
+        return nextCursor != null;
+    }
+}
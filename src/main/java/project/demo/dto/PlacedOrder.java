@@ -0,0 +1,29 @@
+package project.demo.dto;
+
+/**
+ * The outcome of placing an order with a checkout token: the ID of the
+ * order, and whether it was placed by an earlier request with the same
+ * token rather than by this one.
+ */
+public final class PlacedOrder {
+
+    private final Integer orderId;
+    private final boolean duplicate;
+
+    public PlacedOrder(Integer orderId, boolean duplicate) {
+        this.orderId = orderId;
+        this.duplicate = duplicate;
+    }
+
+    public Integer getOrderId() {
+        return orderId;
+    }
+
+    /**
+     * @return true if the order was placed by an earlier request, so payment
+     *         and clean-up have already been done
+     */
+    public boolean isDuplicate() {
+        return duplicate;
+    }
+}
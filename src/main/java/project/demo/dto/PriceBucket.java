@@ -0,0 +1,47 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * A price range offered by the product filter sidebar. Both bounds are
+ * inclusive, matching the BETWEEN used when the range is applied.
+ */
+public final class PriceBucket {
+
+    private final BigDecimal minPrice;
+    private final BigDecimal maxPrice;
+    private final String label;
+
+    public PriceBucket(BigDecimal minPrice, BigDecimal maxPrice, String label) {
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.label = label;
+    }
+
+    public BigDecimal getMinPrice() {
+        return minPrice;
+    }
+
+    public BigDecimal getMaxPrice() {
+        return maxPrice;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the value of the priceRange request parameter, e.g. "100000-300000"
+     */
+    public String getParam() {
+        return minPrice.toPlainString() + "-" + maxPrice.toPlainString();
+    }
+
+    /**
+     * @param price an effective price, may be null
+     * @return true if the price lies in this range
+     */
+    public boolean contains(BigDecimal price) {
+        return price != null && price.compareTo(minPrice) >= 0 && price.compareTo(maxPrice) <= 0;
+    }
+}
@@ -0,0 +1,105 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Read-only projection of a product as shown on a product card.
+ * Combines Product, ProductDetail and Catalog columns so that a listing page
+ * can be rendered from a single paged query.
+ */
+public class ProductCardDTO {
+    private final Integer productId;
+    private final Integer catalogId;
+    private final String productName;
+    private final String description;
+    private final BigDecimal price;
+    private final String imageUrl;
+    private final BigDecimal discountPrice;
+    private final Integer quantityInStock;
+    private final String catalogName;
+
+    public ProductCardDTO(Integer productId, Integer catalogId, String productName, BigDecimal price,
+            String imageUrl, BigDecimal discountPrice, Integer quantityInStock, String catalogName) {
+        this(productId, catalogId, productName, null, price, imageUrl, discountPrice, quantityInStock, catalogName);
+    }
+
+    public ProductCardDTO(Integer productId, Integer catalogId, String productName, String description,
+            BigDecimal price, String imageUrl, BigDecimal discountPrice, Integer quantityInStock,
+            String catalogName) {
+        this.productId = productId;
+        this.catalogId = catalogId;
+        this.productName = productName;
+        this.description = description;
+        this.price = price;
+        this.imageUrl = imageUrl;
+        this.discountPrice = discountPrice;
+        this.quantityInStock = quantityInStock;
+        this.catalogName = catalogName;
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public Integer getCatalogId() {
+        return catalogId;
+    }
+
+    public String getProductName() {
+        return productName;
+    }
+
+    /**
+     * Only populated by queries that need it (e.g. the featured product),
+     * listing queries leave it null to avoid reading nvarchar(max)
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    public BigDecimal getPrice() {
+        return price;
+    }
+
+    public String getImageUrl() {
+        return imageUrl;
+    }
+
+    public BigDecimal getDiscountPrice() {
+        return discountPrice;
+    }
+
+    public Integer getQuantityInStock() {
+        return quantityInStock;
+    }
+
+    public String getCatalogName() {
+        return catalogName;
+    }
+
+    /**
+     * @return true if a positive discount price is set
+     */
+    public boolean isDiscounted() {
+        return discountPrice != null && discountPrice.compareTo(BigDecimal.ZERO) > 0;
+    }
+
+    /**
+     * A discount price of zero counts as no discount, as in
+     * IProductDetailService.getEffectivePrice and the effective_price column
+     * that the price filters use, so a card shows the price the cart charges.
+     * The listings before product cards showed any non-null discount price.
+     *
+     * @return the discount price if it is positive, otherwise the regular price
+     */
+    public BigDecimal getEffectivePrice() {
+        return isDiscounted() ? discountPrice : price;
+    }
+
+    /**
+     * @return true if the product has stock available
+     */
+    public boolean isInStock() {
+        return quantityInStock != null && quantityInStock > 0;
+    }
+}
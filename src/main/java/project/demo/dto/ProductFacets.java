@@ -0,0 +1,78 @@
+package project.demo.dto;
+
+import java.util.List;
+
+/**
+ * Counts shown next to the filters of the product listing. Each facet is
+ * counted with its own filter left out, so a count is the number of products
+ * the listing would show after clicking that value:
+ * <ul>
+ * <li>catalogs: price range applied (choosing a catalog drops the search)</li>
+ * <li>price buckets: catalog or search applied</li>
+ * <li>stock: all current filters applied</li>
+ * </ul>
+ * Per-catalog counts are kept in an int array indexed by catalog ordinal.
+ */
+public final class ProductFacets {
+
+    private final CatalogSnapshot snapshot;
+    private final int[] catalogCounts;
+    private final int allCatalogsCount;
+    private final List<PriceBucket> priceBuckets;
+    private final int[] priceBucketCounts;
+    private final int inStockCount;
+    private final int outOfStockCount;
+
+    /**
+     * @param snapshot          the snapshot the counts were computed from (for catalog ordinals)
+     * @param catalogCounts     product counts by catalog ordinal
+     * @param allCatalogsCount  product count over all catalogs
+     * @param priceBuckets      the price ranges offered
+     * @param priceBucketCounts product counts by price bucket index
+     * @param inStockCount      products in the current result with stock
+     * @param outOfStockCount   products in the current result without stock
+     */
+    public ProductFacets(CatalogSnapshot snapshot, int[] catalogCounts, int allCatalogsCount,
+            List<PriceBucket> priceBuckets, int[] priceBucketCounts, int inStockCount, int outOfStockCount) {
+        this.snapshot = snapshot;
+        this.catalogCounts = catalogCounts;
+        this.allCatalogsCount = allCatalogsCount;
+        this.priceBuckets = priceBuckets;
+        this.priceBucketCounts = priceBucketCounts;
+        this.inStockCount = inStockCount;
+        this.outOfStockCount = outOfStockCount;
+    }
+
+    /**
+     * @param catalogId the ID of the catalog
+     * @return the number of products in the catalog, 0 for an unknown catalog
+     */
+    public int getCatalogCount(Integer catalogId) {
+        int ordinal = snapshot.getCatalogOrdinal(catalogId);
+        return ordinal >= 0 ? catalogCounts[ordinal] : 0;
+    }
+
+    public int getAllCatalogsCount() {
+        return allCatalogsCount;
+    }
+
+    public List<PriceBucket> getPriceBuckets() {
+        return priceBuckets;
+    }
+
+    /**
+     * @param index the index of the bucket in {@link #getPriceBuckets()}
+     * @return the number of products in the price bucket
+     */
+    public int getPriceBucketCount(int index) {
+        return priceBucketCounts[index];
+    }
+
+    public int getInStockCount() {
+        return inStockCount;
+    }
+
+    public int getOutOfStockCount() {
+        return outOfStockCount;
+    }
+}
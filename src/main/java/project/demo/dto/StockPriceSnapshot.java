@@ -0,0 +1,62 @@
+package project.demo.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable view of what adding a product to a cart needs to know: whether
+ * the product exists, its stock and its effective price (the discount price
+ * when there is one, otherwise the regular price).
+ * The version increases whenever the product's stock or price is changed
+ * through the application, so two snapshots with the same version saw the
+ * same values.
+ */
+public final class StockPriceSnapshot {
+
+    private final Integer productId;
+    private final boolean exists;
+    private final int quantityInStock;
+    private final BigDecimal effectivePrice;
+    private final long version;
+
+    public StockPriceSnapshot(Integer productId, boolean exists, int quantityInStock, BigDecimal effectivePrice,
+            long version) {
+        this.productId = productId;
+        this.exists = exists;
+        this.quantityInStock = quantityInStock;
+        this.effectivePrice = effectivePrice;
+        this.version = version;
+    }
+
+    /**
+     * @return a snapshot of a product that does not exist
+     */
+    public static StockPriceSnapshot missing(Integer productId, long version) {
+        return new StockPriceSnapshot(productId, false, 0, null, version);
+    }
+
+    public Integer getProductId() {
+        return productId;
+    }
+
+    public boolean exists() {
+        return exists;
+    }
+
+    /**
+     * @return the quantity in stock, 0 if the product has no stock info
+     */
+    public int getQuantityInStock() {
+        return quantityInStock;
+    }
+
+    /**
+     * @return the effective price, null if the product does not exist
+     */
+    public BigDecimal getEffectivePrice() {
+        return effectivePrice;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
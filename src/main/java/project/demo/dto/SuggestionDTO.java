@@ -0,0 +1,40 @@
+package project.demo.dto;
+
+/**
+ * A typeahead completion: a product or a catalog whose name starts with (a
+ * word of) the typed text.
+ */
+public final class SuggestionDTO {
+
+    public static final String TYPE_PRODUCT = "product";
+    public static final String TYPE_CATALOG = "catalog";
+
+    private final String type;
+    private final Integer id;
+    private final String label;
+
+    public SuggestionDTO(String type, Integer id, String label) {
+        this.type = type;
+        this.id = id;
+        this.label = label;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return the page the suggestion links to
+     */
+    public String getUrl() {
+        return TYPE_CATALOG.equals(type) ? "/products?category=" + id : "/products/" + id;
+    }
+}
@@ -0,0 +1,37 @@
+package project.demo.enums;
+
+/**
+ * Enum representing how the featured products on the home page are chosen.
+ * Configured with app.featured.strategy.
+ */
+public enum FeaturedProductStrategy {
+    HIGHEST_STOCK("highest-stock"),
+    BEST_SELLER("best-seller"),
+    PROMOTED("promoted");
+
+    private final String value;
+
+    FeaturedProductStrategy(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Convert a string value to the corresponding enum value.
+     *
+     * @param value the string value to convert
+     * @return the corresponding enum value
+     * @throws IllegalArgumentException if no matching enum value is found
+     */
+    public static FeaturedProductStrategy fromValue(String value) {
+        for (FeaturedProductStrategy strategy : FeaturedProductStrategy.values()) {
+            if (strategy.getValue().equals(value)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("Invalid FeaturedProductStrategy value: " + value);
+    }
+}
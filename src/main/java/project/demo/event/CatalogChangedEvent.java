@@ -0,0 +1,52 @@
+package project.demo.event;
+
+import java.util.Collections;
+import java.util.Set;
+
+import project.demo.dto.CatalogSnapshot;
+
+/**
+ * Published after a new catalog snapshot has been swapped in.
+ * Listeners run synchronously, in version order, on the thread that swapped
+ * the snapshot, so they should only do in-memory work.
+ */
+public class CatalogChangedEvent {
+
+    private final CatalogSnapshot previous;
+    private final CatalogSnapshot current;
+    private final Set<Integer> changedProductIds;
+    private final boolean fullRebuild;
+
+    /**
+     * @param previous          the replaced snapshot, or null for the first build
+     * @param current           the new snapshot
+     * @param changedProductIds the IDs of added, changed or removed products; empty for a full rebuild
+     * @param fullRebuild       true if the whole catalog was reloaded
+     */
+    public CatalogChangedEvent(CatalogSnapshot previous, CatalogSnapshot current, Set<Integer> changedProductIds,
+            boolean fullRebuild) {
+        this.previous = previous;
+        this.current = current;
+        this.changedProductIds = Collections.unmodifiableSet(changedProductIds);
+        this.fullRebuild = fullRebuild;
+    }
+
+    public CatalogSnapshot getPrevious() {
+        return previous;
+    }
+
+    public CatalogSnapshot getCurrent() {
+        return current;
+    }
+
+    public Set<Integer> getChangedProductIds() {
+        return changedProductIds;
+    }
+
+    /**
+     * @return true if the whole catalog was reloaded, in which case any product may have changed
+     */
+    public boolean isFullRebuild() {
+        return fullRebuild;
+    }
+}
@@ -1,6 +1,7 @@
 package project.demo.model;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import jakarta.persistence.CascadeType;
@@ -12,14 +13,14 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.PrePersist;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
-import jakarta.persistence.UniqueConstraint;
 
+// customer_id là duy nhất khi khác NULL (chỉ mục có lọc UX_Cart_Customer, xem db/V3__guest_carts.sql);
+// giỏ hàng của khách chưa đăng nhập có customer_id NULL và được tìm theo session_id
 @Entity
-@Table(name = "Cart", schema = "dbo", catalog = "SouvenirShopDBUser", uniqueConstraints = {
-        @UniqueConstraint(name = "UQ_Cart_Customer", columnNames = { "customer_id" })
-})
+@Table(name = "Cart", schema = "dbo", catalog = "SouvenirShopDBUser")
 public class Cart {
 
     @Id
@@ -27,7 +28,7 @@ public class Cart {
     @Column(name = "cart_id")
     private Integer cartId;
 
-    @Column(name = "customer_id", nullable = false)
+    @Column(name = "customer_id")
     private Integer customerId;
 
     @Column(name = "status", length = 20)
@@ -42,6 +43,9 @@ public class Cart {
     @Column(name = "session_id", length = 50)
     private String sessionId;
 
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+
     @ManyToOne
     @JoinColumn(name = "customer_id", insertable = false, updatable = false)
     private Customer customer;
@@ -51,6 +55,14 @@ public class Cart {
 
     public Cart() {}
 
+    // Giỏ hàng mới bắt đầu thời gian không hoạt động từ lúc tạo (dùng cho việc dọn giỏ hàng bị bỏ dở)
+    @PrePersist
+    protected void onCreate() {
+        if (lastActivityAt == null) {
+            lastActivityAt = LocalDateTime.now();
+        }
+    }
+
     public Integer getCartId() {
         return cartId;
     }
@@ -99,6 +111,14 @@ public class Cart {
         this.sessionId = sessionId;
     }
 
+    public LocalDateTime getLastActivityAt() {
+        return lastActivityAt;
+    }
+
+    public void setLastActivityAt(LocalDateTime lastActivityAt) {
+        this.lastActivityAt = lastActivityAt;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -35,6 +35,9 @@ public class ProductDetail {
     @Column(name = "image_url", length = 255)
     private String imageUrl;
 
+    @Column(name = "effective_price", precision = 10, scale = 2)
+    private BigDecimal effectivePrice;
+
     @ManyToOne
     @JoinColumn(name = "product_id", insertable = false, updatable = false)
     private Product product;
@@ -99,6 +102,28 @@ public class ProductDetail {
         this.imageUrl = imageUrl;
     }
 
+    public BigDecimal getEffectivePrice() {
+        return effectivePrice;
+    }
+
+    public void setEffectivePrice(BigDecimal effectivePrice) {
+        this.effectivePrice = effectivePrice;
+    }
+
+    /**
+     * Recompute the denormalized effective price: the discount price if it is
+     * positive, otherwise the regular price of the product
+     *
+     * @param regularPrice the regular price of the product
+     */
+    public void refreshEffectivePrice(BigDecimal regularPrice) {
+        if (discountPrice != null && discountPrice.compareTo(BigDecimal.ZERO) > 0) {
+            this.effectivePrice = discountPrice;
+        } else {
+            this.effectivePrice = regularPrice;
+        }
+    }
+
     public Product getProduct() {
         return product;
     }
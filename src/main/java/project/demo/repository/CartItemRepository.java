@@ -1,9 +1,15 @@
 package project.demo.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import project.demo.model.CartItem;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,6 +27,17 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
      */
     List<CartItem> findByCartId(Integer cartId);
 
+    /**
+     * Find all items in a cart with their products and product details, in a
+     * single query, for the cart page
+     *
+     * @param cartId the ID of the cart
+     * @return the cart items in the order they were added
+     */
+    @Query("SELECT DISTINCT ci FROM CartItem ci JOIN FETCH ci.product p LEFT JOIN FETCH p.productDetails "
+            + "WHERE ci.cartId = :cartId ORDER BY ci.cartItemId")
+    List<CartItem> findByCartIdWithProductDetails(@Param("cartId") Integer cartId);
+
     /**
      * Find a specific item in a cart by product
      *
@@ -30,6 +47,50 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
      */
     Optional<CartItem> findByCartIdAndProductId(Integer cartId, Integer productId);
 
+    /**
+     * Find the cart ID of a cart item without loading the item, so a later
+     * locking read still fetches the row as it is then
+     *
+     * @param cartItemId the ID of the cart item
+     * @return an Optional containing the cart ID if the item exists
+     */
+    @Query("SELECT ci.cartId FROM CartItem ci WHERE ci.cartItemId = :cartItemId")
+    Optional<Integer> findCartIdById(@Param("cartItemId") Integer cartItemId);
+
+    /**
+     * Find a cart item and lock its row until the end of the transaction, so
+     * concurrent changes of the same item are applied one after the other
+     *
+     * @param cartItemId the ID of the cart item
+     * @return an Optional containing the locked cart item if found
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cartItemId = :cartItemId")
+    Optional<CartItem> findByIdForUpdate(@Param("cartItemId") Integer cartItemId);
+
+    /**
+     * Find a specific item in a cart by product and lock its row until the end
+     * of the transaction
+     *
+     * @param cartId    the ID of the cart
+     * @param productId the ID of the product
+     * @return an Optional containing the locked cart item if found
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cartId = :cartId AND ci.productId = :productId")
+    Optional<CartItem> findByCartIdAndProductIdForUpdate(@Param("cartId") Integer cartId,
+            @Param("productId") Integer productId);
+
+    /**
+     * Find all items in a cart and lock their rows until the end of the transaction
+     *
+     * @param cartId the ID of the cart
+     * @return the locked cart items in the order they were added
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT ci FROM CartItem ci WHERE ci.cartId = :cartId ORDER BY ci.cartItemId")
+    List<CartItem> findByCartIdForUpdate(@Param("cartId") Integer cartId);
+
     /**
      * Find selected items in a cart
      *
@@ -46,6 +107,28 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
      */
     void deleteByCartId(Integer cartId);
 
+    /**
+     * Delete all items of several carts in a single statement
+     *
+     * @param cartIds the IDs of the carts
+     * @return the number of deleted items
+     */
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cartId IN :cartIds")
+    int deleteByCartIdIn(@Param("cartIds") Collection<Integer> cartIds);
+
+    /**
+     * Delete all items of those carts that still have a status, in a single statement
+     *
+     * @param cartIds the IDs of the carts
+     * @param status  the status the carts must still have
+     * @return the number of deleted items
+     */
+    @Modifying
+    @Query("DELETE FROM CartItem ci WHERE ci.cartId IN "
+            + "(SELECT c.cartId FROM Cart c WHERE c.cartId IN :cartIds AND c.status = :status)")
+    int deleteByCartIdInAndCartStatus(@Param("cartIds") Collection<Integer> cartIds, @Param("status") String status);
+
     /**
      * Count the number of items in a cart
      *
@@ -54,4 +137,15 @@ public interface CartItemRepository extends JpaRepository<CartItem, Integer> {
      */
     long countByCartId(Integer cartId);
 
+    /**
+     * Count the items in a customer's cart with the given status, without
+     * loading the cart first
+     *
+     * @param customerId the ID of the customer
+     * @param status     the status of the cart
+     * @return the number of items in the cart, 0 if there is no such cart
+     */
+    @Query("SELECT COUNT(ci) FROM CartItem ci WHERE ci.cart.customerId = :customerId AND ci.cart.status = :status")
+    long countByCustomerIdAndCartStatus(@Param("customerId") Integer customerId, @Param("status") String status);
+
 }
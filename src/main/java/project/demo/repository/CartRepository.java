@@ -1,8 +1,12 @@
 package project.demo.repository;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -50,6 +54,14 @@ public interface CartRepository extends JpaRepository<Cart, Integer> {
      * @return an Optional containing the cart if found
      */
     Optional<Cart> findBySessionId(String sessionId);
+
+    /**
+     * Find the cart of a guest (a cart without customer) by its cookie token
+     *
+     * @param sessionId the token of the guest cart
+     * @return an Optional containing the guest cart if found
+     */
+    Optional<Cart> findBySessionIdAndCustomerIdIsNull(String sessionId);
     
     /**
      * Update cart status directly using SQL query
@@ -61,4 +73,158 @@ public interface CartRepository extends JpaRepository<Cart, Integer> {
     @Transactional
     @Query(value = "UPDATE SouvenirShopDBUser.dbo.Cart SET status = :status WHERE cart_id = :cartId", nativeQuery = true)
     void updateCartStatus(@Param("cartId") Integer cartId, @Param("status") String status);
+
+    /**
+     * Get the status of the cart of a customer, whatever the status, and keep
+     * the cart row locked until the transaction ends. When the customer has
+     * no cart, HOLDLOCK locks the empty key range instead, so no other
+     * transaction can insert one in between. A claim that follows in the same
+     * transaction therefore changes the status read here.
+     *
+     * @param customerId the ID of the customer
+     * @return the status of the cart, empty if the customer has no cart
+     */
+    @Query(value = "SELECT c.status FROM SouvenirShopDBUser.dbo.Cart c WITH (UPDLOCK, HOLDLOCK) "
+            + "WHERE c.customer_id = :customerId", nativeQuery = true)
+    Optional<String> findStatusByCustomerIdForUpdate(@Param("customerId") Integer customerId);
+
+    /**
+     * Claim the cart of a customer in a single statement: insert an active
+     * cart if the customer has none, or reactivate the existing one. A
+     * customer has at most one cart (UX_Cart_Customer) and HOLDLOCK keeps two
+     * concurrent claims from both taking the insert branch.
+     * An abandoned cart keeps its items and total; any other cart starts
+     * over with a zero total. Either way the cart counts as active from now.
+     * Call it after findStatusByCustomerIdForUpdate in the same transaction
+     * to know which status the claim replaced, and load the cart afterwards:
+     * the persistence context does not see this statement.
+     *
+     * @param customerId the ID of the customer
+     * @param sessionId  the session ID of a newly inserted cart
+     * @return 1 if a cart was inserted or reactivated, 0 if the cart was
+     *         already active
+     */
+    @Modifying
+    @Query(value = "MERGE SouvenirShopDBUser.dbo.Cart WITH (HOLDLOCK) AS c "
+            + "USING (SELECT :customerId AS customer_id) AS s ON c.customer_id = s.customer_id "
+            + "WHEN MATCHED AND c.status <> 'active' THEN UPDATE SET c.status = 'active', "
+            + "c.total_amount = CASE WHEN c.status = 'abandoned' THEN c.total_amount ELSE 0 END, "
+            + "c.last_activity_at = SYSDATETIME() "
+            + "WHEN NOT MATCHED THEN INSERT (customer_id, status, total_amount, session_id, last_activity_at) "
+            + "VALUES (:customerId, 'active', 0, :sessionId, SYSDATETIME());", nativeQuery = true)
+    int claimCart(@Param("customerId") Integer customerId, @Param("sessionId") String sessionId);
+
+    /**
+     * Add a change to the stored total of a cart in a single UPDATE, which
+     * also records activity on the cart
+     *
+     * @param cartId the ID of the cart
+     * @param delta  the amount to add, negative to subtract
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE Cart c SET c.totalAmount = COALESCE(c.totalAmount, 0) + :delta, "
+            + "c.lastActivityAt = CURRENT_TIMESTAMP WHERE c.cartId = :cartId")
+    int adjustTotalAmount(@Param("cartId") Integer cartId, @Param("delta") BigDecimal delta);
+
+    /**
+     * Find carts whose stored total differs from the sum of their selected items
+     *
+     * @param status the cart status to check
+     * @return the IDs of the carts with a stale total
+     */
+    @Query("SELECT c.cartId FROM Cart c WHERE c.status = :status AND COALESCE(c.totalAmount, 0) <> "
+            + "(SELECT COALESCE(SUM(ci.unitPrice * ci.quantity), 0) FROM CartItem ci "
+            + "WHERE ci.cartId = c.cartId AND ci.isSelected = true)")
+    List<Integer> findCartIdsWithStaleTotal(@Param("status") String status);
+
+    /**
+     * Change the status of a cart and record the activity, leaving the other
+     * columns, e.g. the total kept up to date by delta updates, as stored
+     *
+     * @param cartId the ID of the cart
+     * @param status the new status
+     * @param now    the time of the change
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE Cart c SET c.status = :status, c.lastActivityAt = :now WHERE c.cartId = :cartId")
+    int updateStatusAndActivity(@Param("cartId") Integer cartId, @Param("status") String status,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Record activity on a cart
+     *
+     * @param cartId the ID of the cart
+     * @param now    the time of the activity
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE Cart c SET c.lastActivityAt = :now WHERE c.cartId = :cartId")
+    int touch(@Param("cartId") Integer cartId, @Param("now") LocalDateTime now);
+
+    /**
+     * Find guest carts without activity since a given time, oldest IDs first
+     *
+     * @param cutoff   the time before which guest carts are expired
+     * @param pageable the maximum number of IDs to return
+     * @return the IDs of expired guest carts
+     */
+    @Query("SELECT c.cartId FROM Cart c WHERE c.customerId IS NULL AND c.lastActivityAt < :cutoff ORDER BY c.cartId")
+    List<Integer> findExpiredGuestCartIds(@Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+    /**
+     * Delete carts in a single statement; their items must be deleted first
+     *
+     * @param cartIds the IDs of the carts
+     * @return the number of deleted carts
+     */
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.cartId IN :cartIds")
+    int deleteByCartIdIn(@Param("cartIds") Collection<Integer> cartIds);
+
+    /**
+     * Mark a batch of customer carts that have been idle for too long as
+     * abandoned, in a single statement. Rows locked by a running request are
+     * skipped (READPAST) rather than waited for; they are picked up later.
+     *
+     * @param batchSize   the maximum number of carts to mark
+     * @param idleMinutes the idle time after which an active cart is abandoned
+     * @return the customer IDs of the marked carts
+     */
+    @Query(value = "UPDATE TOP (:batchSize) c SET c.status = 'abandoned' "
+            + "OUTPUT inserted.customer_id "
+            + "FROM SouvenirShopDBUser.dbo.Cart AS c WITH (READPAST, ROWLOCK) "
+            + "WHERE c.status = 'active' AND c.customer_id IS NOT NULL "
+            + "AND c.last_activity_at < DATEADD(MINUTE, -:idleMinutes, SYSDATETIME())", nativeQuery = true)
+    List<Integer> markAbandoned(@Param("batchSize") int batchSize, @Param("idleMinutes") long idleMinutes);
+
+    /**
+     * Find a batch of customer carts with a status and without activity for
+     * a number of days, skipping locked rows
+     *
+     * @param status    the cart status
+     * @param idleDays  the minimum number of days without activity
+     * @param batchSize the maximum number of IDs to return
+     * @return the IDs of the carts, lowest first
+     */
+    @Query(value = "SELECT TOP (:batchSize) c.cart_id FROM SouvenirShopDBUser.dbo.Cart AS c WITH (READPAST) "
+            + "WHERE c.status = :status AND c.customer_id IS NOT NULL "
+            + "AND c.last_activity_at < DATEADD(DAY, -:idleDays, SYSDATETIME()) "
+            + "ORDER BY c.cart_id", nativeQuery = true)
+    List<Integer> findIdleCartIds(@Param("status") String status, @Param("idleDays") long idleDays,
+            @Param("batchSize") int batchSize);
+
+    /**
+     * Delete carts in a single statement if they still have a status, so a
+     * cart that was reactivated in the meantime is kept; their items must be
+     * deleted first
+     *
+     * @param cartIds the IDs of the carts
+     * @param status  the status the carts must still have
+     * @return the number of deleted carts
+     */
+    @Modifying
+    @Query("DELETE FROM Cart c WHERE c.cartId IN :cartIds AND c.status = :status")
+    int deleteByCartIdInAndStatus(@Param("cartIds") Collection<Integer> cartIds, @Param("status") String status);
 }
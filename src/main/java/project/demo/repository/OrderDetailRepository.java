@@ -1,7 +1,9 @@
 package project.demo.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import project.demo.model.OrderDetail;
 
@@ -55,6 +57,39 @@ public interface OrderDetailRepository extends JpaRepository<OrderDetail, Intege
     @Query("SELECT SUM(od.quantity) FROM OrderDetail od WHERE od.productId = ?1")
     Integer getTotalQuantityByProductId(Integer productId);
 
+    /**
+     * Get the total quantity ordered of every product that has been ordered
+     * 
+     * @return rows of [productId, total quantity]
+     */
+    @Query("SELECT od.productId, SUM(od.quantity) FROM OrderDetail od GROUP BY od.productId")
+    List<Object[]> getTotalQuantityGroupByProductId();
+
+    /**
+     * Find the IDs of the best-selling products by total quantity ordered
+     * 
+     * @param excludedStatus the order status to leave out (typically "cancelled")
+     * @param limit the maximum number of product IDs to return
+     * @return the product IDs, best-selling first
+     */
+    @Query("SELECT od.productId FROM OrderDetail od JOIN od.order o WHERE o.orderStatus <> ?1 "
+            + "GROUP BY od.productId ORDER BY SUM(od.quantity) DESC, od.productId ASC")
+    List<Integer> findBestSellingProductIds(String excludedStatus, Pageable limit);
+
+    /**
+     * Find the products of orders placed after a given order, one row of
+     * (order ID, product ID) per order detail, in order ID order
+     * 
+     * @param afterOrderId the ID of the last order already read
+     * @param excludedStatus the order status to leave out (typically "cancelled")
+     * @param limit the maximum number of rows to return
+     * @return rows of order ID and product ID
+     */
+    @Query("SELECT od.orderId, od.productId FROM OrderDetail od JOIN od.order o "
+            + "WHERE od.orderId > :afterOrderId AND o.orderStatus <> :excludedStatus ORDER BY od.orderId")
+    List<Object[]> findOrderProductsAfter(@Param("afterOrderId") Integer afterOrderId,
+            @Param("excludedStatus") String excludedStatus, Pageable limit);
+
     /**
      * Delete order details by order ID
      * 
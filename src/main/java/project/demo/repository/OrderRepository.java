@@ -4,6 +4,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import project.demo.model.Order;
 
@@ -92,4 +93,32 @@ public interface OrderRepository extends JpaRepository<Order, Integer> {
      */
     @Query(value = "SELECT o FROM Order o WHERE o.customerId = ?1 ORDER BY o.orderDate DESC")
     List<Order> findRecentOrders(Integer customerId, Pageable limit);
+    
+    /**
+     * Find the newest orders of a customer, newest first with ties by order ID.
+     * First page of the keyset paginated order history; no count query is issued.
+     * 
+     * @param customerId the ID of the customer
+     * @param limit the maximum number of orders to return
+     * @return the newest orders for the customer
+     */
+    @Query("SELECT o FROM Order o WHERE o.customerId = :customerId "
+            + "ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<Order> findLatestByCustomerId(@Param("customerId") Integer customerId, Pageable limit);
+    
+    /**
+     * Find the orders of a customer placed before the given position, newest first.
+     * Keyset pagination: seeks on (order date, order ID) instead of skipping OFFSET rows.
+     * 
+     * @param customerId the ID of the customer
+     * @param orderDate the order date of the last order on the previous page
+     * @param orderId the ID of the last order on the previous page
+     * @param limit the maximum number of orders to return
+     * @return the next orders for the customer
+     */
+    @Query("SELECT o FROM Order o WHERE o.customerId = :customerId "
+            + "AND (o.orderDate < :orderDate OR (o.orderDate = :orderDate AND o.orderId < :orderId)) "
+            + "ORDER BY o.orderDate DESC, o.orderId DESC")
+    List<Order> findByCustomerIdBefore(@Param("customerId") Integer customerId,
+            @Param("orderDate") LocalDateTime orderDate, @Param("orderId") Integer orderId, Pageable limit);
 }
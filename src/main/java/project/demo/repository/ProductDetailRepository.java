@@ -1,10 +1,14 @@
 package project.demo.repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import project.demo.model.ProductDetail;
@@ -69,4 +73,36 @@ public interface ProductDetailRepository extends JpaRepository<ProductDetail, In
      */
     @Query("SELECT pd FROM ProductDetail pd WHERE pd.quantityInStock = (SELECT MAX(p.quantityInStock) FROM ProductDetail p)")
     ProductDetail findProductWithHighestStock();
+    
+    /**
+     * Recompute the effective price of a product after its regular price changed
+     * 
+     * @param productId the ID of the product
+     * @param price the regular price of the product
+     * @return the number of updated rows
+     */
+    @Modifying
+    @Query("UPDATE ProductDetail pd SET pd.effectivePrice = CASE WHEN pd.discountPrice > 0 THEN pd.discountPrice ELSE :price END WHERE pd.productId = :productId")
+    int refreshEffectivePrice(@Param("productId") Integer productId, @Param("price") BigDecimal price);
+    
+    /**
+     * Find the stock of several products in one query
+     * 
+     * @param productIds the IDs of the products
+     * @return rows of product ID and quantity in stock
+     */
+    @Query("SELECT pd.productId, pd.quantityInStock FROM ProductDetail pd WHERE pd.productId IN :productIds")
+    List<Object[]> findStockByProductIds(@Param("productIds") Collection<Integer> productIds);
+    
+    /**
+     * Find the stock and effective price of several products in one query.
+     * Products without details are returned with a null stock and their
+     * regular price; unknown product IDs are not returned.
+     * 
+     * @param productIds the IDs of the products
+     * @return rows of product ID, quantity in stock and effective price
+     */
+    @Query("SELECT p.productId, pd.quantityInStock, CASE WHEN pd.discountPrice > 0 THEN pd.discountPrice ELSE p.price END "
+            + "FROM Product p LEFT JOIN p.productDetails pd WHERE p.productId IN :productIds")
+    List<Object[]> findStockAndPriceByProductIds(@Param("productIds") Collection<Integer> productIds);
 }
@@ -49,6 +49,17 @@ public interface ProductPromotionRepository extends JpaRepository<ProductPromoti
     @Query("SELECT pp FROM ProductPromotion pp WHERE pp.productId = ?1 AND pp.status = ?2 AND pp.startDate <= ?3 AND (pp.endDate IS NULL OR pp.endDate >= ?3)")
     List<ProductPromotion> findActivePromotionsByProductId(Integer productId, String status, LocalDate currentDate);
     
+    /**
+     * Find the IDs of products with a product promotion that is running today
+     * and whose promotion is also active
+     * 
+     * @param status the status (typically "active")
+     * @param currentDate the current date
+     * @return the IDs of the promoted products
+     */
+    @Query("SELECT DISTINCT pp.productId FROM ProductPromotion pp JOIN pp.promotion pr WHERE pp.status = ?1 AND pr.status = ?1 AND pp.startDate <= ?2 AND (pp.endDate IS NULL OR pp.endDate >= ?2)")
+    List<Integer> findActivePromotedProductIds(String status, LocalDate currentDate);
+    
     /**
      * Find product promotions by product ID and promotion ID
      * 
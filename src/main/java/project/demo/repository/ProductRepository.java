@@ -1,14 +1,17 @@
 package project.demo.repository;
 
 import java.math.BigDecimal;
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import project.demo.dto.ProductCardDTO;
 import project.demo.model.Product;
 
 /**
@@ -16,6 +19,13 @@ import project.demo.model.Product;
  */
 @Repository
 public interface ProductRepository extends JpaRepository<Product, Integer> {
+
+    /**
+     * Join condition that keeps one detail row per product (the one with the
+     * lowest ID), so a product with several detail rows gives a single card
+     * and pages and counts stay in step
+     */
+    String FIRST_DETAIL = "pd.detailId = (SELECT MIN(d.detailId) FROM ProductDetail d WHERE d.productId = p.productId) ";
     
     /**
      * Find products by catalog ID
@@ -104,4 +114,365 @@ public interface ProductRepository extends JpaRepository<Product, Integer> {
      */
     @Query("SELECT p FROM Product p WHERE LOWER(p.productName) LIKE LOWER(CONCAT('%', ?1, '%')) OR LOWER(p.description) LIKE LOWER(CONCAT('%', ?1, '%'))")
     Page<Product> searchByNameOrDescriptionPaginated(String keyword, Pageable pageable);
+
+    /**
+     * Find product cards (product, detail and catalog name) with pagination
+     * 
+     * @param pageable the pagination information
+     * @return a page of product cards
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c",
+            countQuery = "SELECT COUNT(p) FROM Product p")
+    Page<ProductCardDTO> findProductCards(Pageable pageable);
+    
+    /**
+     * Find product cards in a catalog with pagination
+     * 
+     * @param catalogId the ID of the catalog
+     * @param pageable the pagination information
+     * @return a page of product cards in the catalog
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId",
+            countQuery = "SELECT COUNT(p) FROM Product p WHERE p.catalogId = :catalogId")
+    Page<ProductCardDTO> findProductCardsByCatalogId(@Param("catalogId") Integer catalogId, Pageable pageable);
+    
+    /**
+     * Find product cards with names containing the given keyword with pagination
+     * 
+     * @param keyword the keyword to search for
+     * @param pageable the pagination information
+     * @return a page of product cards with names containing the keyword
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE LOWER(p.productName) LIKE LOWER(CONCAT('%', :keyword, '%'))",
+            countQuery = "SELECT COUNT(p) FROM Product p WHERE LOWER(p.productName) LIKE LOWER(CONCAT('%', :keyword, '%'))")
+    Page<ProductCardDTO> searchProductCardsByName(@Param("keyword") String keyword, Pageable pageable);
+    
+    /**
+     * Find product cards whose effective price lies in the given range with pagination
+     * 
+     * @param minPrice the minimum effective price
+     * @param maxPrice the maximum effective price
+     * @param pageable the pagination information
+     * @return a page of product cards in the price range
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE pd.effectivePrice BETWEEN :minPrice AND :maxPrice",
+            countQuery = "SELECT COUNT(p) FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "WHERE pd.effectivePrice BETWEEN :minPrice AND :maxPrice")
+    Page<ProductCardDTO> findProductCardsByEffectivePriceBetween(@Param("minPrice") BigDecimal minPrice,
+            @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+    
+    /**
+     * Find product cards in a catalog whose effective price lies in the given range with pagination
+     * 
+     * @param catalogId the ID of the catalog
+     * @param minPrice the minimum effective price
+     * @param maxPrice the maximum effective price
+     * @param pageable the pagination information
+     * @return a page of product cards in the catalog and price range
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND pd.effectivePrice BETWEEN :minPrice AND :maxPrice",
+            countQuery = "SELECT COUNT(p) FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "WHERE p.catalogId = :catalogId AND pd.effectivePrice BETWEEN :minPrice AND :maxPrice")
+    Page<ProductCardDTO> findProductCardsByCatalogIdAndEffectivePriceBetween(@Param("catalogId") Integer catalogId,
+            @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+    
+    /**
+     * Find product cards with names containing the given keyword whose effective price
+     * lies in the given range with pagination
+     * 
+     * @param keyword the keyword to search for
+     * @param minPrice the minimum effective price
+     * @param maxPrice the maximum effective price
+     * @param pageable the pagination information
+     * @return a page of matching product cards in the price range
+     */
+    @Query(value = "SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE LOWER(p.productName) LIKE LOWER(CONCAT('%', :keyword, '%')) "
+            + "AND pd.effectivePrice BETWEEN :minPrice AND :maxPrice",
+            countQuery = "SELECT COUNT(p) FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "WHERE LOWER(p.productName) LIKE LOWER(CONCAT('%', :keyword, '%')) "
+            + "AND pd.effectivePrice BETWEEN :minPrice AND :maxPrice")
+    Page<ProductCardDTO> searchProductCardsByNameAndEffectivePriceBetween(@Param("keyword") String keyword,
+            @Param("minPrice") BigDecimal minPrice, @Param("maxPrice") BigDecimal maxPrice, Pageable pageable);
+    
+    /**
+     * Find product cards ordered by stock quantity, including the description.
+     * Used for the featured product on the home page.
+     * 
+     * @param pageable the pagination information (typically the first page of size 1)
+     * @return a list of product cards with the highest stock first
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.description, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "ORDER BY pd.quantityInStock DESC, p.productId ASC")
+    List<ProductCardDTO> findProductCardsByHighestStock(Pageable pageable);
+    
+    /**
+     * Find the cards of all products, including the description, in product ID order.
+     * Used to build the in-memory catalog snapshot.
+     * 
+     * @return a list of all product cards
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.description, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "ORDER BY p.productId ASC")
+    List<ProductCardDTO> findAllProductCards();
+    
+    /**
+     * Find the cards of the given products, including the description.
+     * Used to patch changed products into the in-memory catalog snapshot.
+     * 
+     * @param productIds the IDs of the products
+     * @return a list of product cards for the products that still exist
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.description, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.productId IN :productIds")
+    List<ProductCardDTO> findProductCardsByProductIdIn(@Param("productIds") Collection<Integer> productIds);
+    
+    /**
+     * Find the product cards that follow the given position when sorted by
+     * name ascending (ties by product ID). Keyset pagination: the query seeks
+     * on (name, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param productName the name of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE (p.productName > :productName "
+            + "OR (p.productName = :productName AND p.productId > :productId)) "
+            + "ORDER BY p.productName ASC, p.productId ASC")
+    List<ProductCardDTO> findProductCardsAfterNameAsc(@Param("productName") String productName,
+            @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards in a catalog that follow the given position when sorted by
+     * name ascending (ties by product ID). Keyset pagination: the query seeks
+     * on (name, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param catalogId the ID of the catalog
+     * @param productName the name of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND (p.productName > :productName "
+            + "OR (p.productName = :productName AND p.productId > :productId)) "
+            + "ORDER BY p.productName ASC, p.productId ASC")
+    List<ProductCardDTO> findProductCardsInCatalogAfterNameAsc(@Param("catalogId") Integer catalogId,
+            @Param("productName") String productName, @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards that follow the given position when sorted by
+     * name descending (ties by product ID). Keyset pagination: the query seeks
+     * on (name, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param productName the name of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE (p.productName < :productName "
+            + "OR (p.productName = :productName AND p.productId < :productId)) "
+            + "ORDER BY p.productName DESC, p.productId DESC")
+    List<ProductCardDTO> findProductCardsAfterNameDesc(@Param("productName") String productName,
+            @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards in a catalog that follow the given position when sorted by
+     * name descending (ties by product ID). Keyset pagination: the query seeks
+     * on (name, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param catalogId the ID of the catalog
+     * @param productName the name of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p LEFT JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND (p.productName < :productName "
+            + "OR (p.productName = :productName AND p.productId < :productId)) "
+            + "ORDER BY p.productName DESC, p.productId DESC")
+    List<ProductCardDTO> findProductCardsInCatalogAfterNameDesc(@Param("catalogId") Integer catalogId,
+            @Param("productName") String productName, @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards that follow the given position when sorted by
+     * effective price ascending (ties by product ID). Keyset pagination: the query seeks
+     * on (effective price, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param effectivePrice the effective price of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE (pd.effectivePrice > :effectivePrice "
+            + "OR (pd.effectivePrice = :effectivePrice AND p.productId > :productId)) "
+            + "ORDER BY pd.effectivePrice ASC, p.productId ASC")
+    List<ProductCardDTO> findProductCardsAfterPriceAsc(@Param("effectivePrice") BigDecimal effectivePrice,
+            @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards in a catalog that follow the given position when sorted by
+     * effective price ascending (ties by product ID). Keyset pagination: the query seeks
+     * on (effective price, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param catalogId the ID of the catalog
+     * @param effectivePrice the effective price of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND (pd.effectivePrice > :effectivePrice "
+            + "OR (pd.effectivePrice = :effectivePrice AND p.productId > :productId)) "
+            + "ORDER BY pd.effectivePrice ASC, p.productId ASC")
+    List<ProductCardDTO> findProductCardsInCatalogAfterPriceAsc(@Param("catalogId") Integer catalogId,
+            @Param("effectivePrice") BigDecimal effectivePrice, @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards that follow the given position when sorted by
+     * effective price descending (ties by product ID). Keyset pagination: the query seeks
+     * on (effective price, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param effectivePrice the effective price of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE (pd.effectivePrice < :effectivePrice "
+            + "OR (pd.effectivePrice = :effectivePrice AND p.productId < :productId)) "
+            + "ORDER BY pd.effectivePrice DESC, p.productId DESC")
+    List<ProductCardDTO> findProductCardsAfterPriceDesc(@Param("effectivePrice") BigDecimal effectivePrice,
+            @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards in a catalog that follow the given position when sorted by
+     * effective price descending (ties by product ID). Keyset pagination: the query seeks
+     * on (effective price, product ID) instead of skipping OFFSET rows and issues no count query.
+     * 
+     * @param catalogId the ID of the catalog
+     * @param effectivePrice the effective price of the last product on the previous page
+     * @param productId the ID of the last product on the previous page
+     * @param limit the maximum number of product cards to return
+     * @return the next product cards in sort order
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND (pd.effectivePrice < :effectivePrice "
+            + "OR (pd.effectivePrice = :effectivePrice AND p.productId < :productId)) "
+            + "ORDER BY pd.effectivePrice DESC, p.productId DESC")
+    List<ProductCardDTO> findProductCardsInCatalogAfterPriceDesc(@Param("catalogId") Integer catalogId,
+            @Param("effectivePrice") BigDecimal effectivePrice, @Param("productId") Integer productId, Pageable limit);
+    
+    /**
+     * Find the product cards related to a product: other products in the same
+     * catalog, in-stock first, then closest in effective price, then by product ID
+     * 
+     * @param catalogId the ID of the catalog
+     * @param productId the ID of the product to exclude
+     * @param effectivePrice the effective price of the product
+     * @param limit the maximum number of product cards to return
+     * @return the related product cards
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId = :catalogId AND p.productId <> :productId "
+            + "ORDER BY CASE WHEN pd.quantityInStock > 0 THEN 0 ELSE 1 END, "
+            + "ABS(pd.effectivePrice - :effectivePrice), p.productId")
+    List<ProductCardDTO> findRelatedProductCards(@Param("catalogId") Integer catalogId,
+            @Param("productId") Integer productId, @Param("effectivePrice") BigDecimal effectivePrice,
+            Pageable limit);
+
+    /**
+     * Find product cards from a set of catalogs, leaving out some products:
+     * the recommendations for a cart, in-stock first, then by product ID
+     * 
+     * @param catalogIds the IDs of the catalogs
+     * @param productIds the IDs of the products to leave out
+     * @param limit the maximum number of product cards to return
+     * @return the product cards
+     */
+    @Query("SELECT new project.demo.dto.ProductCardDTO(p.productId, p.catalogId, p.productName, p.price, "
+            + "pd.imageUrl, pd.discountPrice, pd.quantityInStock, c.catalogName) "
+            + "FROM Product p JOIN p.productDetails pd ON " + FIRST_DETAIL
+            + "LEFT JOIN p.catalog c "
+            + "WHERE p.catalogId IN :catalogIds AND p.productId NOT IN :productIds "
+            + "ORDER BY CASE WHEN pd.quantityInStock > 0 THEN 0 ELSE 1 END, p.productId")
+    List<ProductCardDTO> findProductCardsInCatalogsExcluding(@Param("catalogIds") Collection<Integer> catalogIds,
+            @Param("productIds") Collection<Integer> productIds, Pageable limit);
+
+    /**
+     * Find products in the catalogs of the given products, leaving those products
+     * out: the fallback recommendations for a cart, by product ID
+     * 
+     * @param productIds the IDs of the products in the cart
+     * @param limit the maximum number of products to return
+     * @return the products
+     */
+    @Query("SELECT p FROM Product p "
+            + "WHERE p.catalogId IN (SELECT cp.catalogId FROM Product cp WHERE cp.productId IN :productIds) "
+            + "AND p.productId NOT IN :productIds "
+            + "ORDER BY p.productId")
+    List<Product> findInCatalogsOfProductsExcluding(@Param("productIds") Collection<Integer> productIds,
+            Pageable limit);
 }
@@ -0,0 +1,43 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.ICartSweeperService;
+
+/**
+ * Periodically marks idle customer carts as abandoned and deletes old
+ * converted carts. A run that stops early, or fails, leaves the remaining
+ * carts for the next run.
+ */
+@Component
+public class CartSweeperScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartSweeperScheduler.class);
+
+    private final ICartSweeperService cartSweeperService;
+
+    public CartSweeperScheduler(ICartSweeperService cartSweeperService) {
+        this.cartSweeperService = cartSweeperService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.sweeper.interval-ms:900000}")
+    public void sweepCarts() {
+        if (!cartSweeperService.isEnabled()) {
+            return;
+        }
+
+        try {
+            int abandoned = cartSweeperService.markAbandoned();
+            int deleted = cartSweeperService.purgeConverted();
+            if (abandoned > 0 || deleted > 0) {
+                logger.info("Cart sweeper marked {} carts abandoned and deleted {} converted carts",
+                        abandoned, deleted);
+            }
+        } catch (Exception e) {
+            logger.warn("Cart sweeper failed, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
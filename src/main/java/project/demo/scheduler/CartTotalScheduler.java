@@ -0,0 +1,38 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.ICartService;
+
+/**
+ * Periodically checks stored cart totals against the cart items. Totals are
+ * maintained by each cart change; this repairs any that drifted, e.g. after
+ * a manual data fix.
+ */
+@Component
+public class CartTotalScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTotalScheduler.class);
+
+    private final ICartService cartService;
+
+    public CartTotalScheduler(ICartService cartService) {
+        this.cartService = cartService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.total-check-interval-ms:3600000}",
+            initialDelayString = "${app.cart.total-check-interval-ms:3600000}")
+    public void reconcileCartTotals() {
+        try {
+            int corrected = cartService.reconcileTotals();
+            if (corrected > 0) {
+                logger.warn("Corrected the stored total of {} carts", corrected);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not check cart totals: {}", e.getMessage());
+        }
+    }
+}
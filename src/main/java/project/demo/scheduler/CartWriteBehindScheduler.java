@@ -0,0 +1,37 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.ICartWriteBehindService;
+
+/**
+ * Periodically writes the cart changes buffered by the write-behind store.
+ * A failed write keeps the changes in memory and is retried on the next run.
+ */
+@Component
+public class CartWriteBehindScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBehindScheduler.class);
+
+    private final ICartWriteBehindService cartWriteBehindService;
+
+    public CartWriteBehindScheduler(ICartWriteBehindService cartWriteBehindService) {
+        this.cartWriteBehindService = cartWriteBehindService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cart.write-behind.flush-interval-ms:500}")
+    public void flushCartChanges() {
+        if (!cartWriteBehindService.isEnabled()) {
+            return;
+        }
+
+        try {
+            cartWriteBehindService.flush();
+        } catch (Exception e) {
+            logger.warn("Could not write pending cart changes, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.ICheckoutTokenService;
+
+/**
+ * Periodically deletes checkout tokens that are older than their retention
+ * period; by then no request repeats them. A failed run is retried on the
+ * next one.
+ */
+@Component
+public class CheckoutTokenScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CheckoutTokenScheduler.class);
+
+    private final ICheckoutTokenService checkoutTokenService;
+
+    public CheckoutTokenScheduler(ICheckoutTokenService checkoutTokenService) {
+        this.checkoutTokenService = checkoutTokenService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.checkout-token.cleanup-interval-ms:3600000}")
+    public void purgeExpiredCheckoutTokens() {
+        try {
+            int purged = checkoutTokenService.purgeExpired();
+            if (purged > 0) {
+                logger.info("Deleted {} expired checkout tokens", purged);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not purge expired checkout tokens, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
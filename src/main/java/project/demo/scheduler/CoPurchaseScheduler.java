@@ -0,0 +1,52 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.ICoPurchaseService;
+
+/**
+ * Keeps the co-purchase model current: new orders are added periodically
+ * (the first run after startup builds the model), and the model is rebuilt
+ * from all orders once a night.
+ */
+@Component
+public class CoPurchaseScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseScheduler.class);
+
+    private final ICoPurchaseService coPurchaseService;
+
+    public CoPurchaseScheduler(ICoPurchaseService coPurchaseService) {
+        this.coPurchaseService = coPurchaseService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.co-purchase.refresh-interval-ms:300000}")
+    public void refreshCoPurchases() {
+        if (!coPurchaseService.isEnabled()) {
+            return;
+        }
+
+        try {
+            coPurchaseService.refresh();
+        } catch (Exception e) {
+            // Giữ mô hình hiện tại, lần chạy sau đọc tiếp từ đơn hàng cuối cùng đã đọc
+            logger.warn("Could not refresh co-purchase recommendations: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${app.co-purchase.rebuild-cron:0 30 3 * * *}")
+    public void rebuildCoPurchases() {
+        if (!coPurchaseService.isEnabled()) {
+            return;
+        }
+
+        try {
+            coPurchaseService.rebuild();
+        } catch (Exception e) {
+            logger.warn("Could not rebuild co-purchase recommendations: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.IFeaturedProductService;
+
+/**
+ * Periodically reloads the featured products ranking. Stock changes are
+ * applied as they happen; this picks up new sales and promotion dates.
+ */
+@Component
+public class FeaturedProductScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeaturedProductScheduler.class);
+
+    private final IFeaturedProductService featuredProductService;
+
+    public FeaturedProductScheduler(IFeaturedProductService featuredProductService) {
+        this.featuredProductService = featuredProductService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.featured.refresh-interval-ms:600000}")
+    public void refreshFeaturedProducts() {
+        try {
+            featuredProductService.refresh();
+        } catch (Exception e) {
+            // Giữ danh sách cũ, lần chạy sau sẽ thử lại
+            logger.warn("Could not refresh featured products: {}", e.getMessage());
+        }
+    }
+}
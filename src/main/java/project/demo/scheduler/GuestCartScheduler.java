@@ -0,0 +1,40 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.IGuestCartService;
+
+/**
+ * Periodically deletes guest carts that have been inactive for longer than
+ * their time to live. A failed run is retried on the next one.
+ */
+@Component
+public class GuestCartScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartScheduler.class);
+
+    private final IGuestCartService guestCartService;
+
+    public GuestCartScheduler(IGuestCartService guestCartService) {
+        this.guestCartService = guestCartService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.guest-cart.cleanup-interval-ms:3600000}")
+    public void purgeExpiredGuestCarts() {
+        if (!guestCartService.isEnabled()) {
+            return;
+        }
+
+        try {
+            int purged = guestCartService.purgeExpired();
+            if (purged > 0) {
+                logger.info("Deleted {} expired guest carts", purged);
+            }
+        } catch (Exception e) {
+            logger.warn("Could not purge expired guest carts, retrying on the next run: {}", e.getMessage());
+        }
+    }
+}
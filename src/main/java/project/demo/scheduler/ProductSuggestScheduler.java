@@ -0,0 +1,35 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.IProductSuggestService;
+
+/**
+ * Periodically re-reads the sales of products whose stock changed, so
+ * typeahead ranking follows new orders without reading the database on
+ * each suggestion.
+ */
+@Component
+public class ProductSuggestScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestScheduler.class);
+
+    private final IProductSuggestService productSuggestService;
+
+    public ProductSuggestScheduler(IProductSuggestService productSuggestService) {
+        this.productSuggestService = productSuggestService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.suggest.weight-refresh-interval-ms:60000}")
+    public void refreshSuggestionWeights() {
+        try {
+            productSuggestService.refreshWeights();
+        } catch (Exception e) {
+            // Giữ trọng số cũ, lần chạy sau sẽ thử lại
+            logger.warn("Could not refresh suggestion weights: {}", e.getMessage());
+        }
+    }
+}
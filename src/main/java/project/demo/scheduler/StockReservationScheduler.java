@@ -0,0 +1,42 @@
+package project.demo.scheduler;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import project.demo.service.IStockReservationService;
+
+/**
+ * Turns the stock reservation timer wheel once per tick, releasing the
+ * reservations of payments that were not completed in time. The first run
+ * after startup loads the reservations that are still active.
+ */
+@Component
+public class StockReservationScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationScheduler.class);
+
+    private final IStockReservationService stockReservationService;
+
+    public StockReservationScheduler(IStockReservationService stockReservationService) {
+        this.stockReservationService = stockReservationService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.stock-reservation.tick-ms:1000}")
+    public void releaseExpiredReservations() {
+        if (!stockReservationService.isEnabled()) {
+            return;
+        }
+
+        try {
+            int released = stockReservationService.releaseExpired();
+            if (released > 0) {
+                logger.debug("Released {} expired stock reservations", released);
+            }
+        } catch (Exception e) {
+            // Lượt giữ hàng đã hết hạn không còn được tính trong database, chỉ việc xóa dòng bị hoãn
+            logger.warn("Could not release expired stock reservations: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,467 @@
+package project.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * In-process inverted index with BM25 ranking.
+ * Documents are identified by an int key (the product ID) and consist of
+ * weighted text fields; a field with weight 3 counts each of its tokens three
+ * times. All query terms must match and the last term also matches as a
+ * prefix, so partially typed words still find results.
+ * Safe for concurrent use: searches share a read lock, updates take the
+ * write lock.
+ */
+public class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    /** Upper bound on the number of terms a prefix may expand to */
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private static final PostingList[] NO_TERMS = new PostingList[0];
+
+    private final TreeMap<String, PostingList> postings = new TreeMap<>();
+    private final Map<Integer, Integer> docsByKey = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Dữ liệu theo số thứ tự tài liệu (doc); các ô bị xóa được tái sử dụng
+    private int[] keys = new int[16];
+    private int[] lengths = new int[16];
+    private PostingList[][] docTerms = new PostingList[16][];
+    private int[] freeDocs = new int[16];
+    private int freeCount;
+    private int maxDoc;
+    private int docCount;
+    private long totalLength;
+
+    /**
+     * Add a document, replacing any previous version with the same key
+     *
+     * @param key     the document key
+     * @param fields  the text fields, null entries are skipped
+     * @param weights the weight of each field
+     */
+    public void index(int key, String[] fields, int[] weights) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        int length = 0;
+        for (int f = 0; f < fields.length; f++) {
+            for (String token : VietnameseAnalyzer.tokenize(fields[f])) {
+                termFrequencies.merge(token, weights[f], Integer::sum);
+                length += weights[f];
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            if (termFrequencies.isEmpty()) {
+                return;
+            }
+
+            int doc = allocateDoc();
+            keys[doc] = key;
+            lengths[doc] = length;
+
+            PostingList[] terms = new PostingList[termFrequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : termFrequencies.entrySet()) {
+                PostingList list = postings.computeIfAbsent(entry.getKey(), PostingList::new);
+                list.add(doc, entry.getValue());
+                terms[i++] = list;
+            }
+            docTerms[doc] = terms;
+
+            docsByKey.put(key, doc);
+            docCount++;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a document
+     *
+     * @param key the document key
+     */
+    public void remove(int key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all documents
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            docsByKey.clear();
+            keys = new int[16];
+            lengths = new int[16];
+            docTerms = new PostingList[16][];
+            freeDocs = new int[16];
+            freeCount = 0;
+            maxDoc = 0;
+            docCount = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of indexed documents
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Search the index
+     *
+     * @param query  the query text
+     * @param filter accepts the keys of documents that may be returned, or null for all
+     * @param limit  the maximum number of keys to return, best first
+     * @return the matching keys ordered by score (then key) and the total number of matches
+     */
+    public SearchHits search(String query, IntPredicate filter, int limit) {
+        List<String> terms = VietnameseAnalyzer.tokenize(query);
+        if (terms.isEmpty() || limit <= 0) {
+            return SearchHits.EMPTY;
+        }
+
+        lock.readLock().lock();
+        try {
+            if (docCount == 0) {
+                return SearchHits.EMPTY;
+            }
+
+            // Mỗi từ trong truy vấn là một nhóm; từ cuối được mở rộng theo tiền tố
+            List<PostingList[]> groups = new ArrayList<>(terms.size());
+            for (int t = 0; t < terms.size(); t++) {
+                PostingList[] group = t == terms.size() - 1
+                        ? expandPrefix(terms.get(t))
+                        : exactTerm(terms.get(t));
+                if (group.length == 0) {
+                    return SearchHits.EMPTY;
+                }
+                groups.add(group);
+            }
+
+            // Duyệt nhóm hiếm nhất, kiểm tra các nhóm còn lại bằng con trỏ (galloping)
+            groups.sort((a, b) -> Long.compare(totalSize(a), totalSize(b)));
+            float[][] idfs = new float[groups.size()][];
+            for (int g = 0; g < groups.size(); g++) {
+                PostingList[] group = groups.get(g);
+                idfs[g] = new float[group.length];
+                for (int i = 0; i < group.length; i++) {
+                    idfs[g][i] = idf(group[i].size);
+                }
+            }
+
+            float avgLength = (float) totalLength / docCount;
+            TopHits top = new TopHits(limit);
+            int[] candidates = candidates(groups.get(0));
+            // Ứng viên tăng dần nên mỗi danh sách chỉ cần một con trỏ tiến về phía trước
+            int[][] cursors = new int[groups.size()][];
+            for (int g = 0; g < groups.size(); g++) {
+                cursors[g] = new int[groups.get(g).length];
+            }
+
+            for (int doc : candidates) {
+                float norm = K1 * (1 - B + B * lengths[doc] / avgLength);
+                float score = 0;
+                boolean matches = true;
+                for (int g = 0; g < groups.size() && matches; g++) {
+                    PostingList[] group = groups.get(g);
+                    float groupScore = 0;
+                    for (int i = 0; i < group.length; i++) {
+                        int pos = group[i].advance(cursors[g][i], doc);
+                        cursors[g][i] = pos;
+                        if (pos < group[i].size && group[i].docs[pos] == doc) {
+                            int tf = group[i].frequencies[pos];
+                            groupScore += idfs[g][i] * tf * (K1 + 1) / (tf + norm);
+                        }
+                    }
+                    matches = groupScore > 0;
+                    score += groupScore;
+                }
+
+                if (matches && filter != null && !filter.test(keys[doc])) {
+                    matches = false;
+                }
+
+                if (matches) {
+                    top.offer(keys[doc], score);
+                }
+            }
+            return top.toHits();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(int key) {
+        Integer doc = docsByKey.remove(key);
+        if (doc == null) {
+            return;
+        }
+
+        for (PostingList list : docTerms[doc]) {
+            list.remove(doc);
+            if (list.size == 0) {
+                postings.remove(list.term);
+            }
+        }
+        totalLength -= lengths[doc];
+        docTerms[doc] = null;
+        docCount--;
+
+        if (freeCount == freeDocs.length) {
+            freeDocs = Arrays.copyOf(freeDocs, freeCount * 2);
+        }
+        freeDocs[freeCount++] = doc;
+    }
+
+    private int allocateDoc() {
+        if (freeCount > 0) {
+            return freeDocs[--freeCount];
+        }
+        if (maxDoc == keys.length) {
+            int capacity = maxDoc * 2;
+            keys = Arrays.copyOf(keys, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+        }
+        return maxDoc++;
+    }
+
+    private PostingList[] exactTerm(String term) {
+        PostingList list = postings.get(term);
+        return list == null ? NO_TERMS : new PostingList[] { list };
+    }
+
+    private PostingList[] expandPrefix(String prefix) {
+        NavigableMap<String, PostingList> matches = postings.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+        List<PostingList> lists = new ArrayList<>(Math.min(matches.size(), MAX_PREFIX_EXPANSIONS));
+        PostingList exact = matches.get(prefix);
+        if (exact != null) {
+            lists.add(exact);
+        }
+        for (PostingList list : matches.values()) {
+            if (lists.size() >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            if (list != exact) {
+                lists.add(list);
+            }
+        }
+        return lists.toArray(NO_TERMS);
+    }
+
+    private float idf(int documentFrequency) {
+        return (float) Math.log(1 + (docCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    private static long totalSize(PostingList[] group) {
+        long size = 0;
+        for (PostingList list : group) {
+            size += list.size;
+        }
+        return size;
+    }
+
+    /**
+     * Distinct documents of a group, in doc order
+     */
+    private static int[] candidates(PostingList[] group) {
+        if (group.length == 1) {
+            return Arrays.copyOf(group[0].docs, group[0].size);
+        }
+
+        int[] docs = new int[(int) totalSize(group)];
+        int n = 0;
+        for (PostingList list : group) {
+            System.arraycopy(list.docs, 0, docs, n, list.size);
+            n += list.size;
+        }
+        Arrays.sort(docs);
+
+        int distinct = 0;
+        for (int i = 0; i < docs.length; i++) {
+            if (i == 0 || docs[i] != docs[i - 1]) {
+                docs[distinct++] = docs[i];
+            }
+        }
+        return Arrays.copyOf(docs, distinct);
+    }
+
+    /**
+     * Documents containing a term, sorted by doc with their term frequencies
+     */
+    private static final class PostingList {
+        private final String term;
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        private PostingList(String term) {
+            this.term = term;
+        }
+
+        private void add(int doc, int frequency) {
+            int pos = size == 0 || docs[size - 1] < doc ? size : -Arrays.binarySearch(docs, 0, size, doc) - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(docs, pos, docs, pos + 1, size - pos);
+            System.arraycopy(frequencies, pos, frequencies, pos + 1, size - pos);
+            docs[pos] = doc;
+            frequencies[pos] = frequency;
+            size++;
+        }
+
+        private void remove(int doc) {
+            int pos = Arrays.binarySearch(docs, 0, size, doc);
+            if (pos < 0) {
+                return;
+            }
+            System.arraycopy(docs, pos + 1, docs, pos, size - pos - 1);
+            System.arraycopy(frequencies, pos + 1, frequencies, pos, size - pos - 1);
+            size--;
+        }
+
+        /**
+         * Position of the first entry at or after {@code from} whose doc is not
+         * less than {@code doc}, found by galloping then binary search
+         */
+        private int advance(int from, int doc) {
+            if (from >= size || docs[from] >= doc) {
+                return from;
+            }
+
+            int step = 1;
+            int low = from;
+            int high = from + step;
+            while (high < size && docs[high] < doc) {
+                low = high;
+                step <<= 1;
+                high = from + step;
+            }
+            if (high >= size) {
+                high = size - 1;
+                if (docs[high] < doc) {
+                    return size;
+                }
+            }
+
+            int pos = Arrays.binarySearch(docs, low + 1, high + 1, doc);
+            return pos >= 0 ? pos : -pos - 1;
+        }
+    }
+
+    /**
+     * Bounded min-heap keeping the best hits, ties broken by the smaller key
+     */
+    private static final class TopHits {
+        private final int limit;
+        private int[] keys = new int[16];
+        private float[] scores = new float[16];
+        private int size;
+        private int total;
+
+        private TopHits(int limit) {
+            this.limit = limit;
+        }
+
+        private void offer(int key, float score) {
+            total++;
+            if (size < limit) {
+                if (size == keys.length) {
+                    int capacity = (int) Math.min((long) size * 2, limit);
+                    keys = Arrays.copyOf(keys, capacity);
+                    scores = Arrays.copyOf(scores, capacity);
+                }
+                keys[size] = key;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (better(key, score, keys[0], scores[0])) {
+                keys[0] = key;
+                scores[0] = score;
+                siftDown(0, size);
+            }
+        }
+
+        private SearchHits toHits() {
+            // Heap sort tại chỗ: phần tử kém nhất được đưa về cuối mảng
+            for (int end = size - 1; end > 0; end--) {
+                swap(0, end);
+                siftDown(0, end);
+            }
+            return new SearchHits(Arrays.copyOf(keys, size), Arrays.copyOf(scores, size), total);
+        }
+
+        private static boolean better(int key, float score, int otherKey, float otherScore) {
+            return score > otherScore || (score == otherScore && key < otherKey);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!better(keys[parent], scores[parent], keys[i], scores[i])) {
+                    break;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int end) {
+            while (true) {
+                int worst = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < end && better(keys[worst], scores[worst], keys[left], scores[left])) {
+                    worst = left;
+                }
+                if (right < end && better(keys[worst], scores[worst], keys[right], scores[right])) {
+                    worst = right;
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int key = keys[a];
+            keys[a] = keys[b];
+            keys[b] = key;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,423 @@
+package project.demo.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Compressed prefix (radix) trie for typeahead completion.
+ * Each value is stored under the diacritic-folded text it is found by, and
+ * under every word-start suffix of that text, so "ly su bat trang" is also
+ * completed from "bat". Every node keeps the top completions of its subtree,
+ * ordered by weight, so a lookup walks at most the length of the prefix and
+ * never visits the subtree.
+ * Safe for concurrent use: lookups share a read lock, updates take the write
+ * lock and recompute the top completions along the changed paths only.
+ *
+ * @param <T> the completion value type
+ */
+public class PrefixTrie<T> {
+
+    /** Số từ tối đa của một chuỗi được đánh chỉ mục theo hậu tố */
+    private static final int MAX_SUFFIX_WORDS = 8;
+    /** Terms are cut to this length to bound the depth of the trie */
+    private static final int MAX_TERM_LENGTH = 64;
+
+    private final int topSize;
+    private final Node<T> root = new Node<>("");
+    private final Map<String, Entry<T>> entries = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param topSize the number of completions kept per node
+     */
+    public PrefixTrie(int topSize) {
+        this.topSize = Math.max(1, topSize);
+    }
+
+    /**
+     * Add a value, replacing any previous value with the same key
+     *
+     * @param key    the identity of the value (e.g. "product:12")
+     * @param value  the completion returned by lookups
+     * @param weight the ranking weight, higher first
+     * @param texts  the texts the value is found by, null entries are skipped
+     */
+    public void put(String key, T value, long weight, String... texts) {
+        Set<String> terms = new LinkedHashSet<>();
+        for (String text : texts) {
+            List<String> tokens = VietnameseAnalyzer.tokenize(text);
+            int words = Math.min(tokens.size(), MAX_SUFFIX_WORDS);
+            for (int i = 0; i < words; i++) {
+                String term = String.join(" ", tokens.subList(i, tokens.size()));
+                terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+            }
+        }
+
+        Entry<T> entry = new Entry<>(key, value, weight, new ArrayList<>(terms));
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+            if (entry.terms.isEmpty()) {
+                return;
+            }
+            for (String term : entry.terms) {
+                insert(root, term, 0, entry);
+            }
+            entries.put(key, entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Change the weight of a value, keeping its texts
+     *
+     * @param key    the identity of the value
+     * @param weight the new weight
+     * @return false if no value has this key
+     */
+    public boolean updateWeight(String key, long weight) {
+        lock.writeLock().lock();
+        try {
+            Entry<T> current = entries.get(key);
+            if (current == null) {
+                return false;
+            }
+            if (current.weight != weight) {
+                removeLocked(key);
+                Entry<T> entry = new Entry<>(key, current.value, weight, current.terms);
+                for (String term : entry.terms) {
+                    insert(root, term, 0, entry);
+                }
+                entries.put(key, entry);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a value
+     *
+     * @param key the identity of the value
+     */
+    public void remove(String key) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.children = null;
+            root.terminals = null;
+            root.top = emptyTop();
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of values
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the best completions of a prefix
+     *
+     * @param prefix the typed text; folded and tokenized like the indexed texts
+     * @param limit  the maximum number of completions, at most the top size
+     * @return the completions, best first; empty if the prefix has no words
+     */
+    public List<T> complete(String prefix, int limit) {
+        String query = String.join(" ", VietnameseAnalyzer.tokenize(prefix));
+        if (query.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        if (query.length() > MAX_TERM_LENGTH) {
+            query = query.substring(0, MAX_TERM_LENGTH);
+        }
+
+        lock.readLock().lock();
+        try {
+            Node<T> node = find(query);
+            if (node == null) {
+                return Collections.emptyList();
+            }
+
+            Entry<T>[] top = node.top;
+            int n = Math.min(limit, top.length);
+            List<T> completions = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                completions.add(top[i].value);
+            }
+            return completions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Find the node whose subtree holds exactly the terms starting with the
+     * query; the query may end inside an edge label
+     */
+    private Node<T> find(String query) {
+        Node<T> node = root;
+        int pos = 0;
+        while (pos < query.length()) {
+            Node<T> child = node.children == null ? null : node.children.get(query.charAt(pos));
+            if (child == null) {
+                return null;
+            }
+
+            int remaining = query.length() - pos;
+            if (remaining <= child.label.length()) {
+                return child.label.regionMatches(0, query, pos, remaining) ? child : null;
+            }
+            if (!query.startsWith(child.label, pos)) {
+                return null;
+            }
+            pos += child.label.length();
+            node = child;
+        }
+        return node;
+    }
+
+    private void insert(Node<T> node, String term, int pos, Entry<T> entry) {
+        offerTop(node, entry);
+        if (pos == term.length()) {
+            if (node.terminals == null) {
+                node.terminals = new ArrayList<>(1);
+            }
+            node.terminals.add(entry);
+            return;
+        }
+
+        if (node.children == null) {
+            node.children = new HashMap<>(4);
+        }
+        char c = term.charAt(pos);
+        Node<T> child = node.children.get(c);
+        if (child == null) {
+            child = new Node<>(term.substring(pos));
+            node.children.put(c, child);
+            insert(child, term, term.length(), entry);
+            return;
+        }
+
+        int common = commonPrefixLength(child.label, term, pos);
+        if (common < child.label.length()) {
+            // Tách cạnh: nút trung gian giữ phần chung của nhãn và có cùng cây con
+            Node<T> middle = new Node<>(child.label.substring(0, common));
+            child.label = child.label.substring(common);
+            middle.children = new HashMap<>(4);
+            middle.children.put(child.label.charAt(0), child);
+            middle.top = child.top;
+            node.children.put(c, middle);
+            child = middle;
+        }
+        insert(child, term, pos + common, entry);
+    }
+
+    /**
+     * @return true if the entry was found under the term
+     */
+    private boolean remove(Node<T> node, String term, int pos, Entry<T> entry) {
+        boolean removed;
+        if (pos == term.length()) {
+            removed = node.terminals != null && node.terminals.removeIf(e -> e == entry);
+            if (removed && node.terminals.isEmpty()) {
+                node.terminals = null;
+            }
+        } else {
+            char c = term.charAt(pos);
+            Node<T> child = node.children == null ? null : node.children.get(c);
+            if (child == null || !term.startsWith(child.label, pos)) {
+                return false;
+            }
+
+            removed = remove(child, term, pos + child.label.length(), entry);
+            if (removed) {
+                compact(node, c, child);
+            }
+        }
+
+        // Chỉ tính lại danh sách top của các nút có chứa mục bị xóa
+        if (removed && containsIdentity(node.top, entry)) {
+            recomputeTop(node);
+        }
+        return removed;
+    }
+
+    /**
+     * Drop an empty child, or merge it with its only child to keep edges
+     * compressed
+     */
+    private void compact(Node<T> node, char c, Node<T> child) {
+        if (child.terminals != null) {
+            return;
+        }
+
+        if (child.children == null || child.children.isEmpty()) {
+            node.children.remove(c);
+            if (node.children.isEmpty()) {
+                node.children = null;
+            }
+        } else if (child.children.size() == 1) {
+            Node<T> grandchild = child.children.values().iterator().next();
+            grandchild.label = child.label + grandchild.label;
+            node.children.put(c, grandchild);
+        }
+    }
+
+    private void removeLocked(String key) {
+        Entry<T> entry = entries.remove(key);
+        if (entry == null) {
+            return;
+        }
+        for (String term : entry.terms) {
+            remove(root, term, 0, entry);
+        }
+    }
+
+    /**
+     * Add an entry to the node's top list if it ranks high enough. Inserting
+     * never needs the children: the new entry either displaces the last one
+     * or is not in the top.
+     */
+    private void offerTop(Node<T> node, Entry<T> entry) {
+        Entry<T>[] top = node.top;
+        if (containsIdentity(top, entry)) {
+            return;
+        }
+
+        int pos = top.length;
+        while (pos > 0 && compareEntries(entry, top[pos - 1]) < 0) {
+            pos--;
+        }
+        if (pos >= topSize) {
+            return;
+        }
+
+        int length = Math.min(topSize, top.length + 1);
+        Entry<T>[] updated = Arrays.copyOf(top, length);
+        System.arraycopy(top, pos, updated, pos + 1, length - pos - 1);
+        updated[pos] = entry;
+        node.top = updated;
+    }
+
+    /**
+     * Merge the node's own entries with the top lists of its children. An
+     * entry reachable through several terms is counted once.
+     */
+    private void recomputeTop(Node<T> node) {
+        List<Entry<T>> candidates = new ArrayList<>();
+        if (node.terminals != null) {
+            candidates.addAll(node.terminals);
+        }
+        if (node.children != null) {
+            for (Node<T> child : node.children.values()) {
+                Collections.addAll(candidates, child.top);
+            }
+        }
+
+        candidates.sort(PrefixTrie::compareEntries);
+        List<Entry<T>> top = new ArrayList<>(Math.min(topSize, candidates.size()));
+        for (Entry<T> candidate : candidates) {
+            if (top.size() == topSize) {
+                break;
+            }
+            if (!top.contains(candidate)) {
+                top.add(candidate);
+            }
+        }
+        node.top = toArray(top);
+    }
+
+    private static <T> int compareEntries(Entry<T> a, Entry<T> b) {
+        int byWeight = Long.compare(b.weight, a.weight);
+        if (byWeight != 0) {
+            return byWeight;
+        }
+        // Cùng trọng số: chuỗi ngắn hơn (khớp sát hơn) trước, sau đó theo khóa để ổn định
+        int byLength = Integer.compare(a.terms.get(0).length(), b.terms.get(0).length());
+        return byLength != 0 ? byLength : a.key.compareTo(b.key);
+    }
+
+    private static <T> boolean containsIdentity(Entry<T>[] entries, Entry<T> entry) {
+        for (Entry<T> e : entries) {
+            if (e == entry) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int commonPrefixLength(String label, String term, int pos) {
+        int max = Math.min(label.length(), term.length() - pos);
+        int i = 0;
+        while (i < max && label.charAt(i) == term.charAt(pos + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] toArray(List<Entry<T>> entries) {
+        return entries.toArray(new Entry[0]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Entry<T>[] emptyTop() {
+        return new Entry[0];
+    }
+
+    private static final class Entry<T> {
+        private final String key;
+        private final T value;
+        private final long weight;
+        // Chuỗi đầy đủ đứng đầu, sau đó là các hậu tố theo từ
+        private final List<String> terms;
+
+        private Entry(String key, T value, long weight, List<String> terms) {
+            this.key = key;
+            this.value = value;
+            this.weight = weight;
+            this.terms = terms;
+        }
+    }
+
+    private static final class Node<T> {
+        private String label;
+        private Map<Character, Node<T>> children;
+        private List<Entry<T>> terminals;
+        private Entry<T>[] top = emptyTop();
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+}
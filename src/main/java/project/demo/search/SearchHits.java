@@ -0,0 +1,42 @@
+package project.demo.search;
+
+/**
+ * Result of an index search: the best keys with their scores, best first,
+ * and the total number of matching documents
+ */
+public final class SearchHits {
+
+    static final SearchHits EMPTY = new SearchHits(new int[0], new float[0], 0);
+
+    private final int[] keys;
+    private final float[] scores;
+    private final int totalHits;
+
+    SearchHits(int[] keys, float[] scores, int totalHits) {
+        this.keys = keys;
+        this.scores = scores;
+        this.totalHits = totalHits;
+    }
+
+    /**
+     * @return the number of returned keys (at most the search limit)
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    public int getKey(int i) {
+        return keys[i];
+    }
+
+    public float getScore(int i) {
+        return scores[i];
+    }
+
+    /**
+     * @return the number of matching documents, including those beyond the limit
+     */
+    public int getTotalHits() {
+        return totalHits;
+    }
+}
@@ -0,0 +1,95 @@
+package project.demo.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Text analysis for product search: lower-cases, folds Vietnamese diacritics
+ * ("ly sứ" becomes "ly su", "đ" becomes "d") and splits on anything that is
+ * not a letter or digit.
+ */
+public final class VietnameseAnalyzer {
+
+    /** Bảng chuyển đổi cho các ký tự Latin (kể cả Latin Extended Additional của tiếng Việt) */
+    private static final int TABLE_SIZE = 0x1F00;
+    private static final char[] FOLD_TABLE = new char[TABLE_SIZE];
+
+    static {
+        for (int c = 0; c < TABLE_SIZE; c++) {
+            FOLD_TABLE[c] = foldSlow((char) c);
+        }
+    }
+
+    private VietnameseAnalyzer() {
+    }
+
+    /**
+     * Lower-case the text and remove diacritics
+     *
+     * @param text the text to fold, may be null
+     * @return the folded text, empty if the input is null
+     */
+    public static String fold(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+
+        StringBuilder folded = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            char f = c < TABLE_SIZE ? FOLD_TABLE[c] : foldSlow(c);
+            if (f != 0) {
+                folded.append(f);
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Fold the text and split it into tokens
+     *
+     * @param text the text to tokenize, may be null
+     * @return the tokens in order of appearance, possibly with duplicates
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        String folded = fold(text);
+
+        int start = -1;
+        for (int i = 0; i < folded.length(); i++) {
+            if (Character.isLetterOrDigit(folded.charAt(i))) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else if (start >= 0) {
+                tokens.add(folded.substring(start, i));
+                start = -1;
+            }
+        }
+        if (start >= 0) {
+            tokens.add(folded.substring(start));
+        }
+        return tokens;
+    }
+
+    /**
+     * Fold a single character: lower-case, then keep the base letter of its
+     * canonical decomposition. Combining marks fold to 0 (dropped).
+     */
+    private static char foldSlow(char c) {
+        if (Character.getType(c) == Character.NON_SPACING_MARK) {
+            return 0;
+        }
+
+        String lower = String.valueOf(c).toLowerCase(Locale.ROOT);
+        if (lower.length() != 1) {
+            return c;
+        }
+
+        char base = Normalizer.normalize(lower, Normalizer.Form.NFD).charAt(0);
+        // "đ" không phân rã được bằng NFD nên phải thay thủ công
+        return base == 'đ' ? 'd' : base;
+    }
+}
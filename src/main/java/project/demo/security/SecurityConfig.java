@@ -38,6 +38,8 @@ public class SecurityConfig {
         public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
                 http
                                 .authorizeHttpRequests(auth -> auth
+                                                // Khách chưa đăng nhập có thể xem và thêm vào giỏ hàng tạm
+                                                .requestMatchers("/cart", "/cart/add", "/cart/count").permitAll()
                                                 .requestMatchers("/cart/**").authenticated()
                                                 .requestMatchers("/account/**").authenticated()
                                                 .requestMatchers("/checkout/**").authenticated()
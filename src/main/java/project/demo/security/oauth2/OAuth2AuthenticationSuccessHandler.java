@@ -7,7 +7,9 @@ import org.springframework.security.web.authentication.AuthenticationSuccessHand
 import org.springframework.stereotype.Component;
 
 import project.demo.model.Customer;
+import project.demo.service.IGuestCartService;
 import project.demo.util.CustomerOAuth2Utils;
+import project.demo.util.GuestCartCookie;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -24,6 +26,12 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
 
     private static final Logger logger = LoggerFactory.getLogger(OAuth2AuthenticationSuccessHandler.class);
 
+    private final IGuestCartService guestCartService;
+
+    public OAuth2AuthenticationSuccessHandler(IGuestCartService guestCartService) {
+        this.guestCartService = guestCartService;
+    }
+
     /**
      * Handles successful OAuth2 authentication
      * 
@@ -76,6 +84,8 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
             return;
         }
 
+        mergeGuestCart(request, response, customer);
+
         // Check if profile completion is needed
         if (isProfileIncomplete(customer)) {
             logger.debug("Profile incomplete for customer: {}, redirecting to complete profile", customer.getEmail());
@@ -89,6 +99,29 @@ public class OAuth2AuthenticationSuccessHandler implements AuthenticationSuccess
         response.sendRedirect(targetUrl);
     }
 
+    /**
+     * Merges the guest cart of the browser, if any, into the customer's cart.
+     * A failed merge is logged and does not fail the login.
+     * 
+     * @param request  the HTTP request
+     * @param response the HTTP response
+     * @param customer the customer who logged in
+     */
+    private void mergeGuestCart(HttpServletRequest request, HttpServletResponse response, Customer customer) {
+        String token = GuestCartCookie.resolve(request);
+        if (token == null || !guestCartService.isEnabled() || customer.getCustomerId() == null) {
+            return;
+        }
+
+        try {
+            int merged = guestCartService.mergeInto(token, customer.getCustomerId());
+            GuestCartCookie.clear(request, response);
+            logger.debug("Merged {} guest cart lines into cart of customer {}", merged, customer.getCustomerId());
+        } catch (Exception ex) {
+            logger.warn("Could not merge guest cart for customer {}", customer.getCustomerId(), ex);
+        }
+    }
+
     /**
      * Handles account linking scenario
      * 
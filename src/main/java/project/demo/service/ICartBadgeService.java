@@ -0,0 +1,27 @@
+package project.demo.service;
+
+/**
+ * Service interface for the cart badge shown in the header of every page.
+ * The number of items in a customer's active cart is kept in memory and
+ * forgotten whenever the items of the cart change, so rendering the badge
+ * only reaches the database after a change.
+ */
+public interface ICartBadgeService {
+
+    /**
+     * Get the number of items in the active cart of a customer
+     *
+     * @param customerId the ID of the customer
+     * @return the number of items, 0 if the customer has no active cart
+     */
+    int getItemCount(Integer customerId);
+
+    /**
+     * Forget the cached count of a customer. Inside a transaction the count
+     * is forgotten after commit, so other requests cannot cache the old value
+     * again.
+     *
+     * @param customerId the ID of the customer
+     */
+    void evict(Integer customerId);
+}
@@ -4,6 +4,7 @@ import java.math.BigDecimal;
 import java.util.List;
 import java.util.Optional;
 
+import project.demo.dto.CartOperationDTO;
 import project.demo.model.Cart;
 import project.demo.model.CartItem;
 import project.demo.model.Product;
@@ -30,7 +31,9 @@ public interface ICartService {
     Optional<Cart> findByCustomerId(Integer customerId);
 
     /**
-     * Get or create a cart for a customer
+     * Get or create a cart for a customer. A customer has a single cart row:
+     * an abandoned cart is reactivated with its items, a converted cart is
+     * reused empty. Safe to call concurrently for the same customer.
      *
      * @param customerId the ID of the customer
      * @return the existing or newly created cart
@@ -88,7 +91,9 @@ public interface ICartService {
     List<CartItem> getSavedForLaterItems(Integer cartId);
 
     /**
-     * Calculate the total amount of a cart
+     * Recalculate the total amount of a cart from its selected items and store
+     * it. Cart changes keep the total up to date by themselves; this is the
+     * full recompute used to repair a total on demand.
      *
      * @param cartId the ID of the cart
      * @return the total amount
@@ -162,13 +167,21 @@ public interface ICartService {
     List<CartItem> getItems(Integer cartId);
 
     /**
-     * Get the total amount of a cart
+     * Get the stored total amount of a cart
      *
      * @param cartId the ID of the cart
      * @return the total amount
      */
     BigDecimal getCartTotal(Integer cartId);
 
+    /**
+     * Check the stored totals of all active carts against their selected items
+     * and recalculate the ones that differ
+     *
+     * @return the number of carts whose total was corrected
+     */
+    int reconcileTotals();
+
     /**
      * Get a cart item by its ID
      *
@@ -176,4 +189,18 @@ public interface ICartService {
      * @return the cart item if found
      */
     CartItem getCartItem(Integer cartItemId);
+
+    /**
+     * Apply a batch of item edits (set quantity, remove, select, unselect) to a
+     * cart in one transaction. The stock of all changed quantities is checked
+     * with one query and the total is recomputed once; if any edit is invalid
+     * none of them is applied.
+     *
+     * @param cartId     the ID of the cart
+     * @param operations the edits, applied in order
+     * @return the items of the cart after the edits
+     * @throws project.demo.exception.CartException if an edit is invalid or exceeds the stock
+     * @throws project.demo.exception.ResourceNotFoundException if the cart or an edited item is not found
+     */
+    List<CartItem> applyOperations(Integer cartId, List<CartOperationDTO> operations);
 }
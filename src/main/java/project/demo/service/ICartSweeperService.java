@@ -0,0 +1,34 @@
+package project.demo.service;
+
+/**
+ * Service interface for the bulk clean-up of customer carts.
+ * Carts without activity for too long are marked abandoned (they keep their
+ * items and are reactivated when the customer comes back) and converted
+ * carts are deleted with their items once the order is old enough. Both
+ * work in set-based batches, each batch a short transaction of its own.
+ */
+public interface ICartSweeperService {
+
+    /**
+     * Check whether the sweeper should run
+     *
+     * @return true if the sweeper is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Mark active customer carts that have been idle longer than the
+     * threshold as abandoned
+     *
+     * @return the number of carts marked abandoned
+     */
+    int markAbandoned();
+
+    /**
+     * Delete converted carts, and their items, that are older than the
+     * retention period
+     *
+     * @return the number of deleted carts
+     */
+    int purgeConverted();
+}
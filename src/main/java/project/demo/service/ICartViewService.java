@@ -0,0 +1,20 @@
+package project.demo.service;
+
+import project.demo.dto.CartView;
+import project.demo.model.Cart;
+
+/**
+ * Service interface that assembles the cart page. The page costs the same
+ * number of queries whatever the number of items in the cart.
+ */
+public interface ICartViewService {
+
+    /**
+     * Assemble the cart page of an active cart
+     *
+     * @param cart                the active cart, e.g. from ICartService.getOrCreateCart
+     * @param recommendationLimit the maximum number of recommended products
+     * @return the items, stock, images, recommendations and totals of the cart
+     */
+    CartView getCartView(Cart cart, int recommendationLimit);
+}
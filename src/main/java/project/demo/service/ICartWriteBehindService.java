@@ -0,0 +1,104 @@
+package project.demo.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+
+/**
+ * Service interface for the optional write-behind cart store.
+ * Quantity and selection changes of cart items are kept in memory, per
+ * customer, and written to the database in batches; reads of the cart see
+ * the pending changes. Anything that reads cart data straight from the
+ * database, or changes the cart synchronously, flushes the cart first,
+ * before it locks any of the cart's rows: the flush writes those rows in a
+ * transaction of its own.
+ */
+public interface ICartWriteBehindService {
+
+    /**
+     * Check whether cart item changes should be buffered in memory
+     *
+     * @return true if the write-behind store is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Record a change of a cart item in memory
+     *
+     * @param cart       the active cart of the item
+     * @param cartItem   the item as loaded from the database
+     * @param quantity   the new quantity, or null to keep the current one
+     * @param isSelected the new selection status, or null to keep the current one
+     * @return a copy of the item with the change applied, or null if the store
+     *         is full and the change must be written synchronously
+     */
+    CartItem record(Cart cart, CartItem cartItem, Integer quantity, Boolean isSelected);
+
+    /**
+     * Get an item the store already holds, with its pending change applied,
+     * without a query
+     *
+     * @param cartItemId the ID of the cart item
+     * @return a copy of the item without the cart and product references, or
+     *         null if the store does not hold the item
+     */
+    CartItem find(Integer cartItemId);
+
+    /**
+     * Record a change of an item the store already holds, without a query
+     *
+     * @param cartItemId the ID of the cart item
+     * @param quantity   the new quantity, or null to keep the current one
+     * @param isSelected the new selection status, or null to keep the current one
+     * @return a copy of the item with the change applied, or null if the store
+     *         no longer holds the item and it must be loaded again
+     */
+    CartItem record(Integer cartItemId, Integer quantity, Boolean isSelected);
+
+    /**
+     * Apply the pending change of an item, if any
+     *
+     * @param cartItem the item as loaded from the database
+     * @return the item itself, or a copy with the pending change applied
+     */
+    CartItem overlay(CartItem cartItem);
+
+    /**
+     * Apply the pending changes of a list of items
+     *
+     * @param cartItems the items as loaded from the database
+     * @return the items, with copies for items that have pending changes
+     */
+    List<CartItem> overlay(List<CartItem> cartItems);
+
+    /**
+     * Get the change to the stored cart total that is not yet written
+     *
+     * @param cartId the ID of the cart
+     * @return the pending change, zero if none
+     */
+    BigDecimal getPendingTotalDelta(Integer cartId);
+
+    /**
+     * Write the pending changes of one cart now and drop it from memory.
+     * Must be called before the cart is changed synchronously or read
+     * straight from the database, e.g. at checkout.
+     *
+     * @param cartId the ID of the cart
+     * @throws RuntimeException if the changes could not be written; they are
+     *                          kept for the next flush
+     */
+    void flush(Integer cartId);
+
+    /**
+     * Write all pending changes in one batch and drop carts that have been
+     * idle for too long
+     *
+     * @return the number of written item changes
+     * @throws RuntimeException if the changes could not be written; they are
+     *                          kept for the next flush
+     */
+    int flush();
+}
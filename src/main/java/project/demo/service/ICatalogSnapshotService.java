@@ -0,0 +1,75 @@
+package project.demo.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+
+/**
+ * Service interface for the in-memory catalog read model.
+ * Browse and search reads are served from an immutable snapshot; mutating
+ * services report changes so a new snapshot is swapped in after commit.
+ */
+public interface ICatalogSnapshotService {
+
+    /**
+     * Check whether catalog reads should be served from the snapshot
+     *
+     * @return true if the snapshot is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Get the current catalog snapshot, building it on first use
+     *
+     * @return the current snapshot
+     */
+    CatalogSnapshot getSnapshot();
+
+    /**
+     * Find product cards from the snapshot, optionally restricted to a catalog,
+     * a name search and an effective price range, with sorting and pagination
+     *
+     * @param catalogId the ID of the catalog, or null for all catalogs
+     * @param keyword   the search keyword, or null for no search
+     * @param minPrice  the minimum effective price, or null for no lower bound
+     * @param maxPrice  the maximum effective price, or null for no upper bound
+     * @param pageable  the pagination information
+     * @return a page of product cards
+     */
+    Page<ProductCardDTO> findProductCards(Integer catalogId, String keyword, BigDecimal minPrice,
+            BigDecimal maxPrice, Pageable pageable);
+
+    /**
+     * Find the product cards that follow a position in the given sort order
+     * (keyset pagination over the snapshot)
+     *
+     * @param catalogId the ID of the catalog, or null for all catalogs
+     * @param sort      the sort order, which must end with a product ID tie-breaker
+     * @param after     a card holding the sort key and product ID of the last
+     *                  card on the previous page
+     * @param limit     the maximum number of cards to return
+     * @return the next product cards in sort order
+     */
+    List<ProductCardDTO> findProductCardsAfter(Integer catalogId, Sort sort, ProductCardDTO after, int limit);
+
+    /**
+     * Report that a product or its details changed. The product is reloaded
+     * and swapped into a new snapshot once the current transaction commits
+     * (immediately when there is no transaction).
+     *
+     * @param productId the ID of the changed product
+     */
+    void refreshProduct(Integer productId);
+
+    /**
+     * Report a change that affects the whole catalog (e.g. a catalog was
+     * renamed or deactivated). The snapshot is rebuilt after commit.
+     */
+    void refreshAll();
+}
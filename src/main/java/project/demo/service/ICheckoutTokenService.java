@@ -0,0 +1,54 @@
+package project.demo.service;
+
+import java.util.function.Supplier;
+
+import project.demo.dto.PlacedOrder;
+import project.demo.model.Order;
+
+/**
+ * Service interface that makes order placement idempotent. A checkout token
+ * is issued with the confirmation page (or is the online payment
+ * reference) and places at most one order; repeated requests with the same
+ * token get the ID of that order back instead of a second order.
+ */
+public interface ICheckoutTokenService {
+
+    /**
+     * Issue a new checkout token
+     *
+     * @return a random token, unique in practice
+     */
+    String issue();
+
+    /**
+     * Place an order unless the token already placed one. The token is
+     * claimed in the same transaction as the order, so a request that fails
+     * leaves the token free for a retry, and a concurrent request with the
+     * same token waits for the first one and then gets its order.
+     *
+     * @param token      the checkout token
+     * @param customerId the ID of the customer placing the order
+     * @param placeOrder places the order, e.g. IOrderService.createFromCart
+     * @return the ID of the order and whether an earlier request placed it
+     * @throws project.demo.exception.OrderException if the token belongs to another customer
+     */
+    PlacedOrder placeOnce(String token, Integer customerId, Supplier<Order> placeOrder);
+
+    /**
+     * Find the order placed with a token. Tokens used recently on this
+     * instance are answered from memory without a query.
+     *
+     * @param token      the checkout token
+     * @param customerId the ID of the customer
+     * @return the ID of the order, or null if the token has not placed an
+     *         order for this customer
+     */
+    Integer findOrderId(String token, Integer customerId);
+
+    /**
+     * Delete the tokens older than the retention period, in batches
+     *
+     * @return the number of deleted tokens
+     */
+    int purgeExpired();
+}
@@ -0,0 +1,48 @@
+package project.demo.service;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Service interface for "bought together" recommendations.
+ * An item-to-item model is built from the order details: for every product
+ * the top-K products that were ordered with it, scored by cosine similarity
+ * of their order sets. The model is held in memory and refreshed with new
+ * orders only; recommending reads no data from the database.
+ */
+public interface ICoPurchaseService {
+
+    /**
+     * Check whether co-purchase recommendations are enabled
+     *
+     * @return true if co-purchase recommendations are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Recommend products for a set of products, e.g. the products in a cart:
+     * the best neighbours over all their neighbour lists, then the most
+     * ordered products if there are not enough neighbours
+     *
+     * @param productIds the IDs of the products, never recommended themselves
+     * @param limit      the maximum number of products to recommend
+     * @return the IDs of the recommended products, best first; empty until
+     *         the model has been built
+     */
+    List<Integer> recommend(Collection<Integer> productIds, int limit);
+
+    /**
+     * Add the orders placed since the last refresh to the model and rebuild
+     * the neighbour lists of the products in those orders
+     *
+     * @return the number of orders added
+     */
+    int refresh();
+
+    /**
+     * Build the model again from all orders, e.g. to drop cancelled orders
+     * and scores that drifted through incremental refreshes. The current
+     * model is served until the new one is complete.
+     */
+    void rebuild();
+}
@@ -0,0 +1,33 @@
+package project.demo.service;
+
+import java.util.List;
+
+import project.demo.dto.ProductCardDTO;
+
+/**
+ * Service interface for the featured products shown on the home page.
+ * The ranked list is materialized ahead of time, so reads are O(1).
+ */
+public interface IFeaturedProductService {
+
+    /**
+     * Get the top featured product
+     *
+     * @return the product card, including the description
+     * @throws project.demo.exception.ResourceNotFoundException if no product can be featured
+     */
+    ProductCardDTO getFeaturedProduct();
+
+    /**
+     * Get the ranked featured products
+     *
+     * @return the featured product cards, best first; empty if none are in stock
+     */
+    List<ProductCardDTO> getFeaturedProducts();
+
+    /**
+     * Recompute the ranking from the database (sales, promotions) and the
+     * current catalog
+     */
+    void refresh();
+}
@@ -0,0 +1,72 @@
+package project.demo.service;
+
+/**
+ * Service interface for the rendered-fragment cache used by the cache:key
+ * template attribute. Fragments are stored as HTML under keys that embed an
+ * entity version, so a change to the entity makes old entries unreachable.
+ * The same versions are used as HTTP validators for whole pages.
+ */
+public interface IFragmentCacheService {
+
+    /** Entity types used in cache keys */
+    String PRODUCT = "product";
+    String CATALOG = "catalog";
+    String PROMOTION = "promotion";
+
+    /**
+     * Check whether rendered fragments should be cached
+     *
+     * @return true if the cache is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Get a rendered fragment
+     *
+     * @param key the cache key
+     * @return the cached HTML, or null on a miss
+     */
+    String get(String key);
+
+    /**
+     * Store a rendered fragment, evicting the least recently used entry if the
+     * cache is full
+     *
+     * @param key  the cache key
+     * @param html the rendered HTML
+     */
+    void put(String key, String html);
+
+    /**
+     * Get the current version of an entity, for use in cache keys
+     *
+     * @param entity the entity type (e.g. "product", "catalog", "promotion")
+     * @param id     the entity ID, or null for the entity type as a whole
+     * @return the version; it increases whenever the entity is invalidated and
+     *         is the time of the change in milliseconds since the epoch
+     */
+    long getVersion(String entity, Object id);
+
+    /**
+     * Get the latest version of any entity of a type, for pages that list
+     * them
+     *
+     * @param entity the entity type
+     * @return the highest version of the type or of any of its entities
+     */
+    long getLatestVersion(String entity);
+
+    /**
+     * Invalidate the fragments of an entity. Inside a transaction the version
+     * changes after commit.
+     *
+     * @param entity the entity type
+     * @param id     the entity ID, or null for the entity type as a whole
+     */
+    void invalidate(String entity, Object id);
+
+    /**
+     * Invalidate every cached fragment
+     */
+    void invalidateAll();
+}
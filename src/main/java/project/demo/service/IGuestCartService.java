@@ -0,0 +1,71 @@
+package project.demo.service;
+
+import java.util.List;
+
+import project.demo.model.CartItem;
+
+/**
+ * Service interface for the carts of shoppers who are not logged in.
+ * A guest cart is identified by a random token kept in the session and in a
+ * cookie. Guest carts live in a bounded in-memory store and are only written
+ * to the database once they hold a few products; they are merged into the
+ * customer's cart on login and purged in bulk after a period without activity.
+ */
+public interface IGuestCartService {
+
+    /**
+     * Check whether shoppers can fill a cart before logging in
+     *
+     * @return true if guest carts are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Add a product to a guest cart, creating the cart if needed
+     *
+     * @param token     the token of the guest cart
+     * @param productId the ID of the product
+     * @param quantity  the quantity to add
+     * @return the cart line of the product (not a persistent entity)
+     * @throws project.demo.exception.CartException if the quantity exceeds the stock
+     *                                              or the cart is full
+     * @throws project.demo.exception.ResourceNotFoundException if the product does not exist
+     */
+    CartItem addItem(String token, Integer productId, Integer quantity);
+
+    /**
+     * Get the lines of a guest cart, with their products
+     *
+     * @param token the token of the guest cart
+     * @return the lines (not persistent entities), empty if there is no cart
+     */
+    List<CartItem> getItems(String token);
+
+    /**
+     * Get the number of lines in a guest cart
+     *
+     * @param token the token of the guest cart
+     * @return the number of lines, 0 if there is no cart
+     */
+    int getItemCount(String token);
+
+    /**
+     * Merge a guest cart into the active cart of a customer who just logged
+     * in, in one statement, and delete the guest cart. Quantities of products
+     * that are in both carts are added up; a merged quantity is capped at the
+     * stock not held by reservations, and products out of stock are left out.
+     *
+     * @param token      the token of the guest cart
+     * @param customerId the ID of the customer
+     * @return the number of lines added to or changed in the customer cart
+     */
+    int mergeInto(String token, Integer customerId);
+
+    /**
+     * Delete guest carts that have been inactive for longer than their time to
+     * live, in batches, and drop idle carts from memory
+     *
+     * @return the number of guest carts deleted from the database
+     */
+    int purgeExpired();
+}
@@ -3,6 +3,7 @@ package project.demo.service;
 import java.util.List;
 import java.util.Optional;
 
+import project.demo.dto.KeysetPage;
 import project.demo.model.Order;
 import project.demo.model.OrderDetail;
 import project.demo.model.OrderTimelineEvent;
@@ -10,8 +11,13 @@ import project.demo.model.OrderTimelineEvent;
 public interface IOrderService {
     Optional<Order> findById(Integer orderId);
     List<Order> findByCustomerId(Integer customerId);
+    // Lịch sử đơn hàng phân trang bằng con trỏ (mới nhất trước), cursor null cho trang đầu
+    KeysetPage<Order> findByCustomerIdAfter(Integer customerId, String cursor, int size);
     Order createFromCart(Integer cartId, Integer addressId, Integer paymentMethodId, String shippingMethod);
     Order createFromCart(Integer cartId, Integer addressId, Integer paymentMethodId, String shippingMethod, String note);
+    // Đặt hàng sau khi thanh toán trực tuyến: lượt giữ hàng theo mã thanh toán được chuyển thành đơn hàng
+    Order createFromCart(Integer cartId, Integer addressId, Integer paymentMethodId, String shippingMethod, String note,
+            String reservationReference);
     Order updateOrderStatus(Integer orderId, String status);
     void deleteOrder(Integer orderId);
     
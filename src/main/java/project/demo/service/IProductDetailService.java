@@ -1,7 +1,10 @@
 package project.demo.service;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.Map;
 
+import project.demo.dto.StockPriceSnapshot;
 import project.demo.model.ProductDetail;
 
 /**
@@ -69,6 +72,19 @@ public interface IProductDetailService {
      */
     ProductDetail decreaseStockQuantity(Integer productId, Integer quantity);
     
+    /**
+     * Decrease the stock of several products at once, e.g. for the lines of
+     * an order. Every product is decremented by one conditional update that
+     * only succeeds while enough stock is left besides the active stock
+     * reservations; the updates run in product ID order so concurrent
+     * callers lock the stock rows in the same order.
+     * 
+     * @param quantities the quantity to decrease per product ID
+     * @throws project.demo.exception.ProductDetailException if a product does not have enough stock;
+     *         the calling transaction must then be rolled back
+     */
+    void decreaseStockQuantities(Map<Integer, Integer> quantities);
+    
     /**
      * Increase the stock quantity of a product
      * 
@@ -119,4 +135,34 @@ public interface IProductDetailService {
      * @throws ResourceNotFoundException if the product does not exist
      */
     Integer getQuantityInStock(Integer productId);
+    
+    /**
+     * Get the current stock quantities of several products with one query
+     * 
+     * @param productIds the IDs of the products
+     * @return the quantity in stock by product ID; products without stock info are missing
+     */
+    Map<Integer, Integer> getQuantitiesInStock(Collection<Integer> productIds);
+    
+    /**
+     * Get the existence, stock and effective price of a product. Served from
+     * a short-lived cache that is cleared when the product's stock or price
+     * changes through this service. The stock is the available stock: the
+     * quantity reserved for pending payments, read from the reservation
+     * table on every call, is subtracted.
+     * 
+     * @param productId the ID of the product
+     * @return the snapshot of the product; see {@link StockPriceSnapshot#exists()}
+     */
+    StockPriceSnapshot getStockAndPrice(Integer productId);
+    
+    /**
+     * Get the existence, stock and effective price of several products, with
+     * at most one query for the products that are not cached and one for
+     * their reserved quantities
+     * 
+     * @param productIds the IDs of the products
+     * @return the snapshot by product ID, one for every requested ID
+     */
+    Map<Integer, StockPriceSnapshot> getStockAndPrice(Collection<Integer> productIds);
 }
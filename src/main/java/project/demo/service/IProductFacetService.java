@@ -0,0 +1,40 @@
+package project.demo.service;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import project.demo.dto.PriceBucket;
+import project.demo.dto.ProductFacets;
+
+/**
+ * Service interface for the facet counts of the product filter sidebar
+ */
+public interface IProductFacetService {
+
+    /**
+     * Check whether facet counts can be computed (they are computed over the
+     * in-memory catalog snapshot)
+     *
+     * @return true if facet counts are available
+     */
+    boolean isEnabled();
+
+    /**
+     * Get the price ranges offered by the filter sidebar
+     *
+     * @return the price buckets, in ascending price order
+     */
+    List<PriceBucket> getPriceBuckets();
+
+    /**
+     * Compute catalog, price bucket and stock counts for the current listing
+     * in a single pass over the catalog
+     *
+     * @param catalogId the selected catalog, or null for all catalogs
+     * @param keyword   the search keyword, or null for no search (ignored when a catalog is selected)
+     * @param minPrice  the minimum effective price, or null for no price filter
+     * @param maxPrice  the maximum effective price, or null for no price filter
+     * @return the facet counts
+     */
+    ProductFacets computeFacets(Integer catalogId, String keyword, BigDecimal minPrice, BigDecimal maxPrice);
+}
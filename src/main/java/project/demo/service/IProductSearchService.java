@@ -0,0 +1,44 @@
+package project.demo.service;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import project.demo.dto.ProductCardDTO;
+
+/**
+ * Service interface for full-text product search over name and description
+ */
+public interface IProductSearchService {
+
+    /**
+     * Check whether searches should use the in-process index
+     *
+     * @return true if the search index is enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Search product cards by name and description, optionally restricted to
+     * an effective price range. An unsorted pageable returns the results by
+     * relevance (BM25); otherwise the requested sort is applied to all matches.
+     *
+     * @param keyword  the search keyword
+     * @param minPrice the minimum effective price, or null for no lower bound
+     * @param maxPrice the maximum effective price, or null for no upper bound
+     * @param pageable the pagination information
+     * @return a page of matching product cards
+     */
+    Page<ProductCardDTO> searchProductCards(String keyword, BigDecimal minPrice, BigDecimal maxPrice,
+            Pageable pageable);
+
+    /**
+     * Find the IDs of all products matching a keyword, without ranking them
+     *
+     * @param keyword the search keyword
+     * @return the matching product IDs
+     */
+    BitSet findMatchingProductIds(String keyword);
+}
@@ -1,10 +1,14 @@
 package project.demo.service;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 
+import project.demo.dto.KeysetPage;
+import project.demo.dto.ProductCardDTO;
 import project.demo.model.Product;
 import project.demo.model.ProductDetail;
 
@@ -123,4 +127,79 @@ public interface IProductService {
      * @return the product with the highest stock quantity
      */
     Product findProductWithHighestStock();
+
+    /**
+     * Get product cards (product, detail and catalog name) with pagination
+     *
+     * @param pageable the pagination information
+     * @return a page of product cards
+     */
+    Page<ProductCardDTO> findProductCardsPaginated(Pageable pageable);
+
+    /**
+     * Find product cards by catalog ID with pagination
+     *
+     * @param catalogId the ID of the catalog
+     * @param pageable  the pagination information
+     * @return a page of product cards in the catalog
+     */
+    Page<ProductCardDTO> findProductCardsByCatalogIdPaginated(Integer catalogId, Pageable pageable);
+
+    /**
+     * Search for product cards by name with pagination
+     *
+     * @param keyword  the search keyword
+     * @param pageable the pagination information
+     * @return a page of product cards matching the search
+     */
+    Page<ProductCardDTO> searchProductCardsPaginated(String keyword, Pageable pageable);
+
+    /**
+     * Find product cards whose effective price (discount price if set, otherwise
+     * the regular price) lies in the given range, optionally restricted to a
+     * catalog or a name search, with pagination
+     *
+     * @param catalogId the ID of the catalog, or null for all catalogs
+     * @param keyword   the search keyword, or null for no search
+     * @param minPrice  the minimum effective price
+     * @param maxPrice  the maximum effective price
+     * @param pageable  the pagination information
+     * @return a page of product cards in the price range
+     */
+    Page<ProductCardDTO> findProductCardsByPriceRangePaginated(Integer catalogId, String keyword,
+            BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable);
+
+    /**
+     * Get the card of the product with the highest stock quantity
+     *
+     * @return the product card, including the description
+     */
+    ProductCardDTO findFeaturedProductCard();
+
+    /**
+     * Get the cursor that continues a product card listing after the given card
+     * (keyset pagination). Only name and price sorts can be continued by cursor.
+     *
+     * @param card      the last card on the current page
+     * @param sortField the sort field ("productName" or "price")
+     * @param direction the sort direction
+     * @return the opaque cursor, or null if the listing cannot be continued by cursor
+     */
+    String getProductCardCursor(ProductCardDTO card, String sortField, Sort.Direction direction);
+
+    /**
+     * Find the product cards after a cursor, optionally restricted to a catalog.
+     * The page is read by seeking on (sort key, product ID), so its cost does not
+     * grow with the page number, and no total count is computed.
+     *
+     * @param catalogId the ID of the catalog, or null for all catalogs
+     * @param sortField the sort field ("productName" or "price")
+     * @param direction the sort direction
+     * @param cursor    the cursor returned for the previous page
+     * @param size      the page size
+     * @return the page of product cards with the cursor of the next page
+     * @throws IllegalArgumentException if the cursor is invalid or was issued for another sort
+     */
+    KeysetPage<ProductCardDTO> findProductCardsAfter(Integer catalogId, String sortField,
+            Sort.Direction direction, String cursor, int size);
 }
@@ -0,0 +1,33 @@
+package project.demo.service;
+
+import java.util.List;
+
+import project.demo.dto.SuggestionDTO;
+
+/**
+ * Service interface for search-box typeahead over product and catalog names
+ */
+public interface IProductSuggestService {
+
+    /**
+     * Check whether suggestions are served (requires the catalog snapshot)
+     *
+     * @return true if suggestions are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Complete a partially typed query. Diacritics are ignored and any word of
+     * a name may be the start of the match. Ranked by sales, best first.
+     *
+     * @param query the typed text
+     * @return the suggestions; empty if the query has no words or suggestions
+     *         are disabled
+     */
+    List<SuggestionDTO> suggest(String query);
+
+    /**
+     * Reload the sales weights of products that changed since the last call
+     */
+    void refreshWeights();
+}
@@ -0,0 +1,20 @@
+package project.demo.service;
+
+import java.util.List;
+
+import project.demo.dto.ProductCardDTO;
+
+/**
+ * Service interface for the "related products" shown on the product detail page
+ */
+public interface IRelatedProductService {
+
+    /**
+     * Find the products related to a product: the top products of the same
+     * catalog, in-stock first and then closest in effective price
+     *
+     * @param productId the ID of the product
+     * @return at most the configured number of related product cards, never the product itself
+     */
+    List<ProductCardDTO> findRelatedProductCards(Integer productId);
+}
@@ -0,0 +1,67 @@
+package project.demo.service;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Service interface for holding stock while a customer pays online.
+ * A reservation holds quantities of products under a payment reference for
+ * a limited time; the available stock of a product is its stock minus its
+ * active reservations. A reservation ends when the order is placed
+ * (commit), when the payment fails (release) or when it expires.
+ */
+public interface IStockReservationService {
+
+    /**
+     * Check whether stock reservations are enabled
+     *
+     * @return true if stock reservations are enabled
+     */
+    boolean isEnabled();
+
+    /**
+     * Reserve stock for a payment. Every product is reserved only if its
+     * stock minus its active reservations covers the quantity; either all
+     * products are reserved or none.
+     *
+     * @param reference  the payment reference, unique per payment attempt
+     * @param quantities the quantity to reserve per product ID
+     * @throws project.demo.exception.ProductDetailException if a product does not have enough available stock
+     */
+    void reserve(String reference, Map<Integer, Integer> quantities);
+
+    /**
+     * Turn a reservation into an order: its rows are deleted in the current
+     * transaction, just before the order takes the stock, and it leaves the
+     * in-memory index once the transaction commits
+     *
+     * @param reference the payment reference
+     * @return true if the reservation was still active
+     */
+    boolean commit(String reference);
+
+    /**
+     * Release a reservation at once, e.g. when the payment failed or was
+     * cancelled. Unknown references are ignored.
+     *
+     * @param reference the payment reference
+     */
+    void release(String reference);
+
+    /**
+     * Get the quantities held by the active reservations of several
+     * products, whichever instance made them, with one query
+     *
+     * @param productIds the IDs of the products
+     * @return the reserved quantity by product ID; products without active reservations are missing
+     */
+    Map<Integer, Integer> getReservedQuantities(Collection<Integer> productIds);
+
+    /**
+     * Release the reservations whose time is up. The first call after startup
+     * also loads the active reservations from the database.
+     *
+     * @return the number of released reservations
+     */
+    int releaseExpired();
+}
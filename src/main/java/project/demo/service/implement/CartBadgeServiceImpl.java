@@ -0,0 +1,137 @@
+package project.demo.service.implement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.enums.CartStatus;
+import project.demo.repository.CartItemRepository;
+import project.demo.service.ICartBadgeService;
+
+/**
+ * Implementation of the ICartBadgeService interface.
+ * Counts are kept per customer in a bounded LRU map. A miss counts the items
+ * with one query; the result is only stored if no count was evicted while
+ * the query ran, so a count read before a concurrent change commits is
+ * never cached after its eviction.
+ */
+@Service
+public class CartBadgeServiceImpl implements ICartBadgeService {
+
+    private final CartItemRepository cartItemRepository;
+    private final boolean enabled;
+    private final int maxEntries;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    private final Map<Integer, Integer> counts;
+    // Tăng mỗi lần xóa một số lượng khỏi cache
+    private final AtomicLong evictions = new AtomicLong();
+
+    public CartBadgeServiceImpl(CartItemRepository cartItemRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.cart.badge-cache.enabled:true}") boolean enabled,
+            @Value("${app.cart.badge-cache.max-entries:10000}") int maxEntries) {
+        this.cartItemRepository = cartItemRepository;
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+
+        this.hitCounter = Counter.builder("cart.badge.gets")
+                .description("Cart badge lookups, by whether the database was queried")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("cart.badge.gets")
+                .description("Cart badge lookups, by whether the database was queried")
+                .tag("result", "miss")
+                .register(meterRegistry);
+
+        this.counts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest) {
+                return size() > CartBadgeServiceImpl.this.maxEntries;
+            }
+        };
+        Gauge.builder("cart.badge.cache.size", this, CartBadgeServiceImpl::size)
+                .description("Number of customers with a cached cart badge")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemCount(Integer customerId) {
+        if (customerId == null) {
+            return 0;
+        }
+
+        if (enabled) {
+            Integer count;
+            synchronized (counts) {
+                count = counts.get(customerId);
+            }
+            if (count != null) {
+                hitCounter.increment();
+                return count;
+            }
+        }
+
+        missCounter.increment();
+        long evictionsBefore = evictions.get();
+        int count = (int) cartItemRepository.countByCustomerIdAndCartStatus(customerId,
+                CartStatus.ACTIVE.getValue());
+
+        if (enabled) {
+            synchronized (counts) {
+                // Bỏ qua kết quả nếu giỏ hàng có thể đã thay đổi trong lúc truy vấn
+                if (evictions.get() == evictionsBefore) {
+                    counts.put(customerId, count);
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void evict(Integer customerId) {
+        if (customerId == null) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    remove(customerId);
+                }
+            });
+        } else {
+            remove(customerId);
+        }
+    }
+
+    private void remove(Integer customerId) {
+        synchronized (counts) {
+            evictions.incrementAndGet();
+            counts.remove(customerId);
+        }
+    }
+
+    private int size() {
+        synchronized (counts) {
+            return counts.size();
+        }
+    }
+}
@@ -1,13 +1,25 @@
 package project.demo.service.implement;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import project.demo.dto.CartOperationDTO;
+import project.demo.dto.StockPriceSnapshot;
 import project.demo.enums.CartStatus;
 import project.demo.exception.CartException;
 import project.demo.exception.ResourceNotFoundException;
@@ -18,7 +30,10 @@ import project.demo.repository.CartItemRepository;
 import project.demo.repository.CartRepository;
 import project.demo.repository.ProductRepository;
 import project.demo.repository.PromotionRepository;
+import project.demo.service.ICartBadgeService;
 import project.demo.service.ICartService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.ICoPurchaseService;
 import project.demo.service.IProductDetailService;
 
 /**
@@ -32,6 +47,11 @@ public class CartServiceImpl implements ICartService {
     private final ProductRepository productRepository;
     private final PromotionRepository promotionRepository;
     private final IProductDetailService productDetailService;
+    private final ICartWriteBehindService cartWriteBehindService;
+    private final ICartBadgeService cartBadgeService;
+    private final ICoPurchaseService coPurchaseService;
+    // Giao dịch cho các thay đổi ghi trực tiếp; thay đổi được giữ trong bộ nhớ không mở giao dịch
+    private final TransactionTemplate transactionTemplate;
     // private final IRecommendationService recommendationService;
 
     // public CartServiceImpl(CartRepository cartRepository,
@@ -50,12 +70,20 @@ public class CartServiceImpl implements ICartService {
             CartItemRepository cartItemRepository,
             ProductRepository productRepository,
             PromotionRepository promotionRepository,
-            IProductDetailService productDetailService) {
+            IProductDetailService productDetailService,
+            ICartWriteBehindService cartWriteBehindService,
+            ICartBadgeService cartBadgeService,
+            ICoPurchaseService coPurchaseService,
+            PlatformTransactionManager transactionManager) {
         this.cartRepository = cartRepository;
         this.cartItemRepository = cartItemRepository;
         this.productRepository = productRepository;
         this.promotionRepository = promotionRepository;
         this.productDetailService = productDetailService;
+        this.cartWriteBehindService = cartWriteBehindService;
+        this.cartBadgeService = cartBadgeService;
+        this.coPurchaseService = coPurchaseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
@@ -86,140 +114,31 @@ public class CartServiceImpl implements ICartService {
             throw new IllegalArgumentException("Customer ID cannot be null");
         }
 
-        try {
-            // Try to find an existing active cart for this customer
-            Optional<Cart> existingCart = cartRepository.findByCustomerIdAndStatus(customerId,
-                    CartStatus.ACTIVE.getValue());
-
-            if (existingCart.isPresent()) {
-                Cart cart = existingCart.get();
-                try {
-                    List<CartItem> items = cartItemRepository.findByCartId(cart.getCartId());
-                    if (items != null && !items.isEmpty()) {
-                        try {
-                            // Recalculate total to ensure it's accurate
-                            calculateTotal(cart.getCartId());
-                        } catch (Exception e) {
-                            // Log error but continue with existing cart
-                            System.err.println("Error calculating cart total: " + e.getMessage());
-                        }
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error fetching cart items: " + e.getMessage());
-                }
-                return cart;
-            }
+        // Đường nhanh: giỏ hàng đang hoạt động, tìm theo chỉ mục duy nhất trên customer_id
+        Optional<Cart> existingCart = cartRepository.findByCustomerIdAndStatus(customerId,
+                CartStatus.ACTIVE.getValue());
+        if (existingCart.isPresent()) {
+            // Tổng tiền được cập nhật theo từng thay đổi nên không cần tính lại khi đọc
+            return existingCart.get();
+        }
 
-            // If no active cart exists, check if there's an abandoned cart
-            Optional<Cart> abandonedCart = cartRepository.findByCustomerIdAndStatus(customerId,
-                    CartStatus.ABANDONED.getValue());
-            
-            if (abandonedCart.isPresent()) {
-                Cart cart = abandonedCart.get();
-                // Reactivate the abandoned cart
-                cart.setStatus(CartStatus.ACTIVE.getValue());
-                return cartRepository.save(cart);
-            }
-            
-            // Tìm tất cả giỏ hàng của khách hàng để xử lý
-            List<Cart> existingCarts = cartRepository.findAll().stream()
-                    .filter(c -> customerId.equals(c.getCustomerId()))
-                    .toList();
-            
-            // Nếu có giỏ hàng tồn tại, thử xóa chúng
-            if (!existingCarts.isEmpty()) {
-                for (Cart oldCart : existingCarts) {
-                    try {
-                        // Xóa tất cả các mục trong giỏ hàng
-                        cartItemRepository.deleteByCartId(oldCart.getCartId());
-                        
-                        // Sau đó, thử cập nhật trạng thái trước khi xóa
-                        try {
-                            oldCart.setStatus(CartStatus.CONVERTED.getValue()); // Sử dụng CONVERTED thay vì DELETED
-                            cartRepository.save(oldCart);
-                        } catch (Exception e) {
-                            System.err.println("Error updating cart status: " + e.getMessage());
-                        }
-                        
-                        // Thử xóa giỏ hàng
-                        try {
-                            cartRepository.delete(oldCart);
-                        } catch (Exception e) {
-                            System.err.println("Could not delete cart: " + e.getMessage());
-                            // Nếu không thể xóa, đã cập nhật trạng thái ở trên
-                        }
-                    } catch (Exception e) {
-                        System.err.println("Error processing old cart: " + e.getMessage());
-                    }
-                }
-                
-                try {
-                    // Đảm bảo thay đổi được commit
-                    cartRepository.flush();
-                } catch (Exception e) {
-                    System.err.println("Error flushing changes: " + e.getMessage());
-                }
-                
-                // Kiểm tra xem còn giỏ hàng nào không được xóa không
-                try {
-                    List<Cart> remainingCarts = cartRepository.findAll().stream()
-                            .filter(c -> customerId.equals(c.getCustomerId()))
-                            .toList();
-                            
-                    if (!remainingCarts.isEmpty()) {
-                        // Nếu vẫn còn giỏ hàng, chuyển đổi giỏ hàng cũ thành active
-                        Cart oldCart = remainingCarts.get(0);
-                        oldCart.setStatus(CartStatus.ACTIVE.getValue());
-                        oldCart.setTotalAmount(BigDecimal.ZERO);
-                        
-                        // Xóa tất cả các mục trong giỏ hàng cũ (nếu còn)
-                        cartItemRepository.deleteByCartId(oldCart.getCartId());
-                        
-                        return cartRepository.save(oldCart);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error checking remaining carts: " + e.getMessage());
-                }
-            }
+        // Khóa dòng giỏ hàng (hoặc khoảng khóa khi chưa có) nên trạng thái đọc được là trạng thái mà MERGE thay thế
+        Optional<String> previousStatus = cartRepository.findStatusByCustomerIdForUpdate(customerId);
+        // MERGE với HOLDLOCK kích hoạt giỏ hàng một cách nguyên tử, kể cả giữa các máy chủ
+        boolean claimed = cartRepository.claimCart(customerId, generateSessionId()) > 0;
 
-            // Tạo giỏ hàng mới
-            Cart newCart = new Cart();
-            newCart.setCustomerId(customerId);
-            newCart.setStatus(CartStatus.ACTIVE.getValue());
-            newCart.setTotalAmount(BigDecimal.ZERO);
-            newCart.setSessionId(generateSessionId());
-            
-            try {
-                return cartRepository.save(newCart);
-            } catch (Exception e) {
-                System.err.println("Error creating new cart: " + e.getMessage());
-                e.printStackTrace();
-                
-                // Nếu không thể tạo giỏ hàng mới, thử một cách cuối cùng - kiểm tra lại giỏ hàng converted
-                try {
-                    Optional<Cart> convertedCart = cartRepository.findByCustomerIdAndStatus(customerId, CartStatus.CONVERTED.getValue());
-                    if (convertedCart.isPresent()) {
-                        Cart cart = convertedCart.get();
-                        cart.setStatus(CartStatus.ACTIVE.getValue());
-                        cart.setTotalAmount(BigDecimal.ZERO);
-                        
-                        // Xóa tất cả các mục trong giỏ hàng
-                        cartItemRepository.deleteByCartId(cart.getCartId());
-                        
-                        return cartRepository.save(cart);
-                    }
-                } catch (Exception ex) {
-                    System.err.println("Error finding converted cart: " + ex.getMessage());
-                }
-                
-                // Nếu tất cả các cách đều thất bại, ném ngoại lệ để thông báo lỗi rõ ràng
-                throw new RuntimeException("Không thể tạo hoặc lấy giỏ hàng. Vui lòng thử lại sau.", e);
+        // Không có dòng nào thay đổi nghĩa là một yêu cầu khác đã kích hoạt giỏ hàng trước
+        Cart cart = cartRepository.findByCustomerIdAndStatus(customerId, CartStatus.ACTIVE.getValue())
+                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
+                        "Active cart not found for customer ID: " + customerId));
+        if (claimed) {
+            // Giỏ hàng đã đặt hàng được dùng lại từ đầu; giỏ hàng bị bỏ dở giữ nguyên các sản phẩm
+            if (previousStatus.isPresent() && !CartStatus.ABANDONED.getValue().equals(previousStatus.get())) {
+                cartItemRepository.deleteByCartId(cart.getCartId());
             }
-        } catch (Exception e) {
-            System.err.println("Unexpected error in getOrCreateCart: " + e.getMessage());
-            e.printStackTrace();
-            throw new RuntimeException("Không thể tạo hoặc lấy giỏ hàng. Vui lòng thử lại sau.", e);
+            cartBadgeService.evict(customerId);
         }
+        return cart;
     }
 
     /**
@@ -241,6 +160,9 @@ public class CartServiceImpl implements ICartService {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
 
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // check if cart is active
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(
@@ -249,20 +171,20 @@ public class CartServiceImpl implements ICartService {
             throw CartException.invalidStatus(cart.getStatus());
         }
 
+        // Tồn kho và giá hiệu lực được đọc cùng lúc, từ cache nếu còn mới
+        StockPriceSnapshot stockAndPrice = stockAndPrice(productId);
+
         // Check if the quantity exceeds available stock
-        Integer stockQuantity = productDetailService.getQuantityInStock(productId);
+        int stockQuantity = stockAndPrice.getQuantityInStock();
         if (quantity > stockQuantity) {
             throw new CartException("INSUFFICIENT_STOCK", 
                 "Requested quantity (" + quantity + ") exceeds available stock (" + stockQuantity + ")");
         }
 
-        // check if product exists
-        Product product = productRepository.findById(productId).orElseThrow(
-                () -> new ResourceNotFoundException("PRODUCT_NOT_FOUND", "Product not found with ID: " + productId));
-
-        // check if cart item exists
-        Optional<CartItem> existingCartItem = cartItemRepository.findByCartIdAndProductId(cartId, productId);
+        // check if cart item exists - khóa dòng để hai yêu cầu đồng thời không cùng đọc số lượng cũ
+        Optional<CartItem> existingCartItem = cartItemRepository.findByCartIdAndProductIdForUpdate(cartId, productId);
         CartItem cartItem;
+        BigDecimal totalDelta = BigDecimal.ZERO;
         if (existingCartItem.isPresent()) {
             cartItem = existingCartItem.get();
             
@@ -274,6 +196,9 @@ public class CartServiceImpl implements ICartService {
             }
             
             cartItem.setQuantity(newQuantity);
+            if (isSelected(cartItem)) {
+                totalDelta = lineTotal(cartItem, quantity);
+            }
         } else {
             // Create new cart item with all required fields
             cartItem = new CartItem();
@@ -282,18 +207,19 @@ public class CartServiceImpl implements ICartService {
             cartItem.setQuantity(quantity);
             
             // Sử dụng giá hiệu lực (có tính đến giảm giá) thay vì luôn dùng giá gốc
-            BigDecimal effectivePrice = productDetailService.getEffectivePrice(productId);
-            cartItem.setUnitPrice(effectivePrice);
+            cartItem.setUnitPrice(stockAndPrice.getEffectivePrice());
             
             cartItem.setIsSelected(true); // Default to selected
             // Optionally set the entity references
             cartItem.setCart(cart);
-            cartItem.setProduct(product);
+            cartItem.setProduct(productRepository.getReferenceById(productId));
+            totalDelta = lineTotal(cartItem, quantity);
+            cartBadgeService.evict(cart.getCustomerId());
         }
         cartItem = cartItemRepository.save(cartItem);
 
         // update cart total
-        calculateTotal(cartId);
+        adjustTotal(cartId, totalDelta);
 
         return cartItem;
     }
@@ -314,6 +240,9 @@ public class CartServiceImpl implements ICartService {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
 
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // check if cart is active
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(
@@ -322,8 +251,8 @@ public class CartServiceImpl implements ICartService {
             throw CartException.invalidStatus(cart.getStatus());
         }
 
-        // check if cart item exists
-        CartItem cartItem = cartItemRepository.findByCartIdAndProductId(cartId, productId)
+        // check if cart item exists - khóa dòng để số lượng cũ là số lượng của dòng được ghi
+        CartItem cartItem = cartItemRepository.findByCartIdAndProductIdForUpdate(cartId, productId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
                         "Cart item not found with cart ID: " + cartId + " and product ID: " + productId));
 
@@ -337,23 +266,26 @@ public class CartServiceImpl implements ICartService {
         } else if ("decrease".equals(action)) {
             newQuantity -= quantity;
             if (newQuantity <= 0) {
-                return removeItem(cartId, productId);
+                // Xóa ngay trên dòng đã khóa; removeItem sẽ ghi bộ nhớ đệm lần nữa trong khi dòng đang bị khóa
+                deleteItem(cart, cartItem);
+                return cartItem;
             }
         }
 
         // Check if the new quantity exceeds available stock
-        Integer stockQuantity = productDetailService.getQuantityInStock(productId);
+        int stockQuantity = stockAndPrice(productId).getQuantityInStock();
         if (newQuantity > stockQuantity) {
             throw new CartException("INSUFFICIENT_STOCK", 
                 "Requested quantity (" + newQuantity + ") exceeds available stock (" + stockQuantity + ")");
         }
 
         // update cart item
+        int oldQuantity = cartItem.getQuantity();
         cartItem.setQuantity(newQuantity);
         cartItem = cartItemRepository.save(cartItem);
 
         // update cart total
-        calculateTotal(cartId);
+        adjustTotal(cartId, isSelected(cartItem) ? lineTotal(cartItem, newQuantity - oldQuantity) : BigDecimal.ZERO);
 
         return cartItem;
     }
@@ -364,27 +296,34 @@ public class CartServiceImpl implements ICartService {
     @Override
     @Transactional
     public void removeItem(Integer cartItemId) {
-        // Check if cart item exists
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
+        // Check if cart item exists - chỉ đọc ID giỏ hàng, chưa nạp mục vào ngữ cảnh
+        Integer cartId = cartItemRepository.findCartIdById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
                         "Cart item not found with ID: " + cartItemId));
 
+        // Ghi các thay đổi đang chờ trước khi khóa dòng: lần ghi chạy trong giao dịch riêng và cập nhật cùng dòng
+        flushPendingChanges(cartId);
+
         // Check if cart is active
-        Cart cart = cartRepository.findById(cartItem.getCartId())
+        Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartItem.getCartId()));
+                        "Cart not found with ID: " + cartId));
 
         if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
             throw CartException.invalidStatus(cart.getStatus());
         }
 
-        Integer cartId = cartItem.getCartId();
+        // Khóa dòng sau khi ghi, số lượng đọc được là số lượng đã ghi
+        CartItem cartItem = cartItemRepository.findByIdForUpdate(cartItemId)
+                .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
+                        "Cart item not found with ID: " + cartItemId));
 
         // Delete cart item
         cartItemRepository.deleteById(cartItemId);
+        cartBadgeService.evict(cart.getCustomerId());
 
         // Update cart total
-        calculateTotal(cartId);
+        adjustTotal(cartId, isSelected(cartItem) ? lineTotal(cartItem, -cartItem.getQuantity()) : BigDecimal.ZERO);
     }
 
     /**
@@ -394,7 +333,11 @@ public class CartServiceImpl implements ICartService {
      * @param productId the ID of the product to remove
      * @return the removed cart item (before removal)
      */
+    @Transactional
     public CartItem removeItem(Integer cartId, Integer productId) {
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // Check if cart is active
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(
@@ -404,17 +347,26 @@ public class CartServiceImpl implements ICartService {
         }
 
         // Check if cart item exists
-        CartItem cartItem = cartItemRepository.findByCartIdAndProductId(cartId, productId)
+        CartItem cartItem = cartItemRepository.findByCartIdAndProductIdForUpdate(cartId, productId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
                         "Cart item not found with cart ID: " + cartId + " and product ID: " + productId));
 
+        deleteItem(cart, cartItem);
+
+        return cartItem;
+    }
+
+    /**
+     * Delete a locked cart item and take its line off the cart total
+     */
+    private void deleteItem(Cart cart, CartItem cartItem) {
         // Delete cart item
         cartItemRepository.deleteById(cartItem.getCartItemId());
+        cartBadgeService.evict(cart.getCustomerId());
 
         // Update cart total
-        calculateTotal(cartId);
-
-        return cartItem;
+        adjustTotal(cart.getCartId(),
+                isSelected(cartItem) ? lineTotal(cartItem, -cartItem.getQuantity()) : BigDecimal.ZERO);
     }
 
     /**
@@ -433,7 +385,7 @@ public class CartServiceImpl implements ICartService {
             throw CartException.invalidStatus(cart.getStatus());
         }
 
-        return cartItemRepository.findByCartId(cartId);
+        return overlay(cartItemRepository.findByCartId(cartId));
     }
 
     /**
@@ -442,6 +394,9 @@ public class CartServiceImpl implements ICartService {
     @Override
     @Transactional
     public BigDecimal calculateTotal(Integer cartId) {
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // Check if cart exists
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(
@@ -479,6 +434,9 @@ public class CartServiceImpl implements ICartService {
     @Override
     @Transactional
     public void clearCart(Integer cartId) {
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // Check if cart exists
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(
@@ -496,6 +454,7 @@ public class CartServiceImpl implements ICartService {
 
         // Delete all items in cart
         cartItemRepository.deleteByCartId(cartId);
+        cartBadgeService.evict(cart.getCustomerId());
 
         // Update cart total
         cart.setTotalAmount(BigDecimal.ZERO);
@@ -506,32 +465,8 @@ public class CartServiceImpl implements ICartService {
      * {@inheritDoc}
      */
     @Override
-    @Transactional
     public CartItem updateItemSelection(Integer cartItemId, Boolean isSelected) {
-        // Check if cart item exists
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
-                        "Cart item not found with ID: " + cartItemId));
-
-        // Check if cart is active
-        Cart cart = cartRepository.findById(cartItem.getCartId())
-                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartItem.getCartId()));
-
-        if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
-            throw CartException.invalidStatus(cart.getStatus());
-        }
-
-        // Update selection status
-        cartItem.setIsSelected(isSelected);
-
-        // Save cart item
-        CartItem updatedCartItem = cartItemRepository.save(cartItem);
-
-        // Update cart total
-        calculateTotal(updatedCartItem.getCartId());
-
-        return updatedCartItem;
+        return changeSelection(cartItemId, isSelected);
     }
 
     /**
@@ -551,7 +486,7 @@ public class CartServiceImpl implements ICartService {
 
         // Get all items in the cart (ignoring saved_for_later since it doesn't exist in
         // DB)
-        return cartItemRepository.findByCartId(cartId);
+        return overlay(cartItemRepository.findByCartId(cartId));
     }
 
     /**
@@ -577,64 +512,18 @@ public class CartServiceImpl implements ICartService {
      * {@inheritDoc}
      */
     @Override
-    @Transactional
     public CartItem saveForLater(Integer cartItemId) {
-        // Check if cart item exists
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
-                        "Cart item not found with ID: " + cartItemId));
-
-        // Check if cart is active
-        Cart cart = cartRepository.findById(cartItem.getCartId())
-                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartItem.getCartId()));
-
-        if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
-            throw CartException.invalidStatus(cart.getStatus());
-        }
-
         // Just unselect the item to simulate "save for later"
-        cartItem.setIsSelected(false);
-
-        // Save cart item
-        CartItem updatedCartItem = cartItemRepository.save(cartItem);
-
-        // Update cart total
-        calculateTotal(updatedCartItem.getCartId());
-
-        return updatedCartItem;
+        return changeSelection(cartItemId, false);
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    @Transactional
     public CartItem moveToCart(Integer cartItemId) {
-        // Check if cart item exists
-        CartItem cartItem = cartItemRepository.findById(cartItemId)
-                .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
-                        "Cart item not found with ID: " + cartItemId));
-
-        // Check if cart is active
-        Cart cart = cartRepository.findById(cartItem.getCartId())
-                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartItem.getCartId()));
-
-        if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
-            throw CartException.invalidStatus(cart.getStatus());
-        }
-
         // Select the item to move it back to active cart
-        cartItem.setIsSelected(true);
-
-        // Save cart item
-        CartItem updatedCartItem = cartItemRepository.save(cartItem);
-
-        // Update cart total
-        calculateTotal(updatedCartItem.getCartId());
-
-        return updatedCartItem;
+        return changeSelection(cartItemId, true);
     }
 
     /**
@@ -672,45 +561,40 @@ public class CartServiceImpl implements ICartService {
      */
     @Override
     public List<Product> getRecommendations(Integer cartId, int limit) {
-        // Check if cart exists
-        cartRepository.findById(cartId)
-                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartId));
-
-        // Get active items in cart
+        // Get active items in cart (checks that the cart exists and is active)
         List<CartItem> cartItems = getActiveCartItems(cartId);
 
-        if (cartItems.isEmpty()) {
-            // If cart is empty, return some popular products
-            // In a real implementation, you would have a method to get popular products
-            return productRepository.findAll().stream().limit(limit).toList();
-        }
-
         // Extract product IDs from cart items
         List<Integer> productIds = new ArrayList<>();
         for (CartItem item : cartItems) {
             productIds.add(item.getProductId());
         }
 
-        // In a real implementation, you would have a recommendation service
-        // For now, just return products from the same categories
-        List<Product> recommendations = new ArrayList<>();
-        for (Integer productId : productIds) {
-            Product product = productRepository.findById(productId).orElse(null);
-            if (product != null && product.getCatalogId() != null) {
-                List<Product> similarProducts = productRepository.findByCatalogId(product.getCatalogId());
-                recommendations.addAll(similarProducts.stream()
-                        .filter(p -> !productIds.contains(p.getProductId()))
-                        .limit(limit - recommendations.size())
-                        .toList());
-
-                if (recommendations.size() >= limit) {
-                    break;
+        // Gợi ý từ mô hình mua cùng trong bộ nhớ, chỉ một truy vấn để lấy các sản phẩm được gợi ý
+        if (coPurchaseService.isEnabled()) {
+            List<Integer> recommendedIds = coPurchaseService.recommend(productIds, limit);
+            if (!recommendedIds.isEmpty()) {
+                Map<Integer, Product> products = new HashMap<>();
+                for (Product product : productRepository.findAllById(recommendedIds)) {
+                    products.put(product.getProductId(), product);
+                }
+                List<Product> recommendations = new ArrayList<>();
+                for (Integer productId : recommendedIds) {
+                    if (products.containsKey(productId)) {
+                        recommendations.add(products.get(productId));
+                    }
                 }
+                return recommendations;
             }
         }
 
-        return recommendations.stream().limit(limit).toList();
+        if (cartItems.isEmpty()) {
+            // Mô hình chưa được xây dựng và giỏ hàng trống: chỉ đọc một trang sản phẩm
+            return productRepository.findAll(PageRequest.of(0, limit)).getContent();
+        }
+
+        // Sản phẩm cùng danh mục với các sản phẩm trong giỏ, một truy vấn có giới hạn
+        return productRepository.findInCatalogsOfProductsExcluding(productIds, PageRequest.of(0, limit));
     }
 
     /**
@@ -733,9 +617,16 @@ public class CartServiceImpl implements ICartService {
      */
     @Override
     public CartItem getCartItem(Integer cartItemId) {
-        return cartItemRepository.findById(cartItemId)
+        // Mục đang được giữ trong bộ nhớ được trả về mà không cần truy vấn
+        if (cartWriteBehindService.isEnabled()) {
+            CartItem heldItem = cartWriteBehindService.find(cartItemId);
+            if (heldItem != null) {
+                return heldItem;
+            }
+        }
+        return overlay(cartItemRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
-                        "Cart item not found with ID: " + cartItemId));
+                        "Cart item not found with ID: " + cartItemId)));
     }
 
     /**
@@ -751,7 +642,28 @@ public class CartServiceImpl implements ICartService {
      */
     @Override
     public BigDecimal getCartTotal(Integer cartId) {
-        return calculateTotal(cartId);
+        // Tổng được duy trì theo từng thay đổi, chỉ đọc giá trị đã lưu
+        BigDecimal total = findById(cartId).getTotalAmount();
+        total = total != null ? total : BigDecimal.ZERO;
+        return cartWriteBehindService.isEnabled() ? total.add(cartWriteBehindService.getPendingTotalDelta(cartId)) : total;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public int reconcileTotals() {
+        // Tổng tiền chỉ khớp với các mục sau khi các thay đổi đang chờ được ghi
+        if (cartWriteBehindService.isEnabled()) {
+            cartWriteBehindService.flush();
+        }
+
+        List<Integer> cartIds = cartRepository.findCartIdsWithStaleTotal(CartStatus.ACTIVE.getValue());
+        for (Integer cartId : cartIds) {
+            calculateTotal(cartId);
+        }
+        return cartIds.size();
     }
 
     /**
@@ -762,12 +674,16 @@ public class CartServiceImpl implements ICartService {
      * @param quantity  the new quantity
      * @return the updated cart item
      */
+    @Transactional
     public CartItem updateQuantity(Integer cartId, Integer productId, Integer quantity) {
         // Check if quantity is valid
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
 
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
         // Check if cart exists and is active
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND", "Cart not found with ID: " + cartId));
@@ -777,23 +693,24 @@ public class CartServiceImpl implements ICartService {
         }
 
         // Check if the quantity exceeds available stock
-        Integer stockQuantity = productDetailService.getQuantityInStock(productId);
+        int stockQuantity = stockAndPrice(productId).getQuantityInStock();
         if (quantity > stockQuantity) {
             throw new CartException("INSUFFICIENT_STOCK", 
                 "Requested quantity (" + quantity + ") exceeds available stock (" + stockQuantity + ")");
         }
 
         // Get cart item
-        CartItem cartItem = cartItemRepository.findByCartIdAndProductId(cartId, productId)
+        CartItem cartItem = cartItemRepository.findByCartIdAndProductIdForUpdate(cartId, productId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
                         "Cart item not found with cartId: " + cartId + " and productId: " + productId));
 
         // Update quantity
+        int oldQuantity = cartItem.getQuantity();
         cartItem.setQuantity(quantity);
         cartItem = cartItemRepository.save(cartItem);
 
         // Update cart total
-        calculateTotal(cartId);
+        adjustTotal(cartId, isSelected(cartItem) ? lineTotal(cartItem, quantity - oldQuantity) : BigDecimal.ZERO);
 
         return cartItem;
     }
@@ -802,43 +719,296 @@ public class CartServiceImpl implements ICartService {
      * {@inheritDoc}
      */
     @Override
-    @Transactional
     public CartItem updateItemQuantity(Integer cartItemId, Integer quantity) {
         // Check if quantity is valid
         if (quantity <= 0) {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
 
-        // Get the cart item
-        final CartItem cartItem = cartItemRepository.findById(cartItemId)
+        // Chế độ ghi trễ: thay đổi được giữ trong bộ nhớ và ghi theo lô sau đó
+        CartItem bufferedItem = bufferChange(cartItemId, quantity, null);
+        if (bufferedItem != null) {
+            return bufferedItem;
+        }
+
+        return transactionTemplate.execute(status -> {
+            // Get the cart item
+            CartItem cartItem = cartItemRepository.findByIdForUpdate(cartItemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
+                            "Cart item not found with ID: " + cartItemId));
+
+            // Check if cart is active
+            activeCart(cartItem.getCartId());
+
+            // Check if the quantity exceeds available stock
+            checkStock(cartItem.getProductId(), quantity);
+
+            // Update quantity
+            int oldQuantity = cartItem.getQuantity();
+            cartItem.setQuantity(quantity);
+            CartItem updatedCartItem = cartItemRepository.save(cartItem);
+
+            // Update cart total
+            adjustTotal(cartItem.getCartId(),
+                    isSelected(cartItem) ? lineTotal(cartItem, quantity - oldQuantity) : BigDecimal.ZERO);
+
+            return updatedCartItem;
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public List<CartItem> applyOperations(Integer cartId, List<CartOperationDTO> operations) {
+        // Ghi các thay đổi đang chờ trước khi thay đổi giỏ hàng trực tiếp
+        flushPendingChanges(cartId);
+
+        // Check if cart exists and is active
+        Cart cart = cartRepository.findById(cartId)
+                .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND", "Cart not found with ID: " + cartId));
+
+        if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
+            throw CartException.invalidStatus(cart.getStatus());
+        }
+
+        // Đọc và khóa tất cả các mục của giỏ một lần, các thao tác chỉ làm việc trên bản đọc này
+        Map<Integer, CartItem> items = new LinkedHashMap<>();
+        BigDecimal oldTotal = BigDecimal.ZERO;
+        for (CartItem item : cartItemRepository.findByCartIdForUpdate(cartId)) {
+            items.put(item.getCartItemId(), item);
+            if (isSelected(item)) {
+                oldTotal = oldTotal.add(lineTotal(item, item.getQuantity()));
+            }
+        }
+        if (operations == null || operations.isEmpty()) {
+            return new ArrayList<>(items.values());
+        }
+
+        Set<CartItem> changedItems = new LinkedHashSet<>();
+        Set<CartItem> resizedItems = new HashSet<>();
+        List<CartItem> removedItems = new ArrayList<>();
+        for (CartOperationDTO operation : operations) {
+            CartItem item = items.get(operation.getCartItemId());
+            if (item == null) {
+                throw new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
+                        "Cart item not found with ID: " + operation.getCartItemId() + " in cart " + cartId);
+            }
+
+            String type = operation.getType() != null ? operation.getType() : "";
+            switch (type) {
+                case CartOperationDTO.SET_QUANTITY:
+                    if (operation.getQuantity() == null || operation.getQuantity() <= 0) {
+                        throw new CartException("INVALID_QUANTITY", "Quantity must be greater than zero");
+                    }
+                    item.setQuantity(operation.getQuantity());
+                    changedItems.add(item);
+                    resizedItems.add(item);
+                    break;
+                case CartOperationDTO.REMOVE:
+                    items.remove(item.getCartItemId());
+                    changedItems.remove(item);
+                    resizedItems.remove(item);
+                    removedItems.add(item);
+                    break;
+                case CartOperationDTO.SELECT:
+                case CartOperationDTO.UNSELECT:
+                    item.setIsSelected(CartOperationDTO.SELECT.equals(type));
+                    changedItems.add(item);
+                    break;
+                default:
+                    throw new CartException("INVALID_OPERATION", "Unknown cart operation: " + operation.getType());
+            }
+        }
+
+        // Kiểm tra tồn kho của mọi sản phẩm được đổi số lượng bằng một truy vấn
+        if (!resizedItems.isEmpty()) {
+            Set<Integer> productIds = new HashSet<>();
+            for (CartItem item : resizedItems) {
+                productIds.add(item.getProductId());
+            }
+            Map<Integer, StockPriceSnapshot> stock = productDetailService.getStockAndPrice(productIds);
+            for (CartItem item : resizedItems) {
+                int stockQuantity = stock.get(item.getProductId()).getQuantityInStock();
+                if (item.getQuantity() > stockQuantity) {
+                    throw new CartException("INSUFFICIENT_STOCK", "Requested quantity (" + item.getQuantity()
+                            + ") of product " + item.getProductId() + " exceeds available stock (" + stockQuantity + ")");
+                }
+            }
+        }
+
+        if (!removedItems.isEmpty()) {
+            cartItemRepository.deleteAll(removedItems);
+            cartBadgeService.evict(cart.getCustomerId());
+        }
+        if (!changedItems.isEmpty()) {
+            cartItemRepository.saveAll(changedItems);
+        }
+
+        // Tính lại tổng một lần cho cả lô và cộng phần chênh lệch bằng một câu UPDATE
+        BigDecimal newTotal = BigDecimal.ZERO;
+        for (CartItem item : items.values()) {
+            if (isSelected(item)) {
+                newTotal = newTotal.add(lineTotal(item, item.getQuantity()));
+            }
+        }
+        adjustTotal(cartId, newTotal.subtract(oldTotal));
+
+        return new ArrayList<>(items.values());
+    }
+
+    /**
+     * Set the selection status of a cart item, in the write-behind store if
+     * it is enabled, otherwise in a transaction that locks the item row
+     */
+    private CartItem changeSelection(Integer cartItemId, boolean isSelected) {
+        // Chế độ ghi trễ: thay đổi được giữ trong bộ nhớ và ghi theo lô sau đó
+        CartItem bufferedItem = bufferChange(cartItemId, null, isSelected);
+        if (bufferedItem != null) {
+            return bufferedItem;
+        }
+
+        return transactionTemplate.execute(status -> {
+            // Check if cart item exists
+            CartItem cartItem = cartItemRepository.findByIdForUpdate(cartItemId)
+                    .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
+                            "Cart item not found with ID: " + cartItemId));
+
+            // Check if cart is active
+            activeCart(cartItem.getCartId());
+
+            // Update selection status
+            boolean wasSelected = isSelected(cartItem);
+            cartItem.setIsSelected(isSelected);
+
+            // Save cart item
+            CartItem updatedCartItem = cartItemRepository.save(cartItem);
+
+            // Update cart total
+            updateSelectionTotal(cartItem, wasSelected);
+
+            return updatedCartItem;
+        });
+    }
+
+    /**
+     * Keep a quantity or selection change in the write-behind store. No
+     * transaction is opened and no row is locked: an item the store already
+     * holds is changed in memory only, otherwise the item and its cart are
+     * read once without a lock.
+     *
+     * @return the changed item, or null if the change must be written now
+     */
+    private CartItem bufferChange(Integer cartItemId, Integer quantity, Boolean isSelected) {
+        if (!cartWriteBehindService.isEnabled()) {
+            return null;
+        }
+
+        CartItem heldItem = cartWriteBehindService.find(cartItemId);
+        if (heldItem != null) {
+            if (quantity != null) {
+                checkStock(heldItem.getProductId(), quantity);
+            }
+            CartItem changedItem = cartWriteBehindService.record(cartItemId, quantity, isSelected);
+            if (changedItem != null) {
+                return changedItem;
+            }
+            // Giỏ hàng vừa được ghi và bỏ khỏi bộ nhớ, đọc lại như lần thay đổi đầu tiên
+        }
+
+        CartItem cartItem = cartItemRepository.findById(cartItemId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_ITEM_NOT_FOUND",
                         "Cart item not found with ID: " + cartItemId));
-        
-        // Check if cart is active
-        Cart cart = cartRepository.findById(cartItem.getCartId())
+        Cart cart = activeCart(cartItem.getCartId());
+        if (quantity != null) {
+            checkStock(cartItem.getProductId(), quantity);
+        }
+        return cartWriteBehindService.record(cart, cartItem, quantity, isSelected);
+    }
+
+    /**
+     * Get a cart that must exist and be active
+     */
+    private Cart activeCart(Integer cartId) {
+        Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("CART_NOT_FOUND",
-                        "Cart not found with ID: " + cartItem.getCartId()));
-        
+                        "Cart not found with ID: " + cartId));
         if (!CartStatus.ACTIVE.getValue().equals(cart.getStatus())) {
             throw CartException.invalidStatus(cart.getStatus());
         }
+        return cart;
+    }
 
-        Integer productId = cartItem.getProductId();
-        
-        // Check if the quantity exceeds available stock
-        Integer stockQuantity = productDetailService.getQuantityInStock(productId);
+    /**
+     * Check that the available stock of a product covers a quantity
+     */
+    private void checkStock(Integer productId, int quantity) {
+        int stockQuantity = stockAndPrice(productId).getQuantityInStock();
         if (quantity > stockQuantity) {
-            throw new CartException("INSUFFICIENT_STOCK", 
+            throw new CartException("INSUFFICIENT_STOCK",
                 "Requested quantity (" + quantity + ") exceeds available stock (" + stockQuantity + ")");
         }
+    }
 
-        // Update quantity
-        cartItem.setQuantity(quantity);
-        CartItem updatedCartItem = cartItemRepository.save(cartItem);
+    /**
+     * Get the stock and effective price of a product that must exist
+     */
+    private StockPriceSnapshot stockAndPrice(Integer productId) {
+        StockPriceSnapshot snapshot = productDetailService.getStockAndPrice(productId);
+        if (snapshot == null || !snapshot.exists()) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "Product not found with ID: " + productId);
+        }
+        return snapshot;
+    }
 
-        // Update cart total
-        calculateTotal(cartItem.getCartId());
+    private void flushPendingChanges(Integer cartId) {
+        if (cartWriteBehindService.isEnabled()) {
+            cartWriteBehindService.flush(cartId);
+        }
+    }
+
+    private CartItem overlay(CartItem cartItem) {
+        return cartWriteBehindService.isEnabled() ? cartWriteBehindService.overlay(cartItem) : cartItem;
+    }
+
+    private List<CartItem> overlay(List<CartItem> cartItems) {
+        return cartWriteBehindService.isEnabled() ? cartWriteBehindService.overlay(cartItems) : cartItems;
+    }
+
+    /**
+     * Move the stored cart total by the change of one line. A single UPDATE
+     * adds the delta in the database, so concurrent changes to the same cart
+     * are not lost and the cart and its items are not read again. The delta
+     * must come from the item row as locked and written in this transaction.
+     * A change that leaves the total as it is still marks the cart as active.
+     */
+    private void adjustTotal(Integer cartId, BigDecimal delta) {
+        if (delta.signum() != 0) {
+            cartRepository.adjustTotalAmount(cartId, delta);
+        } else {
+            cartRepository.touch(cartId, LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Add or subtract a line when its selection changed
+     */
+    private void updateSelectionTotal(CartItem cartItem, boolean wasSelected) {
+        boolean selected = isSelected(cartItem);
+        BigDecimal delta = BigDecimal.ZERO;
+        if (selected != wasSelected) {
+            BigDecimal line = lineTotal(cartItem, cartItem.getQuantity());
+            delta = selected ? line : line.negate();
+        }
+        adjustTotal(cartItem.getCartId(), delta);
+    }
+
+    private static BigDecimal lineTotal(CartItem cartItem, int quantity) {
+        return cartItem.getUnitPrice().multiply(BigDecimal.valueOf(quantity));
+    }
 
-        return updatedCartItem;
+    private static boolean isSelected(CartItem cartItem) {
+        return Boolean.TRUE.equals(cartItem.getIsSelected());
     }
 }
@@ -0,0 +1,212 @@
+package project.demo.service.implement;
+
+import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import project.demo.enums.CartStatus;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.CartRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICartSweeperService;
+
+/**
+ * Implementation of the ICartSweeperService interface.
+ * Every batch is one or two statements in a transaction of its own, so
+ * locks are held for one batch only; the default batch size stays below
+ * the 5000 locks at which SQL Server escalates to a table lock. During the
+ * peak hours the batches are smaller, and a run pauses between batches and
+ * stops after max-batches, leaving the rest for the next run.
+ */
+@Service
+public class CartSweeperServiceImpl implements ICartSweeperService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartSweeperServiceImpl.class);
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ICartBadgeService cartBadgeService;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long abandonAfterMinutes;
+    private final long convertedRetentionDays;
+    private final int batchSize;
+    private final int peakBatchSize;
+    private final int peakStartHour;
+    private final int peakEndHour;
+    private final long pauseMillis;
+    private final int maxBatches;
+
+    private final Counter abandonedCounter;
+    private final Counter deletedCounter;
+    private final Timer abandonBatchTimer;
+    private final Timer deleteBatchTimer;
+
+    public CartSweeperServiceImpl(CartRepository cartRepository,
+            CartItemRepository cartItemRepository,
+            ICartBadgeService cartBadgeService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.cart.sweeper.enabled:true}") boolean enabled,
+            @Value("${app.cart.sweeper.abandon-after-hours:72}") long abandonAfterHours,
+            @Value("${app.cart.sweeper.converted-retention-days:30}") long convertedRetentionDays,
+            @Value("${app.cart.sweeper.batch-size:2000}") int batchSize,
+            @Value("${app.cart.sweeper.peak-batch-size:200}") int peakBatchSize,
+            @Value("${app.cart.sweeper.peak-hours:8-23}") String peakHours,
+            @Value("${app.cart.sweeper.pause-ms:200}") long pauseMillis,
+            @Value("${app.cart.sweeper.max-batches:50}") int maxBatches) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.cartBadgeService = cartBadgeService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.abandonAfterMinutes = TimeUnit.HOURS.toMinutes(abandonAfterHours);
+        this.convertedRetentionDays = convertedRetentionDays;
+        this.batchSize = Math.max(1, batchSize);
+        this.peakBatchSize = Math.max(1, peakBatchSize);
+        this.pauseMillis = pauseMillis;
+        this.maxBatches = Math.max(1, maxBatches);
+
+        // Khung giờ cao điểm dạng "bắt đầu-kết thúc" (giờ kết thúc không tính), để trống nếu không có
+        int start = 0;
+        int end = 0;
+        if (peakHours != null && peakHours.contains("-")) {
+            String[] bounds = peakHours.split("-");
+            start = Integer.parseInt(bounds[0].trim());
+            end = Integer.parseInt(bounds[1].trim());
+        }
+        this.peakStartHour = start;
+        this.peakEndHour = end;
+
+        this.abandonedCounter = Counter.builder("cart.sweeper.carts")
+                .description("Carts processed by the cart sweeper")
+                .tag("action", "abandoned")
+                .register(meterRegistry);
+        this.deletedCounter = Counter.builder("cart.sweeper.carts")
+                .description("Carts processed by the cart sweeper")
+                .tag("action", "deleted")
+                .register(meterRegistry);
+        this.abandonBatchTimer = Timer.builder("cart.sweeper.batch")
+                .description("Duration of one cart sweeper batch, i.e. how long its locks are held")
+                .tag("action", "abandoned")
+                .register(meterRegistry);
+        this.deleteBatchTimer = Timer.builder("cart.sweeper.batch")
+                .description("Duration of one cart sweeper batch, i.e. how long its locks are held")
+                .tag("action", "deleted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int markAbandoned() {
+        int size = currentBatchSize();
+        int marked = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<Integer> customerIds = abandonBatchTimer.record(() -> transactionTemplate
+                    .execute(status -> cartRepository.markAbandoned(size, abandonAfterMinutes)));
+            if (customerIds == null || customerIds.isEmpty()) {
+                break;
+            }
+
+            // Giỏ hàng bị bỏ dở không còn hoạt động nên biểu tượng giỏ hàng về 0
+            for (Integer customerId : customerIds) {
+                cartBadgeService.evict(customerId);
+            }
+            marked += customerIds.size();
+            abandonedCounter.increment(customerIds.size());
+            logger.debug("Marked {} carts abandoned ({} in this run)", customerIds.size(), marked);
+
+            if (customerIds.size() < size || !pause()) {
+                break;
+            }
+        }
+        return marked;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int purgeConverted() {
+        String converted = CartStatus.CONVERTED.getValue();
+        int size = currentBatchSize();
+        int deleted = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            List<Integer> cartIds = cartRepository.findIdleCartIds(converted, convertedRetentionDays, size);
+            if (cartIds.isEmpty()) {
+                break;
+            }
+
+            // Các mục rồi giỏ hàng, mỗi loại một câu lệnh; giỏ hàng vừa được dùng lại (không còn converted) được giữ
+            Integer count = deleteBatchTimer.record(() -> transactionTemplate.execute(status -> {
+                cartItemRepository.deleteByCartIdInAndCartStatus(cartIds, converted);
+                return cartRepository.deleteByCartIdInAndStatus(cartIds, converted);
+            }));
+            int batchDeleted = count != null ? count : 0;
+            deleted += batchDeleted;
+            deletedCounter.increment(batchDeleted);
+            logger.debug("Deleted {} converted carts ({} in this run)", batchDeleted, deleted);
+
+            if (cartIds.size() < size || !pause()) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Get the batch size for the current hour
+     */
+    int currentBatchSize() {
+        return isPeakHour(LocalTime.now().getHour()) ? peakBatchSize : batchSize;
+    }
+
+    boolean isPeakHour(int hour) {
+        if (peakStartHour == peakEndHour) {
+            return false;
+        }
+        // Khung giờ có thể qua nửa đêm, ví dụ 20-2
+        return peakStartHour < peakEndHour
+                ? hour >= peakStartHour && hour < peakEndHour
+                : hour >= peakStartHour || hour < peakEndHour;
+    }
+
+    /**
+     * Wait between two batches so that requests waiting for the locks of the
+     * previous batch get through first
+     *
+     * @return false if the thread was interrupted and the run should stop
+     */
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import project.demo.dto.CartView;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+import project.demo.model.Product;
+import project.demo.model.ProductDetail;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICartViewService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.ICoPurchaseService;
+
+/**
+ * Implementation of the ICartViewService interface.
+ * The items come with their products and product details from one join
+ * fetch, which also gives the stock, image and price of every item. The
+ * recommendations come from the in-memory co-purchase model, turned into
+ * product cards by the catalog snapshot (or one query when it is disabled);
+ * until the model is built, from one paged query over the catalogs of the
+ * cart. Nothing is loaded lazily while the page renders.
+ */
+@Service
+public class CartViewServiceImpl implements ICartViewService {
+
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final ICartWriteBehindService cartWriteBehindService;
+    private final ICoPurchaseService coPurchaseService;
+    private final ICatalogSnapshotService catalogSnapshotService;
+
+    public CartViewServiceImpl(CartItemRepository cartItemRepository,
+            ProductRepository productRepository,
+            ICartWriteBehindService cartWriteBehindService,
+            ICoPurchaseService coPurchaseService,
+            ICatalogSnapshotService catalogSnapshotService) {
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.cartWriteBehindService = cartWriteBehindService;
+        this.coPurchaseService = coPurchaseService;
+        this.catalogSnapshotService = catalogSnapshotService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public CartView getCartView(Cart cart, int recommendationLimit) {
+        List<CartItem> items = cartItemRepository.findByCartIdWithProductDetails(cart.getCartId());
+        if (cartWriteBehindService.isEnabled()) {
+            items = cartWriteBehindService.overlay(items);
+        }
+
+        Map<Integer, Integer> stockQuantities = new HashMap<>();
+        Map<Integer, String> productImages = new HashMap<>();
+        Set<Integer> productIds = new LinkedHashSet<>();
+        Set<Integer> catalogIds = new LinkedHashSet<>();
+        BigDecimal cartTotal = BigDecimal.ZERO;
+        for (CartItem item : items) {
+            Product product = item.getProduct();
+            productIds.add(product.getProductId());
+            if (product.getCatalogId() != null) {
+                catalogIds.add(product.getCatalogId());
+            }
+
+            // Sản phẩm không có chi tiết được xem như hết hàng
+            ProductDetail detail = product.getProductDetails() == null || product.getProductDetails().isEmpty()
+                    ? null
+                    : product.getProductDetails().get(0);
+            Integer stock = detail != null ? detail.getQuantityInStock() : null;
+            stockQuantities.put(product.getProductId(), stock != null ? stock : 0);
+            if (detail != null && detail.getImageUrl() != null) {
+                productImages.put(product.getProductId(), detail.getImageUrl());
+            }
+
+            cartTotal = cartTotal.add(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+
+        List<ProductCardDTO> recommendations = recommendationLimit <= 0 ? new ArrayList<>()
+                : findRecommendations(catalogIds, productIds, recommendationLimit);
+        for (ProductCardDTO card : recommendations) {
+            stockQuantities.putIfAbsent(card.getProductId(),
+                    card.getQuantityInStock() != null ? card.getQuantityInStock() : 0);
+            if (card.getImageUrl() != null) {
+                productImages.putIfAbsent(card.getProductId(), card.getImageUrl());
+            }
+        }
+
+        BigDecimal discountAmount = cart.getDiscountAmount() != null ? cart.getDiscountAmount() : BigDecimal.ZERO;
+        return new CartView(cart, items, stockQuantities, productImages, recommendations, cartTotal,
+                discountAmount);
+    }
+
+    /**
+     * Products often bought with the products of the cart; before the
+     * co-purchase model is built, products from the catalogs of the cart that
+     * are not in the cart yet, or for an empty cart the products with the
+     * most stock
+     */
+    private List<ProductCardDTO> findRecommendations(Set<Integer> catalogIds, Set<Integer> productIds, int limit) {
+        if (coPurchaseService.isEnabled()) {
+            List<Integer> recommendedIds = coPurchaseService.recommend(productIds, limit);
+            if (!recommendedIds.isEmpty()) {
+                return productCards(recommendedIds);
+            }
+        }
+
+        if (productIds.isEmpty()) {
+            return productRepository.findProductCardsByHighestStock(PageRequest.of(0, limit));
+        }
+        if (catalogIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return productRepository.findProductCardsInCatalogsExcluding(catalogIds, productIds,
+                PageRequest.of(0, limit));
+    }
+
+    /**
+     * Get the cards of products in the given order, leaving out products
+     * that no longer exist
+     */
+    private List<ProductCardDTO> productCards(List<Integer> productIds) {
+        Map<Integer, ProductCardDTO> cards = new HashMap<>();
+        if (catalogSnapshotService.isEnabled()) {
+            CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+            for (Integer productId : productIds) {
+                ProductCardDTO card = snapshot.getProduct(productId);
+                if (card != null) {
+                    cards.put(productId, card);
+                }
+            }
+        } else {
+            for (ProductCardDTO card : productRepository.findProductCardsByProductIdIn(productIds)) {
+                cards.put(card.getProductId(), card);
+            }
+        }
+
+        List<ProductCardDTO> result = new ArrayList<>();
+        for (Integer productId : productIds) {
+            if (cards.containsKey(productId)) {
+                result.add(cards.get(productId));
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,449 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+import project.demo.service.ICartWriteBehindService;
+
+/**
+ * Implementation of the ICartWriteBehindService interface.
+ * The store holds the latest quantity and selection of each changed item, so
+ * any number of clicks on an item between two flushes becomes one row update.
+ * All pending changes are written with two JDBC batches in one transaction.
+ * Writes are serialized per cart, never across carts: a request that
+ * flushes its cart waits only for a write of that same cart, and the
+ * scheduled flush skips carts that a request is writing at that moment.
+ * The store is bounded: once it holds the maximum number of carts, changes
+ * to other carts are written synchronously, and clean carts are dropped
+ * after the idle time.
+ */
+@Service
+public class CartWriteBehindServiceImpl implements ICartWriteBehindService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteBehindServiceImpl.class);
+
+    private static final String UPDATE_ITEM_SQL = "UPDATE SouvenirShopDBUser.dbo.CartItem "
+            + "SET quantity = ?, is_selected = ? WHERE cart_item_id = ?";
+    private static final String ADJUST_TOTAL_SQL = "UPDATE SouvenirShopDBUser.dbo.Cart "
+            + "SET total_amount = COALESCE(total_amount, 0) + ?, last_activity_at = SYSDATETIME() "
+            + "WHERE cart_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxCarts;
+    private final long idleMillis;
+
+    private final Timer flushTimer;
+
+    // Giỏ hàng theo khách hàng, chỉ mục theo ID giỏ hàng và theo ID mục; mọi truy cập đều đồng bộ trên carts
+    private final Map<Integer, BufferedCart> carts = new HashMap<>();
+    private final Map<Integer, BufferedCart> cartsById = new HashMap<>();
+    private final Map<Integer, BufferedCart> cartsByItemId = new HashMap<>();
+
+    public CartWriteBehindServiceImpl(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.cart.write-behind.enabled:false}") boolean enabled,
+            @Value("${app.cart.write-behind.max-carts:10000}") int maxCarts,
+            @Value("${app.cart.write-behind.idle-ms:600000}") long idleMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Ghi trong giao dịch riêng: khi được gọi từ một giao dịch khác, việc rollback của nó không làm mất thay đổi
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.enabled = enabled;
+        this.maxCarts = maxCarts;
+        this.idleMillis = idleMillis;
+
+        this.flushTimer = Timer.builder("cart.write-behind.flush")
+                .description("Time to write the pending cart changes")
+                .register(meterRegistry);
+        Gauge.builder("cart.write-behind.carts", this, CartWriteBehindServiceImpl::getCartCount)
+                .description("Number of carts held by the write-behind store")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartItem record(Cart cart, CartItem cartItem, Integer quantity, Boolean isSelected) {
+        synchronized (carts) {
+            BufferedCart buffered = carts.get(cart.getCustomerId());
+            if (buffered == null) {
+                if (carts.size() >= maxCarts) {
+                    return null;
+                }
+                buffered = new BufferedCart(cart.getCustomerId(), cart.getCartId());
+                carts.put(buffered.customerId, buffered);
+                cartsById.put(buffered.cartId, buffered);
+            }
+
+            // Giá trị trong bộ nhớ là mới nhất; dữ liệu của cơ sở dữ liệu chỉ dùng cho lần thay đổi đầu tiên
+            BufferedCart owner = buffered;
+            BufferedItem item = buffered.items.computeIfAbsent(cartItem.getCartItemId(), id -> {
+                cartsByItemId.put(id, owner);
+                return new BufferedItem(cartItem.getProductId(), cartItem.getUnitPrice(), cartItem.getNote(),
+                        cartItem.getQuantity(), Boolean.TRUE.equals(cartItem.getIsSelected()));
+            });
+            apply(buffered, item, quantity, isSelected);
+            return copyOf(cartItem, item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartItem find(Integer cartItemId) {
+        synchronized (carts) {
+            BufferedCart buffered = cartsByItemId.get(cartItemId);
+            return buffered == null ? null : copyOf(buffered, cartItemId, buffered.items.get(cartItemId));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartItem record(Integer cartItemId, Integer quantity, Boolean isSelected) {
+        synchronized (carts) {
+            BufferedCart buffered = cartsByItemId.get(cartItemId);
+            if (buffered == null) {
+                return null;
+            }
+            BufferedItem item = buffered.items.get(cartItemId);
+            apply(buffered, item, quantity, isSelected);
+            return copyOf(buffered, cartItemId, item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartItem overlay(CartItem cartItem) {
+        synchronized (carts) {
+            BufferedItem item = findItem(cartItem);
+            return item == null ? cartItem : copyOf(cartItem, item);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CartItem> overlay(List<CartItem> cartItems) {
+        synchronized (carts) {
+            if (cartsById.isEmpty()) {
+                return cartItems;
+            }
+            List<CartItem> result = new ArrayList<>(cartItems.size());
+            for (CartItem cartItem : cartItems) {
+                BufferedItem item = findItem(cartItem);
+                result.add(item == null ? cartItem : copyOf(cartItem, item));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BigDecimal getPendingTotalDelta(Integer cartId) {
+        synchronized (carts) {
+            BufferedCart buffered = cartsById.get(cartId);
+            return buffered == null ? BigDecimal.ZERO : buffered.pendingDelta;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush(Integer cartId) {
+        while (true) {
+            BufferedCart buffered;
+            synchronized (carts) {
+                buffered = cartsById.get(cartId);
+            }
+            if (buffered == null) {
+                return;
+            }
+
+            // Chỉ chờ lần ghi của cùng giỏ hàng để ảnh chụp cũ không ghi đè giá trị mới hơn
+            buffered.flushLock.lock();
+            try {
+                PendingWrite write;
+                synchronized (carts) {
+                    if (cartsById.get(cartId) != buffered) {
+                        // Giỏ hàng đã được ghi và bỏ khỏi bộ nhớ trong lúc chờ, xét lại bản hiện tại
+                        continue;
+                    }
+                    write = drain(List.of(buffered));
+                }
+
+                write(write);
+
+                synchronized (carts) {
+                    // Thay đổi đến trong lúc ghi sẽ được ghi ở lần sau, giỏ hàng vẫn được giữ
+                    if (buffered.isClean()) {
+                        remove(buffered);
+                    }
+                }
+                return;
+            } finally {
+                buffered.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int flush() {
+        List<BufferedCart> locked = new ArrayList<>();
+        try {
+            PendingWrite write;
+            synchronized (carts) {
+                // Bỏ qua giỏ hàng đang được một yêu cầu ghi, lần sau sẽ ghi tiếp
+                for (BufferedCart buffered : carts.values()) {
+                    if (buffered.flushLock.tryLock()) {
+                        locked.add(buffered);
+                    }
+                }
+                write = drain(locked);
+            }
+
+            write(write);
+
+            synchronized (carts) {
+                long idleBefore = System.currentTimeMillis() - idleMillis;
+                for (BufferedCart buffered : locked) {
+                    if (buffered.isClean() && buffered.lastAccess <= idleBefore) {
+                        remove(buffered);
+                    }
+                }
+            }
+            return write.items.size();
+        } finally {
+            for (BufferedCart buffered : locked) {
+                buffered.flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Write the pending changes before the application stops
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("Could not write pending cart changes of {} carts on shutdown", getCartCount(), e);
+        }
+    }
+
+    private int getCartCount() {
+        synchronized (carts) {
+            return carts.size();
+        }
+    }
+
+    /**
+     * Take the pending changes of the given carts, marking them as written.
+     * Must be called while holding the lock on carts.
+     */
+    private static PendingWrite drain(Collection<BufferedCart> source) {
+        PendingWrite write = new PendingWrite();
+        for (BufferedCart buffered : source) {
+            for (Map.Entry<Integer, BufferedItem> entry : buffered.items.entrySet()) {
+                BufferedItem item = entry.getValue();
+                if (item.dirty) {
+                    item.dirty = false;
+                    write.items.add(item);
+                    write.itemArgs.add(new Object[] { item.quantity, item.selected, entry.getKey() });
+                }
+            }
+            if (buffered.pendingDelta.signum() != 0) {
+                write.carts.add(buffered);
+                write.deltas.add(buffered.pendingDelta);
+                write.totalArgs.add(new Object[] { buffered.pendingDelta, buffered.cartId });
+                buffered.pendingDelta = BigDecimal.ZERO;
+            }
+        }
+        return write;
+    }
+
+    private void write(PendingWrite write) {
+        if (write.isEmpty()) {
+            return;
+        }
+
+        try {
+            flushTimer.record(() -> transactionTemplate.executeWithoutResult(status -> {
+                if (!write.itemArgs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(UPDATE_ITEM_SQL, write.itemArgs);
+                }
+                if (!write.totalArgs.isEmpty()) {
+                    jdbcTemplate.batchUpdate(ADJUST_TOTAL_SQL, write.totalArgs);
+                }
+            }));
+        } catch (RuntimeException e) {
+            // Trả lại các thay đổi chưa ghi được; giá trị mới hơn (nếu có) vẫn được giữ
+            synchronized (carts) {
+                for (BufferedItem item : write.items) {
+                    item.dirty = true;
+                }
+                for (int i = 0; i < write.carts.size(); i++) {
+                    BufferedCart buffered = write.carts.get(i);
+                    buffered.pendingDelta = buffered.pendingDelta.add(write.deltas.get(i));
+                }
+            }
+            throw e;
+        }
+    }
+
+    private BufferedItem findItem(CartItem cartItem) {
+        BufferedCart buffered = cartsById.get(cartItem.getCartId());
+        return buffered == null ? null : buffered.items.get(cartItem.getCartItemId());
+    }
+
+    private void remove(BufferedCart buffered) {
+        carts.remove(buffered.customerId, buffered);
+        cartsById.remove(buffered.cartId, buffered);
+        for (Integer cartItemId : buffered.items.keySet()) {
+            cartsByItemId.remove(cartItemId, buffered);
+        }
+    }
+
+    /**
+     * Change a buffered item and the pending total of its cart.
+     * Must be called while holding the lock on carts.
+     */
+    private static void apply(BufferedCart buffered, BufferedItem item, Integer quantity, Boolean isSelected) {
+        BigDecimal before = item.lineTotal();
+        if (quantity != null) {
+            item.quantity = quantity;
+        }
+        if (isSelected != null) {
+            item.selected = isSelected;
+        }
+        item.dirty = true;
+        buffered.pendingDelta = buffered.pendingDelta.add(item.lineTotal().subtract(before));
+        buffered.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Copy an item with the buffered values; the loaded entity is not
+     * changed, so the persistence context never writes it back
+     */
+    private static CartItem copyOf(CartItem cartItem, BufferedItem item) {
+        CartItem copy = new CartItem(cartItem.getCartItemId(), cartItem.getCartId(), cartItem.getProductId(),
+                item.quantity, cartItem.getUnitPrice(), cartItem.getNote(), item.selected);
+        copy.setCart(cartItem.getCart());
+        copy.setProduct(cartItem.getProduct());
+        return copy;
+    }
+
+    /**
+     * Build an item from the buffered values only, without the entity references
+     */
+    private static CartItem copyOf(BufferedCart buffered, Integer cartItemId, BufferedItem item) {
+        return new CartItem(cartItemId, buffered.cartId, item.productId, item.quantity, item.unitPrice, item.note,
+                item.selected);
+    }
+
+    private static final class BufferedCart {
+        private final int customerId;
+        private final int cartId;
+        private final Map<Integer, BufferedItem> items = new HashMap<>();
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private BigDecimal pendingDelta = BigDecimal.ZERO;
+        private long lastAccess;
+
+        private BufferedCart(int customerId, int cartId) {
+            this.customerId = customerId;
+            this.cartId = cartId;
+        }
+
+        private boolean isClean() {
+            if (pendingDelta.signum() != 0) {
+                return false;
+            }
+            for (BufferedItem item : items.values()) {
+                if (item.dirty) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class BufferedItem {
+        private final Integer productId;
+        private final BigDecimal unitPrice;
+        private final String note;
+        private int quantity;
+        private boolean selected;
+        private boolean dirty;
+
+        private BufferedItem(Integer productId, BigDecimal unitPrice, String note, int quantity, boolean selected) {
+            this.productId = productId;
+            this.unitPrice = unitPrice;
+            this.note = note;
+            this.quantity = quantity;
+            this.selected = selected;
+        }
+
+        private BigDecimal lineTotal() {
+            return selected ? unitPrice.multiply(BigDecimal.valueOf(quantity)) : BigDecimal.ZERO;
+        }
+    }
+
+    private static final class PendingWrite {
+        private final List<BufferedItem> items = new ArrayList<>();
+        private final List<Object[]> itemArgs = new ArrayList<>();
+        private final List<BufferedCart> carts = new ArrayList<>();
+        private final List<BigDecimal> deltas = new ArrayList<>();
+        private final List<Object[]> totalArgs = new ArrayList<>();
+
+        private boolean isEmpty() {
+            return itemArgs.isEmpty() && totalArgs.isEmpty();
+        }
+    }
+}
@@ -7,6 +7,7 @@ import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Catalog;
 import project.demo.repository.CatalogRepository;
 import project.demo.service.ICatalogService;
+import project.demo.service.ICatalogSnapshotService;
 
 import java.util.List;
 import java.util.Optional;
@@ -18,9 +19,12 @@ import java.util.Optional;
 public class CatalogServiceImpl implements ICatalogService {
 
     private final CatalogRepository catalogRepository;
+    private final ICatalogSnapshotService catalogSnapshotService;
 
-    public CatalogServiceImpl(CatalogRepository catalogRepository) {
+    public CatalogServiceImpl(CatalogRepository catalogRepository,
+            ICatalogSnapshotService catalogSnapshotService) {
         this.catalogRepository = catalogRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
     }
 
     /**
@@ -46,6 +50,10 @@ public class CatalogServiceImpl implements ICatalogService {
      */
     @Override
     public List<Catalog> findAllActive() {
+        if (catalogSnapshotService.isEnabled()) {
+            return catalogSnapshotService.getSnapshot().getActiveCatalogs();
+        }
+
         return catalogRepository.findByStatus(true);
     }
 
@@ -69,7 +77,10 @@ public class CatalogServiceImpl implements ICatalogService {
             catalog.setStatus(true); // Active by default
         }
         
-        return catalogRepository.save(catalog);
+        Catalog savedCatalog = catalogRepository.save(catalog);
+        catalogSnapshotService.refreshAll();
+        
+        return savedCatalog;
     }
 
     /**
@@ -94,7 +105,10 @@ public class CatalogServiceImpl implements ICatalogService {
             throw CatalogException.duplicateName(catalog.getCatalogName());
         }
         
-        return catalogRepository.save(catalog);
+        Catalog updatedCatalog = catalogRepository.save(catalog);
+        catalogSnapshotService.refreshAll();
+        
+        return updatedCatalog;
     }
 
     /**
@@ -112,6 +126,7 @@ public class CatalogServiceImpl implements ICatalogService {
         }
         
         catalogRepository.deleteById(catalogId);
+        catalogSnapshotService.refreshAll();
     }
 
     /**
@@ -126,6 +141,7 @@ public class CatalogServiceImpl implements ICatalogService {
         // Update status
         catalog.setStatus(true);
         catalogRepository.save(catalog);
+        catalogSnapshotService.refreshAll();
     }
 
     /**
@@ -140,6 +156,7 @@ public class CatalogServiceImpl implements ICatalogService {
         // Update status
         catalog.setStatus(false);
         catalogRepository.save(catalog);
+        catalogSnapshotService.refreshAll();
     }
     
     /**
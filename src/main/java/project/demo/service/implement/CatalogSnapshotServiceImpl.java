@@ -0,0 +1,532 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.CatalogSnapshot.ProductOrder;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.model.Catalog;
+import project.demo.repository.CatalogRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+
+/**
+ * Implementation of the ICatalogSnapshotService interface.
+ * Readers only dereference a volatile field, so reads never touch the database
+ * or take a lock. Writers are serialized and always build a new snapshot;
+ * listings slice the snapshot's presorted orders instead of sorting.
+ */
+@Service
+public class CatalogSnapshotServiceImpl implements ICatalogSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotServiceImpl.class);
+
+    private final ProductRepository productRepository;
+    private final CatalogRepository catalogRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final boolean enabled;
+    private final long maxAgeMillis;
+
+    private final Timer fullRebuildTimer;
+    private final Timer partialRebuildTimer;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile CatalogSnapshot snapshot;
+    private volatile long lastFullRebuildMillis;
+
+    public CatalogSnapshotServiceImpl(ProductRepository productRepository,
+            CatalogRepository catalogRepository,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${app.catalog.snapshot.enabled:true}") boolean enabled,
+            @Value("${app.catalog.snapshot.max-age-seconds:300}") long maxAgeSeconds) {
+        this.productRepository = productRepository;
+        this.catalogRepository = catalogRepository;
+        this.eventPublisher = eventPublisher;
+        this.enabled = enabled;
+        this.maxAgeMillis = TimeUnit.SECONDS.toMillis(maxAgeSeconds);
+
+        this.fullRebuildTimer = Timer.builder("catalog.snapshot.rebuild")
+                .description("Time to build a new catalog snapshot")
+                .tag("type", "full")
+                .register(meterRegistry);
+        this.partialRebuildTimer = Timer.builder("catalog.snapshot.rebuild")
+                .description("Time to build a new catalog snapshot")
+                .tag("type", "partial")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.age", this, CatalogSnapshotServiceImpl::getAgeSeconds)
+                .description("Seconds since the catalog snapshot was last fully rebuilt")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.version", this, s -> s.snapshot == null ? 0 : s.snapshot.getVersion())
+                .description("Version of the current catalog snapshot")
+                .register(meterRegistry);
+        Gauge.builder("catalog.snapshot.products", this,
+                s -> s.snapshot == null ? 0 : s.snapshot.getProductCount())
+                .description("Number of products in the current catalog snapshot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CatalogSnapshot getSnapshot() {
+        CatalogSnapshot current = snapshot;
+        if (current == null) {
+            writeLock.lock();
+            try {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                return snapshot;
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        // Quá hạn: một luồng làm mới, các luồng khác vẫn đọc snapshot cũ
+        if (maxAgeMillis > 0 && System.currentTimeMillis() - lastFullRebuildMillis > maxAgeMillis
+                && writeLock.tryLock()) {
+            try {
+                if (System.currentTimeMillis() - lastFullRebuildMillis > maxAgeMillis) {
+                    rebuild();
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Catalog snapshot refresh failed, serving version {}", current.getVersion(), e);
+            } finally {
+                writeLock.unlock();
+            }
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> findProductCards(Integer catalogId, String keyword, BigDecimal minPrice,
+            BigDecimal maxPrice, Pageable pageable) {
+        CatalogSnapshot current = getSnapshot();
+        String normalizedKeyword = keyword != null && !keyword.trim().isEmpty()
+                ? keyword.trim().toLowerCase(Locale.ROOT)
+                : null;
+        boolean filtered = normalizedKeyword != null || minPrice != null || maxPrice != null;
+
+        ProductOrder order = presortedOrder(pageable.getSort());
+        if (order == null) {
+            return findSortedProductCards(current, catalogId, normalizedKeyword, minPrice, maxPrice, pageable);
+        }
+
+        // Thứ tự đã được sắp sẵn trong snapshot: chỉ cắt lấy trang, không sắp xếp theo từng yêu cầu
+        List<ProductCardDTO> ordered = current.getProducts(catalogId, order);
+        boolean descending = isDescending(pageable.getSort());
+        int size = ordered.size();
+        long from = pageable.isUnpaged() ? 0 : pageable.getOffset();
+        long to = pageable.isUnpaged() ? Long.MAX_VALUE : from + pageable.getPageSize();
+
+        if (!filtered) {
+            List<ProductCardDTO> content = new ArrayList<>();
+            for (long i = from; i < Math.min(to, size); i++) {
+                content.add(ordered.get(descending ? size - 1 - (int) i : (int) i));
+            }
+            return new PageImpl<>(content, pageable, size);
+        }
+
+        // Lọc theo thứ tự đã sắp: đếm tất cả thẻ khớp nhưng chỉ giữ các thẻ thuộc trang
+        List<ProductCardDTO> content = new ArrayList<>();
+        int total = 0;
+        for (int i = 0; i < size; i++) {
+            ProductCardDTO card = ordered.get(descending ? size - 1 - i : i);
+            if (matches(card, normalizedKeyword, minPrice, maxPrice)) {
+                if (total >= from && total < to) {
+                    content.add(card);
+                }
+                total++;
+            }
+        }
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProductCardDTO> findProductCardsAfter(Integer catalogId, Sort sort, ProductCardDTO after,
+            int limit) {
+        CatalogSnapshot current = getSnapshot();
+
+        ProductOrder order = presortedOrder(sort);
+        if (order != null) {
+            // Tìm vị trí con trỏ bằng tìm kiếm nhị phân trên thứ tự đã sắp sẵn
+            List<ProductCardDTO> ordered = current.getProducts(catalogId, order);
+            Comparator<ProductCardDTO> comparator = order.comparator();
+            List<ProductCardDTO> following = new ArrayList<>(Math.min(limit, ordered.size()));
+            if (isDescending(sort)) {
+                for (int i = firstIndexNotBefore(ordered, comparator, after, false) - 1;
+                        i >= 0 && following.size() < limit; i--) {
+                    following.add(ordered.get(i));
+                }
+            } else {
+                for (int i = firstIndexNotBefore(ordered, comparator, after, true);
+                        i < ordered.size() && following.size() < limit; i++) {
+                    following.add(ordered.get(i));
+                }
+            }
+            return following;
+        }
+
+        List<ProductCardDTO> source = catalogId != null
+                ? current.getProductsByCatalogId(catalogId)
+                : current.getProducts();
+
+        // Chỉ giữ 'limit' thẻ nhỏ nhất đứng sau con trỏ (heap giới hạn), không sắp xếp toàn bộ danh mục
+        Comparator<ProductCardDTO> comparator = productCardComparator(sort);
+        PriorityQueue<ProductCardDTO> nearest = new PriorityQueue<>(limit + 1, comparator.reversed());
+        for (ProductCardDTO card : source) {
+            if (comparator.compare(card, after) > 0) {
+                nearest.offer(card);
+                if (nearest.size() > limit) {
+                    nearest.poll();
+                }
+            }
+        }
+
+        List<ProductCardDTO> following = new ArrayList<>(nearest);
+        following.sort(comparator);
+        return following;
+    }
+
+    /**
+     * Filter and sort product cards for a sort that has no presorted order
+     */
+    private Page<ProductCardDTO> findSortedProductCards(CatalogSnapshot current, Integer catalogId,
+            String normalizedKeyword, BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        List<ProductCardDTO> source = catalogId != null
+                ? current.getProductsByCatalogId(catalogId)
+                : current.getProducts();
+
+        List<ProductCardDTO> matches = new ArrayList<>();
+        for (ProductCardDTO card : source) {
+            if (matches(card, normalizedKeyword, minPrice, maxPrice)) {
+                matches.add(card);
+            }
+        }
+
+        matches.sort(productCardComparator(pageable.getSort()));
+
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(matches, pageable, matches.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        return new PageImpl<>(new ArrayList<>(matches.subList(from, to)), pageable, matches.size());
+    }
+
+    private static boolean matches(ProductCardDTO card, String normalizedKeyword, BigDecimal minPrice,
+            BigDecimal maxPrice) {
+        if (normalizedKeyword != null && (card.getProductName() == null
+                || !card.getProductName().toLowerCase(Locale.ROOT).contains(normalizedKeyword))) {
+            return false;
+        }
+
+        BigDecimal effectivePrice = card.getEffectivePrice();
+        if (minPrice != null && (effectivePrice == null || effectivePrice.compareTo(minPrice) < 0)) {
+            return false;
+        }
+        return maxPrice == null || (effectivePrice != null && effectivePrice.compareTo(maxPrice) <= 0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshProduct(Integer productId) {
+        if (!enabled || productId == null) {
+            return;
+        }
+
+        PendingRefresh pending = pendingRefresh();
+        if (pending != null) {
+            pending.productIds.add(productId);
+        } else {
+            applyRefresh(Set.of(productId), false);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshAll() {
+        if (!enabled) {
+            return;
+        }
+
+        PendingRefresh pending = pendingRefresh();
+        if (pending != null) {
+            pending.fullRebuild = true;
+        } else {
+            applyRefresh(Set.of(), true);
+        }
+    }
+
+    /**
+     * Get the refresh collected for the current transaction, registering it on
+     * first use so all changes of one transaction are applied in one swap
+     *
+     * @return the pending refresh, or null if no transaction is active
+     */
+    private PendingRefresh pendingRefresh() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return null;
+        }
+
+        PendingRefresh pending = (PendingRefresh) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new PendingRefresh();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        return pending;
+    }
+
+    /**
+     * Swap in a new snapshot reflecting the given changes. Changed products are
+     * reloaded while holding the write lock, so a later swap always contains
+     * data at least as new as an earlier one.
+     *
+     * @param productIds  the IDs of the changed products
+     * @param fullRebuild true to reload the whole catalog
+     */
+    private void applyRefresh(Set<Integer> productIds, boolean fullRebuild) {
+        writeLock.lock();
+        try {
+            CatalogSnapshot current = snapshot;
+            if (current == null) {
+                // Chưa có snapshot: sẽ được tạo khi đọc lần đầu
+                return;
+            }
+
+            if (fullRebuild) {
+                rebuild();
+                return;
+            }
+
+            if (productIds.isEmpty()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            List<ProductCardDTO> changed = productRepository.findProductCardsByProductIdIn(productIds);
+            Set<Integer> removed = new HashSet<>(productIds);
+            for (ProductCardDTO card : changed) {
+                removed.remove(card.getProductId());
+            }
+
+            snapshot = current.withProducts(changed, removed, current.getVersion() + 1, System.currentTimeMillis());
+            partialRebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            eventPublisher.publishEvent(new CatalogChangedEvent(current, snapshot, productIds, false));
+        } catch (RuntimeException e) {
+            // Không cập nhật được: buộc lần đọc tiếp theo tạo lại toàn bộ snapshot
+            logger.warn("Catalog snapshot update failed for products {}, scheduling full rebuild", productIds, e);
+            lastFullRebuildMillis = 0;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Load the whole catalog and swap in a new snapshot. Must be called while
+     * holding the write lock.
+     */
+    private void rebuild() {
+        long start = System.nanoTime();
+
+        List<ProductCardDTO> products = productRepository.findAllProductCards();
+        List<Catalog> catalogs = new ArrayList<>();
+        for (Catalog catalog : catalogRepository.findAll(Sort.by("catalogId"))) {
+            // Bản sao tách rời khỏi persistence context (không có danh sách sản phẩm lazy)
+            catalogs.add(new Catalog(catalog.getCatalogId(), catalog.getCatalogName(),
+                    catalog.getCatalogDescription(), catalog.getStatus()));
+        }
+
+        CatalogSnapshot current = snapshot;
+        long version = current == null ? 1 : current.getVersion() + 1;
+        long now = System.currentTimeMillis();
+        snapshot = new CatalogSnapshot(version, now, products, catalogs);
+        lastFullRebuildMillis = now;
+
+        long elapsed = System.nanoTime() - start;
+        fullRebuildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        logger.debug("Catalog snapshot version {} built with {} products in {} ms", version,
+                snapshot.getProductCount(), TimeUnit.NANOSECONDS.toMillis(elapsed));
+        eventPublisher.publishEvent(new CatalogChangedEvent(current, snapshot, Set.of(), true));
+    }
+
+    private double getAgeSeconds() {
+        if (snapshot == null) {
+            return 0;
+        }
+        return (System.currentTimeMillis() - lastFullRebuildMillis) / 1000.0;
+    }
+
+    /**
+     * Find the presorted order matching a sort: unsorted, a single property,
+     * or a property followed by the product ID in the same direction. A
+     * descending sort is the presorted order read backwards, so a single
+     * descending name or price (ties by ascending ID) has no presorted order.
+     *
+     * @return the order, or null if the sort must be applied per request
+     */
+    static ProductOrder presortedOrder(Sort sort) {
+        List<Sort.Order> orders = sort.toList();
+        if (orders.isEmpty()) {
+            return ProductOrder.ID;
+        }
+
+        Sort.Order first = orders.get(0);
+        if (orders.size() > 2) {
+            return null;
+        }
+        if (orders.size() == 2 && (!"productId".equals(orders.get(1).getProperty())
+                || orders.get(1).getDirection() != first.getDirection())) {
+            return null;
+        }
+
+        ProductOrder order;
+        switch (first.getProperty()) {
+            case "productId":
+                return orders.size() == 1 ? ProductOrder.ID : null;
+            case "productName":
+                order = ProductOrder.NAME;
+                break;
+            case "price":
+            case "effectivePrice":
+            case "pd.effectivePrice":
+                order = ProductOrder.PRICE;
+                break;
+            default:
+                return null;
+        }
+        return orders.size() == 2 || first.isAscending() ? order : null;
+    }
+
+    private static boolean isDescending(Sort sort) {
+        return sort.isSorted() && sort.iterator().next().isDescending();
+    }
+
+    /**
+     * Binary search in an ascending list
+     *
+     * @param strict true to skip cards equal to the key
+     * @return the index of the first card after (or, if not strict, at) the key
+     */
+    private static int firstIndexNotBefore(List<ProductCardDTO> ordered, Comparator<ProductCardDTO> comparator,
+            ProductCardDTO key, boolean strict) {
+        int low = 0;
+        int high = ordered.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int compare = comparator.compare(ordered.get(mid), key);
+            if (compare < 0 || (strict && compare == 0)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Build a comparator for the supported sort properties. Price sorts use the
+     * effective price; ties are broken by product ID for stable paging.
+     */
+    static Comparator<ProductCardDTO> productCardComparator(Sort sort) {
+        Comparator<ProductCardDTO> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<ProductCardDTO> next;
+            switch (order.getProperty()) {
+                case "productName":
+                    next = Comparator.comparing(ProductCardDTO::getProductName,
+                            Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER));
+                    break;
+                case "price":
+                case "effectivePrice":
+                case "pd.effectivePrice":
+                    next = Comparator.comparing(ProductCardDTO::getEffectivePrice,
+                            Comparator.nullsLast(Comparator.naturalOrder()));
+                    break;
+                case "quantityInStock":
+                    next = Comparator.comparing(ProductCardDTO::getQuantityInStock,
+                            Comparator.nullsLast(Comparator.naturalOrder()));
+                    break;
+                case "productId":
+                    next = Comparator.comparing(ProductCardDTO::getProductId);
+                    break;
+                default:
+                    continue;
+            }
+            if (order.isDescending()) {
+                next = next.reversed();
+            }
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+        }
+
+        Comparator<ProductCardDTO> byId = Comparator.comparing(ProductCardDTO::getProductId);
+        return comparator == null ? byId : comparator.thenComparing(byId);
+    }
+
+    /**
+     * Changes collected during one transaction, applied after commit
+     */
+    private final class PendingRefresh implements TransactionSynchronization {
+        private final Set<Integer> productIds = new HashSet<>();
+        private boolean fullRebuild;
+
+        @Override
+        public void afterCommit() {
+            applyRefresh(productIds, fullRebuild);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CatalogSnapshotServiceImpl.this);
+        }
+    }
+}
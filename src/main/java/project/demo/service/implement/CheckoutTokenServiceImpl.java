@@ -0,0 +1,205 @@
+package project.demo.service.implement;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.dto.PlacedOrder;
+import project.demo.exception.OrderException;
+import project.demo.model.Order;
+import project.demo.service.ICheckoutTokenService;
+
+/**
+ * Implementation of the ICheckoutTokenService interface.
+ * The CheckoutToken table has the token as primary key. The token row is
+ * inserted first in the order transaction: a second request with the same
+ * token blocks on the key until the first one ends, then fails with a
+ * duplicate key (the first committed) or goes on (the first rolled back).
+ * Placed orders are kept in a bounded LRU map, so the usual repeats (a
+ * double click, a reloaded result page) are answered without a query.
+ */
+@Service
+public class CheckoutTokenServiceImpl implements ICheckoutTokenService {
+
+    // Dưới ngưỡng 5000 khóa để SQL Server không nâng lên khóa cả bảng
+    static final int PURGE_BATCH_SIZE = 2000;
+
+    private static final String INSERT_SQL = "INSERT INTO SouvenirShopDBUser.dbo.CheckoutToken "
+            + "(token, customer_id) VALUES (?, ?)";
+    private static final String SET_ORDER_SQL = "UPDATE SouvenirShopDBUser.dbo.CheckoutToken "
+            + "SET order_id = ? WHERE token = ?";
+    private static final String SELECT_ORDER_SQL = "SELECT order_id FROM SouvenirShopDBUser.dbo.CheckoutToken "
+            + "WHERE token = ? AND customer_id = ?";
+    private static final String PURGE_SQL = "DELETE TOP (?) FROM SouvenirShopDBUser.dbo.CheckoutToken "
+            + "WHERE created_at < DATEADD(DAY, -?, SYSDATETIME())";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int retentionDays;
+    private final int maxEntries;
+
+    private final Counter placedCounter;
+    private final Counter duplicateCounter;
+
+    // Đơn hàng đã đặt theo mã; mọi truy cập đều đồng bộ trên placedOrders
+    private final Map<String, Placed> placedOrders;
+
+    public CheckoutTokenServiceImpl(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.checkout-token.retention-days:7}") int retentionDays,
+            @Value("${app.checkout-token.cache-max-entries:10000}") int maxEntries) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.retentionDays = Math.max(1, retentionDays);
+        this.maxEntries = Math.max(1, maxEntries);
+
+        this.placedCounter = Counter.builder("checkout.orders")
+                .description("Order placements by checkout token, by whether an order was placed")
+                .tag("result", "placed")
+                .register(meterRegistry);
+        this.duplicateCounter = Counter.builder("checkout.orders")
+                .description("Order placements by checkout token, by whether an order was placed")
+                .tag("result", "duplicate")
+                .register(meterRegistry);
+
+        this.placedOrders = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Placed> eldest) {
+                return size() > CheckoutTokenServiceImpl.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String issue() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PlacedOrder placeOnce(String token, Integer customerId, Supplier<Order> placeOrder) {
+        Integer placedOrderId = cachedOrderId(token, customerId);
+        if (placedOrderId != null) {
+            duplicateCounter.increment();
+            return new PlacedOrder(placedOrderId, true);
+        }
+
+        Order order;
+        try {
+            order = transactionTemplate.execute(status -> {
+                // Chèn mã trước tiên: yêu cầu trùng đồng thời chờ ở khóa chính, trước khi đụng đến tồn kho
+                try {
+                    jdbcTemplate.update(INSERT_SQL, token, customerId);
+                } catch (DuplicateKeyException e) {
+                    // Chỉ trùng khóa của chính mã mới là yêu cầu trùng; lỗi trùng khóa khi đặt hàng được ném tiếp
+                    throw new TokenClaimedException();
+                }
+                Order placed = placeOrder.get();
+                jdbcTemplate.update(SET_ORDER_SQL, placed.getOrderId(), token);
+                return placed;
+            });
+        } catch (TokenClaimedException e) {
+            Integer orderId = findOrderId(token, customerId);
+            if (orderId == null) {
+                throw new OrderException("INVALID_CHECKOUT_TOKEN", "Checkout token was already used: " + token);
+            }
+            duplicateCounter.increment();
+            return new PlacedOrder(orderId, true);
+        }
+
+        remember(token, customerId, order.getOrderId());
+        placedCounter.increment();
+        return new PlacedOrder(order.getOrderId(), false);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Integer findOrderId(String token, Integer customerId) {
+        if (token == null || customerId == null) {
+            return null;
+        }
+
+        Integer cached = cachedOrderId(token, customerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        List<Integer> orderIds = jdbcTemplate.queryForList(SELECT_ORDER_SQL, Integer.class, token, customerId);
+        Integer orderId = orderIds.isEmpty() ? null : orderIds.get(0);
+        if (orderId != null) {
+            remember(token, customerId, orderId);
+        }
+        return orderId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int purgeExpired() {
+        int purged = 0;
+        while (true) {
+            int deleted = jdbcTemplate.update(PURGE_SQL, PURGE_BATCH_SIZE, retentionDays);
+            purged += deleted;
+            if (deleted < PURGE_BATCH_SIZE) {
+                return purged;
+            }
+        }
+    }
+
+    private Integer cachedOrderId(String token, Integer customerId) {
+        Placed placed;
+        synchronized (placedOrders) {
+            placed = placedOrders.get(token);
+        }
+        return placed != null && placed.customerId.equals(customerId) ? placed.orderId : null;
+    }
+
+    private void remember(String token, Integer customerId, Integer orderId) {
+        synchronized (placedOrders) {
+            placedOrders.put(token, new Placed(customerId, orderId));
+        }
+    }
+
+    private static final class Placed {
+        private final Integer customerId;
+        private final Integer orderId;
+
+        private Placed(Integer customerId, Integer orderId) {
+            this.customerId = customerId;
+            this.orderId = orderId;
+        }
+    }
+
+    /**
+     * Thrown inside the order transaction when the token row already exists,
+     * so the transaction rolls back and the duplicate is told apart from
+     * failures of the order itself
+     */
+    private static final class TokenClaimedException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private TokenClaimedException() {
+            super(null, null, false, false);
+        }
+    }
+}
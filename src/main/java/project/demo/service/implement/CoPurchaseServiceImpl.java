@@ -0,0 +1,407 @@
+package project.demo.service.implement;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.enums.OrderStatus;
+import project.demo.repository.OrderDetailRepository;
+import project.demo.service.ICoPurchaseService;
+
+/**
+ * Implementation of the ICoPurchaseService interface.
+ * Counts are kept in primitive int maps: per product the number of orders
+ * containing it, and per pair of products the number of orders containing
+ * both. A refresh reads only the order details after the last read order
+ * and recomputes the top-K lists of the products it touched; the lists are
+ * int/float arrays, published as an immutable model that readers use
+ * without locking. Scores of untouched products drift slightly as counts
+ * of their neighbours grow, which the scheduled rebuild corrects.
+ */
+@Service
+public class CoPurchaseServiceImpl implements ICoPurchaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CoPurchaseServiceImpl.class);
+
+    static final int BATCH_ROWS = 5000;
+    /** Đơn hàng quá nhiều sản phẩm (mua sỉ) tạo quá nhiều cặp và không phản ánh sở thích */
+    static final int MAX_ORDER_PRODUCTS = 50;
+
+    private final OrderDetailRepository orderDetailRepository;
+    private final boolean enabled;
+    private final int topK;
+
+    private final Object modelLock = new Object();
+    // Các biến đếm chỉ được dùng khi giữ modelLock
+    private Map<Integer, IntCounter> pairCounts = new HashMap<>();
+    private IntCounter orderCounts = new IntCounter();
+    private int lastOrderId;
+
+    private volatile Model model = Model.EMPTY;
+
+    public CoPurchaseServiceImpl(OrderDetailRepository orderDetailRepository,
+            MeterRegistry meterRegistry,
+            @Value("${app.co-purchase.enabled:true}") boolean enabled,
+            @Value("${app.co-purchase.top-k:20}") int topK) {
+        this.orderDetailRepository = orderDetailRepository;
+        this.enabled = enabled;
+        this.topK = Math.max(1, topK);
+
+        Gauge.builder("recommendation.co-purchase.products", this, service -> service.model.neighbours.size())
+                .description("Products with a co-purchase neighbour list")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Integer> recommend(Collection<Integer> productIds, int limit) {
+        Model current = model;
+        List<Integer> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+
+        List<Neighbours> lists = new ArrayList<>();
+        for (Integer productId : productIds) {
+            Neighbours neighbours = current.neighbours.get(productId);
+            if (neighbours != null) {
+                lists.add(neighbours);
+            }
+        }
+
+        // Trộn k danh sách đã sắp xếp: mỗi bước lấy phần tử đầu có điểm cao nhất
+        Set<Integer> seen = new HashSet<>(productIds);
+        int[] cursors = new int[lists.size()];
+        while (result.size() < limit) {
+            int best = -1;
+            float bestScore = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < cursors.length; i++) {
+                Neighbours list = lists.get(i);
+                if (cursors[i] < list.productIds.length && list.scores[cursors[i]] > bestScore) {
+                    best = i;
+                    bestScore = list.scores[cursors[i]];
+                }
+            }
+            if (best < 0) {
+                break;
+            }
+            int productId = lists.get(best).productIds[cursors[best]++];
+            if (seen.add(productId)) {
+                result.add(productId);
+            }
+        }
+
+        // Không đủ sản phẩm mua cùng (giỏ hàng trống hoặc sản phẩm mới): thêm sản phẩm được đặt nhiều nhất
+        for (int i = 0; i < current.popular.length && result.size() < limit; i++) {
+            if (seen.add(current.popular[i])) {
+                result.add(current.popular[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int refresh() {
+        synchronized (modelLock) {
+            Set<Integer> touched = new HashSet<>();
+            int orders = readOrders(touched);
+            if (!touched.isEmpty()) {
+                model = publish(model.neighbours, touched);
+            }
+            return orders;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void rebuild() {
+        synchronized (modelLock) {
+            Map<Integer, IntCounter> previousPairs = pairCounts;
+            IntCounter previousOrders = orderCounts;
+            int previousLastOrderId = lastOrderId;
+            pairCounts = new HashMap<>();
+            orderCounts = new IntCounter();
+            lastOrderId = 0;
+            try {
+                Set<Integer> touched = new HashSet<>();
+                int orders = readOrders(touched);
+                model = publish(Collections.emptyMap(), touched);
+                logger.info("Co-purchase model rebuilt from {} orders, {} products", orders, model.neighbours.size());
+            } catch (RuntimeException e) {
+                // Giữ mô hình và các biến đếm cũ để lần làm mới sau tiếp tục từ đó
+                pairCounts = previousPairs;
+                orderCounts = previousOrders;
+                lastOrderId = previousLastOrderId;
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Read the orders after lastOrderId in batches and add them to the counts
+     *
+     * @param touched collects the products of the added orders
+     * @return the number of added orders
+     */
+    private int readOrders(Set<Integer> touched) {
+        String cancelled = OrderStatus.CANCELLED.getValue();
+        int orders = 0;
+        while (true) {
+            List<Object[]> rows = orderDetailRepository.findOrderProductsAfter(lastOrderId, cancelled,
+                    PageRequest.of(0, BATCH_ROWS));
+            if (rows.isEmpty()) {
+                return orders;
+            }
+
+            int end = rows.size();
+            if (rows.size() == BATCH_ROWS) {
+                // Đơn hàng cuối của một lô đầy có thể còn dòng ở lô sau, nên được đọc lại ở lô sau
+                int lastId = orderIdOf(rows.get(end - 1));
+                while (end > 0 && orderIdOf(rows.get(end - 1)) == lastId) {
+                    end--;
+                }
+                if (end == 0) {
+                    end = rows.size();
+                }
+            }
+
+            int[] products = new int[MAX_ORDER_PRODUCTS + 1];
+            int start = 0;
+            while (start < end) {
+                int orderId = orderIdOf(rows.get(start));
+                int count = 0;
+                int next = start;
+                while (next < end && orderIdOf(rows.get(next)) == orderId) {
+                    int productId = ((Number) rows.get(next)[1]).intValue();
+                    if (count <= MAX_ORDER_PRODUCTS && !contains(products, count, productId)) {
+                        products[count++] = productId;
+                    }
+                    next++;
+                }
+                if (count <= MAX_ORDER_PRODUCTS) {
+                    addOrder(products, count, touched);
+                    orders++;
+                }
+                lastOrderId = orderId;
+                start = next;
+            }
+
+            if (rows.size() < BATCH_ROWS) {
+                return orders;
+            }
+        }
+    }
+
+    private void addOrder(int[] products, int count, Set<Integer> touched) {
+        for (int i = 0; i < count; i++) {
+            int productId = products[i];
+            orderCounts.add(productId, 1);
+            touched.add(productId);
+            if (count > 1) {
+                IntCounter pairs = pairCounts.computeIfAbsent(productId, id -> new IntCounter());
+                for (int j = 0; j < count; j++) {
+                    if (j != i) {
+                        pairs.add(products[j], 1);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Build a new model from the previous neighbour lists with the lists of
+     * the touched products recomputed
+     */
+    private Model publish(Map<Integer, Neighbours> previous, Set<Integer> touched) {
+        Map<Integer, Neighbours> neighbours = new HashMap<>(previous);
+        for (Integer productId : touched) {
+            Neighbours list = topNeighbours(productId);
+            if (list != null) {
+                neighbours.put(productId, list);
+            } else {
+                neighbours.remove(productId);
+            }
+        }
+        return new Model(neighbours, mostOrdered());
+    }
+
+    /**
+     * The top-K neighbours of a product by cosine similarity:
+     * orders(a and b) / sqrt(orders(a) * orders(b))
+     */
+    private Neighbours topNeighbours(int productId) {
+        IntCounter pairs = pairCounts.get(productId);
+        if (pairs == null || pairs.size == 0) {
+            return null;
+        }
+
+        int[] ids = new int[topK];
+        float[] scores = new float[topK];
+        int size = 0;
+        double productOrders = orderCounts.get(productId);
+        for (int slot = 0; slot < pairs.keys.length; slot++) {
+            int neighbourId = pairs.keys[slot];
+            if (neighbourId == IntCounter.EMPTY) {
+                continue;
+            }
+            float score = (float) (pairs.counts[slot] / Math.sqrt(productOrders * orderCounts.get(neighbourId)));
+            size = insert(ids, scores, size, neighbourId, score);
+        }
+        return new Neighbours(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size));
+    }
+
+    private int[] mostOrdered() {
+        int[] ids = new int[topK];
+        float[] counts = new float[topK];
+        int size = 0;
+        for (int slot = 0; slot < orderCounts.keys.length; slot++) {
+            if (orderCounts.keys[slot] != IntCounter.EMPTY) {
+                size = insert(ids, counts, size, orderCounts.keys[slot], orderCounts.counts[slot]);
+            }
+        }
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Insert into arrays sorted by score, highest first, keeping at most
+     * their length; ties go to the lower product ID
+     *
+     * @return the new number of entries
+     */
+    private static int insert(int[] ids, float[] scores, int size, int id, float score) {
+        int position = size;
+        while (position > 0 && (scores[position - 1] < score
+                || (scores[position - 1] == score && ids[position - 1] > id))) {
+            position--;
+        }
+        if (position >= ids.length) {
+            return size;
+        }
+        int moved = Math.min(size, ids.length - 1) - position;
+        System.arraycopy(ids, position, ids, position + 1, moved);
+        System.arraycopy(scores, position, scores, position + 1, moved);
+        ids[position] = id;
+        scores[position] = score;
+        return Math.min(size + 1, ids.length);
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int orderIdOf(Object[] row) {
+        return ((Number) row[0]).intValue();
+    }
+
+    /**
+     * Neighbour list of one product, sorted by score, highest first
+     */
+    private static final class Neighbours {
+        private final int[] productIds;
+        private final float[] scores;
+
+        private Neighbours(int[] productIds, float[] scores) {
+            this.productIds = productIds;
+            this.scores = scores;
+        }
+    }
+
+    private static final class Model {
+        private static final Model EMPTY = new Model(Collections.emptyMap(), new int[0]);
+
+        private final Map<Integer, Neighbours> neighbours;
+        private final int[] popular;
+
+        private Model(Map<Integer, Neighbours> neighbours, int[] popular) {
+            this.neighbours = neighbours;
+            this.popular = popular;
+        }
+    }
+
+    /**
+     * Open-addressing map from a positive int key to an int count; 0 marks
+     * an empty slot, which is safe because product IDs start at 1
+     */
+    static final class IntCounter {
+        static final int EMPTY = 0;
+
+        private int[] keys = new int[8];
+        private int[] counts = new int[8];
+        private int size;
+
+        void add(int key, int delta) {
+            if ((size + 1) * 4 > keys.length * 3) {
+                grow();
+            }
+            int slot = slotOf(keys, key);
+            if (keys[slot] == EMPTY) {
+                keys[slot] = key;
+                size++;
+            }
+            counts[slot] += delta;
+        }
+
+        int get(int key) {
+            int slot = slotOf(keys, key);
+            return keys[slot] == key ? counts[slot] : 0;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int slot = slotOf(keys, oldKeys[i]);
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int slotOf(int[] keys, int key) {
+            int mask = keys.length - 1;
+            int hash = key * 0x9E3779B9;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != EMPTY && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
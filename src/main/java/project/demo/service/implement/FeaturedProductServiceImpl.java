@@ -0,0 +1,275 @@
+package project.demo.service.implement;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.enums.FeaturedProductStrategy;
+import project.demo.enums.OrderStatus;
+import project.demo.enums.PromotionStatus;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.exception.ResourceNotFoundException;
+import project.demo.repository.OrderDetailRepository;
+import project.demo.repository.ProductPromotionRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IFeaturedProductService;
+
+/**
+ * Implementation of the IFeaturedProductService interface.
+ * The ranked list is kept in a volatile field. It is rebuilt in memory from
+ * the catalog snapshot when a CatalogChangedEvent reports a relevant stock
+ * change (e.g. from ProductDetailServiceImpl), and sales or promotion data is
+ * reloaded from the database by {@link #refresh()} on a schedule.
+ */
+@Service
+public class FeaturedProductServiceImpl implements IFeaturedProductService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FeaturedProductServiceImpl.class);
+
+    /** Lấy dư ứng viên bán chạy để vẫn đủ danh sách khi một số sản phẩm hết hàng */
+    private static final int CANDIDATE_FACTOR = 4;
+
+    private static final Comparator<ProductCardDTO> BY_STOCK = Comparator
+            .comparing(ProductCardDTO::getQuantityInStock, Comparator.reverseOrder())
+            .thenComparing(ProductCardDTO::getProductId);
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final ProductRepository productRepository;
+    private final OrderDetailRepository orderDetailRepository;
+    private final ProductPromotionRepository productPromotionRepository;
+    private final FeaturedProductStrategy strategy;
+    private final int size;
+
+    private final Object refreshLock = new Object();
+    // Danh sách đã xếp hạng; null cho đến lần làm mới đầu tiên
+    private volatile List<ProductCardDTO> featured;
+    // Ứng viên theo thứ hạng doanh số / khuyến mãi từ lần làm mới gần nhất
+    private volatile List<Integer> candidateIds = Collections.emptyList();
+    private long materializedVersion = -1;
+
+    public FeaturedProductServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            ProductRepository productRepository,
+            OrderDetailRepository orderDetailRepository,
+            ProductPromotionRepository productPromotionRepository,
+            @Value("${app.featured.strategy:highest-stock}") String strategy,
+            @Value("${app.featured.size:8}") int size) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productRepository = productRepository;
+        this.orderDetailRepository = orderDetailRepository;
+        this.productPromotionRepository = productPromotionRepository;
+        this.strategy = FeaturedProductStrategy.fromValue(strategy);
+        this.size = Math.max(1, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductCardDTO getFeaturedProduct() {
+        List<ProductCardDTO> products = getFeaturedProducts();
+        if (products.isEmpty()) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "No products found in stock");
+        }
+
+        return products.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProductCardDTO> getFeaturedProducts() {
+        List<ProductCardDTO> current = featured;
+        if (current == null) {
+            refresh();
+            current = featured;
+        }
+
+        return current;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refresh() {
+        // Đọc cơ sở dữ liệu và snapshot trước khi khóa để không chờ khóa ghi của snapshot khi đang giữ refreshLock
+        List<Integer> candidates = loadCandidateIds();
+
+        if (!catalogSnapshotService.isEnabled()) {
+            List<ProductCardDTO> products = strategy == FeaturedProductStrategy.HIGHEST_STOCK
+                    ? inStock(productRepository.findProductCardsByHighestStock(PageRequest.of(0, size)))
+                    : rankFromDatabase(candidates);
+            synchronized (refreshLock) {
+                candidateIds = candidates;
+                featured = Collections.unmodifiableList(products);
+            }
+            return;
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        synchronized (refreshLock) {
+            candidateIds = candidates;
+            materialize(snapshot, true);
+        }
+    }
+
+    /**
+     * Re-rank in memory when the catalog changes. Only the new snapshot is
+     * read; sales and promotion candidates are kept until the next refresh.
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (featured == null || !catalogSnapshotService.isEnabled()) {
+            return;
+        }
+
+        synchronized (refreshLock) {
+            if (event.isFullRebuild() || affectsFeatured(event)) {
+                materialize(event.getCurrent(), false);
+            }
+        }
+    }
+
+    /**
+     * A partial change matters if it touches a featured product or, for the
+     * stock ranking, brings a product in stock at or above the last entry
+     */
+    private boolean affectsFeatured(CatalogChangedEvent event) {
+        List<ProductCardDTO> current = featured;
+        for (Integer productId : event.getChangedProductIds()) {
+            for (ProductCardDTO card : current) {
+                if (card.getProductId().equals(productId)) {
+                    return true;
+                }
+            }
+
+            ProductCardDTO after = event.getCurrent().getProduct(productId);
+            if (after == null || !after.isInStock()) {
+                continue;
+            }
+            if (strategy != FeaturedProductStrategy.HIGHEST_STOCK || current.size() < size
+                    || BY_STOCK.compare(after, current.get(current.size() - 1)) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Build the ranked list from a snapshot. Must hold refreshLock.
+     */
+    private void materialize(CatalogSnapshot snapshot, boolean force) {
+        // Không ghi đè kết quả đã tính từ snapshot mới hơn
+        if (!force && snapshot.getVersion() < materializedVersion) {
+            return;
+        }
+
+        List<ProductCardDTO> products = strategy == FeaturedProductStrategy.HIGHEST_STOCK
+                ? topByStock(snapshot.getProducts())
+                : rankCandidates(snapshot);
+        if (products.isEmpty() && strategy != FeaturedProductStrategy.HIGHEST_STOCK) {
+            // Không có sản phẩm bán chạy / khuyến mãi còn hàng: dùng sản phẩm tồn kho nhiều nhất
+            products = topByStock(snapshot.getProducts());
+        }
+
+        featured = Collections.unmodifiableList(products);
+        materializedVersion = Math.max(materializedVersion, snapshot.getVersion());
+        logger.debug("Featured products ({}) at catalog version {}: {} products", strategy.getValue(),
+                snapshot.getVersion(), products.size());
+    }
+
+    private List<Integer> loadCandidateIds() {
+        switch (strategy) {
+            case BEST_SELLER:
+                return orderDetailRepository.findBestSellingProductIds(OrderStatus.CANCELLED.getValue(),
+                        PageRequest.of(0, size * CANDIDATE_FACTOR));
+            case PROMOTED:
+                return productPromotionRepository.findActivePromotedProductIds(PromotionStatus.ACTIVE.getValue(),
+                        LocalDate.now());
+            default:
+                return Collections.emptyList();
+        }
+    }
+
+    /**
+     * In-stock candidates in rank order (best sellers) or by stock (promoted)
+     */
+    private List<ProductCardDTO> rankCandidates(CatalogSnapshot snapshot) {
+        List<ProductCardDTO> cards = new ArrayList<>();
+        for (Integer productId : candidateIds) {
+            ProductCardDTO card = snapshot.getProduct(productId);
+            if (card != null) {
+                cards.add(card);
+            }
+        }
+        return limitInStock(cards);
+    }
+
+    private List<ProductCardDTO> rankFromDatabase(List<Integer> candidates) {
+        List<ProductCardDTO> products = new ArrayList<>();
+        if (!candidates.isEmpty()) {
+            List<ProductCardDTO> cards = productRepository.findProductCardsByProductIdIn(candidates);
+            // Giữ thứ tự xếp hạng của danh sách ứng viên
+            cards.sort(Comparator.comparingInt(card -> candidates.indexOf(card.getProductId())));
+            products = limitInStock(cards);
+        }
+
+        return products.isEmpty()
+                ? inStock(productRepository.findProductCardsByHighestStock(PageRequest.of(0, size)))
+                : products;
+    }
+
+    private List<ProductCardDTO> limitInStock(List<ProductCardDTO> rankedCards) {
+        List<ProductCardDTO> products = inStock(rankedCards);
+        if (strategy == FeaturedProductStrategy.PROMOTED) {
+            products.sort(BY_STOCK);
+        }
+        return products.size() > size ? new ArrayList<>(products.subList(0, size)) : products;
+    }
+
+    /**
+     * Top 'size' in-stock cards by stock with a bounded heap
+     */
+    private List<ProductCardDTO> topByStock(List<ProductCardDTO> cards) {
+        PriorityQueue<ProductCardDTO> top = new PriorityQueue<>(size + 1, BY_STOCK.reversed());
+        for (ProductCardDTO card : cards) {
+            if (!card.isInStock()) {
+                continue;
+            }
+            top.offer(card);
+            if (top.size() > size) {
+                top.poll();
+            }
+        }
+
+        List<ProductCardDTO> products = new ArrayList<>(top);
+        products.sort(BY_STOCK);
+        return products;
+    }
+
+    private static List<ProductCardDTO> inStock(List<ProductCardDTO> cards) {
+        List<ProductCardDTO> products = new ArrayList<>();
+        for (ProductCardDTO card : cards) {
+            if (card.isInStock()) {
+                products.add(card);
+            }
+        }
+        return products;
+    }
+}
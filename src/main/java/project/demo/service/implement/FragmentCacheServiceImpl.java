@@ -0,0 +1,221 @@
+package project.demo.service.implement;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IFragmentCacheService;
+
+/**
+ * Implementation of the IFragmentCacheService interface.
+ * Rendered HTML is kept in a bounded LRU map. Entity versions come from one
+ * millisecond clock: invalidating an entity gives it a new, higher version,
+ * and keys built with the old version are never read again and age out of
+ * the LRU. Every entity starts at the startup time, since changes made while
+ * the application was down are unknown.
+ * Product and catalog versions follow CatalogChangedEvent, so the cache is
+ * only enabled together with the catalog snapshot.
+ */
+@Service
+public class FragmentCacheServiceImpl implements IFragmentCacheService {
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final boolean enabled;
+    private final int maxEntries;
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+    private final Counter evictionCounter;
+
+    private final Map<String, String> fragments;
+    private final AtomicLong clock = new AtomicLong(System.currentTimeMillis());
+    // "product" -> phiên bản của cả loại, "product:12" -> phiên bản của một sản phẩm
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    // Phiên bản mới nhất trong mỗi loại thực thể
+    private final Map<String, Long> latestVersions = new ConcurrentHashMap<>();
+    // Phiên bản tối thiểu của mọi thực thể, tăng khi xóa toàn bộ cache
+    private volatile long baseVersion = clock.get();
+
+    public FragmentCacheServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            MeterRegistry meterRegistry,
+            @Value("${app.fragment-cache.enabled:true}") boolean enabled,
+            @Value("${app.fragment-cache.max-entries:2000}") int maxEntries) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+
+        this.hitCounter = Counter.builder("fragment.cache.gets")
+                .description("Rendered fragment cache lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("fragment.cache.gets")
+                .description("Rendered fragment cache lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        this.evictionCounter = Counter.builder("fragment.cache.evictions")
+                .description("Fragments evicted because the cache was full")
+                .register(meterRegistry);
+
+        this.fragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() > FragmentCacheServiceImpl.this.maxEntries) {
+                    evictionCounter.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+        Gauge.builder("fragment.cache.size", this, FragmentCacheServiceImpl::size)
+                .description("Number of rendered fragments in the cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled && catalogSnapshotService.isEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String get(String key) {
+        String html;
+        synchronized (fragments) {
+            html = fragments.get(key);
+        }
+
+        if (html != null) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+        }
+        return html;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void put(String key, String html) {
+        synchronized (fragments) {
+            fragments.put(key, html);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getVersion(String entity, Object id) {
+        long typeVersion = Math.max(baseVersion, versions.getOrDefault(entity, 0L));
+        if (id == null) {
+            return typeVersion;
+        }
+        return Math.max(typeVersion, versions.getOrDefault(entity + ":" + id, 0L));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getLatestVersion(String entity) {
+        return Math.max(baseVersion, latestVersions.getOrDefault(entity, 0L));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidate(String entity, Object id) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Tăng phiên bản sau commit để không lưu lại HTML của dữ liệu cũ dưới phiên bản mới
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump(entity, id);
+                }
+            });
+        } else {
+            bump(entity, id);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateAll() {
+        baseVersion = nextVersion();
+        synchronized (fragments) {
+            fragments.clear();
+        }
+    }
+
+    /**
+     * Follow the catalog snapshot. Called while the snapshot is being
+     * swapped, so only versions are changed here. A product change also
+     * changes the version of its catalog, which lists it.
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.isFullRebuild()) {
+            bump(PRODUCT, null);
+            bump(CATALOG, null);
+            return;
+        }
+
+        for (Integer productId : event.getChangedProductIds()) {
+            bump(PRODUCT, productId);
+            ProductCardDTO before = event.getPrevious() == null ? null : event.getPrevious().getProduct(productId);
+            ProductCardDTO after = event.getCurrent().getProduct(productId);
+            if (before != null) {
+                bump(CATALOG, before.getCatalogId());
+            }
+            if (after != null && (before == null || !Objects.equals(before.getCatalogId(), after.getCatalogId()))) {
+                bump(CATALOG, after.getCatalogId());
+            }
+        }
+    }
+
+    private void bump(String entity, Object id) {
+        long version = nextVersion();
+        versions.put(id == null ? entity : entity + ":" + id, version);
+        latestVersions.merge(entity, version, Math::max);
+    }
+
+    /**
+     * Next clock value: the current time, or one more than the last value if
+     * several changes fall in the same millisecond
+     */
+    private long nextVersion() {
+        long now = System.currentTimeMillis();
+        return clock.updateAndGet(last -> Math.max(last + 1, now));
+    }
+
+    private int size() {
+        synchronized (fragments) {
+            return fragments.size();
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.dto.StockPriceSnapshot;
+import project.demo.enums.CartStatus;
+import project.demo.exception.CartException;
+import project.demo.exception.ResourceNotFoundException;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+import project.demo.model.Product;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.CartRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICartService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.IGuestCartService;
+import project.demo.service.IProductDetailService;
+
+/**
+ * Implementation of the IGuestCartService interface.
+ * Guest carts are kept in a bounded LRU map; a cart is written to the
+ * database (a Cart row without customer, keyed by the token in session_id)
+ * once it holds persist-min-items products, and every later change is
+ * written through. A small cart that falls out of the LRU is lost, a
+ * persisted one is loaded again by its token. All changes to one cart are
+ * serialized on the cart, and each write commits before the next change.
+ */
+@Service
+public class GuestCartServiceImpl implements IGuestCartService {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuestCartServiceImpl.class);
+
+    /** Giới hạn số dòng để câu MERGE khi đăng nhập nằm trong giới hạn 2100 tham số của SQL Server */
+    static final int MAX_LINES = 100;
+    static final int PURGE_BATCH_SIZE = 500;
+
+    /** Thời gian nhớ một mã không có giỏ hàng, để huy hiệu giỏ hàng không truy vấn database ở mỗi trang */
+    static final long UNKNOWN_TOKEN_TTL_MILLIS = 60_000;
+
+    // Số lượng gộp bị giới hạn ở tồn kho trừ các lượt giữ hàng còn hạn; sản phẩm hết hàng không được thêm
+    private static final String MERGE_SQL_HEAD = "MERGE SouvenirShopDBUser.dbo.CartItem WITH (HOLDLOCK) AS t "
+            + "USING (SELECT v.product_id, v.quantity, v.unit_price, "
+            + "COALESCE((SELECT MIN(pd.quantity_in_stock) FROM SouvenirShopDBUser.dbo.ProductDetail pd "
+            + "WHERE pd.product_id = v.product_id), 0) "
+            + "- COALESCE((SELECT SUM(r.quantity) FROM SouvenirShopDBUser.dbo.StockReservation r "
+            + "WHERE r.product_id = v.product_id AND r.expires_at > SYSDATETIME()), 0) AS available "
+            + "FROM (VALUES ";
+    private static final String MERGE_SQL_TAIL = ") AS v (product_id, quantity, unit_price)) AS g "
+            + "ON t.cart_id = ? AND t.product_id = g.product_id "
+            + "WHEN MATCHED AND t.quantity < g.available THEN UPDATE SET t.quantity = "
+            + "CASE WHEN t.quantity + g.quantity < g.available THEN t.quantity + g.quantity ELSE g.available END "
+            + "WHEN NOT MATCHED AND g.available > 0 THEN "
+            + "INSERT (cart_id, product_id, quantity, unit_price, is_selected) "
+            + "VALUES (?, g.product_id, CASE WHEN g.quantity < g.available THEN g.quantity ELSE g.available END, "
+            + "g.unit_price, 1);";
+
+    private final CartRepository cartRepository;
+    private final CartItemRepository cartItemRepository;
+    private final ProductRepository productRepository;
+    private final IProductDetailService productDetailService;
+    private final ICartService cartService;
+    private final ICartWriteBehindService cartWriteBehindService;
+    private final ICartBadgeService cartBadgeService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int maxCarts;
+    private final int persistMinItems;
+    private final long ttlDays;
+    private final long idleMillis;
+
+    private final Counter persistedCounter;
+    private final Counter mergedCounter;
+    private final Counter purgedCounter;
+
+    private final Map<String, GuestCart> carts;
+    private final Map<String, Long> unknownTokens;
+
+    public GuestCartServiceImpl(CartRepository cartRepository,
+            CartItemRepository cartItemRepository,
+            ProductRepository productRepository,
+            IProductDetailService productDetailService,
+            ICartService cartService,
+            ICartWriteBehindService cartWriteBehindService,
+            ICartBadgeService cartBadgeService,
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.guest-cart.enabled:true}") boolean enabled,
+            @Value("${app.guest-cart.max-carts:5000}") int maxCarts,
+            @Value("${app.guest-cart.persist-min-items:2}") int persistMinItems,
+            @Value("${app.guest-cart.ttl-days:30}") long ttlDays,
+            @Value("${app.guest-cart.idle-ms:7200000}") long idleMillis) {
+        this.cartRepository = cartRepository;
+        this.cartItemRepository = cartItemRepository;
+        this.productRepository = productRepository;
+        this.productDetailService = productDetailService;
+        this.cartService = cartService;
+        this.cartWriteBehindService = cartWriteBehindService;
+        this.cartBadgeService = cartBadgeService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.maxCarts = Math.max(1, maxCarts);
+        this.persistMinItems = Math.max(1, persistMinItems);
+        this.ttlDays = ttlDays;
+        this.idleMillis = idleMillis;
+
+        this.persistedCounter = Counter.builder("cart.guest.persisted")
+                .description("Guest carts written to the database")
+                .register(meterRegistry);
+        this.mergedCounter = Counter.builder("cart.guest.merged")
+                .description("Guest carts merged into a customer cart on login")
+                .register(meterRegistry);
+        this.purgedCounter = Counter.builder("cart.guest.purged")
+                .description("Expired guest carts deleted from the database")
+                .register(meterRegistry);
+
+        this.carts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, GuestCart> eldest) {
+                return size() > GuestCartServiceImpl.this.maxCarts;
+            }
+        };
+        this.unknownTokens = new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > GuestCartServiceImpl.this.maxCarts;
+            }
+        };
+        Gauge.builder("cart.guest.carts", this, GuestCartServiceImpl::size)
+                .description("Guest carts held in memory")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CartItem addItem(String token, Integer productId, Integer quantity) {
+        if (quantity == null || quantity <= 0) {
+            throw new IllegalArgumentException("Quantity must be greater than zero");
+        }
+
+        StockPriceSnapshot stockAndPrice = productDetailService.getStockAndPrice(productId);
+        if (stockAndPrice == null || !stockAndPrice.exists()) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "Product not found with ID: " + productId);
+        }
+
+        GuestCart cart = find(token, true);
+        synchronized (cart) {
+            GuestLine line = cart.lines.get(productId);
+            if (line == null && cart.lines.size() >= MAX_LINES) {
+                throw new CartException("CART_FULL", "A guest cart can hold at most " + MAX_LINES + " products");
+            }
+
+            int newQuantity = (line != null ? line.quantity : 0) + quantity;
+            if (newQuantity > stockAndPrice.getQuantityInStock()) {
+                throw new CartException("INSUFFICIENT_STOCK", "Requested quantity (" + newQuantity
+                        + ") exceeds available stock (" + stockAndPrice.getQuantityInStock() + ")");
+            }
+            BigDecimal unitPrice = line != null ? line.unitPrice : stockAndPrice.getEffectivePrice();
+
+            // Giỏ hàng đã lưu: ghi thay đổi vào database trước, bộ nhớ chỉ đổi khi ghi thành công
+            if (cart.cartId != null) {
+                writeLine(cart.cartId, productId, newQuantity, unitPrice,
+                        unitPrice.multiply(BigDecimal.valueOf(quantity)));
+            }
+            if (line == null) {
+                line = new GuestLine(unitPrice);
+                cart.lines.put(productId, line);
+            }
+            line.quantity = newQuantity;
+            cart.lastAccessMillis = System.currentTimeMillis();
+
+            if (cart.cartId == null && cart.lines.size() >= persistMinItems) {
+                persist(cart);
+            }
+            return toCartItem(cart, productId, line);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<CartItem> getItems(String token) {
+        if (token == null) {
+            return new ArrayList<>();
+        }
+
+        List<CartItem> items = new ArrayList<>();
+        GuestCart cart = find(token, false);
+        synchronized (cart) {
+            for (Map.Entry<Integer, GuestLine> entry : cart.lines.entrySet()) {
+                items.add(toCartItem(cart, entry.getKey(), entry.getValue()));
+            }
+        }
+        if (items.isEmpty()) {
+            return items;
+        }
+
+        // Tải sản phẩm của tất cả các dòng bằng một truy vấn
+        List<Integer> productIds = new ArrayList<>();
+        for (CartItem item : items) {
+            productIds.add(item.getProductId());
+        }
+        Map<Integer, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(productIds)) {
+            products.put(product.getProductId(), product);
+        }
+        items.removeIf(item -> !products.containsKey(item.getProductId()));
+        for (CartItem item : items) {
+            item.setProduct(products.get(item.getProductId()));
+        }
+        return items;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getItemCount(String token) {
+        if (token == null) {
+            return 0;
+        }
+
+        GuestCart cart = find(token, false);
+        synchronized (cart) {
+            return cart.lines.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int mergeInto(String token, Integer customerId) {
+        if (token == null || customerId == null) {
+            return 0;
+        }
+
+        GuestCart cart = find(token, false);
+        synchronized (cart) {
+            if (cart.lines.isEmpty()) {
+                remove(token);
+                return 0;
+            }
+
+            // Thay đổi đang chờ ghi đặt số lượng tuyệt đối nên phải ghi trước khi cộng dồn. Việc ghi dùng
+            // giao dịch riêng nên chạy trước giao dịch gộp, giao dịch này có thể giữ khóa trên giỏ hàng
+            if (cartWriteBehindService.isEnabled()) {
+                cartRepository.findByCustomerIdAndStatus(customerId, CartStatus.ACTIVE.getValue())
+                        .ifPresent(customerCart -> cartWriteBehindService.flush(customerCart.getCartId()));
+            }
+
+            List<Object> lineArgs = new ArrayList<>();
+            StringBuilder sql = new StringBuilder(MERGE_SQL_HEAD);
+            for (Map.Entry<Integer, GuestLine> entry : cart.lines.entrySet()) {
+                sql.append(lineArgs.isEmpty() ? "(?, ?, ?)" : ", (?, ?, ?)");
+                lineArgs.add(entry.getKey());
+                lineArgs.add(entry.getValue().quantity);
+                lineArgs.add(entry.getValue().unitPrice);
+            }
+            sql.append(MERGE_SQL_TAIL);
+
+            // Kích hoạt giỏ hàng của khách hàng và gộp trong cùng một giao dịch
+            Integer guestCartId = cart.cartId;
+            Integer mergedLines = transactionTemplate.execute(status -> {
+                Integer cartId = cartService.getOrCreateCart(customerId).getCartId();
+                List<Object> args = new ArrayList<>(lineArgs);
+                args.add(cartId);
+                args.add(cartId);
+                int rows = jdbcTemplate.update(sql.toString(), args.toArray());
+                if (guestCartId != null) {
+                    cartItemRepository.deleteByCartIdIn(List.of(guestCartId));
+                    cartRepository.deleteByCartIdIn(List.of(guestCartId));
+                }
+                cartService.calculateTotal(cartId);
+                return rows;
+            });
+            cartBadgeService.evict(customerId);
+
+            int merged = mergedLines != null ? mergedLines : 0;
+            cart.lines.clear();
+            cart.cartId = null;
+            remove(token);
+            mergedCounter.increment();
+            return merged;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int purgeExpired() {
+        // Giỏ hàng nhỏ chỉ có trong bộ nhớ nên hết hạn theo thời gian không hoạt động
+        long idleBefore = System.currentTimeMillis() - idleMillis;
+        synchronized (carts) {
+            carts.values().removeIf(cart -> cart.lastAccessMillis < idleBefore);
+            long now = System.currentTimeMillis();
+            unknownTokens.values().removeIf(unknownUntil -> unknownUntil <= now);
+        }
+
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(ttlDays);
+        int purged = 0;
+        List<Integer> cartIds;
+        do {
+            cartIds = cartRepository.findExpiredGuestCartIds(cutoff, PageRequest.of(0, PURGE_BATCH_SIZE));
+            if (cartIds.isEmpty()) {
+                break;
+            }
+
+            // Mỗi lô xóa các mục rồi các giỏ hàng bằng hai câu lệnh trong một giao dịch ngắn
+            List<Integer> batch = cartIds;
+            transactionTemplate.executeWithoutResult(status -> {
+                cartItemRepository.deleteByCartIdIn(batch);
+                cartRepository.deleteByCartIdIn(batch);
+            });
+            purged += batch.size();
+
+            Set<Integer> deleted = new HashSet<>(batch);
+            synchronized (carts) {
+                carts.values().removeIf(cart -> cart.cartId != null && deleted.contains(cart.cartId));
+            }
+        } while (cartIds.size() == PURGE_BATCH_SIZE);
+
+        purgedCounter.increment(purged);
+        return purged;
+    }
+
+    /**
+     * Get the cart of a token from memory, loading a persisted cart when it
+     * is not there. An empty cart is only kept in memory when create is set,
+     * so reads of unknown tokens do not fill the store; such a token is
+     * remembered for a short time instead, so reads of it skip the database.
+     */
+    private GuestCart find(String token, boolean create) {
+        synchronized (carts) {
+            GuestCart cart = carts.get(token);
+            if (cart != null) {
+                return cart;
+            }
+            Long unknownUntil = unknownTokens.get(token);
+            if (!create && unknownUntil != null && unknownUntil > System.currentTimeMillis()) {
+                return new GuestCart(token);
+            }
+        }
+
+        GuestCart loaded = load(token);
+        synchronized (carts) {
+            if (loaded.cartId == null && !create) {
+                unknownTokens.put(token, System.currentTimeMillis() + UNKNOWN_TOKEN_TTL_MILLIS);
+                return loaded;
+            }
+            unknownTokens.remove(token);
+            GuestCart existing = carts.putIfAbsent(token, loaded);
+            return existing != null ? existing : loaded;
+        }
+    }
+
+    private GuestCart load(String token) {
+        GuestCart cart = new GuestCart(token);
+        Optional<Cart> stored = cartRepository.findBySessionIdAndCustomerIdIsNull(token);
+        if (stored.isPresent() && CartStatus.ACTIVE.getValue().equals(stored.get().getStatus())) {
+            cart.cartId = stored.get().getCartId();
+            for (CartItem item : cartItemRepository.findByCartId(cart.cartId)) {
+                GuestLine line = new GuestLine(item.getUnitPrice());
+                line.quantity = item.getQuantity();
+                cart.lines.put(item.getProductId(), line);
+            }
+        }
+        return cart;
+    }
+
+    /**
+     * Write a guest cart that became large enough to keep. A failure is
+     * logged and the cart stays in memory; the next change tries again.
+     */
+    private void persist(GuestCart cart) {
+        try {
+            Integer cartId = transactionTemplate.execute(status -> {
+                BigDecimal total = BigDecimal.ZERO;
+                for (GuestLine line : cart.lines.values()) {
+                    total = total.add(line.lineTotal());
+                }
+
+                Cart entity = new Cart();
+                entity.setStatus(CartStatus.ACTIVE.getValue());
+                entity.setSessionId(cart.token);
+                entity.setTotalAmount(total);
+                entity.setLastActivityAt(LocalDateTime.now());
+                entity = cartRepository.save(entity);
+
+                List<CartItem> items = new ArrayList<>();
+                for (Map.Entry<Integer, GuestLine> entry : cart.lines.entrySet()) {
+                    items.add(new CartItem(null, entity.getCartId(), entry.getKey(), entry.getValue().quantity,
+                            entry.getValue().unitPrice, null, true));
+                }
+                cartItemRepository.saveAll(items);
+                return entity.getCartId();
+            });
+            cart.cartId = cartId;
+            persistedCounter.increment();
+        } catch (RuntimeException e) {
+            logger.warn("Could not persist guest cart, keeping it in memory", e);
+        }
+    }
+
+    private void writeLine(Integer cartId, Integer productId, int quantity, BigDecimal unitPrice, BigDecimal delta) {
+        transactionTemplate.executeWithoutResult(status -> {
+            CartItem item = cartItemRepository.findByCartIdAndProductId(cartId, productId)
+                    .orElseGet(() -> new CartItem(null, cartId, productId, quantity, unitPrice, null, true));
+            item.setQuantity(quantity);
+            cartItemRepository.save(item);
+            cartRepository.adjustTotalAmount(cartId, delta);
+            cartRepository.touch(cartId, LocalDateTime.now());
+        });
+    }
+
+    private static CartItem toCartItem(GuestCart cart, Integer productId, GuestLine line) {
+        return new CartItem(null, cart.cartId, productId, line.quantity, line.unitPrice, null, true);
+    }
+
+    private void remove(String token) {
+        synchronized (carts) {
+            carts.remove(token);
+        }
+    }
+
+    private int size() {
+        synchronized (carts) {
+            return carts.size();
+        }
+    }
+
+    private static final class GuestCart {
+        private final String token;
+        // Thứ tự thêm vào giỏ được giữ nguyên khi hiển thị
+        private final Map<Integer, GuestLine> lines = new LinkedHashMap<>();
+        private Integer cartId;
+        private volatile long lastAccessMillis = System.currentTimeMillis();
+
+        private GuestCart(String token) {
+            this.token = token;
+        }
+    }
+
+    private static final class GuestLine {
+        private final BigDecimal unitPrice;
+        private int quantity;
+
+        private GuestLine(BigDecimal unitPrice) {
+            this.unitPrice = unitPrice;
+        }
+
+        private BigDecimal lineTotal() {
+            return unitPrice.multiply(BigDecimal.valueOf(quantity));
+        }
+    }
+}
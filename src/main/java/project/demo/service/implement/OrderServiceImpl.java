@@ -4,12 +4,17 @@ import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import project.demo.dto.KeysetPage;
 import project.demo.enums.CartStatus;
 import project.demo.enums.OrderStatus;
 import project.demo.enums.PaymentStatus;
@@ -35,8 +40,12 @@ import project.demo.repository.PaymentMethodRepository;
 import project.demo.repository.PaymentRepository;
 import project.demo.repository.ProductRepository;
 import project.demo.repository.ShipmentRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICartWriteBehindService;
 import project.demo.service.IOrderService;
 import project.demo.service.IProductDetailService;
+import project.demo.service.IStockReservationService;
+import project.demo.util.KeysetCursor;
 
 /**
  * Implementation of the IOrderService interface for managing Order entities
@@ -44,6 +53,9 @@ import project.demo.service.IProductDetailService;
 @Service
 public class OrderServiceImpl implements IOrderService {
 
+    /** Con trỏ lịch sử đơn hàng luôn theo ngày đặt giảm dần */
+    private static final String ORDER_CURSOR_SORT = "orderDate";
+
     private final OrderRepository orderRepository;
     private final OrderDetailRepository orderDetailRepository;
     private final OrderTimelineEventRepository orderTimelineEventRepository;
@@ -55,6 +67,9 @@ public class OrderServiceImpl implements IOrderService {
     private final PaymentRepository paymentRepository;
     private final ShipmentRepository shipmentRepository;
     private final IProductDetailService productDetailService;
+    private final ICartWriteBehindService cartWriteBehindService;
+    private final ICartBadgeService cartBadgeService;
+    private final IStockReservationService stockReservationService;
 
     public OrderServiceImpl(OrderRepository orderRepository,
             OrderDetailRepository orderDetailRepository,
@@ -66,7 +81,10 @@ public class OrderServiceImpl implements IOrderService {
             PaymentMethodRepository paymentMethodRepository,
             PaymentRepository paymentRepository,
             ShipmentRepository shipmentRepository,
-            IProductDetailService productDetailService) {
+            IProductDetailService productDetailService,
+            ICartWriteBehindService cartWriteBehindService,
+            ICartBadgeService cartBadgeService,
+            IStockReservationService stockReservationService) {
         this.orderRepository = orderRepository;
         this.orderDetailRepository = orderDetailRepository;
         this.orderTimelineEventRepository = orderTimelineEventRepository;
@@ -78,6 +96,9 @@ public class OrderServiceImpl implements IOrderService {
         this.paymentRepository = paymentRepository;
         this.shipmentRepository = shipmentRepository;
         this.productDetailService = productDetailService;
+        this.cartWriteBehindService = cartWriteBehindService;
+        this.cartBadgeService = cartBadgeService;
+        this.stockReservationService = stockReservationService;
     }
 
     @Override
@@ -90,9 +111,39 @@ public class OrderServiceImpl implements IOrderService {
         return orderRepository.findByCustomerId(customerId);
     }
 
+    @Override
+    public KeysetPage<Order> findByCustomerIdAfter(Integer customerId, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+
+        // Lấy thêm một đơn để biết còn trang sau, không cần truy vấn COUNT
+        Pageable limit = PageRequest.of(0, size + 1);
+        List<Order> rows;
+        if (cursor == null) {
+            rows = orderRepository.findLatestByCustomerId(customerId, limit);
+        } else {
+            KeysetCursor after = KeysetCursor.decode(cursor);
+            if (!after.matches(ORDER_CURSOR_SORT, true)) {
+                throw new IllegalArgumentException("Invalid order cursor");
+            }
+            rows = orderRepository.findByCustomerIdBefore(customerId, after.getKeyAsDateTime(), after.getId(), limit);
+        }
+
+        return KeysetPage.of(rows, size,
+                order -> KeysetCursor.of(ORDER_CURSOR_SORT, true, order.getOrderDate(), order.getOrderId()).encode());
+    }
+
     @Override
     @Transactional
     public Order createFromCart(Integer cartId, Integer addressId, Integer paymentMethodId, String shippingMethod, String note) {
+        return createFromCart(cartId, addressId, paymentMethodId, shippingMethod, note, null);
+    }
+
+    @Override
+    @Transactional
+    public Order createFromCart(Integer cartId, Integer addressId, Integer paymentMethodId, String shippingMethod, String note,
+            String reservationReference) {
         Cart cart = cartRepository.findById(cartId)
                 .orElseThrow(() -> new ResourceNotFoundException("Cart not found"));
         
@@ -107,6 +158,11 @@ public class OrderServiceImpl implements IOrderService {
         }
 
         List<CartItem> cartItems = cartItemRepository.findByCartId(cartId);
+        if (cartWriteBehindService.isEnabled()) {
+            // Đơn hàng dùng giá trị mới nhất của giỏ hàng, sau đó các thay đổi đang chờ được ghi xuống
+            cartItems = cartWriteBehindService.overlay(cartItems);
+            cartWriteBehindService.flush(cartId);
+        }
         if (cartItems.isEmpty()) {
             throw new OrderException("Cart is empty");
         }
@@ -125,6 +181,7 @@ public class OrderServiceImpl implements IOrderService {
         
         BigDecimal subtotal = BigDecimal.ZERO;
         List<OrderDetail> orderDetails = new ArrayList<>();
+        Map<Integer, Integer> stockQuantities = new HashMap<>();
         Order savedOrder = orderRepository.save(order);
         
         for (CartItem item : cartItems) {
@@ -142,14 +199,18 @@ public class OrderServiceImpl implements IOrderService {
             
             orderDetails.add(detail);
             subtotal = subtotal.add(detail.getSubtotal());
-            
-            // Giảm số lượng trong kho sau khi thanh toán
-            try {
-                productDetailService.decreaseStockQuantity(item.getProductId(), item.getQuantity());
-            } catch (Exception e) {
-                throw new OrderException("Could not decrease stock quantity for product ID " + 
-                    item.getProductId() + ": " + e.getMessage());
+            stockQuantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        
+        // Giảm số lượng trong kho của mọi sản phẩm cùng lúc; thiếu hàng ở một sản phẩm thì cả đơn hàng bị rollback
+        try {
+            if (reservationReference != null) {
+                // Xóa lượt giữ hàng của chính đơn này trước để phần giữ không bị tính là hàng của người khác
+                stockReservationService.commit(reservationReference);
             }
+            productDetailService.decreaseStockQuantities(stockQuantities);
+        } catch (Exception e) {
+            throw new OrderException("Could not decrease stock quantity: " + e.getMessage());
         }
         
         savedOrder.setSubtotal(subtotal);
@@ -181,8 +242,12 @@ public class OrderServiceImpl implements IOrderService {
         System.out.println("Cập nhật giỏ hàng với ID " + cart.getCartId() + " từ trạng thái '" + cart.getStatus() + "' thành '" + newStatus + "'");
         
         // Trực tiếp cập nhật giỏ hàng - nếu có lỗi, transaction sẽ rollback hoàn toàn
-        cart.setStatus(newStatus);
-        cartRepository.save(cart);
+        // Chỉ cập nhật trạng thái và thời điểm hoạt động: thực thể cart được đọc trước khi ghi bộ nhớ đệm,
+        // lưu cả thực thể sẽ ghi đè total_amount vừa được ghi bằng giá trị cũ
+        // Giỏ hàng đã đặt hàng được giữ lại một thời gian rồi bị xóa bởi CartSweeperScheduler
+        cartRepository.updateStatusAndActivity(cart.getCartId(), newStatus, LocalDateTime.now());
+        // Giỏ hàng đã đặt hàng không còn hoạt động nên biểu tượng giỏ hàng về 0
+        cartBadgeService.evict(cart.getCustomerId());
         System.out.println("Đã cập nhật trạng thái giỏ hàng thành công.");
         
         return savedOrder;
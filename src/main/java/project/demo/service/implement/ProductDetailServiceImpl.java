@@ -1,32 +1,98 @@
 package project.demo.service.implement;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.dto.StockPriceSnapshot;
+import project.demo.event.CatalogChangedEvent;
 import project.demo.exception.ProductDetailException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Product;
 import project.demo.model.ProductDetail;
 import project.demo.repository.ProductDetailRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
 import project.demo.service.IProductDetailService;
+import project.demo.service.IStockReservationService;
 
 /**
- * Implementation of the IProductDetailService interface for managing ProductDetail entities
+ * Implementation of the IProductDetailService interface for managing ProductDetail entities.
+ * Stock and price snapshots are cached per product for a short time. Every
+ * change of a product's details made here gives the product a new version
+ * after commit, and a cached snapshot is only used while its version is
+ * current; price changes made elsewhere are followed through
+ * CatalogChangedEvent, and the TTL bounds anything else.
  */
 @Service
 public class ProductDetailServiceImpl implements IProductDetailService {
 
+    // Chỉ trừ khi phần còn lại đủ cho các lượt giữ hàng còn hạn; câu lệnh khóa dòng tồn kho đến khi giao dịch kết thúc
+    private static final String DECREASE_STOCK_SQL = "UPDATE SouvenirShopDBUser.dbo.ProductDetail "
+            + "SET quantity_in_stock = quantity_in_stock - ? "
+            + "WHERE product_id = ? AND quantity_in_stock - ? >= "
+            + "(SELECT COALESCE(SUM(r.quantity), 0) FROM SouvenirShopDBUser.dbo.StockReservation r "
+            + "WHERE r.product_id = ? AND r.expires_at > SYSDATETIME())";
+
     private final ProductDetailRepository productDetailRepository;
     private final ProductRepository productRepository;
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final IStockReservationService stockReservationService;
+    private final JdbcTemplate jdbcTemplate;
+    private final long snapshotTtlNanos;
+
+    private final Counter snapshotHitCounter;
+    private final Counter snapshotMissCounter;
+
+    private final Map<Integer, CachedSnapshot> snapshots = new ConcurrentHashMap<>();
+    // Phiên bản của từng sản phẩm, tăng sau mỗi lần commit thay đổi tồn kho hoặc giá
+    private final Map<Integer, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    // Phiên bản tối thiểu của mọi sản phẩm, tăng khi toàn bộ danh mục được tải lại
+    private volatile long baseVersion;
 
     public ProductDetailServiceImpl(ProductDetailRepository productDetailRepository,
-                                   ProductRepository productRepository) {
+                                   ProductRepository productRepository,
+                                   ICatalogSnapshotService catalogSnapshotService,
+                                   IStockReservationService stockReservationService,
+                                   JdbcTemplate jdbcTemplate,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${app.stock-price-cache.ttl-ms:5000}") long snapshotTtlMillis) {
         this.productDetailRepository = productDetailRepository;
         this.productRepository = productRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.stockReservationService = stockReservationService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.snapshotTtlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, snapshotTtlMillis));
+
+        this.snapshotHitCounter = Counter.builder("product.stock-price.gets")
+                .description("Stock and price snapshot lookups")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.snapshotMissCounter = Counter.builder("product.stock-price.gets")
+                .description("Stock and price snapshot lookups")
+                .tag("result", "miss")
+                .register(meterRegistry);
     }
 
     /**
@@ -81,7 +147,14 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Validate discount price
         validateDiscountPrice(productDetail.getDiscountPrice(), product.getPrice());
         
-        return productDetailRepository.save(productDetail);
+        // Keep the denormalized effective price in sync for SQL-side filtering and sorting
+        productDetail.refreshEffectivePrice(product.getPrice());
+        
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
     }
 
     /**
@@ -110,7 +183,14 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Validate discount price
         validateDiscountPrice(productDetail.getDiscountPrice(), product.getPrice());
         
-        return productDetailRepository.save(productDetail);
+        // Keep the denormalized effective price in sync for SQL-side filtering and sorting
+        productDetail.refreshEffectivePrice(product.getPrice());
+        
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
     }
 
     /**
@@ -132,8 +212,13 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         
         // Update discount price
         productDetail.setDiscountPrice(discountPrice);
+        productDetail.refreshEffectivePrice(product.getPrice());
+        
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
         
-        return productDetailRepository.save(productDetail);
+        return savedDetail;
     }
 
     /**
@@ -159,7 +244,11 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Update quantity
         productDetail.setQuantityInStock(quantity);
         
-        return productDetailRepository.save(productDetail);
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
     }
 
     /**
@@ -185,7 +274,11 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Update image URL
         productDetail.setImageUrl(imageUrl);
         
-        return productDetailRepository.save(productDetail);
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
     }
 
     /**
@@ -280,6 +373,24 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         return productDetail.get().getQuantityInStock() != null ? 
                productDetail.get().getQuantityInStock() : 0;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, Integer> getQuantitiesInStock(Collection<Integer> productIds) {
+        Map<Integer, Integer> stock = new HashMap<>();
+        if (productIds == null || productIds.isEmpty()) {
+            return stock;
+        }
+        
+        for (Object[] row : productDetailRepository.findStockByProductIds(productIds)) {
+            Integer quantity = row[1] != null ? (Integer) row[1] : 0;
+            // Nếu một sản phẩm có nhiều dòng chi tiết thì giữ dòng đầu tiên như findByProductId
+            stock.putIfAbsent((Integer) row[0], quantity);
+        }
+        return stock;
+    }
     
     /**
      * {@inheritDoc}
@@ -320,7 +431,62 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Update quantity
         productDetail.setQuantityInStock(currentStock - quantity);
         
-        return productDetailRepository.save(productDetail);
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    @Transactional
+    public void decreaseStockQuantities(Map<Integer, Integer> quantities) {
+        // Sắp xếp theo ID sản phẩm để mọi giao dịch khóa các dòng tồn kho theo cùng thứ tự, tránh deadlock
+        Map<Integer, Integer> ordered = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity < 0) {
+                throw new ProductDetailException(
+                    "INVALID_QUANTITY",
+                    "Decrement quantity cannot be negative: " + quantity
+                );
+            }
+            if (quantity > 0) {
+                ordered.merge(entry.getKey(), quantity, Integer::sum);
+            }
+        }
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> batchArgs = new ArrayList<>(ordered.size());
+        for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+            batchArgs.add(new Object[] { entry.getValue(), entry.getKey(), entry.getValue(), entry.getKey() });
+        }
+        int[] updated = jdbcTemplate.batchUpdate(DECREASE_STOCK_SQL, batchArgs);
+
+        List<Integer> shortProductIds = new ArrayList<>();
+        int index = 0;
+        for (Integer productId : ordered.keySet()) {
+            if (updated[index++] == 0) {
+                shortProductIds.add(productId);
+            }
+        }
+        if (!shortProductIds.isEmpty()) {
+            // Các dòng đã trừ trong lô được hoàn lại khi giao dịch rollback
+            throw new ProductDetailException(
+                "INSUFFICIENT_STOCK",
+                "Not enough stock for product IDs: " + shortProductIds
+            );
+        }
+
+        for (Integer productId : ordered.keySet()) {
+            catalogSnapshotService.refreshProduct(productId);
+            evictStockAndPrice(productId);
+        }
     }
 
     /**
@@ -354,7 +520,150 @@ public class ProductDetailServiceImpl implements IProductDetailService {
         // Update quantity
         productDetail.setQuantityInStock(currentStock + quantity);
         
-        return productDetailRepository.save(productDetail);
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+        evictStockAndPrice(productId);
+        
+        return savedDetail;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StockPriceSnapshot getStockAndPrice(Integer productId) {
+        return getStockAndPrice(List.of(productId)).get(productId);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, StockPriceSnapshot> getStockAndPrice(Collection<Integer> productIds) {
+        Map<Integer, StockPriceSnapshot> result = new HashMap<>();
+        Set<Integer> missing = new LinkedHashSet<>();
+        long now = System.nanoTime();
+        for (Integer productId : productIds) {
+            CachedSnapshot cached = snapshots.get(productId);
+            if (cached != null && now - cached.loadedAtNanos <= snapshotTtlNanos
+                    && cached.snapshot.getVersion() == versionOf(productId)) {
+                result.put(productId, cached.snapshot);
+            } else {
+                missing.add(productId);
+            }
+        }
+        snapshotHitCounter.increment(result.size());
+        if (missing.isEmpty()) {
+            return withoutReservations(result);
+        }
+        snapshotMissCounter.increment(missing.size());
+
+        // Ghi nhận phiên bản trước khi truy vấn: nếu sản phẩm thay đổi trong lúc đọc thì kết quả không được dùng lại
+        Map<Integer, Long> versionsBefore = new HashMap<>();
+        for (Integer productId : missing) {
+            versionsBefore.put(productId, versionOf(productId));
+        }
+
+        Map<Integer, StockPriceSnapshot> loaded = new HashMap<>();
+        for (Object[] row : productDetailRepository.findStockAndPriceByProductIds(missing)) {
+            Integer productId = (Integer) row[0];
+            Integer quantity = row[1] != null ? (Integer) row[1] : 0;
+            // Nếu một sản phẩm có nhiều dòng chi tiết thì giữ dòng đầu tiên như findByProductId
+            loaded.putIfAbsent(productId, new StockPriceSnapshot(productId, true, quantity, (BigDecimal) row[2],
+                    versionsBefore.get(productId)));
+        }
+
+        long loadedAt = System.nanoTime();
+        for (Integer productId : missing) {
+            StockPriceSnapshot snapshot = loaded.get(productId);
+            if (snapshot == null) {
+                // Không lưu sản phẩm không tồn tại để ID tùy ý không làm cache phình to
+                result.put(productId, StockPriceSnapshot.missing(productId, versionsBefore.get(productId)));
+                continue;
+            }
+            result.put(productId, snapshot);
+            if (snapshotTtlNanos > 0) {
+                snapshots.put(productId, new CachedSnapshot(snapshot, loadedAt));
+            }
+        }
+        return withoutReservations(result);
+    }
+
+    /**
+     * Subtract the reserved quantities from the stock of the snapshots; the
+     * cache keeps the stock itself, as reservations come and go without a
+     * change of the product. The reserved quantities are read from the
+     * reservation table on every call, so they count the reservations made
+     * through any instance.
+     */
+    private Map<Integer, StockPriceSnapshot> withoutReservations(Map<Integer, StockPriceSnapshot> result) {
+        Map<Integer, Integer> reservedQuantities = stockReservationService.getReservedQuantities(result.keySet());
+        for (Map.Entry<Integer, StockPriceSnapshot> entry : result.entrySet()) {
+            int reserved = reservedQuantities.getOrDefault(entry.getKey(), 0);
+            if (reserved > 0) {
+                StockPriceSnapshot snapshot = entry.getValue();
+                entry.setValue(new StockPriceSnapshot(snapshot.getProductId(), snapshot.exists(),
+                        Math.max(0, snapshot.getQuantityInStock() - reserved), snapshot.getEffectivePrice(),
+                        snapshot.getVersion()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Follow price changes made outside this service (e.g. a product's
+     * regular price), when the catalog snapshot reports them.
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.isFullRebuild()) {
+            baseVersion = clock.incrementAndGet();
+            versions.clear();
+            snapshots.clear();
+            return;
+        }
+
+        for (Integer productId : event.getChangedProductIds()) {
+            bumpVersion(productId);
+        }
+    }
+
+    /**
+     * Forget the stock and price snapshot of a product once the current
+     * transaction commits (immediately when there is no transaction)
+     */
+    private void evictStockAndPrice(Integer productId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bumpVersion(productId);
+                }
+            });
+        } else {
+            bumpVersion(productId);
+        }
+    }
+
+    private void bumpVersion(Integer productId) {
+        versions.put(productId, clock.incrementAndGet());
+        snapshots.remove(productId);
+    }
+
+    private long versionOf(Integer productId) {
+        return Math.max(baseVersion, versions.getOrDefault(productId, 0L));
+    }
+
+    private static final class CachedSnapshot {
+        private final StockPriceSnapshot snapshot;
+        private final long loadedAtNanos;
+
+        private CachedSnapshot(StockPriceSnapshot snapshot, long loadedAtNanos) {
+            this.snapshot = snapshot;
+            this.loadedAtNanos = loadedAtNanos;
+        }
     }
 
     /**
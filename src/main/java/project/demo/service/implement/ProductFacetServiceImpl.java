@@ -0,0 +1,134 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Locale;
+
+import org.springframework.stereotype.Service;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.PriceBucket;
+import project.demo.dto.ProductCardDTO;
+import project.demo.dto.ProductFacets;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductFacetService;
+import project.demo.service.IProductSearchService;
+
+/**
+ * Implementation of the IProductFacetService interface.
+ * All counts come from one pass over the catalog snapshot: each card is
+ * tested once against the catalog, search and price filters and added to
+ * the counters whose facet it belongs to. No query is issued per facet value.
+ */
+@Service
+public class ProductFacetServiceImpl implements IProductFacetService {
+
+    /** Các khoảng giá của bộ lọc, trùng với tham số priceRange của trang sản phẩm */
+    private static final List<PriceBucket> PRICE_BUCKETS = List.of(
+            new PriceBucket(new BigDecimal("0"), new BigDecimal("100000"), "Dưới 100.000đ"),
+            new PriceBucket(new BigDecimal("100000"), new BigDecimal("300000"), "100.000đ - 300.000đ"),
+            new PriceBucket(new BigDecimal("300000"), new BigDecimal("500000"), "300.000đ - 500.000đ"),
+            new PriceBucket(new BigDecimal("500000"), new BigDecimal("999999999"), "Trên 500.000đ"));
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final IProductSearchService productSearchService;
+
+    public ProductFacetServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            IProductSearchService productSearchService) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productSearchService = productSearchService;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return catalogSnapshotService.isEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<PriceBucket> getPriceBuckets() {
+        return PRICE_BUCKETS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductFacets computeFacets(Integer catalogId, String keyword, BigDecimal minPrice,
+            BigDecimal maxPrice) {
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+
+        // Từ khóa chỉ áp dụng khi không chọn danh mục, giống như trang danh sách
+        boolean hasKeyword = catalogId == null && keyword != null && !keyword.trim().isEmpty();
+        BitSet matchingIds = null;
+        String normalizedKeyword = null;
+        if (hasKeyword && productSearchService.isEnabled()) {
+            matchingIds = productSearchService.findMatchingProductIds(keyword);
+        } else if (hasKeyword) {
+            normalizedKeyword = keyword.trim().toLowerCase(Locale.ROOT);
+        }
+
+        int[] catalogCounts = new int[snapshot.getCatalogCount()];
+        int[] priceBucketCounts = new int[PRICE_BUCKETS.size()];
+        int allCatalogsCount = 0;
+        int inStockCount = 0;
+        int outOfStockCount = 0;
+
+        for (ProductCardDTO card : snapshot.getProducts()) {
+            BigDecimal effectivePrice = card.getEffectivePrice();
+            boolean inPriceRange = (minPrice == null && maxPrice == null) || (effectivePrice != null
+                    && (minPrice == null || effectivePrice.compareTo(minPrice) >= 0)
+                    && (maxPrice == null || effectivePrice.compareTo(maxPrice) <= 0));
+
+            boolean inScope;
+            if (catalogId != null) {
+                inScope = catalogId.equals(card.getCatalogId());
+            } else if (matchingIds != null) {
+                inScope = matchingIds.get(card.getProductId());
+            } else if (normalizedKeyword != null) {
+                inScope = card.getProductName() != null
+                        && card.getProductName().toLowerCase(Locale.ROOT).contains(normalizedKeyword);
+            } else {
+                inScope = true;
+            }
+
+            // Danh mục: bỏ qua bộ lọc danh mục, giữ khoảng giá
+            if (inPriceRange) {
+                allCatalogsCount++;
+                int ordinal = snapshot.getCatalogOrdinal(card.getCatalogId());
+                if (ordinal >= 0) {
+                    catalogCounts[ordinal]++;
+                }
+            }
+
+            if (!inScope) {
+                continue;
+            }
+
+            // Khoảng giá: bỏ qua bộ lọc giá, giữ danh mục hoặc từ khóa
+            for (int b = 0; b < priceBucketCounts.length; b++) {
+                if (PRICE_BUCKETS.get(b).contains(effectivePrice)) {
+                    priceBucketCounts[b]++;
+                }
+            }
+
+            // Tình trạng kho: áp dụng tất cả bộ lọc hiện tại
+            if (inPriceRange) {
+                if (card.isInStock()) {
+                    inStockCount++;
+                } else {
+                    outOfStockCount++;
+                }
+            }
+        }
+
+        return new ProductFacets(snapshot, catalogCounts, allCatalogsCount, PRICE_BUCKETS, priceBucketCounts,
+                inStockCount, outOfStockCount);
+    }
+}
@@ -0,0 +1,243 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.search.InvertedIndex;
+import project.demo.search.SearchHits;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductSearchService;
+
+/**
+ * Implementation of the IProductSearchService interface.
+ * The index is built from the catalog snapshot on first use and then kept in
+ * step with it: each CatalogChangedEvent re-indexes only the products whose
+ * name or description changed, so stock and price updates cost nothing here.
+ */
+@Service
+public class ProductSearchServiceImpl implements IProductSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSearchServiceImpl.class);
+
+    /** Tên sản phẩm có trọng số cao hơn mô tả khi xếp hạng */
+    static final int NAME_WEIGHT = 3;
+    static final int DESCRIPTION_WEIGHT = 1;
+    private static final int[] FIELD_WEIGHTS = { NAME_WEIGHT, DESCRIPTION_WEIGHT };
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final boolean enabled;
+
+    private final InvertedIndex index = new InvertedIndex();
+    private final Object syncLock = new Object();
+    // Snapshot mà chỉ mục đang phản ánh; null khi chưa xây dựng
+    private volatile CatalogSnapshot indexedSnapshot;
+
+    public ProductSearchServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            @Value("${app.search.index.enabled:true}") boolean enabled) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.enabled = enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled && catalogSnapshotService.isEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> searchProductCards(String keyword, BigDecimal minPrice, BigDecimal maxPrice,
+            Pageable pageable) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search keyword cannot be empty");
+        }
+
+        // Lấy snapshot trước khi khóa để không chờ khóa ghi của snapshot khi đang giữ syncLock
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        ensureIndexed(snapshot);
+
+        IntPredicate filter = productId -> {
+            ProductCardDTO card = snapshot.getProduct(productId);
+            return card != null && inPriceRange(card, minPrice, maxPrice);
+        };
+
+        if (pageable.getSort().isUnsorted()) {
+            // Xếp theo độ liên quan: chỉ cần giữ lại top (offset + size)
+            int limit = pageable.isPaged()
+                    ? (int) Math.min(Integer.MAX_VALUE, pageable.getOffset() + pageable.getPageSize())
+                    : Integer.MAX_VALUE;
+            SearchHits hits = index.search(keyword, filter, limit);
+
+            int from = pageable.isPaged() ? (int) Math.min(pageable.getOffset(), hits.size()) : 0;
+            List<ProductCardDTO> content = new ArrayList<>(hits.size() - from);
+            for (int i = from; i < hits.size(); i++) {
+                content.add(snapshot.getProduct(hits.getKey(i)));
+            }
+            return new PageImpl<>(content, pageable, hits.getTotalHits());
+        }
+
+        SearchHits hits = index.search(keyword, filter, Integer.MAX_VALUE);
+        List<ProductCardDTO> matches = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            matches.add(snapshot.getProduct(hits.getKey(i)));
+        }
+        matches.sort(CatalogSnapshotServiceImpl.productCardComparator(pageable.getSort()));
+
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(matches, pageable, matches.size());
+        }
+
+        int from = (int) Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        return new PageImpl<>(new ArrayList<>(matches.subList(from, to)), pageable, matches.size());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public BitSet findMatchingProductIds(String keyword) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search keyword cannot be empty");
+        }
+
+        ensureIndexed(catalogSnapshotService.getSnapshot());
+
+        // Bộ lọc được gọi cho mọi kết quả khớp: ghi nhận ID rồi loại bỏ để không phải xếp hạng
+        BitSet productIds = new BitSet();
+        index.search(keyword, productId -> {
+            productIds.set(productId);
+            return false;
+        }, 1);
+        return productIds;
+    }
+
+    /**
+     * Apply catalog changes to the index. Only products whose text changed are
+     * re-indexed; events that do not follow the indexed version are ignored
+     * and caught up on the next search.
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            CatalogSnapshot indexed = indexedSnapshot;
+            if (indexed == null || event.getPrevious() == null
+                    || indexed.getVersion() != event.getPrevious().getVersion()) {
+                return;
+            }
+
+            try {
+                if (event.isFullRebuild()) {
+                    syncAll(indexed, event.getCurrent());
+                } else {
+                    for (Integer productId : event.getChangedProductIds()) {
+                        syncProduct(productId, indexed.getProduct(productId),
+                                event.getCurrent().getProduct(productId));
+                    }
+                }
+                indexedSnapshot = event.getCurrent();
+            } catch (RuntimeException e) {
+                logger.warn("Search index update failed, rebuilding on next search", e);
+                indexedSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Bring the index up to the given snapshot: build it on first use, or diff
+     * against the indexed snapshot if events were missed
+     */
+    private void ensureIndexed(CatalogSnapshot snapshot) {
+        CatalogSnapshot indexed = indexedSnapshot;
+        if (indexed != null && indexed.getVersion() >= snapshot.getVersion()) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            indexed = indexedSnapshot;
+            if (indexed != null && indexed.getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            if (indexed == null) {
+                index.clear();
+                for (ProductCardDTO card : snapshot.getProducts()) {
+                    indexCard(card);
+                }
+            } else {
+                syncAll(indexed, snapshot);
+            }
+            indexedSnapshot = snapshot;
+
+            logger.debug("Search index at catalog version {} ({} products) in {} ms", snapshot.getVersion(),
+                    index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void syncAll(CatalogSnapshot previous, CatalogSnapshot current) {
+        for (ProductCardDTO card : current.getProducts()) {
+            syncProduct(card.getProductId(), previous.getProduct(card.getProductId()), card);
+        }
+        for (ProductCardDTO card : previous.getProducts()) {
+            if (current.getProduct(card.getProductId()) == null) {
+                index.remove(card.getProductId());
+            }
+        }
+    }
+
+    private void syncProduct(Integer productId, ProductCardDTO before, ProductCardDTO after) {
+        if (after == null) {
+            index.remove(productId);
+        } else if (before == null
+                || !Objects.equals(before.getProductName(), after.getProductName())
+                || !Objects.equals(before.getDescription(), after.getDescription())) {
+            indexCard(after);
+        }
+    }
+
+    private void indexCard(ProductCardDTO card) {
+        index.index(card.getProductId(), new String[] { card.getProductName(), card.getDescription() },
+                FIELD_WEIGHTS);
+    }
+
+    private static boolean inPriceRange(ProductCardDTO card, BigDecimal minPrice, BigDecimal maxPrice) {
+        if (minPrice == null && maxPrice == null) {
+            return true;
+        }
+
+        BigDecimal effectivePrice = card.getEffectivePrice();
+        if (effectivePrice == null) {
+            return false;
+        }
+        return (minPrice == null || effectivePrice.compareTo(minPrice) >= 0)
+                && (maxPrice == null || effectivePrice.compareTo(maxPrice) <= 0);
+    }
+}
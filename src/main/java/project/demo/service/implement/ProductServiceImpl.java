@@ -5,10 +5,14 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import project.demo.dto.KeysetPage;
+import project.demo.dto.ProductCardDTO;
 import project.demo.exception.ProductException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Product;
@@ -17,7 +21,10 @@ import project.demo.repository.CatalogRepository;
 import project.demo.repository.OrderDetailRepository;
 import project.demo.repository.ProductDetailRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductSearchService;
 import project.demo.service.IProductService;
+import project.demo.util.KeysetCursor;
 
 /**
  * Implementation of the IProductService interface for managing Product entities
@@ -25,19 +32,29 @@ import project.demo.service.IProductService;
 @Service
 public class ProductServiceImpl implements IProductService {
 
+    /** Các trường sắp xếp hỗ trợ phân trang bằng con trỏ */
+    private static final String SORT_NAME = "productName";
+    private static final String SORT_PRICE = "price";
+
     private final ProductRepository productRepository;
     private final ProductDetailRepository productDetailRepository;
     private final CatalogRepository catalogRepository;
     private final OrderDetailRepository orderDetailRepository;
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final IProductSearchService productSearchService;
 
     public ProductServiceImpl(ProductRepository productRepository,
             ProductDetailRepository productDetailRepository,
             CatalogRepository catalogRepository,
-            OrderDetailRepository orderDetailRepository) {
+            OrderDetailRepository orderDetailRepository,
+            ICatalogSnapshotService catalogSnapshotService,
+            IProductSearchService productSearchService) {
         this.productRepository = productRepository;
         this.productDetailRepository = productDetailRepository;
         this.catalogRepository = catalogRepository;
         this.orderDetailRepository = orderDetailRepository;
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productSearchService = productSearchService;
     }
 
     /**
@@ -100,7 +117,10 @@ public class ProductServiceImpl implements IProductService {
         }
 
         // Save product
-        return productRepository.save(product);
+        Product savedProduct = productRepository.save(product);
+        catalogSnapshotService.refreshProduct(savedProduct.getProductId());
+
+        return savedProduct;
     }
 
     /**
@@ -127,7 +147,13 @@ public class ProductServiceImpl implements IProductService {
         }
 
         // Update product
-        return productRepository.save(product);
+        Product updatedProduct = productRepository.save(product);
+
+        // Keep the denormalized effective price in sync with the regular price
+        productDetailRepository.refreshEffectivePrice(productId, product.getPrice());
+        catalogSnapshotService.refreshProduct(productId);
+
+        return updatedProduct;
     }
 
     /**
@@ -152,6 +178,7 @@ public class ProductServiceImpl implements IProductService {
 
         // Delete product
         productRepository.deleteById(productId);
+        catalogSnapshotService.refreshProduct(productId);
     }
 
     /**
@@ -199,7 +226,11 @@ public class ProductServiceImpl implements IProductService {
         validateDiscountPrice(productDetail.getDiscountPrice(), product.getPrice());
 
         // Save product detail
-        return productDetailRepository.save(productDetail);
+        productDetail.refreshEffectivePrice(product.getPrice());
+        ProductDetail savedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+
+        return savedDetail;
     }
 
     /**
@@ -235,7 +266,11 @@ public class ProductServiceImpl implements IProductService {
         validateDiscountPrice(productDetail.getDiscountPrice(), product.getPrice());
 
         // Update product detail
-        return productDetailRepository.save(productDetail);
+        productDetail.refreshEffectivePrice(product.getPrice());
+        ProductDetail updatedDetail = productDetailRepository.save(productDetail);
+        catalogSnapshotService.refreshProduct(productId);
+
+        return updatedDetail;
     }
 
     /**
@@ -339,4 +374,228 @@ public class ProductServiceImpl implements IProductService {
                 .orElseThrow(() -> new ResourceNotFoundException("PRODUCT_NOT_FOUND",
                         "Product not found with ID: " + productDetail.getProductId()));
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> findProductCardsPaginated(Pageable pageable) {
+        if (catalogSnapshotService.isEnabled()) {
+            return catalogSnapshotService.findProductCards(null, null, null, null, pageable);
+        }
+
+        return productRepository.findProductCards(pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> findProductCardsByCatalogIdPaginated(Integer catalogId, Pageable pageable) {
+        // Check if catalog exists
+        checkCatalogExists(catalogId);
+
+        if (catalogSnapshotService.isEnabled()) {
+            return catalogSnapshotService.findProductCards(catalogId, null, null, null, pageable);
+        }
+
+        return productRepository.findProductCardsByCatalogId(catalogId, pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> searchProductCardsPaginated(String keyword, Pageable pageable) {
+        if (keyword == null || keyword.trim().isEmpty()) {
+            throw new IllegalArgumentException("Search keyword cannot be empty");
+        }
+
+        // Tìm kiếm toàn văn theo tên và mô tả trên chỉ mục trong bộ nhớ
+        if (productSearchService.isEnabled()) {
+            return productSearchService.searchProductCards(keyword, null, null, pageable);
+        }
+
+        if (catalogSnapshotService.isEnabled()) {
+            return catalogSnapshotService.findProductCards(null, keyword, null, null, pageable);
+        }
+
+        return productRepository.searchProductCardsByName(keyword, pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Page<ProductCardDTO> findProductCardsByPriceRangePaginated(Integer catalogId, String keyword,
+            BigDecimal minPrice, BigDecimal maxPrice, Pageable pageable) {
+        if (minPrice == null || maxPrice == null || minPrice.compareTo(maxPrice) > 0) {
+            throw new IllegalArgumentException("Invalid price range: " + minPrice + " - " + maxPrice);
+        }
+
+        if (catalogId != null) {
+            // Check if catalog exists
+            checkCatalogExists(catalogId);
+        }
+
+        boolean hasKeyword = keyword != null && !keyword.trim().isEmpty();
+        if (catalogId == null && hasKeyword && productSearchService.isEnabled()) {
+            return productSearchService.searchProductCards(keyword, minPrice, maxPrice, pageable);
+        }
+
+        if (catalogSnapshotService.isEnabled()) {
+            String searchKeyword = catalogId == null ? keyword : null;
+            return catalogSnapshotService.findProductCards(catalogId, searchKeyword, minPrice, maxPrice, pageable);
+        }
+
+        if (catalogId != null) {
+            return productRepository.findProductCardsByCatalogIdAndEffectivePriceBetween(catalogId, minPrice,
+                    maxPrice, pageable);
+        }
+
+        if (hasKeyword) {
+            return productRepository.searchProductCardsByNameAndEffectivePriceBetween(keyword, minPrice, maxPrice,
+                    pageable);
+        }
+
+        return productRepository.findProductCardsByEffectivePriceBetween(minPrice, maxPrice, pageable);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProductCardDTO findFeaturedProductCard() {
+        if (catalogSnapshotService.isEnabled()) {
+            ProductCardDTO featured = null;
+            for (ProductCardDTO card : catalogSnapshotService.getSnapshot().getProducts()) {
+                // Snapshot is in product ID order, so ties keep the lowest ID
+                if (card.getQuantityInStock() != null && (featured == null
+                        || card.getQuantityInStock() > featured.getQuantityInStock())) {
+                    featured = card;
+                }
+            }
+            if (featured == null) {
+                throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "No products found in stock");
+            }
+
+            return featured;
+        }
+
+        List<ProductCardDTO> cards = productRepository.findProductCardsByHighestStock(PageRequest.of(0, 1));
+        if (cards.isEmpty()) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "No products found in stock");
+        }
+
+        return cards.get(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getProductCardCursor(ProductCardDTO card, String sortField, Sort.Direction direction) {
+        Object key;
+        if (SORT_NAME.equals(sortField)) {
+            key = card.getProductName();
+        } else if (SORT_PRICE.equals(sortField)) {
+            key = card.getEffectivePrice();
+        } else {
+            return null;
+        }
+
+        // Sản phẩm chưa có chi tiết (không có giá) không dùng làm vị trí tìm kiếm được
+        if (key == null) {
+            return null;
+        }
+        return KeysetCursor.of(sortField, direction.isDescending(), key, card.getProductId()).encode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public KeysetPage<ProductCardDTO> findProductCardsAfter(Integer catalogId, String sortField,
+            Sort.Direction direction, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + size);
+        }
+
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        boolean descending = direction.isDescending();
+        if (!after.matches(sortField, descending)) {
+            throw new IllegalArgumentException("Cursor does not match sort " + sortField + " " + direction);
+        }
+
+        if (catalogId != null) {
+            // Check if catalog exists
+            checkCatalogExists(catalogId);
+        }
+
+        boolean byPrice = SORT_PRICE.equals(sortField);
+        if (!byPrice && !SORT_NAME.equals(sortField)) {
+            throw new IllegalArgumentException("Cursor pagination is not supported for sort: " + sortField);
+        }
+
+        // Lấy thêm một dòng để biết còn trang sau hay không, không cần truy vấn COUNT
+        int limit = size + 1;
+        List<ProductCardDTO> rows;
+        if (catalogSnapshotService.isEnabled()) {
+            ProductCardDTO position = byPrice
+                    ? new ProductCardDTO(after.getId(), null, null, after.getKeyAsDecimal(), null, null, null, null)
+                    : new ProductCardDTO(after.getId(), null, after.getKey(), null, null, null, null, null);
+            Sort sort = Sort.by(direction, sortField).and(Sort.by(direction, "productId"));
+            rows = catalogSnapshotService.findProductCardsAfter(catalogId, sort, position, limit);
+        } else if (byPrice) {
+            rows = findProductCardsAfterPrice(catalogId, descending, after.getKeyAsDecimal(), after.getId(),
+                    PageRequest.of(0, limit));
+        } else {
+            rows = findProductCardsAfterName(catalogId, descending, after.getKey(), after.getId(),
+                    PageRequest.of(0, limit));
+        }
+
+        return KeysetPage.of(rows, size, card -> getProductCardCursor(card, sortField, direction));
+    }
+
+    private List<ProductCardDTO> findProductCardsAfterName(Integer catalogId, boolean descending,
+            String productName, Integer productId, Pageable limit) {
+        if (catalogId != null) {
+            return descending
+                    ? productRepository.findProductCardsInCatalogAfterNameDesc(catalogId, productName, productId, limit)
+                    : productRepository.findProductCardsInCatalogAfterNameAsc(catalogId, productName, productId, limit);
+        }
+        return descending
+                ? productRepository.findProductCardsAfterNameDesc(productName, productId, limit)
+                : productRepository.findProductCardsAfterNameAsc(productName, productId, limit);
+    }
+
+    private List<ProductCardDTO> findProductCardsAfterPrice(Integer catalogId, boolean descending,
+            BigDecimal effectivePrice, Integer productId, Pageable limit) {
+        if (catalogId != null) {
+            return descending
+                    ? productRepository.findProductCardsInCatalogAfterPriceDesc(catalogId, effectivePrice, productId,
+                            limit)
+                    : productRepository.findProductCardsInCatalogAfterPriceAsc(catalogId, effectivePrice, productId,
+                            limit);
+        }
+        return descending
+                ? productRepository.findProductCardsAfterPriceDesc(effectivePrice, productId, limit)
+                : productRepository.findProductCardsAfterPriceAsc(effectivePrice, productId, limit);
+    }
+
+    /**
+     * Check that a catalog exists, using the catalog snapshot when enabled
+     *
+     * @param catalogId the ID of the catalog
+     * @throws ResourceNotFoundException if the catalog does not exist
+     */
+    private void checkCatalogExists(Integer catalogId) {
+        boolean exists = catalogSnapshotService.isEnabled()
+                ? catalogSnapshotService.getSnapshot().getCatalog(catalogId) != null
+                : catalogRepository.existsById(catalogId);
+        if (!exists) {
+            throw new ResourceNotFoundException("CATALOG_NOT_FOUND",
+                    "Catalog not found with ID: " + catalogId);
+        }
+    }
 }
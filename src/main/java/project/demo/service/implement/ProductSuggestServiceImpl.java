@@ -0,0 +1,303 @@
+package project.demo.service.implement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.dto.SuggestionDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.model.Catalog;
+import project.demo.repository.OrderDetailRepository;
+import project.demo.search.PrefixTrie;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductSuggestService;
+
+/**
+ * Implementation of the IProductSuggestService interface.
+ * Suggestions come from a prefix trie over product and catalog names, built
+ * from the catalog snapshot and total sales on first use. Name changes are
+ * applied from CatalogChangedEvent in memory; the products they touch are
+ * marked so that {@link #refreshWeights()} (scheduled) re-reads their sales.
+ * A suggestion request never reads the database once the trie is built.
+ */
+@Service
+public class ProductSuggestServiceImpl implements IProductSuggestService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProductSuggestServiceImpl.class);
+
+    /** Quá ngưỡng này thì đọc lại doanh số của mọi sản phẩm bằng một truy vấn */
+    private static final int FULL_RELOAD_THRESHOLD = 50;
+
+    private static final String PRODUCT_KEY = "product:";
+    private static final String CATALOG_KEY = "catalog:";
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final OrderDetailRepository orderDetailRepository;
+    private final boolean enabled;
+    private final int size;
+
+    private final PrefixTrie<SuggestionDTO> trie;
+    private final Object syncLock = new Object();
+    // Snapshot mà trie đang phản ánh; null khi chưa xây dựng
+    private volatile CatalogSnapshot indexedSnapshot;
+    // Tổng số lượng đã bán theo sản phẩm, chỉ truy cập khi giữ syncLock
+    private Map<Integer, Long> productWeights = new HashMap<>();
+    private final Set<Integer> staleWeights = ConcurrentHashMap.newKeySet();
+
+    public ProductSuggestServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            OrderDetailRepository orderDetailRepository,
+            @Value("${app.suggest.enabled:true}") boolean enabled,
+            @Value("${app.suggest.size:8}") int size) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.orderDetailRepository = orderDetailRepository;
+        this.enabled = enabled;
+        this.size = Math.max(1, size);
+        this.trie = new PrefixTrie<>(this.size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled && catalogSnapshotService.isEnabled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<SuggestionDTO> suggest(String query) {
+        if (!isEnabled() || query == null || query.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        ensureIndexed(catalogSnapshotService.getSnapshot());
+        return trie.complete(query, size);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void refreshWeights() {
+        CatalogSnapshot indexed = indexedSnapshot;
+        if (!isEnabled() || indexed == null || staleWeights.isEmpty()) {
+            return;
+        }
+
+        List<Integer> productIds = new ArrayList<>(staleWeights);
+        staleWeights.removeAll(productIds);
+
+        // Đọc cơ sở dữ liệu ngoài syncLock để không chặn việc cập nhật theo sự kiện
+        boolean fullReload = productIds.size() > FULL_RELOAD_THRESHOLD;
+        Map<Integer, Long> weights;
+        if (fullReload) {
+            weights = loadAllWeights();
+        } else {
+            weights = new HashMap<>();
+            for (Integer productId : productIds) {
+                Integer quantity = orderDetailRepository.getTotalQuantityByProductId(productId);
+                weights.put(productId, quantity == null ? 0L : quantity.longValue());
+            }
+        }
+
+        synchronized (syncLock) {
+            CatalogSnapshot snapshot = indexedSnapshot;
+            if (snapshot == null) {
+                return;
+            }
+
+            if (fullReload) {
+                productWeights = weights;
+                for (ProductCardDTO card : snapshot.getProducts()) {
+                    trie.updateWeight(PRODUCT_KEY + card.getProductId(), weightOf(card.getProductId()));
+                }
+                for (Catalog catalog : snapshot.getActiveCatalogs()) {
+                    updateCatalogWeight(snapshot, catalog.getCatalogId());
+                }
+            } else {
+                for (Map.Entry<Integer, Long> entry : weights.entrySet()) {
+                    productWeights.put(entry.getKey(), entry.getValue());
+                    trie.updateWeight(PRODUCT_KEY + entry.getKey(), entry.getValue());
+                    ProductCardDTO card = snapshot.getProduct(entry.getKey());
+                    if (card != null) {
+                        updateCatalogWeight(snapshot, card.getCatalogId());
+                    }
+                }
+            }
+        }
+        logger.debug("Suggestion weights refreshed for {} products", productIds.size());
+    }
+
+    /**
+     * Apply catalog changes to the trie in memory. Events that do not follow
+     * the indexed version are ignored and caught up on the next suggestion.
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        synchronized (syncLock) {
+            CatalogSnapshot indexed = indexedSnapshot;
+            if (indexed == null || event.getPrevious() == null
+                    || indexed.getVersion() != event.getPrevious().getVersion()) {
+                return;
+            }
+
+            try {
+                if (event.isFullRebuild()) {
+                    syncAll(indexed, event.getCurrent());
+                } else {
+                    for (Integer productId : event.getChangedProductIds()) {
+                        syncProduct(event.getCurrent(), indexed.getProduct(productId),
+                                event.getCurrent().getProduct(productId));
+                    }
+                    // Tồn kho thay đổi thường do có đơn hàng: đọc lại doanh số ở lần làm mới sau
+                    staleWeights.addAll(event.getChangedProductIds());
+                }
+                indexedSnapshot = event.getCurrent();
+            } catch (RuntimeException e) {
+                logger.warn("Suggestion trie update failed, rebuilding on next suggestion", e);
+                indexedSnapshot = null;
+            }
+        }
+    }
+
+    /**
+     * Bring the trie up to the given snapshot: build it on first use, or diff
+     * against the indexed snapshot if events were missed
+     */
+    private void ensureIndexed(CatalogSnapshot snapshot) {
+        CatalogSnapshot indexed = indexedSnapshot;
+        if (indexed != null && indexed.getVersion() >= snapshot.getVersion()) {
+            return;
+        }
+
+        Map<Integer, Long> weights = indexed == null ? loadAllWeights() : null;
+        synchronized (syncLock) {
+            indexed = indexedSnapshot;
+            if (indexed != null && indexed.getVersion() >= snapshot.getVersion()) {
+                return;
+            }
+
+            long start = System.nanoTime();
+            if (indexed == null) {
+                productWeights = weights != null ? weights : loadAllWeights();
+                trie.clear();
+                for (ProductCardDTO card : snapshot.getProducts()) {
+                    putProduct(card);
+                }
+                for (Catalog catalog : snapshot.getActiveCatalogs()) {
+                    putCatalog(snapshot, catalog);
+                }
+            } else {
+                syncAll(indexed, snapshot);
+            }
+            indexedSnapshot = snapshot;
+
+            logger.debug("Suggestion trie at catalog version {} ({} entries) in {} ms", snapshot.getVersion(),
+                    trie.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void syncAll(CatalogSnapshot previous, CatalogSnapshot current) {
+        for (ProductCardDTO card : current.getProducts()) {
+            syncProduct(current, previous.getProduct(card.getProductId()), card);
+        }
+        for (ProductCardDTO card : previous.getProducts()) {
+            if (current.getProduct(card.getProductId()) == null) {
+                syncProduct(current, card, null);
+            }
+        }
+
+        // Danh mục ít nên ghi lại toàn bộ
+        for (Catalog catalog : previous.getActiveCatalogs()) {
+            trie.remove(CATALOG_KEY + catalog.getCatalogId());
+        }
+        for (Catalog catalog : current.getActiveCatalogs()) {
+            putCatalog(current, catalog);
+        }
+    }
+
+    private void syncProduct(CatalogSnapshot current, ProductCardDTO before, ProductCardDTO after) {
+        if (after == null) {
+            trie.remove(PRODUCT_KEY + before.getProductId());
+            productWeights.remove(before.getProductId());
+            updateCatalogWeight(current, before.getCatalogId());
+            return;
+        }
+
+        if (before == null) {
+            staleWeights.add(after.getProductId());
+        } else if (Objects.equals(before.getProductName(), after.getProductName())
+                && Objects.equals(before.getCatalogId(), after.getCatalogId())) {
+            return;
+        }
+
+        putProduct(after);
+        updateCatalogWeight(current, after.getCatalogId());
+        if (before != null && !Objects.equals(before.getCatalogId(), after.getCatalogId())) {
+            updateCatalogWeight(current, before.getCatalogId());
+        }
+    }
+
+    private void putProduct(ProductCardDTO card) {
+        trie.put(PRODUCT_KEY + card.getProductId(),
+                new SuggestionDTO(SuggestionDTO.TYPE_PRODUCT, card.getProductId(), card.getProductName()),
+                weightOf(card.getProductId()), card.getProductName());
+    }
+
+    private void putCatalog(CatalogSnapshot snapshot, Catalog catalog) {
+        trie.put(CATALOG_KEY + catalog.getCatalogId(),
+                new SuggestionDTO(SuggestionDTO.TYPE_CATALOG, catalog.getCatalogId(), catalog.getCatalogName()),
+                catalogWeight(snapshot, catalog.getCatalogId()), catalog.getCatalogName());
+    }
+
+    private void updateCatalogWeight(CatalogSnapshot snapshot, Integer catalogId) {
+        if (catalogId != null) {
+            trie.updateWeight(CATALOG_KEY + catalogId, catalogWeight(snapshot, catalogId));
+        }
+    }
+
+    /**
+     * A catalog weighs the total sales of its products
+     */
+    private long catalogWeight(CatalogSnapshot snapshot, Integer catalogId) {
+        long weight = 0;
+        for (ProductCardDTO card : snapshot.getProductsByCatalogId(catalogId)) {
+            weight += weightOf(card.getProductId());
+        }
+        return weight;
+    }
+
+    private long weightOf(Integer productId) {
+        return productWeights.getOrDefault(productId, 0L);
+    }
+
+    private Map<Integer, Long> loadAllWeights() {
+        Map<Integer, Long> weights = new HashMap<>();
+        for (Object[] row : orderDetailRepository.getTotalQuantityGroupByProductId()) {
+            weights.put((Integer) row[0], row[1] == null ? 0L : ((Number) row[1]).longValue());
+        }
+        return weights;
+    }
+}
@@ -8,6 +8,7 @@ import project.demo.exception.PromotionException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.*;
 import project.demo.repository.*;
+import project.demo.service.IFragmentCacheService;
 import project.demo.service.IPromotionService;
 
 import java.math.BigDecimal;
@@ -26,17 +27,20 @@ public class PromotionServiceImpl implements IPromotionService {
     private final OrderPromotionRepository orderPromotionRepository;
     private final ProductRepository productRepository;
     private final OrderRepository orderRepository;
+    private final IFragmentCacheService fragmentCacheService;
 
     public PromotionServiceImpl(PromotionRepository promotionRepository,
                                ProductPromotionRepository productPromotionRepository,
                                OrderPromotionRepository orderPromotionRepository,
                                ProductRepository productRepository,
-                               OrderRepository orderRepository) {
+                               OrderRepository orderRepository,
+                               IFragmentCacheService fragmentCacheService) {
         this.promotionRepository = promotionRepository;
         this.productPromotionRepository = productPromotionRepository;
         this.orderPromotionRepository = orderPromotionRepository;
         this.productRepository = productRepository;
         this.orderRepository = orderRepository;
+        this.fragmentCacheService = fragmentCacheService;
     }
 
     /**
@@ -73,7 +77,9 @@ public class PromotionServiceImpl implements IPromotionService {
             promotion.setStatus(PromotionStatus.ACTIVE.getValue());
         }
         
-        return promotionRepository.save(promotion);
+        Promotion savedPromotion = promotionRepository.save(promotion);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, savedPromotion.getPromotionId());
+        return savedPromotion;
     }
 
     /**
@@ -93,7 +99,9 @@ public class PromotionServiceImpl implements IPromotionService {
         // Validate promotion
         validatePromotion(promotion);
         
-        return promotionRepository.save(promotion);
+        Promotion updatedPromotion = promotionRepository.save(promotion);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, promotionId);
+        return updatedPromotion;
     }
 
     /**
@@ -120,6 +128,7 @@ public class PromotionServiceImpl implements IPromotionService {
         }
         
         promotionRepository.deleteById(promotionId);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, promotionId);
     }
 
     /**
@@ -170,7 +179,9 @@ public class PromotionServiceImpl implements IPromotionService {
         productPromotion.setEndDate(promotion.getEndDate());
         productPromotion.setStatus(PromotionStatus.ACTIVE.getValue());
         
-        return productPromotionRepository.save(productPromotion);
+        ProductPromotion savedProductPromotion = productPromotionRepository.save(productPromotion);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, promotionId);
+        return savedProductPromotion;
     }
 
     /**
@@ -180,12 +191,12 @@ public class PromotionServiceImpl implements IPromotionService {
     @Transactional
     public void removePromotionFromProduct(Integer productPromotionId) {
         // Check if product promotion exists
-        if (!productPromotionRepository.existsById(productPromotionId)) {
-            throw new ResourceNotFoundException("PRODUCT_PROMOTION_NOT_FOUND", 
-                    "Product promotion not found with ID: " + productPromotionId);
-        }
+        ProductPromotion productPromotion = productPromotionRepository.findById(productPromotionId)
+                .orElseThrow(() -> new ResourceNotFoundException("PRODUCT_PROMOTION_NOT_FOUND", 
+                        "Product promotion not found with ID: " + productPromotionId));
         
         productPromotionRepository.deleteById(productPromotionId);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, productPromotion.getPromotionId());
     }
 
     /**
@@ -297,6 +308,7 @@ public class PromotionServiceImpl implements IPromotionService {
         // Update status
         promotion.setStatus(PromotionStatus.ACTIVE.getValue());
         promotionRepository.save(promotion);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, promotionId);
     }
 
     /**
@@ -311,6 +323,7 @@ public class PromotionServiceImpl implements IPromotionService {
         // Update status
         promotion.setStatus(PromotionStatus.INACTIVE.getValue());
         promotionRepository.save(promotion);
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, promotionId);
     }
     
     /**
@@ -0,0 +1,185 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.exception.ResourceNotFoundException;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IRelatedProductService;
+
+/**
+ * Implementation of the IRelatedProductService interface.
+ * With the catalog snapshot enabled, the related products of a product are
+ * selected from its catalog with a bounded heap and cached per product until
+ * a CatalogChangedEvent touches that catalog. Without the snapshot, one
+ * bounded query is issued per call.
+ */
+@Service
+public class RelatedProductServiceImpl implements IRelatedProductService {
+
+    private final ICatalogSnapshotService catalogSnapshotService;
+    private final ProductRepository productRepository;
+    private final int limit;
+
+    private final Map<Integer, CachedRelated> cache = new ConcurrentHashMap<>();
+    // Phiên bản snapshot mà danh mục thay đổi gần nhất; kết quả tính từ snapshot cũ hơn bị bỏ
+    private final Map<Integer, Long> catalogChangedAtVersion = new ConcurrentHashMap<>();
+    private volatile long clearedAtVersion;
+
+    public RelatedProductServiceImpl(ICatalogSnapshotService catalogSnapshotService,
+            ProductRepository productRepository,
+            @Value("${app.related-products.limit:4}") int limit) {
+        this.catalogSnapshotService = catalogSnapshotService;
+        this.productRepository = productRepository;
+        this.limit = limit;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<ProductCardDTO> findRelatedProductCards(Integer productId) {
+        if (!catalogSnapshotService.isEnabled()) {
+            return findInDatabase(productId);
+        }
+
+        CatalogSnapshot snapshot = catalogSnapshotService.getSnapshot();
+        ProductCardDTO product = snapshot.getProduct(productId);
+        if (product == null) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "Product not found with ID: " + productId);
+        }
+
+        CachedRelated cached = cache.get(productId);
+        if (cached != null && isValid(cached)) {
+            return cached.products;
+        }
+
+        List<ProductCardDTO> related = Collections.unmodifiableList(
+                selectRelated(product, snapshot.getProductsByCatalogId(product.getCatalogId())));
+        cache.put(productId, new CachedRelated(product.getCatalogId(), snapshot.getVersion(), related));
+        return related;
+    }
+
+    /**
+     * Drop the cached related products of every catalog touched by the change
+     *
+     * @param event the catalog change
+     */
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        long version = event.getCurrent().getVersion();
+        if (event.isFullRebuild() || event.getPrevious() == null) {
+            clearedAtVersion = version;
+            cache.clear();
+            return;
+        }
+
+        // Sản phẩm có thể chuyển danh mục: vô hiệu cả danh mục cũ và mới
+        Set<Integer> catalogIds = new HashSet<>();
+        for (Integer productId : event.getChangedProductIds()) {
+            ProductCardDTO before = event.getPrevious().getProduct(productId);
+            ProductCardDTO after = event.getCurrent().getProduct(productId);
+            if (before != null) {
+                catalogIds.add(before.getCatalogId());
+            }
+            if (after != null) {
+                catalogIds.add(after.getCatalogId());
+            }
+        }
+
+        for (Integer catalogId : catalogIds) {
+            catalogChangedAtVersion.merge(catalogId, version, Math::max);
+        }
+        cache.values().removeIf(cached -> catalogIds.contains(cached.catalogId));
+    }
+
+    private boolean isValid(CachedRelated cached) {
+        Long changedAt = catalogChangedAtVersion.get(cached.catalogId);
+        return cached.version >= clearedAtVersion && (changedAt == null || cached.version >= changedAt);
+    }
+
+    /**
+     * Keep the best 'limit' cards of the catalog with a bounded heap, so the
+     * cost is O(catalog size * log limit) once per product and catalog change
+     */
+    private List<ProductCardDTO> selectRelated(ProductCardDTO product, List<ProductCardDTO> catalogProducts) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        Comparator<ProductCardDTO> ranking = relatedRanking(product.getEffectivePrice());
+        PriorityQueue<ProductCardDTO> best = new PriorityQueue<>(limit + 1, ranking.reversed());
+        for (ProductCardDTO card : catalogProducts) {
+            if (card.getProductId().equals(product.getProductId())) {
+                continue;
+            }
+            best.offer(card);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<ProductCardDTO> related = new ArrayList<>(best);
+        related.sort(ranking);
+        return related;
+    }
+
+    /**
+     * Same order as ProductRepository.findRelatedProductCards: in-stock first,
+     * then closest effective price, then product ID
+     */
+    private static Comparator<ProductCardDTO> relatedRanking(BigDecimal price) {
+        BigDecimal reference = price != null ? price : BigDecimal.ZERO;
+        Comparator<ProductCardDTO> inStockFirst = Comparator.comparing(card -> !card.isInStock());
+        return inStockFirst
+                .thenComparing(card -> card.getEffectivePrice() == null
+                        ? null
+                        : card.getEffectivePrice().subtract(reference).abs(),
+                        Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(ProductCardDTO::getProductId);
+    }
+
+    private List<ProductCardDTO> findInDatabase(Integer productId) {
+        List<ProductCardDTO> cards = productRepository.findProductCardsByProductIdIn(List.of(productId));
+        if (cards.isEmpty()) {
+            throw new ResourceNotFoundException("PRODUCT_NOT_FOUND", "Product not found with ID: " + productId);
+        }
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        ProductCardDTO product = cards.get(0);
+        BigDecimal price = product.getEffectivePrice() != null ? product.getEffectivePrice() : BigDecimal.ZERO;
+        return productRepository.findRelatedProductCards(product.getCatalogId(), productId, price,
+                PageRequest.of(0, limit));
+    }
+
+    private static final class CachedRelated {
+        private final Integer catalogId;
+        private final long version;
+        private final List<ProductCardDTO> products;
+
+        private CachedRelated(Integer catalogId, long version, List<ProductCardDTO> products) {
+            this.catalogId = catalogId;
+            this.version = version;
+            this.products = products;
+        }
+    }
+}
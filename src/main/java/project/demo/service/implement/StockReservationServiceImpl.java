@@ -0,0 +1,380 @@
+package project.demo.service.implement;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import project.demo.exception.ProductDetailException;
+import project.demo.service.IStockReservationService;
+
+/**
+ * Implementation of the IStockReservationService interface.
+ * The StockReservation table holds one row per reserved product and is the
+ * source of truth: a reservation is inserted only while the stock row,
+ * locked with UPDLOCK in product ID order, covers it, and rows past
+ * expires_at no longer count, whether or not they were deleted yet. The
+ * reserved quantities are read from the table, so they include the
+ * reservations of every instance. In memory, a hashed timer wheel (one
+ * bucket per tick) finds the expired reservations made or loaded by this
+ * instance by looking at the buckets of the elapsed ticks only.
+ * Committed and released reservations are removed from the wheel lazily,
+ * when their bucket comes round.
+ */
+@Service
+public class StockReservationServiceImpl implements IStockReservationService {
+
+    private static final Logger logger = LoggerFactory.getLogger(StockReservationServiceImpl.class);
+
+    /** Số ô của bánh xe thời gian (lũy thừa của 2); lượt giữ hàng dài hơn một vòng chờ thêm vòng sau */
+    static final int WHEEL_SIZE = 1024;
+
+    private static final String RESERVE_SQL = "INSERT INTO SouvenirShopDBUser.dbo.StockReservation "
+            + "(reference, product_id, quantity, expires_at) "
+            + "SELECT ?, pd.product_id, ?, DATEADD(SECOND, ?, SYSDATETIME()) "
+            + "FROM SouvenirShopDBUser.dbo.ProductDetail pd WITH (UPDLOCK, ROWLOCK) "
+            + "WHERE pd.product_id = ? AND pd.quantity_in_stock - ? >= "
+            + "(SELECT COALESCE(SUM(r.quantity), 0) FROM SouvenirShopDBUser.dbo.StockReservation r "
+            + "WHERE r.product_id = pd.product_id AND r.expires_at > SYSDATETIME())";
+    private static final String DELETE_SQL = "DELETE FROM SouvenirShopDBUser.dbo.StockReservation "
+            + "WHERE reference = ?";
+    private static final String DELETE_EXPIRED_SQL = "DELETE FROM SouvenirShopDBUser.dbo.StockReservation "
+            + "WHERE expires_at <= SYSDATETIME()";
+    private static final String SELECT_ACTIVE_SQL = "SELECT reference, product_id, quantity, "
+            + "DATEDIFF_BIG(MILLISECOND, SYSDATETIME(), expires_at) "
+            + "FROM SouvenirShopDBUser.dbo.StockReservation";
+    private static final String SELECT_RESERVED_SQL = "SELECT product_id, SUM(quantity) "
+            + "FROM SouvenirShopDBUser.dbo.StockReservation "
+            + "WHERE product_id IN (%s) AND expires_at > SYSDATETIME() GROUP BY product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final long ttlMillis;
+    private final long tickMillis;
+
+    private final Counter reservedCounter;
+    private final Counter rejectedCounter;
+    private final Counter committedCounter;
+    private final Counter releasedCounter;
+    private final Counter expiredCounter;
+
+    private final Object lock = new Object();
+    // Các lượt giữ hàng và bánh xe thời gian chỉ được dùng khi giữ lock
+    private final Map<String, Reservation> reservations = new HashMap<>();
+    private final List<List<Reservation>> wheel = new ArrayList<>(WHEEL_SIZE);
+    private long currentTick;
+    private boolean loaded;
+
+    public StockReservationServiceImpl(JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.stock-reservation.enabled:true}") boolean enabled,
+            @Value("${app.stock-reservation.ttl-minutes:20}") long ttlMinutes,
+            @Value("${app.stock-reservation.tick-ms:1000}") long tickMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.ttlMillis = TimeUnit.MINUTES.toMillis(Math.max(1, ttlMinutes));
+        this.tickMillis = Math.max(1, tickMillis);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel.add(new ArrayList<>());
+        }
+        this.currentTick = System.currentTimeMillis() / this.tickMillis;
+
+        this.reservedCounter = counter(meterRegistry, "reserved");
+        this.rejectedCounter = counter(meterRegistry, "rejected");
+        this.committedCounter = counter(meterRegistry, "committed");
+        this.releasedCounter = counter(meterRegistry, "released");
+        this.expiredCounter = counter(meterRegistry, "expired");
+        Gauge.builder("stock.reservations.active", this, StockReservationServiceImpl::activeCount)
+                .description("Active stock reservations made through this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void reserve(String reference, Map<Integer, Integer> quantities) {
+        if (!enabled) {
+            return;
+        }
+
+        // Khóa các dòng tồn kho theo thứ tự ID sản phẩm như khi đặt hàng, tránh deadlock
+        Map<Integer, Integer> ordered = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : quantities.entrySet()) {
+            Integer quantity = entry.getValue();
+            if (quantity == null || quantity < 0) {
+                throw new ProductDetailException("INVALID_QUANTITY",
+                        "Reserved quantity cannot be negative: " + quantity);
+            }
+            if (quantity > 0) {
+                ordered.merge(entry.getKey(), quantity, Integer::sum);
+            }
+        }
+        if (ordered.isEmpty()) {
+            return;
+        }
+
+        long ttlSeconds = TimeUnit.MILLISECONDS.toSeconds(ttlMillis);
+        List<Object[]> batchArgs = new ArrayList<>(ordered.size());
+        for (Map.Entry<Integer, Integer> entry : ordered.entrySet()) {
+            batchArgs.add(new Object[] { reference, entry.getValue(), ttlSeconds, entry.getKey(), entry.getValue() });
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int[] inserted = jdbcTemplate.batchUpdate(RESERVE_SQL, batchArgs);
+                List<Integer> shortProductIds = new ArrayList<>();
+                int index = 0;
+                for (Integer productId : ordered.keySet()) {
+                    if (inserted[index++] == 0) {
+                        shortProductIds.add(productId);
+                    }
+                }
+                if (!shortProductIds.isEmpty()) {
+                    // Ngoại lệ làm giao dịch rollback nên không sản phẩm nào được giữ
+                    throw new ProductDetailException("INSUFFICIENT_STOCK",
+                            "Not enough available stock for product IDs: " + shortProductIds);
+                }
+            });
+        } catch (ProductDetailException e) {
+            rejectedCounter.increment();
+            throw e;
+        }
+
+        synchronized (lock) {
+            add(new Reservation(reference, deadlineTick(System.currentTimeMillis() + ttlMillis)));
+        }
+        reservedCounter.increment();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean commit(String reference) {
+        if (!enabled || reference == null) {
+            return false;
+        }
+
+        boolean active = jdbcTemplate.update(DELETE_SQL, reference) > 0;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // Nếu đơn hàng rollback thì lượt giữ hàng vẫn còn đến khi hết hạn
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    forget(reference);
+                }
+            });
+        } else {
+            forget(reference);
+        }
+        if (active) {
+            committedCounter.increment();
+        }
+        return active;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(String reference) {
+        if (!enabled || reference == null) {
+            return;
+        }
+
+        if (jdbcTemplate.update(DELETE_SQL, reference) > 0) {
+            releasedCounter.increment();
+        }
+        forget(reference);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<Integer, Integer> getReservedQuantities(Collection<Integer> productIds) {
+        Map<Integer, Integer> reserved = new HashMap<>();
+        if (!enabled || productIds.isEmpty()) {
+            return reserved;
+        }
+
+        // Đọc từ bảng để tính cả các lượt giữ hàng của máy chủ khác, dùng chỉ mục IX_StockReservation_Product
+        String sql = String.format(SELECT_RESERVED_SQL, String.join(", ", Collections.nCopies(productIds.size(), "?")));
+        jdbcTemplate.query(sql, rs -> {
+            reserved.put(rs.getInt(1), rs.getInt(2));
+        }, productIds.toArray());
+        return reserved;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int releaseExpired() {
+        return releaseExpired(System.currentTimeMillis());
+    }
+
+    /**
+     * Release the reservations that expired at the given time
+     *
+     * @param nowMillis the current time in milliseconds
+     * @return the number of released reservations
+     */
+    int releaseExpired(long nowMillis) {
+        if (!enabled) {
+            return 0;
+        }
+
+        List<Reservation> expired;
+        synchronized (lock) {
+            if (!loaded) {
+                load(nowMillis);
+                loaded = true;
+            }
+            expired = advance(nowMillis / tickMillis);
+        }
+        if (expired.isEmpty()) {
+            return 0;
+        }
+
+        // Dòng đã hết hạn không còn được tính dù chưa bị xóa, nên xóa thất bại không ảnh hưởng tồn kho khả dụng
+        List<Object[]> batchArgs = new ArrayList<>(expired.size());
+        for (Reservation reservation : expired) {
+            batchArgs.add(new Object[] { reservation.reference });
+        }
+        jdbcTemplate.batchUpdate(DELETE_SQL, batchArgs);
+        expiredCounter.increment(expired.size());
+        return expired.size();
+    }
+
+    /**
+     * Delete the reservations that expired while no instance was running and
+     * index the active ones, with the time they have left
+     */
+    private void load(long nowMillis) {
+        jdbcTemplate.update(DELETE_EXPIRED_SQL);
+        List<Object[]> rows = jdbcTemplate.query(SELECT_ACTIVE_SQL, (rs, rowNum) -> new Object[] {
+                rs.getString(1), rs.getInt(2), rs.getInt(3), rs.getLong(4) });
+
+        Map<String, List<Object[]>> byReference = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            byReference.computeIfAbsent((String) row[0], reference -> new ArrayList<>()).add(row);
+        }
+        for (Map.Entry<String, List<Object[]>> entry : byReference.entrySet()) {
+            if (reservations.containsKey(entry.getKey())) {
+                continue;
+            }
+            long remainingMillis = Long.MAX_VALUE;
+            for (Object[] line : entry.getValue()) {
+                remainingMillis = Math.min(remainingMillis, (Long) line[3]);
+            }
+            add(new Reservation(entry.getKey(), deadlineTick(nowMillis + remainingMillis)));
+        }
+        if (!byReference.isEmpty()) {
+            logger.info("Loaded {} active stock reservations", byReference.size());
+        }
+    }
+
+    private void add(Reservation reservation) {
+        reservations.put(reservation.reference, reservation);
+        // Lượt giữ hàng đã quá hạn được xử lý ở nhịp kế tiếp
+        long tick = Math.max(reservation.deadlineTick, currentTick + 1);
+        wheel.get(slotOf(tick)).add(reservation);
+    }
+
+    private void forget(String reference) {
+        synchronized (lock) {
+            reservations.remove(reference);
+        }
+    }
+
+    /**
+     * Turn the wheel to the given tick and take out the reservations that
+     * expired on the way
+     */
+    private List<Reservation> advance(long nowTick) {
+        List<Reservation> expired = new ArrayList<>();
+        // Sau một khoảng dừng dài hơn một vòng, mỗi ô chỉ cần xét một lần
+        long ticks = Math.min(nowTick - currentTick, WHEEL_SIZE);
+        for (long tick = currentTick + 1; tick <= currentTick + ticks; tick++) {
+            Iterator<Reservation> bucket = wheel.get(slotOf(tick)).iterator();
+            while (bucket.hasNext()) {
+                Reservation reservation = bucket.next();
+                if (reservations.get(reservation.reference) != reservation) {
+                    // Đã được đặt hàng hoặc giải phóng
+                    bucket.remove();
+                } else if (reservation.deadlineTick <= nowTick) {
+                    bucket.remove();
+                    reservations.remove(reservation.reference);
+                    expired.add(reservation);
+                }
+            }
+        }
+        currentTick = Math.max(currentTick, nowTick);
+        return expired;
+    }
+
+    private long deadlineTick(long deadlineMillis) {
+        return (deadlineMillis + tickMillis - 1) / tickMillis;
+    }
+
+    private static int slotOf(long tick) {
+        return (int) (tick & (WHEEL_SIZE - 1));
+    }
+
+    private int activeCount() {
+        synchronized (lock) {
+            return reservations.size();
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String action) {
+        return Counter.builder("stock.reservations")
+                .description("Stock reservations by outcome")
+                .tag("action", action)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The payment reference of a reservation and the tick it expires at
+     */
+    private static final class Reservation {
+        private final String reference;
+        private final long deadlineTick;
+
+        private Reservation(String reference, long deadlineTick) {
+            this.reference = reference;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package project.demo.util;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+
+/**
+ * Token of the guest cart of a shopper who is not logged in. The token is
+ * kept in the session and in a long-lived cookie, so the cart survives the
+ * end of the session and browser restarts.
+ */
+public final class GuestCartCookie {
+
+    public static final String COOKIE_NAME = "GUEST_CART";
+    public static final String SESSION_ATTRIBUTE = "guestCartToken";
+
+    private static final Duration MAX_AGE = Duration.ofDays(30);
+
+    private GuestCartCookie() {
+    }
+
+    /**
+     * Get the guest cart token of a request
+     *
+     * @param request the HTTP request
+     * @return the token, or null if the shopper has no guest cart
+     */
+    public static String resolve(HttpServletRequest request) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute(SESSION_ATTRIBUTE) instanceof String token) {
+            return token;
+        }
+
+        if (request.getCookies() != null) {
+            for (Cookie cookie : request.getCookies()) {
+                // Chỉ chấp nhận mã do máy chủ tạo để giá trị tùy ý không tới được database
+                if (COOKIE_NAME.equals(cookie.getName()) && isValid(cookie.getValue())) {
+                    return cookie.getValue();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the guest cart token of a request, creating one (and its cookie) if
+     * the shopper has none yet
+     *
+     * @param request  the HTTP request
+     * @param response the HTTP response
+     * @return the token
+     */
+    public static String getOrCreate(HttpServletRequest request, HttpServletResponse response) {
+        String token = resolve(request);
+        if (token == null) {
+            token = UUID.randomUUID().toString();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie(token, MAX_AGE).toString());
+        }
+        request.getSession(true).setAttribute(SESSION_ATTRIBUTE, token);
+        return token;
+    }
+
+    /**
+     * Forget the guest cart token, e.g. after the cart was merged on login
+     *
+     * @param request  the HTTP request
+     * @param response the HTTP response
+     */
+    public static void clear(HttpServletRequest request, HttpServletResponse response) {
+        HttpSession session = request.getSession(false);
+        if (session != null) {
+            session.removeAttribute(SESSION_ATTRIBUTE);
+        }
+        response.addHeader(HttpHeaders.SET_COOKIE, cookie("", Duration.ZERO).toString());
+    }
+
+    private static ResponseCookie cookie(String value, Duration maxAge) {
+        return ResponseCookie.from(COOKIE_NAME, value)
+                .path("/")
+                .httpOnly(true)
+                .sameSite("Lax")
+                .maxAge(maxAge)
+                .build();
+    }
+
+    private static boolean isValid(String token) {
+        try {
+            return token != null && UUID.fromString(token).toString().equals(token);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package project.demo.util;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Opaque cursor for keyset (seek) pagination.
+ * A cursor records the sort it was issued for and the sort key and ID of the
+ * last row on a page, so the next page is read with
+ * WHERE (key, id) &gt; (:key, :id) on an index instead of skipping OFFSET rows.
+ * The encoded form is URL-safe Base64 and carries no meaning for clients.
+ */
+public final class KeysetCursor {
+
+    private static final char SEPARATOR = '|';
+
+    private final String sortField;
+    private final boolean descending;
+    private final int id;
+    private final String key;
+
+    private KeysetCursor(String sortField, boolean descending, int id, String key) {
+        this.sortField = sortField;
+        this.descending = descending;
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * Create a cursor positioned after the given row
+     *
+     * @param sortField  the sort the cursor belongs to
+     * @param descending true for a descending sort
+     * @param key        the sort key of the last row
+     * @param id         the ID of the last row (tie-breaker)
+     * @return the cursor
+     * @throws IllegalArgumentException if the sort field or key is missing
+     */
+    public static KeysetCursor of(String sortField, boolean descending, Object key, int id) {
+        if (sortField == null || sortField.isEmpty() || sortField.indexOf(SEPARATOR) >= 0) {
+            throw new IllegalArgumentException("Invalid cursor sort field: " + sortField);
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Cursor sort key cannot be null");
+        }
+
+        String value = key instanceof BigDecimal ? ((BigDecimal) key).toPlainString() : key.toString();
+        return new KeysetCursor(sortField, descending, id, value);
+    }
+
+    /**
+     * Decode a cursor produced by {@link #encode()}
+     *
+     * @param token the encoded cursor
+     * @return the cursor
+     * @throws IllegalArgumentException if the token is not a valid cursor
+     */
+    public static KeysetCursor decode(String token) {
+        if (token == null || token.isEmpty()) {
+            throw new IllegalArgumentException("Cursor cannot be empty");
+        }
+
+        String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        // Khóa sắp xếp nằm cuối nên có thể chứa ký tự phân cách
+        String[] parts = raw.split("\\" + SEPARATOR, 4);
+        if (parts.length != 4 || parts[0].isEmpty() || !("a".equals(parts[1]) || "d".equals(parts[1]))) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+
+        return new KeysetCursor(parts[0], "d".equals(parts[1]), Integer.parseInt(parts[2]), parts[3]);
+    }
+
+    /**
+     * @return the URL-safe encoded cursor
+     */
+    public String encode() {
+        String raw = sortField + SEPARATOR + (descending ? "d" : "a") + SEPARATOR + id + SEPARATOR + key;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Check that the cursor was issued for the given sort
+     *
+     * @param sortField  the requested sort field
+     * @param descending true for a descending sort
+     * @return true if the cursor can continue the requested listing
+     */
+    public boolean matches(String sortField, boolean descending) {
+        return this.sortField.equals(sortField) && this.descending == descending;
+    }
+
+    public String getSortField() {
+        return sortField;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the sort key as a decimal
+     * @throws IllegalArgumentException if the key is not a number
+     */
+    public BigDecimal getKeyAsDecimal() {
+        return new BigDecimal(key);
+    }
+
+    /**
+     * @return the sort key as a date-time
+     * @throws IllegalArgumentException if the key is not an ISO date-time
+     */
+    public LocalDateTime getKeyAsDateTime() {
+        try {
+            return LocalDateTime.parse(key);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid cursor date: " + key, e);
+        }
+    }
+}
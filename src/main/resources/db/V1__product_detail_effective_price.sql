@@ -0,0 +1,19 @@
+-- Giá hiển thị (giá khuyến mãi nếu > 0, nếu không thì giá gốc) được lưu sẵn trong ProductDetail
+-- để lọc khoảng giá và sắp xếp theo giá chạy trực tiếp trong SQL.
+-- Giá trị được đồng bộ bởi ProductDetailServiceImpl và ProductServiceImpl.
+USE SouvenirShopDBUser;
+GO
+
+ALTER TABLE dbo.ProductDetail ADD effective_price DECIMAL(10, 2) NULL;
+GO
+
+UPDATE pd
+SET pd.effective_price = CASE WHEN pd.discount_price > 0 THEN pd.discount_price ELSE p.price END
+FROM dbo.ProductDetail pd
+JOIN dbo.Product p ON p.product_id = pd.product_id;
+GO
+
+CREATE INDEX IX_ProductDetail_EffectivePrice
+    ON dbo.ProductDetail (effective_price)
+    INCLUDE (product_id, discount_price, quantity_in_stock, image_url);
+GO
@@ -0,0 +1,27 @@
+-- Chỉ mục cho phân trang bằng con trỏ (keyset pagination): mỗi trang tìm theo
+-- (khóa sắp xếp, id) rồi đọc tiếp theo thứ tự chỉ mục, không phải bỏ qua OFFSET dòng.
+USE SouvenirShopDBUser;
+GO
+
+-- Danh sách sản phẩm theo tên, toàn bộ và theo danh mục
+CREATE INDEX IX_Product_ProductName_ProductId
+    ON dbo.Product (product_name, product_id);
+GO
+
+CREATE INDEX IX_Product_CatalogId_ProductName_ProductId
+    ON dbo.Product (catalog_id, product_name, product_id);
+GO
+
+-- Danh sách sản phẩm theo giá hiển thị: product_id trở thành cột khóa để tìm theo (giá, id)
+DROP INDEX IX_ProductDetail_EffectivePrice ON dbo.ProductDetail;
+GO
+
+CREATE INDEX IX_ProductDetail_EffectivePrice_ProductId
+    ON dbo.ProductDetail (effective_price, product_id)
+    INCLUDE (discount_price, quantity_in_stock, image_url);
+GO
+
+-- Lịch sử đơn hàng của khách, mới nhất trước
+CREATE INDEX IX_Order_CustomerId_OrderDate_OrderId
+    ON dbo.[Order] (customer_id, order_date DESC, order_id DESC);
+GO
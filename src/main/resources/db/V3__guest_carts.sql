@@ -0,0 +1,32 @@
+-- Giỏ hàng của khách chưa đăng nhập: customer_id để trống, session_id là mã lưu trong cookie.
+-- Giỏ hàng chỉ được ghi vào database khi đủ lớn và bị xóa theo lô sau khi hết hạn.
+USE SouvenirShopDBUser;
+GO
+
+ALTER TABLE dbo.Cart ADD last_activity_at DATETIME2 NULL;
+GO
+
+-- Ràng buộc duy nhất trên customer_id không cho phép nhiều dòng NULL
+ALTER TABLE dbo.Cart DROP CONSTRAINT UQ_Cart_Customer;
+GO
+
+ALTER TABLE dbo.Cart ALTER COLUMN customer_id INT NULL;
+GO
+
+-- Mỗi khách hàng vẫn chỉ có một giỏ hàng (getOrCreateCart dựa vào điều này)
+CREATE UNIQUE INDEX UX_Cart_Customer
+    ON dbo.Cart (customer_id)
+    WHERE customer_id IS NOT NULL;
+GO
+
+-- Tìm giỏ hàng của khách theo mã cookie
+CREATE UNIQUE INDEX UX_Cart_GuestSession
+    ON dbo.Cart (session_id)
+    WHERE customer_id IS NULL;
+GO
+
+-- Dọn các giỏ hàng của khách đã hết hạn
+CREATE INDEX IX_Cart_GuestLastActivity
+    ON dbo.Cart (last_activity_at)
+    WHERE customer_id IS NULL;
+GO
@@ -0,0 +1,21 @@
+-- Dọn giỏ hàng theo lô: giỏ hàng của khách hàng không hoạt động quá lâu chuyển sang 'abandoned',
+-- giỏ hàng 'converted' cũ bị xóa cùng các mục. Cả hai tìm theo (status, last_activity_at).
+USE SouvenirShopDBUser;
+GO
+
+-- Giỏ hàng hiện có bắt đầu thời gian không hoạt động từ lúc triển khai; cập nhật theo lô để không giữ khóa lâu
+WHILE 1 = 1
+BEGIN
+    UPDATE TOP (5000) dbo.Cart
+    SET last_activity_at = SYSDATETIME()
+    WHERE last_activity_at IS NULL;
+
+    IF @@ROWCOUNT = 0 BREAK;
+END
+GO
+
+CREATE INDEX IX_Cart_Status_LastActivity
+    ON dbo.Cart (status, last_activity_at)
+    INCLUDE (customer_id)
+    WHERE customer_id IS NOT NULL;
+GO
@@ -0,0 +1,21 @@
+-- Giữ hàng trong lúc khách thanh toán qua VNPay: mỗi dòng là số lượng của một sản phẩm được giữ
+-- theo một mã thanh toán cho đến expires_at. Dòng bị xóa khi đặt hàng thành công, thanh toán thất bại
+-- hoặc hết hạn, nên bảng chỉ chứa các lượt giữ hàng đang chờ.
+USE SouvenirShopDBUser;
+GO
+
+CREATE TABLE dbo.StockReservation (
+    reference VARCHAR(40) NOT NULL,
+    product_id INT NOT NULL,
+    quantity INT NOT NULL,
+    expires_at DATETIME2 NOT NULL,
+    CONSTRAINT PK_StockReservation PRIMARY KEY (reference, product_id),
+    CONSTRAINT CK_StockReservation_Quantity CHECK (quantity > 0)
+);
+GO
+
+-- Tồn kho khả dụng = tồn kho - tổng số lượng đang giữ của sản phẩm
+CREATE INDEX IX_StockReservation_Product
+    ON dbo.StockReservation (product_id, expires_at)
+    INCLUDE (quantity);
+GO
@@ -0,0 +1,18 @@
+-- Mã xác nhận đặt hàng: mỗi mã chỉ đặt được một đơn hàng. Khóa chính trên token làm yêu cầu trùng
+-- (bấm hai lần, thử lại, tải lại trang kết quả VNPay) thất bại khi chèn và trả về đơn hàng đã đặt.
+USE SouvenirShopDBUser;
+GO
+
+CREATE TABLE dbo.CheckoutToken (
+    token VARCHAR(64) NOT NULL,
+    customer_id INT NOT NULL,
+    order_id INT NULL,
+    created_at DATETIME2 NOT NULL CONSTRAINT DF_CheckoutToken_CreatedAt DEFAULT SYSDATETIME(),
+    CONSTRAINT PK_CheckoutToken PRIMARY KEY (token)
+);
+GO
+
+-- Xóa theo lô các mã cũ hơn thời gian lưu giữ
+CREATE INDEX IX_CheckoutToken_CreatedAt
+    ON dbo.CheckoutToken (created_at);
+GO
@@ -0,0 +1,9 @@
+-- Thẻ sản phẩm chỉ nối một dòng ProductDetail cho mỗi sản phẩm (dòng có detail_id nhỏ nhất),
+-- để sản phẩm có nhiều dòng chi tiết không bị lặp trong danh sách và số trang vẫn đúng.
+-- Chỉ mục cho phép tìm dòng đó theo product_id thay vì quét bảng.
+USE SouvenirShopDBUser;
+GO
+
+CREATE INDEX IX_ProductDetail_ProductId_DetailId
+    ON dbo.ProductDetail (product_id, detail_id);
+GO
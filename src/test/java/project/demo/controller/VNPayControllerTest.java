@@ -0,0 +1,145 @@
+package project.demo.controller;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.ui.ExtendedModelMap;
+import org.springframework.web.servlet.mvc.support.RedirectAttributesModelMap;
+import project.demo.dto.PlacedOrder;
+import project.demo.model.Cart;
+import project.demo.model.Order;
+import project.demo.model.PaymentMethod;
+import project.demo.repository.PaymentRepository;
+import project.demo.service.ICartService;
+import project.demo.service.ICheckoutTokenService;
+import project.demo.service.IOrderService;
+import project.demo.service.IPaymentMethodService;
+import project.demo.service.IPaymentService;
+import project.demo.service.IStockReservationService;
+import project.demo.service.VNPayService;
+
+import java.util.ArrayList;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class VNPayControllerTest {
+
+    @Mock
+    private VNPayService vnPayService;
+
+    @Mock
+    private IPaymentService paymentService;
+
+    @Mock
+    private IOrderService orderService;
+
+    @Mock
+    private ICartService cartService;
+
+    @Mock
+    private IPaymentMethodService paymentMethodService;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private IStockReservationService stockReservationService;
+
+    @Mock
+    private ICheckoutTokenService checkoutTokenService;
+
+    @InjectMocks
+    private VNPayController vnPayController;
+
+    private MockHttpServletRequest request;
+    private MockHttpSession session;
+    private ExtendedModelMap model;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        request = new MockHttpServletRequest();
+        session = new MockHttpSession();
+        session.setAttribute("vnpay_pending_customer_id", 5);
+        session.setAttribute("vnpay_pending_address_id", 3);
+        session.setAttribute("vnpay_pending_shipping_method", "standard");
+        model = new ExtendedModelMap();
+
+        Cart cart = new Cart();
+        cart.setCartId(9);
+        when(cartService.findByCustomerId(5)).thenReturn(Optional.of(cart));
+
+        when(vnPayService.validateSignature(request)).thenReturn(true);
+        when(vnPayService.getPaymentStatus(request)).thenReturn("SUCCESS");
+        when(vnPayService.getOrderId(request)).thenReturn("VNP1");
+        when(vnPayService.getTransactionId(request)).thenReturn("14000001");
+        when(vnPayService.getAmount(request)).thenReturn(150000L);
+        when(paymentRepository.findByOrderId(anyInt())).thenReturn(new ArrayList<>());
+        when(checkoutTokenService.findOrderId(anyString(), anyInt())).thenReturn(null);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void paymentReturn_FirstReturn_SavesPaymentMethodInsideTokenTransaction() {
+        // Arrange
+        PaymentMethod savedMethod = new PaymentMethod();
+        savedMethod.setPaymentMethodId(7);
+        when(paymentMethodService.save(any(PaymentMethod.class))).thenReturn(savedMethod);
+        Order order = new Order();
+        order.setOrderId(42);
+        when(orderService.createFromCart(9, 3, 7, "standard", null, "VNP1")).thenReturn(order);
+        when(checkoutTokenService.placeOnce(eq("VNP1"), eq(5), any())).thenAnswer(invocation -> {
+            Order placed = ((Supplier<Order>) invocation.getArgument(2)).get();
+            return new PlacedOrder(placed.getOrderId(), false);
+        });
+
+        // Act
+        String view = vnPayController.paymentReturn(request, session, model, new RedirectAttributesModelMap());
+
+        // Assert
+        assertEquals("payment/vnpay-result", view);
+        assertEquals("success", model.get("paymentStatus"));
+        assertEquals(42, model.get("orderId"));
+        verify(paymentMethodService, times(1)).save(any(PaymentMethod.class));
+        verify(paymentService, times(1)).processPayment(42, 7, 150000.0);
+    }
+
+    @Test
+    void paymentReturn_ConcurrentDuplicate_CreatesNoRecords() {
+        // Arrange
+        when(checkoutTokenService.placeOnce(eq("VNP1"), eq(5), any())).thenReturn(new PlacedOrder(42, true));
+
+        // Act
+        String view = vnPayController.paymentReturn(request, session, model, new RedirectAttributesModelMap());
+
+        // Assert
+        assertEquals("payment/vnpay-result", view);
+        assertEquals(42, model.get("orderId"));
+        verify(paymentMethodService, never()).save(any(PaymentMethod.class));
+        verify(orderService, never()).createFromCart(anyInt(), anyInt(), anyInt(), anyString(), any(), anyString());
+        verify(paymentService, never()).processPayment(anyInt(), anyInt(), anyDouble());
+    }
+
+    @Test
+    void paymentReturn_ReloadedAfterPlacement_ReturnsPlacedOrder() {
+        // Arrange
+        when(checkoutTokenService.findOrderId("VNP1", 5)).thenReturn(42);
+
+        // Act
+        vnPayController.paymentReturn(request, session, model, new RedirectAttributesModelMap());
+
+        // Assert
+        assertEquals(42, model.get("orderId"));
+        verify(checkoutTokenService, never()).placeOnce(anyString(), anyInt(), any());
+        verify(paymentMethodService, never()).save(any(PaymentMethod.class));
+    }
+}
@@ -0,0 +1,63 @@
+package project.demo.search;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of typeahead lookups in the prefix trie. Each lookup
+ * returns the precomputed top 8 of the node reached by the prefix, so the
+ * cost depends on the prefix length and not on the number of products.
+ *
+ * Not a unit test; run manually, e.g.
+ * java -Xmx4g -cp target/classes:target/test-classes project.demo.search.PrefixTrieBenchmark
+ */
+public class PrefixTrieBenchmark {
+
+    private static final String[] NOUNS = { "ly sứ", "móc khóa", "nón lá", "áo dài", "tranh thêu", "bình gốm",
+            "đèn lồng", "túi cói", "quạt giấy", "tượng gỗ", "khăn lụa", "đũa tre", "hộp sơn mài", "búp bê" };
+    private static final String[] PLACES = { "Hà Nội", "Huế", "Hội An", "Sài Gòn", "Đà Lạt", "Nha Trang",
+            "Sa Pa", "Hạ Long", "Cần Thơ", "Phú Quốc", "Bát Tràng", "Vạn Phúc" };
+    private static final String[] QUERIES = { "l", "ly s", "mo", "non la h", "bat tr", "hoi", "den long", "q" };
+
+    private static final int LOOKUPS = 1_000_000;
+
+    // Giữ kết quả để JIT không loại bỏ vòng lặp đo
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        for (int size : new int[] { 10_000, 100_000, 1_000_000 }) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(42);
+        long start = System.nanoTime();
+        PrefixTrie<Integer> trie = new PrefixTrie<>(8);
+        for (int i = 0; i < size; i++) {
+            String name = pick(random, NOUNS) + " " + pick(random, PLACES) + " " + i;
+            trie.put("product:" + i, i, random.nextInt(1000), name);
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Khởi động JIT trước khi đo
+        long results = 0;
+        for (int i = 0; i < LOOKUPS / 5; i++) {
+            results += trie.complete(QUERIES[i % QUERIES.length], 8).size();
+        }
+
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) {
+            results += trie.complete(QUERIES[i % QUERIES.length], 8).size();
+        }
+        double lookupMicros = (System.nanoTime() - start) / 1000.0 / LOOKUPS;
+
+        System.out.printf(Locale.ROOT, "%,9d products: build %,6d ms | lookup %6.2f us%n", size, buildMillis,
+                lookupMicros);
+        sink += results;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,110 @@
+package project.demo.search;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Micro-benchmark of the inverted index against the LIKE '%keyword%' path.
+ * The LIKE path is modelled in memory as a scan that lower-cases name and
+ * description and tests contains(), which is the work SQL Server does per row
+ * when no index can serve the predicate (before any I/O for nvarchar(max)).
+ *
+ * Not a unit test; run manually, e.g.
+ * java -Xmx4g -cp target/classes:target/test-classes project.demo.search.ProductSearchBenchmark
+ */
+public class ProductSearchBenchmark {
+
+    private static final String[] NOUNS = { "ly sứ", "móc khóa", "nón lá", "áo dài", "tranh thêu", "bình gốm",
+            "đèn lồng", "túi cói", "quạt giấy", "tượng gỗ", "khăn lụa", "đũa tre", "hộp sơn mài", "búp bê",
+            "lịch treo", "nam châm", "bưu thiếp", "cốc sứ", "vòng tay", "đồng hồ" };
+    private static final String[] PLACES = { "Hà Nội", "Huế", "Hội An", "Sài Gòn", "Đà Lạt", "Nha Trang",
+            "Sa Pa", "Hạ Long", "Cần Thơ", "Phú Quốc", "Bát Tràng", "Vạn Phúc" };
+    private static final String[] WORDS = { "thủ công", "truyền thống", "cao cấp", "quà tặng", "màu xanh",
+            "màu đỏ", "hoa văn", "tinh xảo", "bền đẹp", "nhỏ gọn", "trang trí", "làng nghề", "chất liệu",
+            "tự nhiên", "đóng hộp", "kỷ niệm", "du lịch", "phong cách", "cổ điển", "hiện đại" };
+    private static final String[] QUERIES = { "ly su", "móc khóa hội an", "non la hue", "gom bat trang",
+            "qua tang cao cap", "den long", "tranh theu van phuc", "dong ho" };
+
+    private static final int QUERY_ROUNDS = 20;
+
+    // Giữ kết quả để JIT không loại bỏ vòng lặp đo
+    private static volatile long sink;
+
+    public static void main(String[] args) {
+        for (int size : new int[] { 10_000, 100_000, 1_000_000 }) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(42);
+        String[] names = new String[size];
+        String[] descriptions = new String[size];
+        for (int i = 0; i < size; i++) {
+            names[i] = pick(random, NOUNS) + " " + pick(random, PLACES) + " " + i;
+            StringBuilder description = new StringBuilder();
+            for (int w = 0; w < 20; w++) {
+                description.append(pick(random, WORDS)).append(' ');
+            }
+            descriptions[i] = description.append(pick(random, PLACES)).toString();
+        }
+
+        long start = System.nanoTime();
+        InvertedIndex index = new InvertedIndex();
+        int[] weights = { 3, 1 };
+        for (int i = 0; i < size; i++) {
+            index.index(i, new String[] { names[i], descriptions[i] }, weights);
+        }
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // Khởi động JIT trước khi đo
+        long indexHits = 0;
+        long likeHits = 0;
+        for (String query : QUERIES) {
+            indexHits += index.search(query, null, 8).getTotalHits();
+            likeHits += like(names, descriptions, query, 8);
+        }
+
+        start = System.nanoTime();
+        for (int r = 0; r < QUERY_ROUNDS; r++) {
+            for (String query : QUERIES) {
+                indexHits += index.search(query, null, 8).getTotalHits();
+            }
+        }
+        double indexMicros = (System.nanoTime() - start) / 1000.0 / (QUERY_ROUNDS * QUERIES.length);
+
+        int likeRounds = Math.max(1, QUERY_ROUNDS * 10_000 / size);
+        start = System.nanoTime();
+        for (int r = 0; r < likeRounds; r++) {
+            for (String query : QUERIES) {
+                likeHits += like(names, descriptions, query, 8);
+            }
+        }
+        double likeMicros = (System.nanoTime() - start) / 1000.0 / (likeRounds * QUERIES.length);
+
+        System.out.printf(Locale.ROOT,
+                "%,9d products: index build %,6d ms | index query %,10.1f us | LIKE scan %,12.1f us | %5.0fx%n",
+                size, buildMillis, indexMicros, likeMicros, likeMicros / indexMicros);
+        sink += indexHits + likeHits;
+    }
+
+    /**
+     * LIKE '%keyword%' on name OR description, with a page of 8 plus the COUNT(*)
+     * that Spring Data issues for the total
+     */
+    private static int like(String[] names, String[] descriptions, String keyword, int pageSize) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        int count = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].toLowerCase(Locale.ROOT).contains(needle)
+                    || descriptions[i].toLowerCase(Locale.ROOT).contains(needle)) {
+                count++;
+            }
+        }
+        return Math.min(count, pageSize) + count;
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
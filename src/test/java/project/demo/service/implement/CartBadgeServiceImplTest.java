@@ -0,0 +1,92 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.repository.CartItemRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartBadgeServiceImplTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CartBadgeServiceImpl cartBadgeService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        cartBadgeService = new CartBadgeServiceImpl(cartItemRepository, meterRegistry, true, 100);
+    }
+
+    @Test
+    void getItemCount_RepeatedViews_QueriesOnce() {
+        // Arrange
+        when(cartItemRepository.countByCustomerIdAndCartStatus(10, "active")).thenReturn(3L);
+
+        // Act
+        int first = cartBadgeService.getItemCount(10);
+        int second = cartBadgeService.getItemCount(10);
+
+        // Assert
+        assertEquals(3, first);
+        assertEquals(3, second);
+        verify(cartItemRepository, times(1)).countByCustomerIdAndCartStatus(anyInt(), anyString());
+        assertEquals(1.0, meterRegistry.get("cart.badge.gets").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("cart.badge.gets").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void evict_AfterCartChange_QueriesAgain() {
+        // Arrange
+        when(cartItemRepository.countByCustomerIdAndCartStatus(10, "active")).thenReturn(3L, 4L);
+        cartBadgeService.getItemCount(10);
+
+        // Act
+        cartBadgeService.evict(10);
+        int result = cartBadgeService.getItemCount(10);
+
+        // Assert
+        assertEquals(4, result);
+        verify(cartItemRepository, times(2)).countByCustomerIdAndCartStatus(10, "active");
+    }
+
+    @Test
+    void getItemCount_EvictedDuringQuery_DoesNotCacheOldCount() {
+        // Arrange
+        when(cartItemRepository.countByCustomerIdAndCartStatus(10, "active")).thenAnswer(invocation -> {
+            // Một yêu cầu khác thêm sản phẩm và commit trong lúc truy vấn đang chạy
+            cartBadgeService.evict(10);
+            return 3L;
+        }).thenReturn(4L);
+
+        // Act
+        int first = cartBadgeService.getItemCount(10);
+        int second = cartBadgeService.getItemCount(10);
+
+        // Assert
+        assertEquals(3, first);
+        assertEquals(4, second);
+    }
+
+    @Test
+    void getItemCount_Disabled_AlwaysQueries() {
+        // Arrange
+        cartBadgeService = new CartBadgeServiceImpl(cartItemRepository, meterRegistry, false, 100);
+        when(cartItemRepository.countByCustomerIdAndCartStatus(10, "active")).thenReturn(2L);
+
+        // Act
+        cartBadgeService.getItemCount(10);
+        cartBadgeService.getItemCount(10);
+
+        // Assert
+        verify(cartItemRepository, times(2)).countByCustomerIdAndCartStatus(10, "active");
+    }
+}
@@ -1,28 +1,42 @@
 package project.demo.service.implement;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
 
+import project.demo.dto.CartOperationDTO;
+import project.demo.dto.StockPriceSnapshot;
 import project.demo.enums.CartStatus;
+import project.demo.exception.CartException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Cart;
 import project.demo.model.CartItem;
@@ -30,6 +44,10 @@ import project.demo.model.Product;
 import project.demo.repository.CartItemRepository;
 import project.demo.repository.CartRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICoPurchaseService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.IProductDetailService;
 
 class CartServiceImplTest {
 
@@ -42,6 +60,21 @@ class CartServiceImplTest {
     @Mock
     private ProductRepository productRepository;
 
+    @Mock
+    private IProductDetailService productDetailService;
+
+    @Mock
+    private ICartWriteBehindService cartWriteBehindService;
+
+    @Mock
+    private ICartBadgeService cartBadgeService;
+
+    @Mock
+    private ICoPurchaseService coPurchaseService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private CartServiceImpl cartService;
 
@@ -74,6 +107,10 @@ class CartServiceImplTest {
         testCartItem.setQuantity(2);
         testCartItem.setUnitPrice(new BigDecimal("50.00"));
         testCartItem.setIsSelected(true);
+
+        // Setup stock and price of the test product
+        when(productDetailService.getStockAndPrice(1))
+                .thenReturn(new StockPriceSnapshot(1, true, 10, new BigDecimal("50.00"), 1L));
     }
 
     @Test
@@ -147,8 +184,9 @@ class CartServiceImplTest {
     void getOrCreateCart_NonExistingCart_CreatesNewCart() {
         // Arrange
         when(cartRepository.findByCustomerIdAndStatus(1, CartStatus.ACTIVE.getValue()))
-                .thenReturn(Optional.empty());
-        when(cartRepository.save(any(Cart.class))).thenReturn(testCart);
+                .thenReturn(Optional.empty(), Optional.of(testCart));
+        when(cartRepository.findStatusByCustomerIdForUpdate(1)).thenReturn(Optional.empty());
+        when(cartRepository.claimCart(eq(1), any())).thenReturn(1);
 
         // Act
         Cart result = cartService.getOrCreateCart(1);
@@ -156,16 +194,65 @@ class CartServiceImplTest {
         // Assert
         assertNotNull(result);
         assertEquals(testCart.getCartId(), result.getCartId());
-        verify(cartRepository, times(1)).findByCustomerIdAndStatus(1, CartStatus.ACTIVE.getValue());
-        verify(cartRepository, times(1)).save(any(Cart.class));
+        verify(cartRepository, times(1)).claimCart(eq(1), any());
+        verify(cartRepository, never()).findAll();
+        verify(cartItemRepository, never()).deleteByCartId(any());
+    }
+
+    @Test
+    void getOrCreateCart_ConvertedCart_ReusesCartWithoutItems() {
+        // Arrange
+        when(cartRepository.findByCustomerIdAndStatus(1, CartStatus.ACTIVE.getValue()))
+                .thenReturn(Optional.empty(), Optional.of(testCart));
+        when(cartRepository.findStatusByCustomerIdForUpdate(1)).thenReturn(Optional.of(CartStatus.CONVERTED.getValue()));
+        when(cartRepository.claimCart(eq(1), any())).thenReturn(1);
+
+        // Act
+        Cart result = cartService.getOrCreateCart(1);
+
+        // Assert
+        assertEquals(testCart.getCartId(), result.getCartId());
+        verify(cartItemRepository, times(1)).deleteByCartId(1);
+    }
+
+    @Test
+    void getOrCreateCart_AbandonedCart_KeepsItems() {
+        // Arrange
+        when(cartRepository.findByCustomerIdAndStatus(1, CartStatus.ACTIVE.getValue()))
+                .thenReturn(Optional.empty(), Optional.of(testCart));
+        when(cartRepository.findStatusByCustomerIdForUpdate(1)).thenReturn(Optional.of(CartStatus.ABANDONED.getValue()));
+        when(cartRepository.claimCart(eq(1), any())).thenReturn(1);
+
+        // Act
+        Cart result = cartService.getOrCreateCart(1);
+
+        // Assert
+        assertEquals(testCart.getCartId(), result.getCartId());
+        verify(cartItemRepository, never()).deleteByCartId(any());
+    }
+
+    @Test
+    void getOrCreateCart_ClaimedByOtherRequest_ReturnsTheirCartUntouched() {
+        // Arrange: yêu cầu kia kích hoạt giỏ hàng sau lần đọc đầu tiên, trước khi khóa được lấy
+        when(cartRepository.findByCustomerIdAndStatus(1, CartStatus.ACTIVE.getValue()))
+                .thenReturn(Optional.empty(), Optional.of(testCart));
+        when(cartRepository.findStatusByCustomerIdForUpdate(1)).thenReturn(Optional.of(CartStatus.ACTIVE.getValue()));
+        when(cartRepository.claimCart(eq(1), any())).thenReturn(0);
+
+        // Act
+        Cart result = cartService.getOrCreateCart(1);
+
+        // Assert
+        assertSame(testCart, result);
+        verify(cartItemRepository, never()).deleteByCartId(any());
+        verify(cartBadgeService, never()).evict(any());
     }
 
     @Test
     void addItem_NewItem_AddsItemToCart() {
         // Arrange
         when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
-        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
-        when(cartItemRepository.findByCartIdAndProductId(1, 1)).thenReturn(Optional.empty());
+        when(cartItemRepository.findByCartIdAndProductIdForUpdate(1, 1)).thenReturn(Optional.empty());
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
 
         // Mock the calculateTotal method
@@ -178,8 +265,9 @@ class CartServiceImplTest {
         assertNotNull(result);
         assertEquals(testCartItem.getCartItemId(), result.getCartItemId());
         verify(cartRepository, times(1)).findById(1);
-        verify(productRepository, times(1)).findById(1);
-        verify(cartItemRepository, times(1)).findByCartIdAndProductId(1, 1);
+        verify(productRepository, never()).findById(1);
+        verify(productDetailService, times(1)).getStockAndPrice(1);
+        verify(cartItemRepository, times(1)).findByCartIdAndProductIdForUpdate(1, 1);
         verify(cartItemRepository, times(1)).save(any(CartItem.class));
     }
 
@@ -187,8 +275,7 @@ class CartServiceImplTest {
     void addItem_ExistingItem_UpdatesQuantity() {
         // Arrange
         when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
-        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
-        when(cartItemRepository.findByCartIdAndProductId(1, 1)).thenReturn(Optional.of(testCartItem));
+        when(cartItemRepository.findByCartIdAndProductIdForUpdate(1, 1)).thenReturn(Optional.of(testCartItem));
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
 
         // Mock the calculateTotal method
@@ -201,15 +288,16 @@ class CartServiceImplTest {
         assertNotNull(result);
         assertEquals(testCartItem.getCartItemId(), result.getCartItemId());
         verify(cartRepository, times(1)).findById(1);
-        verify(productRepository, times(1)).findById(1);
-        verify(cartItemRepository, times(1)).findByCartIdAndProductId(1, 1);
+        verify(productRepository, never()).findById(1);
+        verify(productDetailService, times(1)).getStockAndPrice(1);
+        verify(cartItemRepository, times(1)).findByCartIdAndProductIdForUpdate(1, 1);
         verify(cartItemRepository, times(1)).save(any(CartItem.class));
     }
 
     @Test
     void updateItemQuantity_ExistingItem_UpdatesQuantity() {
         // Arrange
-        when(cartItemRepository.findById(1)).thenReturn(Optional.of(testCartItem));
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
 
         // Mock the calculateTotal method
@@ -221,14 +309,15 @@ class CartServiceImplTest {
         // Assert
         assertNotNull(result);
         assertEquals(testCartItem.getCartItemId(), result.getCartItemId());
-        verify(cartItemRepository, times(1)).findById(1);
+        verify(cartItemRepository, times(1)).findByIdForUpdate(1);
         verify(cartItemRepository, times(1)).save(any(CartItem.class));
     }
 
     @Test
     void removeItem_ExistingItem_RemovesItem() {
         // Arrange
-        when(cartItemRepository.findById(1)).thenReturn(Optional.of(testCartItem));
+        when(cartItemRepository.findCartIdById(1)).thenReturn(Optional.of(1));
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
         doNothing().when(cartItemRepository).deleteById(1);
 
         // Mock the calculateTotal method
@@ -238,7 +327,7 @@ class CartServiceImplTest {
         cartService.removeItem(1);
 
         // Assert
-        verify(cartItemRepository, times(1)).findById(1);
+        verify(cartItemRepository, times(1)).findByIdForUpdate(1);
         verify(cartItemRepository, times(1)).deleteById(1);
     }
 
@@ -302,7 +391,7 @@ class CartServiceImplTest {
     @Test
     void updateItemSelection_ExistingItem_UpdatesSelection() {
         // Arrange
-        when(cartItemRepository.findById(1)).thenReturn(Optional.of(testCartItem));
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
         when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
 
         // Mock the calculateTotal method
@@ -314,7 +403,306 @@ class CartServiceImplTest {
         // Assert
         assertNotNull(result);
         assertEquals(testCartItem.getCartItemId(), result.getCartItemId());
-        verify(cartItemRepository, times(1)).findById(1);
+        verify(cartItemRepository, times(1)).findByIdForUpdate(1);
         verify(cartItemRepository, times(1)).save(any(CartItem.class));
     }
+
+    @Test
+    void addItem_NewItem_AdjustsTotalByNewLine() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdAndProductIdForUpdate(1, 1)).thenReturn(Optional.empty());
+        when(cartItemRepository.save(any(CartItem.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        // Act
+        cartService.addItem(1, 1, 2);
+
+        // Assert
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("100.00"));
+        verify(cartItemRepository, never()).findByCartIdAndIsSelected(1, true);
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
+
+    @Test
+    void updateItemQuantity_SelectedItem_AdjustsTotalByDifference() {
+        // Arrange
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+
+        // Act
+        cartService.updateItemQuantity(1, 5);
+
+        // Assert
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("150.00"));
+        verify(cartItemRepository, never()).findByCartIdAndIsSelected(1, true);
+    }
+
+    @Test
+    void updateItemSelection_Unselect_SubtractsLine() {
+        // Arrange
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+
+        // Act
+        cartService.updateItemSelection(1, false);
+
+        // Assert
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("-100.00"));
+    }
+
+    @Test
+    void updateItemSelection_SelectionUnchanged_KeepsTotal() {
+        // Arrange
+        testCartItem.setIsSelected(false);
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+
+        // Act
+        cartService.updateItemSelection(1, false);
+
+        // Assert
+        verify(cartRepository, never()).adjustTotalAmount(any(), any());
+        verify(cartRepository, times(1)).touch(eq(1), any(LocalDateTime.class));
+    }
+
+    @Test
+    void updateItemQuantity_UnselectedItem_TouchesCartWithoutChangingTotal() {
+        // Arrange
+        testCartItem.setIsSelected(false);
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+
+        // Act
+        cartService.updateItemQuantity(1, 5);
+
+        // Assert
+        verify(cartRepository, never()).adjustTotalAmount(any(), any());
+        verify(cartRepository, times(1)).touch(eq(1), any(LocalDateTime.class));
+    }
+
+    @Test
+    void updateItemQuantity_ByProduct_TakesDeltaFromLockedRow() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdAndProductIdForUpdate(1, 1)).thenReturn(Optional.of(testCartItem));
+        when(cartItemRepository.save(any(CartItem.class))).thenReturn(testCartItem);
+
+        // Act
+        cartService.updateItemQuantity(1, 1, 3, "increase");
+
+        // Assert
+        assertEquals(5, testCartItem.getQuantity());
+        verify(cartItemRepository, never()).findByCartIdAndProductId(any(), any());
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("150.00"));
+    }
+
+    @Test
+    void reconcileTotals_StaleCart_RecalculatesFromSelectedItems() {
+        // Arrange
+        testCart.setTotalAmount(BigDecimal.ZERO);
+        when(cartRepository.findCartIdsWithStaleTotal(CartStatus.ACTIVE.getValue())).thenReturn(List.of(1));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdAndIsSelected(1, true)).thenReturn(List.of(testCartItem));
+
+        // Act
+        int corrected = cartService.reconcileTotals();
+
+        // Assert
+        assertEquals(1, corrected);
+        assertEquals(new BigDecimal("100.00"), testCart.getTotalAmount());
+        verify(cartRepository, times(1)).save(testCart);
+    }
+
+    @Test
+    void updateItemQuantity_WriteBehindEnabled_KeepsChangeInMemoryWithoutLock() {
+        // Arrange
+        CartItem buffered = new CartItem(1, 1, 1, 5, new BigDecimal("50.00"), null, true);
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartItemRepository.findById(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(productDetailService.getStockAndPrice(1))
+                .thenReturn(new StockPriceSnapshot(1, true, 10, new BigDecimal("50.00"), 1L));
+        when(cartWriteBehindService.record(testCart, testCartItem, 5, null)).thenReturn(buffered);
+
+        // Act
+        CartItem result = cartService.updateItemQuantity(1, 5);
+
+        // Assert
+        assertEquals(5, result.getQuantity());
+        verify(cartItemRepository, never()).findByIdForUpdate(any());
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+        verify(cartRepository, never()).adjustTotalAmount(any(), any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void updateItemSelection_ItemHeldInMemory_RunsNoQuery() {
+        // Arrange
+        CartItem held = new CartItem(1, 1, 1, 2, new BigDecimal("50.00"), null, true);
+        CartItem changed = new CartItem(1, 1, 1, 2, new BigDecimal("50.00"), null, false);
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartWriteBehindService.find(1)).thenReturn(held);
+        when(cartWriteBehindService.record(1, null, false)).thenReturn(changed);
+
+        // Act
+        CartItem result = cartService.updateItemSelection(1, false);
+
+        // Assert
+        assertSame(changed, result);
+        verifyNoInteractions(cartItemRepository, cartRepository, transactionManager);
+    }
+
+    @Test
+    void updateItemQuantity_ItemHeldInMemory_ChecksStockWithoutQuery() {
+        // Arrange
+        CartItem held = new CartItem(1, 1, 1, 2, new BigDecimal("50.00"), null, true);
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartWriteBehindService.find(1)).thenReturn(held);
+        when(productDetailService.getStockAndPrice(1))
+                .thenReturn(new StockPriceSnapshot(1, true, 3, new BigDecimal("50.00"), 1L));
+
+        // Act & Assert
+        assertThrows(CartException.class, () -> cartService.updateItemQuantity(1, 4));
+        verify(cartWriteBehindService, never()).record(any(Integer.class), any(), any());
+        verifyNoInteractions(cartItemRepository, cartRepository);
+    }
+
+    @Test
+    void applyOperations_MixedOperations_AppliesAllAndAdjustsTotalOnce() {
+        // Arrange
+        CartItem second = new CartItem(2, 1, 2, 1, new BigDecimal("30.00"), null, true);
+        CartItem third = new CartItem(3, 1, 3, 1, new BigDecimal("20.00"), null, false);
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdForUpdate(1)).thenReturn(List.of(testCartItem, second, third));
+        when(productDetailService.getStockAndPrice(anyCollection()))
+                .thenReturn(Map.of(1, new StockPriceSnapshot(1, true, 10, new BigDecimal("50.00"), 1L)));
+        List<CartOperationDTO> operations = List.of(
+                new CartOperationDTO(CartOperationDTO.SET_QUANTITY, 1, 3),
+                new CartOperationDTO(CartOperationDTO.REMOVE, 2, null),
+                new CartOperationDTO(CartOperationDTO.SELECT, 3, null));
+
+        // Act
+        List<CartItem> result = cartService.applyOperations(1, operations);
+
+        // Assert
+        assertEquals(List.of(testCartItem, third), result);
+        assertEquals(3, testCartItem.getQuantity());
+        assertTrue(third.getIsSelected());
+        verify(productDetailService, times(1)).getStockAndPrice(Set.of(1));
+        verify(cartItemRepository, times(1)).deleteAll(List.of(second));
+        // Trước: 100 + 30 = 130, sau: 150 + 20 = 170
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("40.00"));
+    }
+
+    @Test
+    void applyOperations_QuantityExceedsStock_ThrowsWithoutWriting() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdForUpdate(1)).thenReturn(List.of(testCartItem));
+        when(productDetailService.getStockAndPrice(anyCollection()))
+                .thenReturn(Map.of(1, new StockPriceSnapshot(1, true, 4, new BigDecimal("50.00"), 1L)));
+        List<CartOperationDTO> operations = List.of(
+                new CartOperationDTO(CartOperationDTO.UNSELECT, 1, null),
+                new CartOperationDTO(CartOperationDTO.SET_QUANTITY, 1, 5));
+
+        // Act & Assert
+        CartException exception = assertThrows(CartException.class, () -> cartService.applyOperations(1, operations));
+        assertEquals("INSUFFICIENT_STOCK", exception.getErrorCode());
+        verify(cartItemRepository, never()).saveAll(any());
+        verify(cartRepository, never()).adjustTotalAmount(any(), any());
+    }
+
+    @Test
+    void applyOperations_ItemOfAnotherCart_ThrowsResourceNotFoundException() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdForUpdate(1)).thenReturn(List.of(testCartItem));
+        List<CartOperationDTO> operations = List.of(new CartOperationDTO(CartOperationDTO.REMOVE, 99, null));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> cartService.applyOperations(1, operations));
+        verify(cartItemRepository, never()).deleteAll(any());
+    }
+
+    @Test
+    void applyOperations_UnknownOperation_ThrowsCartException() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartIdForUpdate(1)).thenReturn(List.of(testCartItem));
+        List<CartOperationDTO> operations = List.of(new CartOperationDTO("rename", 1, null));
+
+        // Act & Assert
+        CartException exception = assertThrows(CartException.class, () -> cartService.applyOperations(1, operations));
+        assertEquals("INVALID_OPERATION", exception.getErrorCode());
+        verify(productDetailService, never()).getStockAndPrice(anyCollection());
+    }
+
+    @Test
+    void removeItem_ExistingItem_EvictsBadgeCount() {
+        // Arrange
+        when(cartItemRepository.findCartIdById(1)).thenReturn(Optional.of(1));
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+
+        // Act
+        cartService.removeItem(1);
+
+        // Assert
+        verify(cartItemRepository, times(1)).deleteById(1);
+        verify(cartBadgeService, times(1)).evict(testCart.getCustomerId());
+    }
+
+    @Test
+    void removeItem_WriteBehindEnabled_FlushesBeforeLockingRow() {
+        // Arrange
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartItemRepository.findCartIdById(1)).thenReturn(Optional.of(1));
+        when(cartItemRepository.findByIdForUpdate(1)).thenReturn(Optional.of(testCartItem));
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+
+        // Act
+        cartService.removeItem(1);
+
+        // Assert
+        InOrder inOrder = inOrder(cartWriteBehindService, cartItemRepository);
+        inOrder.verify(cartWriteBehindService).flush(1);
+        inOrder.verify(cartItemRepository).findByIdForUpdate(1);
+        inOrder.verify(cartItemRepository).deleteById(1);
+        verify(cartRepository, times(1)).adjustTotalAmount(1, new BigDecimal("-100.00"));
+    }
+
+    @Test
+    void addItem_UnknownProduct_ThrowsResourceNotFoundException() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(productDetailService.getStockAndPrice(99)).thenReturn(StockPriceSnapshot.missing(99, 1L));
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> cartService.addItem(1, 99, 1));
+        verify(cartItemRepository, never()).save(any(CartItem.class));
+    }
+
+    @Test
+    void getRecommendations_ModelNotBuilt_UsesOneBoundedCatalogQuery() {
+        // Arrange
+        Product similar = new Product();
+        similar.setProductId(2);
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartId(1)).thenReturn(List.of(testCartItem));
+        when(coPurchaseService.isEnabled()).thenReturn(false);
+        when(productRepository.findInCatalogsOfProductsExcluding(List.of(1), PageRequest.of(0, 4)))
+                .thenReturn(List.of(similar));
+
+        // Act
+        List<Product> result = cartService.getRecommendations(1, 4);
+
+        // Assert
+        assertEquals(List.of(similar), result);
+        verify(productRepository, never()).findById(any());
+        verify(productRepository, never()).findByCatalogId(any());
+    }
 }
@@ -0,0 +1,121 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.PlatformTransactionManager;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.CartRepository;
+import project.demo.service.ICartBadgeService;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartSweeperServiceImplTest {
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ICartBadgeService cartBadgeService;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CartSweeperServiceImpl cartSweeperService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        // Lô 3 giỏ hàng, không có giờ cao điểm, không nghỉ giữa các lô, tối đa 5 lô mỗi lần chạy
+        cartSweeperService = new CartSweeperServiceImpl(cartRepository, cartItemRepository, cartBadgeService,
+                transactionManager, new SimpleMeterRegistry(), true, 72, 30, 3, 1, "", 0, 5);
+    }
+
+    @Test
+    void markAbandoned_SeveralBatches_StopsAfterShortBatchAndEvictsBadges() {
+        // Arrange
+        when(cartRepository.markAbandoned(3, 72 * 60))
+                .thenReturn(List.of(10, 11, 12))
+                .thenReturn(List.of(13));
+
+        // Act
+        int marked = cartSweeperService.markAbandoned();
+
+        // Assert
+        assertEquals(4, marked);
+        verify(cartRepository, times(2)).markAbandoned(3, 72 * 60);
+        verify(transactionManager, times(2)).commit(any());
+        verify(cartBadgeService).evict(10);
+        verify(cartBadgeService).evict(13);
+    }
+
+    @Test
+    void markAbandoned_BacklogLargerThanRun_StopsAtMaxBatches() {
+        // Arrange
+        when(cartRepository.markAbandoned(anyInt(), anyLong())).thenReturn(List.of(1, 2, 3));
+
+        // Act
+        int marked = cartSweeperService.markAbandoned();
+
+        // Assert
+        assertEquals(15, marked);
+        verify(cartRepository, times(5)).markAbandoned(anyInt(), anyLong());
+    }
+
+    @Test
+    void purgeConverted_OneBatch_DeletesItemsThenCartsGuardedByStatus() {
+        // Arrange
+        List<Integer> cartIds = List.of(4, 5);
+        when(cartRepository.findIdleCartIds("converted", 30, 3)).thenReturn(cartIds);
+        when(cartRepository.deleteByCartIdInAndStatus(cartIds, "converted")).thenReturn(1);
+
+        // Act
+        int deleted = cartSweeperService.purgeConverted();
+
+        // Assert
+        assertEquals(1, deleted);
+        var inOrder = inOrder(cartItemRepository, cartRepository);
+        inOrder.verify(cartItemRepository).deleteByCartIdInAndCartStatus(cartIds, "converted");
+        inOrder.verify(cartRepository).deleteByCartIdInAndStatus(cartIds, "converted");
+        verify(cartRepository, times(1)).findIdleCartIds(anyString(), anyLong(), anyInt());
+    }
+
+    @Test
+    void purgeConverted_NothingToDelete_RunsNoDelete() {
+        // Arrange
+        when(cartRepository.findIdleCartIds(anyString(), anyLong(), anyInt())).thenReturn(Collections.emptyList());
+
+        // Act
+        int deleted = cartSweeperService.purgeConverted();
+
+        // Assert
+        assertEquals(0, deleted);
+        verifyNoInteractions(cartItemRepository);
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void isPeakHour_WindowAcrossMidnight_MatchesBothSides() {
+        // Arrange
+        CartSweeperServiceImpl nightPeak = new CartSweeperServiceImpl(cartRepository, cartItemRepository,
+                cartBadgeService, transactionManager, new SimpleMeterRegistry(), true, 72, 30, 2000, 200, "20-2",
+                0, 5);
+
+        // Act & Assert
+        assertTrue(nightPeak.isPeakHour(21));
+        assertTrue(nightPeak.isPeakHour(1));
+        assertFalse(nightPeak.isPeakHour(2));
+        assertFalse(nightPeak.isPeakHour(12));
+        assertFalse(cartSweeperService.isPeakHour(12));
+    }
+}
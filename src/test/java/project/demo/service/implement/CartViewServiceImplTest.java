@@ -0,0 +1,137 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import project.demo.dto.CartView;
+import project.demo.dto.ProductCardDTO;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+import project.demo.model.Product;
+import project.demo.model.ProductDetail;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.ICoPurchaseService;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartViewServiceImplTest {
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private ICartWriteBehindService cartWriteBehindService;
+
+    @Mock
+    private ICoPurchaseService coPurchaseService;
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    private CartViewServiceImpl cartViewService;
+    private Cart cart;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cartViewService = new CartViewServiceImpl(cartItemRepository, productRepository, cartWriteBehindService,
+                coPurchaseService, catalogSnapshotService);
+
+        cart = new Cart();
+        cart.setCartId(1);
+        cart.setCustomerId(10);
+    }
+
+    @Test
+    void getCartView_SeveralItems_UsesOneItemQueryAndOneRecommendationQuery() {
+        // Arrange
+        CartItem first = item(1, 100, 5, "a.jpg", 2, new BigDecimal("50.00"));
+        CartItem second = item(2, 200, 0, null, 1, new BigDecimal("30.00"));
+        when(cartItemRepository.findByCartIdWithProductDetails(1)).thenReturn(List.of(first, second));
+        ProductCardDTO card = new ProductCardDTO(3, 7, "Card", new BigDecimal("20.00"), "c.jpg", null, 4, "Gifts");
+        when(productRepository.findProductCardsInCatalogsExcluding(eq(Set.of(7)), eq(Set.of(100, 200)),
+                any(Pageable.class))).thenReturn(List.of(card));
+
+        // Act
+        CartView view = cartViewService.getCartView(cart, 4);
+
+        // Assert
+        assertEquals(2, view.getItems().size());
+        assertEquals(0, new BigDecimal("130.00").compareTo(view.getCartTotal()));
+        assertEquals(0, new BigDecimal("130.00").compareTo(view.getFinalTotal()));
+        assertEquals(5, view.getStockQuantities().get(100));
+        assertEquals(0, view.getStockQuantities().get(200));
+        assertEquals(4, view.getStockQuantities().get(3));
+        assertEquals("a.jpg", view.getProductImages().get(100));
+        assertFalse(view.getProductImages().containsKey(200));
+        assertEquals(List.of(card), view.getRecommendations());
+        verify(cartItemRepository, times(1)).findByCartIdWithProductDetails(1);
+        verifyNoMoreInteractions(cartItemRepository);
+        verify(productRepository, never()).findById(any());
+    }
+
+    @Test
+    void getCartView_EmptyCart_RecommendsProductsWithMostStock() {
+        // Arrange
+        when(cartItemRepository.findByCartIdWithProductDetails(1)).thenReturn(Collections.emptyList());
+
+        // Act
+        CartView view = cartViewService.getCartView(cart, 4);
+
+        // Assert
+        assertTrue(view.getItems().isEmpty());
+        assertEquals(0, BigDecimal.ZERO.compareTo(view.getCartTotal()));
+        verify(productRepository, times(1)).findProductCardsByHighestStock(any(Pageable.class));
+        verify(productRepository, never()).findProductCardsInCatalogsExcluding(any(), any(), any());
+    }
+
+    @Test
+    void getCartView_CoPurchaseModelBuilt_UsesModelAndOneCardQuery() {
+        // Arrange
+        CartItem first = item(1, 100, 5, "a.jpg", 1, new BigDecimal("50.00"));
+        when(cartItemRepository.findByCartIdWithProductDetails(1)).thenReturn(List.of(first));
+        when(coPurchaseService.isEnabled()).thenReturn(true);
+        when(coPurchaseService.recommend(Set.of(100), 4)).thenReturn(List.of(9, 8));
+        ProductCardDTO eight = new ProductCardDTO(8, 7, "Eight", BigDecimal.TEN, null, null, 1, "Gifts");
+        ProductCardDTO nine = new ProductCardDTO(9, 7, "Nine", BigDecimal.TEN, null, null, 1, "Gifts");
+        when(productRepository.findProductCardsByProductIdIn(List.of(9, 8))).thenReturn(List.of(eight, nine));
+
+        // Act
+        CartView view = cartViewService.getCartView(cart, 4);
+
+        // Assert
+        assertEquals(List.of(nine, eight), view.getRecommendations());
+        verify(productRepository, never()).findProductCardsInCatalogsExcluding(any(), any(), any());
+    }
+
+    private static CartItem item(int cartItemId, int productId, int stock, String imageUrl, int quantity,
+            BigDecimal unitPrice) {
+        Product product = new Product();
+        product.setProductId(productId);
+        product.setCatalogId(7);
+        ProductDetail detail = new ProductDetail();
+        detail.setProductId(productId);
+        detail.setQuantityInStock(stock);
+        detail.setImageUrl(imageUrl);
+        product.setProductDetails(List.of(detail));
+
+        CartItem item = new CartItem(cartItemId, 1, productId, quantity, unitPrice, null, true);
+        item.setProduct(product);
+        return item;
+    }
+}
@@ -0,0 +1,173 @@
+package project.demo.service.implement;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+
+/**
+ * Throughput benchmark of quantity clicks on the cart page: the synchronous
+ * path (one transaction with an item UPDATE and a total UPDATE per click)
+ * against the write-behind store (clicks in memory, one batch per flush).
+ * The database is simulated by a fixed round trip per statement, batch and
+ * commit, so the numbers show the write cost only; the reads of a request
+ * are the same on both paths.
+ *
+ * Not a unit test; run manually, e.g.
+ * java -cp target/classes:target/test-classes:... project.demo.service.implement.CartWriteBehindBenchmark
+ */
+public class CartWriteBehindBenchmark {
+
+    /** Một lượt đi về tới SQL Server trong cùng trung tâm dữ liệu */
+    private static final long ROUND_TRIP_MICROS = 400;
+    private static final int THREADS = 16;
+    private static final int CARTS = 2_000;
+    private static final int CLICKS = 40_000;
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+
+    private static final AtomicLong NEXT_CLICK = new AtomicLong();
+
+    public static void main(String[] args) throws Exception {
+        LatencyJdbcTemplate syncJdbc = new LatencyJdbcTemplate();
+        TransactionTemplate syncTransactions = new TransactionTemplate(new LatencyTransactionManager(syncJdbc));
+        double syncRate = run(clicks((cart, item, quantity) -> syncTransactions.executeWithoutResult(status -> {
+            syncJdbc.update("UPDATE CartItem SET quantity = ? WHERE cart_item_id = ?", quantity, item.getCartItemId());
+            syncJdbc.update("UPDATE Cart SET total_amount = total_amount + ? WHERE cart_id = ?", BigDecimal.TEN,
+                    cart.getCartId());
+        })));
+        report("synchronous", syncRate, syncJdbc);
+
+        LatencyJdbcTemplate bufferedJdbc = new LatencyJdbcTemplate();
+        CartWriteBehindServiceImpl store = new CartWriteBehindServiceImpl(bufferedJdbc,
+                new LatencyTransactionManager(bufferedJdbc), new SimpleMeterRegistry(), true, CARTS, 600_000);
+        Thread flusher = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(FLUSH_INTERVAL_MILLIS));
+                store.flush();
+            }
+        });
+        flusher.setDaemon(true);
+        flusher.start();
+        double bufferedRate = run(clicks((cart, item, quantity) -> store.record(cart, item, quantity, null)));
+        flusher.interrupt();
+        flusher.join();
+        store.flush();
+        report("write-behind", bufferedRate, bufferedJdbc);
+    }
+
+    /**
+     * @return clicks per second
+     */
+    private static double run(Runnable clicks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(clicks));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return CLICKS * 1e9 / (System.nanoTime() - start);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Runnable clicks(Click click) {
+        NEXT_CLICK.set(0);
+        return () -> {
+            long n;
+            while ((n = NEXT_CLICK.getAndIncrement()) < CLICKS) {
+                int cartId = (int) (n % CARTS) + 1;
+                Cart cart = new Cart();
+                cart.setCartId(cartId);
+                cart.setCustomerId(cartId);
+                CartItem item = new CartItem(cartId, cartId, 1, 1, BigDecimal.TEN, null, true);
+                click.apply(cart, item, (int) (n / CARTS) % 9 + 1);
+            }
+        };
+    }
+
+    private static void report(String name, double clicksPerSecond, LatencyJdbcTemplate jdbc) {
+        System.out.printf(Locale.ROOT, "%-12s %,10.0f clicks/s | %,7d statements, %,5d batches, %,6d commits%n",
+                name, clicksPerSecond, jdbc.statements.get(), jdbc.batches.get(), jdbc.commits.get());
+    }
+
+    private static void roundTrip() {
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ROUND_TRIP_MICROS));
+    }
+
+    @FunctionalInterface
+    private interface Click {
+        void apply(Cart cart, CartItem item, int quantity);
+    }
+
+    private static final class LatencyJdbcTemplate extends JdbcTemplate {
+        private final AtomicLong statements = new AtomicLong();
+        private final AtomicLong batches = new AtomicLong();
+        private final AtomicLong commits = new AtomicLong();
+
+        @Override
+        public int update(String sql, Object... args) {
+            statements.incrementAndGet();
+            roundTrip();
+            return 1;
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            batches.incrementAndGet();
+            statements.addAndGet(batchArgs.size());
+            // Một lượt đi về cho cả lô, cộng thời gian thực thi nhỏ cho mỗi dòng
+            roundTrip();
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(batchArgs.size() * 5L));
+            return new int[batchArgs.size()];
+        }
+    }
+
+    private static final class LatencyTransactionManager extends AbstractPlatformTransactionManager {
+        private final LatencyJdbcTemplate jdbc;
+
+        private LatencyTransactionManager(LatencyJdbcTemplate jdbc) {
+            this.jdbc = jdbc;
+        }
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            jdbc.commits.incrementAndGet();
+            roundTrip();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            roundTrip();
+        }
+    }
+}
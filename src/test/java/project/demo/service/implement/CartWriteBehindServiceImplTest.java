@@ -0,0 +1,254 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import project.demo.model.Cart;
+import project.demo.model.CartItem;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CartWriteBehindServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CartWriteBehindServiceImpl cartWriteBehindService;
+    private Cart cart;
+    private CartItem cartItem;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        cartWriteBehindService = new CartWriteBehindServiceImpl(jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), true, 2, 600000);
+
+        cart = new Cart();
+        cart.setCartId(1);
+        cart.setCustomerId(10);
+
+        cartItem = new CartItem(5, 1, 3, 2, new BigDecimal("50.00"), null, true);
+    }
+
+    @Test
+    void flush_RepeatedClicks_WritesOneRowUpdate() {
+        // Arrange
+        for (int quantity = 3; quantity <= 6; quantity++) {
+            cartWriteBehindService.record(cart, cartItem, quantity, null);
+        }
+
+        // Act
+        int written = cartWriteBehindService.flush();
+
+        // Assert
+        assertEquals(1, written);
+        List<Object[]> itemArgs = captureBatch("CartItem");
+        assertEquals(1, itemArgs.size());
+        assertArrayEquals(new Object[] { 6, true, 5 }, itemArgs.get(0));
+        List<Object[]> totalArgs = captureBatch("dbo.Cart ");
+        assertArrayEquals(new Object[] { new BigDecimal("200.00"), 1 }, totalArgs.get(0));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void overlay_PendingChange_ReturnsCopyAndKeepsLoadedItem() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, null, false);
+
+        // Act
+        CartItem result = cartWriteBehindService.overlay(cartItem);
+
+        // Assert
+        assertNotSame(cartItem, result);
+        assertFalse(result.getIsSelected());
+        assertTrue(cartItem.getIsSelected());
+        assertEquals(0, new BigDecimal("-100.00").compareTo(cartWriteBehindService.getPendingTotalDelta(1)));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void flush_WriteFails_KeepsChangesForNextFlush() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 4, null);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new DataAccessResourceFailureException("connection reset"))
+                .thenReturn(new int[] { 1 });
+
+        // Act
+        assertThrows(DataAccessResourceFailureException.class, () -> cartWriteBehindService.flush());
+
+        // Assert
+        verify(transactionManager, times(1)).rollback(any());
+        assertEquals(4, cartWriteBehindService.overlay(cartItem).getQuantity());
+        assertEquals(0, new BigDecimal("100.00").compareTo(cartWriteBehindService.getPendingTotalDelta(1)));
+
+        // Act
+        cartWriteBehindService.flush();
+
+        // Assert
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("CartItem"), anyList());
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("dbo.Cart "), anyList());
+        assertEquals(0, BigDecimal.ZERO.compareTo(cartWriteBehindService.getPendingTotalDelta(1)));
+    }
+
+    @Test
+    void flush_ChangeDuringFailedWrite_KeepsNewerValue() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 4, null);
+        doAnswer(invocation -> {
+            // Khách hàng bấm tiếp trong lúc lần ghi đang chạy rồi thất bại
+            cartWriteBehindService.record(cart, cartItem, 7, null);
+            throw new DataAccessResourceFailureException("connection reset");
+        }).doReturn(new int[] { 1 }).when(jdbcTemplate).batchUpdate(contains("CartItem"), anyList());
+
+        // Act
+        assertThrows(DataAccessResourceFailureException.class, () -> cartWriteBehindService.flush());
+        cartWriteBehindService.flush();
+
+        // Assert
+        ArgumentCaptor<List<Object[]>> captor = captor();
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("CartItem"), captor.capture());
+        assertArrayEquals(new Object[] { 7, true, 5 }, captor.getAllValues().get(1).get(0));
+        List<Object[]> totalArgs = captureBatch("dbo.Cart ");
+        assertArrayEquals(new Object[] { new BigDecimal("250.00"), 1 }, totalArgs.get(0));
+    }
+
+    @Test
+    void flushCart_PendingChanges_WritesAndDropsCart() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+
+        // Act
+        cartWriteBehindService.flush(1);
+
+        // Assert
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("CartItem"), anyList());
+        assertSame(cartItem, cartWriteBehindService.overlay(cartItem));
+        assertEquals(BigDecimal.ZERO, cartWriteBehindService.getPendingTotalDelta(1));
+    }
+
+    @Test
+    void shutdown_PendingChanges_WrittenBeforeStop() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+
+        // Act
+        cartWriteBehindService.shutdown();
+
+        // Assert
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("CartItem"), anyList());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void record_StoreFull_ReturnsNullForNewCart() {
+        // Arrange
+        Cart second = new Cart();
+        second.setCartId(2);
+        second.setCustomerId(20);
+        Cart third = new Cart();
+        third.setCartId(3);
+        third.setCustomerId(30);
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+        cartWriteBehindService.record(second, new CartItem(6, 2, 3, 1, BigDecimal.TEN, null, true), 2, null);
+
+        // Act
+        CartItem result = cartWriteBehindService.record(third,
+                new CartItem(7, 3, 3, 1, BigDecimal.TEN, null, true), 2, null);
+
+        // Assert
+        assertNull(result);
+        assertNotNull(cartWriteBehindService.record(cart, cartItem, 4, null));
+    }
+
+    @Test
+    void recordById_HeldItem_ChangesItWithoutLoadedEntity() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+
+        // Act
+        CartItem found = cartWriteBehindService.find(5);
+        CartItem changed = cartWriteBehindService.record(5, null, false);
+
+        // Assert
+        assertEquals(3, found.getQuantity());
+        assertEquals(3, found.getProductId());
+        assertEquals(1, found.getCartId());
+        assertFalse(changed.getIsSelected());
+        assertEquals(0, new BigDecimal("-100.00").compareTo(cartWriteBehindService.getPendingTotalDelta(1)));
+        assertNull(cartWriteBehindService.find(6));
+        assertNull(cartWriteBehindService.record(6, 1, null));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void recordById_AfterCartFlush_ReturnsNull() {
+        // Arrange
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+        cartWriteBehindService.flush(1);
+
+        // Act
+        CartItem changed = cartWriteBehindService.record(5, 4, null);
+
+        // Assert
+        assertNull(changed);
+        assertNull(cartWriteBehindService.find(5));
+    }
+
+    @Test
+    void flush_CartBeingWrittenByRequest_SkipsItAndWritesOthers() throws Exception {
+        // Arrange
+        Cart second = new Cart();
+        second.setCartId(2);
+        second.setCustomerId(20);
+        cartWriteBehindService.record(cart, cartItem, 3, null);
+        AtomicInteger scheduledWrites = new AtomicInteger(-1);
+        doAnswer(invocation -> {
+            List<Object[]> batchArgs = invocation.getArgument(1);
+            if (batchArgs.get(0)[2].equals(5) && scheduledWrites.get() < 0) {
+                // Lần ghi định kỳ chạy trong lúc yêu cầu đang ghi giỏ hàng 1
+                cartWriteBehindService.record(second, new CartItem(6, 2, 3, 1, BigDecimal.TEN, null, true), 2, null);
+                Thread scheduler = new Thread(() -> scheduledWrites.set(cartWriteBehindService.flush()));
+                scheduler.start();
+                scheduler.join(5000);
+            }
+            return new int[] { 1 };
+        }).when(jdbcTemplate).batchUpdate(contains("CartItem"), anyList());
+
+        // Act
+        cartWriteBehindService.flush(1);
+
+        // Assert
+        assertEquals(1, scheduledWrites.get());
+        ArgumentCaptor<List<Object[]>> captor = captor();
+        verify(jdbcTemplate, times(2)).batchUpdate(contains("CartItem"), captor.capture());
+        assertEquals(6, captor.getAllValues().get(1).get(0)[2]);
+        assertEquals(1, captor.getAllValues().get(1).size());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static ArgumentCaptor<List<Object[]>> captor() {
+        return (ArgumentCaptor) ArgumentCaptor.forClass(List.class);
+    }
+
+    private List<Object[]> captureBatch(String table) {
+        ArgumentCaptor<List<Object[]>> captor = captor();
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(contains(table), captor.capture());
+        return captor.getValue();
+    }
+}
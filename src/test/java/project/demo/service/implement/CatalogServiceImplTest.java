@@ -10,6 +10,7 @@ import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Catalog;
 import project.demo.model.Product;
 import project.demo.repository.CatalogRepository;
+import project.demo.service.ICatalogSnapshotService;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -24,6 +25,9 @@ class CatalogServiceImplTest {
     @Mock
     private CatalogRepository catalogRepository;
 
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
     @InjectMocks
     private CatalogServiceImpl catalogService;
 
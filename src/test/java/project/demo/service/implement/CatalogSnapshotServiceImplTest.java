@@ -0,0 +1,203 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.model.Catalog;
+import project.demo.repository.CatalogRepository;
+import project.demo.repository.ProductRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CatalogSnapshotServiceImplTest {
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private CatalogRepository catalogRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogSnapshotServiceImpl catalogSnapshotService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        catalogSnapshotService = new CatalogSnapshotServiceImpl(productRepository, catalogRepository,
+                eventPublisher, meterRegistry, true, 300);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, 1, "Móc khóa", "50000", null, 10));
+        cards.add(card(2, 1, "Nón lá", "120000", "90000", 5));
+        cards.add(card(3, 2, "Áo dài mini", "300000", null, 0));
+
+        List<Catalog> catalogs = new ArrayList<>();
+        catalogs.add(new Catalog(1, "Quà lưu niệm", "Test Description", true));
+        catalogs.add(new Catalog(2, "Thời trang", "Test Description", false));
+
+        when(productRepository.findAllProductCards()).thenReturn(cards);
+        when(catalogRepository.findAll(any(Sort.class))).thenReturn(catalogs);
+    }
+
+    @Test
+    void getSnapshot_FirstRead_BuildsOnceAndIndexes() {
+        // Act
+        CatalogSnapshot first = catalogSnapshotService.getSnapshot();
+        CatalogSnapshot second = catalogSnapshotService.getSnapshot();
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(3, first.getProductCount());
+        assertEquals(2, first.getProductsByCatalogId(1).size());
+        assertEquals(1, first.getActiveCatalogs().size());
+        assertNotNull(first.getCatalog(2));
+        verify(productRepository, times(1)).findAllProductCards();
+        assertEquals(1, meterRegistry.get("catalog.snapshot.rebuild").tag("type", "full").timer().count());
+    }
+
+    @Test
+    void findProductCards_PriceRangeAndSort_UsesEffectivePrice() {
+        // Act
+        Page<ProductCardDTO> result = catalogSnapshotService.findProductCards(null, null,
+                new BigDecimal("50000"), new BigDecimal("100000"),
+                PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "price")));
+
+        // Assert
+        assertEquals(2, result.getTotalElements());
+        assertEquals(2, result.getTotalPages());
+        assertEquals(2, result.getContent().get(0).getProductId());
+    }
+
+    @Test
+    void findProductCards_CatalogAndKeyword_FiltersInMemory() {
+        // Act
+        Page<ProductCardDTO> result = catalogSnapshotService.findProductCards(1, "nón", null, null,
+                PageRequest.of(0, 8));
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals("Nón lá", result.getContent().get(0).getProductName());
+    }
+
+    @Test
+    void findProductCardsAfter_PriceCursor_ReturnsFollowingCards() {
+        // Arrange
+        Sort sort = Sort.by("price").and(Sort.by("productId"));
+        ProductCardDTO after = card(1, 1, null, "50000", null, null);
+
+        // Act
+        List<ProductCardDTO> result = catalogSnapshotService.findProductCardsAfter(null, sort, after, 1);
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(2, result.get(0).getProductId());
+    }
+
+    @Test
+    void refreshProduct_ChangedProduct_SwapsCopyWithoutFullRebuild() {
+        // Arrange
+        CatalogSnapshot before = catalogSnapshotService.getSnapshot();
+        when(productRepository.findProductCardsByProductIdIn(anyCollection()))
+                .thenReturn(List.of(card(2, 1, "Nón lá", "120000", "90000", 4)));
+
+        // Act
+        catalogSnapshotService.refreshProduct(2);
+        CatalogSnapshot after = catalogSnapshotService.getSnapshot();
+
+        // Assert
+        assertNotSame(before, after);
+        assertEquals(before.getVersion() + 1, after.getVersion());
+        assertEquals(5, before.getProduct(2).getQuantityInStock());
+        assertEquals(4, after.getProduct(2).getQuantityInStock());
+        verify(productRepository, times(1)).findAllProductCards();
+        verify(eventPublisher, times(2)).publishEvent(any(CatalogChangedEvent.class));
+    }
+
+    @Test
+    void refreshProduct_DeletedProduct_RemovesFromSnapshot() {
+        // Arrange
+        catalogSnapshotService.getSnapshot();
+        when(productRepository.findProductCardsByProductIdIn(anyCollection())).thenReturn(new ArrayList<>());
+
+        // Act
+        catalogSnapshotService.refreshProduct(3);
+
+        // Assert
+        CatalogSnapshot after = catalogSnapshotService.getSnapshot();
+        assertNull(after.getProduct(3));
+        assertTrue(after.getProductsByCatalogId(2).isEmpty());
+    }
+
+    @Test
+    void findProductCards_NameDescending_SlicesPresortedOrder() {
+        // Act
+        Page<ProductCardDTO> result = catalogSnapshotService.findProductCards(null, null, null, null,
+                PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "productName")
+                        .and(Sort.by(Sort.Direction.DESC, "productId"))));
+
+        // Assert
+        assertEquals(3, result.getTotalElements());
+        assertEquals(3, result.getContent().get(0).getProductId());
+        assertEquals(2, result.getContent().get(1).getProductId());
+    }
+
+    @Test
+    void findProductCardsAfter_PriceDescendingCursor_ReturnsFollowingCards() {
+        // Arrange
+        Sort sort = Sort.by(Sort.Direction.DESC, "price").and(Sort.by(Sort.Direction.DESC, "productId"));
+        ProductCardDTO after = card(3, 2, null, "300000", null, null);
+
+        // Act
+        List<ProductCardDTO> result = catalogSnapshotService.findProductCardsAfter(null, sort, after, 5);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getProductId());
+        assertEquals(1, result.get(1).getProductId());
+    }
+
+    @Test
+    void refreshProduct_PriceAndCatalogChanged_PatchesOrderings() {
+        // Arrange
+        CatalogSnapshot before = catalogSnapshotService.getSnapshot();
+        when(productRepository.findProductCardsByProductIdIn(anyCollection()))
+                .thenReturn(List.of(card(1, 2, "Móc khóa", "500000", null, 10)));
+
+        // Act
+        catalogSnapshotService.refreshProduct(1);
+        CatalogSnapshot after = catalogSnapshotService.getSnapshot();
+
+        // Assert
+        List<ProductCardDTO> byPrice = after.getProducts(null, CatalogSnapshot.ProductOrder.PRICE);
+        assertEquals(List.of(2, 3, 1), byPrice.stream().map(ProductCardDTO::getProductId).toList());
+        assertEquals(List.of(2), after.getProductsByCatalogId(1).stream().map(ProductCardDTO::getProductId).toList());
+        assertEquals(List.of(1, 3), after.getProductsByCatalogId(2).stream().map(ProductCardDTO::getProductId).toList());
+        assertEquals(3, after.getProductCount());
+        assertEquals(2, before.getProductsByCatalogId(1).size());
+    }
+
+    private ProductCardDTO card(Integer productId, Integer catalogId, String name, String price,
+            String discountPrice, Integer stock) {
+        return new ProductCardDTO(productId, catalogId, name, new BigDecimal(price), null,
+                discountPrice == null ? null : new BigDecimal(discountPrice), stock, null);
+    }
+}
@@ -0,0 +1,150 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import project.demo.dto.PlacedOrder;
+import project.demo.exception.OrderException;
+import project.demo.model.Order;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CheckoutTokenServiceImplTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private CheckoutTokenServiceImpl checkoutTokenService;
+
+    private AtomicInteger placedOrders;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        checkoutTokenService = new CheckoutTokenServiceImpl(jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), 7, 100);
+        placedOrders = new AtomicInteger();
+    }
+
+    private Supplier<Order> placeOrder(int orderId) {
+        return () -> {
+            placedOrders.incrementAndGet();
+            Order order = new Order();
+            order.setOrderId(orderId);
+            return order;
+        };
+    }
+
+    @Test
+    void placeOnce_NewToken_ClaimsTokenAndPlacesOrder() {
+        // Act
+        PlacedOrder result = checkoutTokenService.placeOnce("T1", 5, placeOrder(42));
+
+        // Assert
+        assertEquals(42, result.getOrderId());
+        assertFalse(result.isDuplicate());
+        assertEquals(1, placedOrders.get());
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT"), eq("T1"), eq(5));
+        verify(jdbcTemplate, times(1)).update(startsWith("UPDATE"), eq(42), eq("T1"));
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    @Test
+    void placeOnce_RepeatedToken_ReturnsOriginalOrderWithoutQuery() {
+        // Arrange
+        checkoutTokenService.placeOnce("T1", 5, placeOrder(42));
+        clearInvocations(jdbcTemplate, transactionManager);
+
+        // Act
+        PlacedOrder result = checkoutTokenService.placeOnce("T1", 5, placeOrder(43));
+
+        // Assert
+        assertEquals(42, result.getOrderId());
+        assertTrue(result.isDuplicate());
+        assertEquals(1, placedOrders.get());
+        verifyNoInteractions(jdbcTemplate, transactionManager);
+    }
+
+    @Test
+    void placeOnce_TokenClaimedByConcurrentRequest_ReturnsItsOrder() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("INSERT"), eq("T1"), eq(5)))
+                .thenThrow(new DuplicateKeyException("PK_CheckoutToken"));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("T1"), eq(5)))
+                .thenReturn(List.of(42));
+
+        // Act
+        PlacedOrder result = checkoutTokenService.placeOnce("T1", 5, placeOrder(43));
+
+        // Assert
+        assertEquals(42, result.getOrderId());
+        assertTrue(result.isDuplicate());
+        assertEquals(0, placedOrders.get());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    @Test
+    void placeOnce_TokenOfAnotherCustomer_ThrowsOrderException() {
+        // Arrange
+        when(jdbcTemplate.update(startsWith("INSERT"), eq("T1"), eq(6)))
+                .thenThrow(new DuplicateKeyException("PK_CheckoutToken"));
+        when(jdbcTemplate.queryForList(anyString(), eq(Integer.class), eq("T1"), eq(6)))
+                .thenReturn(Collections.emptyList());
+
+        // Act & Assert
+        OrderException exception = assertThrows(OrderException.class,
+                () -> checkoutTokenService.placeOnce("T1", 6, placeOrder(43)));
+        assertEquals(0, placedOrders.get());
+        assertTrue(exception.getMessage().contains("T1"));
+    }
+
+    @Test
+    void placeOnce_OrderFails_RollsBackAndFreesToken() {
+        // Arrange
+        Supplier<Order> failingOrder = () -> {
+            throw new OrderException("Could not decrease stock quantity");
+        };
+
+        // Act
+        assertThrows(OrderException.class, () -> checkoutTokenService.placeOnce("T1", 5, failingOrder));
+        PlacedOrder retry = checkoutTokenService.placeOnce("T1", 5, placeOrder(42));
+
+        // Assert
+        verify(transactionManager, times(1)).rollback(any());
+        assertFalse(retry.isDuplicate());
+        assertEquals(42, retry.getOrderId());
+        verify(jdbcTemplate, times(2)).update(startsWith("INSERT"), eq("T1"), eq(5));
+    }
+
+    @Test
+    void placeOnce_DuplicateKeyWhilePlacingOrder_PropagatesOriginalError() {
+        // Arrange
+        Supplier<Order> failingOrder = () -> {
+            throw new DuplicateKeyException("UQ_Order_Code");
+        };
+
+        // Act
+        DuplicateKeyException exception = assertThrows(DuplicateKeyException.class,
+                () -> checkoutTokenService.placeOnce("T1", 5, failingOrder));
+
+        // Assert
+        assertEquals("UQ_Order_Code", exception.getMessage());
+        verify(transactionManager, times(1)).rollback(any());
+        verify(jdbcTemplate, never()).queryForList(anyString(), eq(Integer.class), any(), any());
+    }
+}
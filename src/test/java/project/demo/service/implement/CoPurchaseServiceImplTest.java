@@ -0,0 +1,118 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.repository.OrderDetailRepository;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class CoPurchaseServiceImplTest {
+
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+
+    private CoPurchaseServiceImpl coPurchaseService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        coPurchaseService = new CoPurchaseServiceImpl(orderDetailRepository, new SimpleMeterRegistry(), true, 20);
+    }
+
+    @Test
+    void recommend_AfterRefresh_RanksNeighboursByCosineAndFillsWithPopular() {
+        // Arrange
+        assertTrue(coPurchaseService.recommend(Set.of(1), 3).isEmpty());
+        when(orderDetailRepository.findOrderProductsAfter(eq(0), anyString(), any()))
+                .thenReturn(rows(1, 1, 1, 2, 2, 1, 2, 2, 3, 1, 3, 3, 4, 4));
+
+        // Act
+        int orders = coPurchaseService.refresh();
+
+        // Assert
+        // cos(1,2) = 2 / sqrt(3 * 2) > cos(1,3) = 1 / sqrt(3 * 1)
+        assertEquals(4, orders);
+        assertEquals(List.of(2, 3, 4), coPurchaseService.recommend(Set.of(1), 3));
+        assertEquals(List.of(1, 4), coPurchaseService.recommend(Set.of(2, 3), 3));
+        assertEquals(List.of(1, 2), coPurchaseService.recommend(Collections.emptySet(), 2));
+    }
+
+    @Test
+    void refresh_Twice_ReadsOnlyOrdersAfterLastReadOrder() {
+        // Arrange
+        when(orderDetailRepository.findOrderProductsAfter(eq(0), anyString(), any()))
+                .thenReturn(rows(1, 1, 1, 2, 2, 3));
+        when(orderDetailRepository.findOrderProductsAfter(eq(2), anyString(), any()))
+                .thenReturn(rows(5, 3, 5, 4));
+        coPurchaseService.refresh();
+
+        // Act
+        int orders = coPurchaseService.refresh();
+
+        // Assert
+        assertEquals(1, orders);
+        assertEquals(List.of(3), coPurchaseService.recommend(Set.of(4), 1));
+        assertEquals(List.of(2), coPurchaseService.recommend(Set.of(1), 1));
+        verify(orderDetailRepository, times(1)).findOrderProductsAfter(eq(0), anyString(), any());
+        verify(orderDetailRepository, times(1)).findOrderProductsAfter(eq(2), anyString(), any());
+    }
+
+    @Test
+    void refresh_FullBatch_ReadsLastOrderAgainInNextBatch() {
+        // Arrange
+        List<Object[]> firstBatch = new ArrayList<>();
+        for (int orderId = 1; orderId < CoPurchaseServiceImpl.BATCH_ROWS / 2; orderId++) {
+            firstBatch.add(new Object[] { orderId, 1 });
+            firstBatch.add(new Object[] { orderId, 2 });
+        }
+        int lastOrderId = CoPurchaseServiceImpl.BATCH_ROWS / 2;
+        firstBatch.add(new Object[] { lastOrderId, 5 });
+        firstBatch.add(new Object[] { lastOrderId, 6 });
+        when(orderDetailRepository.findOrderProductsAfter(eq(0), anyString(), any())).thenReturn(firstBatch);
+        when(orderDetailRepository.findOrderProductsAfter(eq(lastOrderId - 1), anyString(), any()))
+                .thenReturn(rows(lastOrderId, 5, lastOrderId, 6, lastOrderId, 7));
+
+        // Act
+        int orders = coPurchaseService.refresh();
+
+        // Assert
+        assertEquals(lastOrderId, orders);
+        assertEquals(List.of(6, 7), coPurchaseService.recommend(Set.of(5), 2));
+    }
+
+    @Test
+    void rebuild_ReadFails_KeepsServingCurrentModel() {
+        // Arrange
+        when(orderDetailRepository.findOrderProductsAfter(eq(0), anyString(), any()))
+                .thenReturn(rows(1, 1, 1, 2))
+                .thenThrow(new RuntimeException("timeout"));
+        coPurchaseService.refresh();
+
+        // Act
+        assertThrows(RuntimeException.class, () -> coPurchaseService.rebuild());
+
+        // Assert
+        assertEquals(List.of(2), coPurchaseService.recommend(Set.of(1), 1));
+    }
+
+    /**
+     * Rows of order ID and product ID from pairs of values
+     */
+    private static List<Object[]> rows(int... values) {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < values.length; i += 2) {
+            rows.add(new Object[] { values[i], values[i + 1] });
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,143 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.exception.ResourceNotFoundException;
+import project.demo.repository.OrderDetailRepository;
+import project.demo.repository.ProductPromotionRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FeaturedProductServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+
+    @Mock
+    private ProductPromotionRepository productPromotionRepository;
+
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, 10));
+        cards.add(card(2, 30));
+        cards.add(card(3, 0));
+        cards.add(card(4, 20));
+        snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), cards, new ArrayList<>());
+
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+    }
+
+    @Test
+    void getFeaturedProducts_HighestStock_RanksInStockBySnapshotStock() {
+        // Arrange
+        FeaturedProductServiceImpl featuredProductService = service("highest-stock", 2);
+
+        // Act
+        List<ProductCardDTO> result = featuredProductService.getFeaturedProducts();
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getProductId());
+        assertEquals(4, result.get(1).getProductId());
+        assertEquals(2, featuredProductService.getFeaturedProduct().getProductId());
+        verifyNoInteractions(productRepository, orderDetailRepository);
+    }
+
+    @Test
+    void getFeaturedProducts_BestSeller_KeepsSalesOrderAndSkipsOutOfStock() {
+        // Arrange
+        when(orderDetailRepository.findBestSellingProductIds(eq("cancelled"), any(Pageable.class)))
+                .thenReturn(List.of(3, 1, 4));
+        FeaturedProductServiceImpl featuredProductService = service("best-seller", 8);
+
+        // Act
+        List<ProductCardDTO> result = featuredProductService.getFeaturedProducts();
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(1, result.get(0).getProductId());
+        assertEquals(4, result.get(1).getProductId());
+    }
+
+    @Test
+    void getFeaturedProducts_NoPromotedInStock_FallsBackToHighestStock() {
+        // Arrange
+        when(productPromotionRepository.findActivePromotedProductIds(eq("active"), any()))
+                .thenReturn(List.of(3));
+        FeaturedProductServiceImpl featuredProductService = service("promoted", 1);
+
+        // Act
+        ProductCardDTO result = featuredProductService.getFeaturedProduct();
+
+        // Assert
+        assertEquals(2, result.getProductId());
+    }
+
+    @Test
+    void onCatalogChanged_StockIncrease_ReranksWithoutDatabase() {
+        // Arrange
+        FeaturedProductServiceImpl featuredProductService = service("highest-stock", 2);
+        featuredProductService.getFeaturedProducts();
+        CatalogSnapshot restocked = snapshot.withProducts(List.of(card(3, 50)), Set.of(), 2,
+                System.currentTimeMillis());
+
+        // Act
+        featuredProductService.onCatalogChanged(new CatalogChangedEvent(snapshot, restocked, Set.of(3), false));
+
+        // Assert
+        List<ProductCardDTO> result = featuredProductService.getFeaturedProducts();
+        assertEquals(3, result.get(0).getProductId());
+        assertEquals(2, result.get(1).getProductId());
+        verify(catalogSnapshotService, times(1)).getSnapshot();
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void getFeaturedProduct_SnapshotDisabledAndNothingInStock_ThrowsException() {
+        // Arrange
+        when(catalogSnapshotService.isEnabled()).thenReturn(false);
+        when(productRepository.findProductCardsByHighestStock(any(Pageable.class)))
+                .thenReturn(new ArrayList<>(List.of(card(3, 0))));
+        FeaturedProductServiceImpl featuredProductService = service("highest-stock", 2);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, featuredProductService::getFeaturedProduct);
+    }
+
+    private FeaturedProductServiceImpl service(String strategy, int size) {
+        return new FeaturedProductServiceImpl(catalogSnapshotService, productRepository, orderDetailRepository,
+                productPromotionRepository, strategy, size);
+    }
+
+    private ProductCardDTO card(Integer productId, int stock) {
+        return new ProductCardDTO(productId, 1, "Sản phẩm " + productId, null, new BigDecimal("100000"), null,
+                null, stock, null);
+    }
+}
@@ -0,0 +1,149 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IFragmentCacheService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class FragmentCacheServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    private SimpleMeterRegistry meterRegistry;
+    private FragmentCacheServiceImpl fragmentCacheService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        fragmentCacheService = new FragmentCacheServiceImpl(catalogSnapshotService, meterRegistry, true, 2);
+
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void get_AfterPut_CountsHitsAndMisses() {
+        // Arrange
+        fragmentCacheService.put("product-card:1:0", "<div>1</div>");
+
+        // Act
+        String hit = fragmentCacheService.get("product-card:1:0");
+        String miss = fragmentCacheService.get("product-card:2:0");
+
+        // Assert
+        assertEquals("<div>1</div>", hit);
+        assertNull(miss);
+        assertEquals(1.0, meterRegistry.get("fragment.cache.gets").tag("result", "hit").counter().count());
+        assertEquals(1.0, meterRegistry.get("fragment.cache.gets").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void put_OverCapacity_EvictsLeastRecentlyUsed() {
+        // Arrange
+        fragmentCacheService.put("a", "A");
+        fragmentCacheService.put("b", "B");
+        fragmentCacheService.get("a");
+
+        // Act
+        fragmentCacheService.put("c", "C");
+
+        // Assert
+        assertEquals("A", fragmentCacheService.get("a"));
+        assertNull(fragmentCacheService.get("b"));
+        assertEquals(1.0, meterRegistry.get("fragment.cache.evictions").counter().count());
+    }
+
+    @Test
+    void onCatalogChanged_ChangedProduct_BumpsOnlyThatProductVersion() {
+        // Arrange
+        long product1 = fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 1);
+        long product2 = fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 2);
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), new ArrayList<>(),
+                new ArrayList<>());
+
+        // Act
+        fragmentCacheService.onCatalogChanged(new CatalogChangedEvent(snapshot, snapshot, Set.of(1), false));
+
+        // Assert
+        assertTrue(fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 1) > product1);
+        assertEquals(product2, fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 2));
+    }
+
+    @Test
+    void onCatalogChanged_FullRebuild_BumpsProductsAndCatalogs() {
+        // Arrange
+        long product = fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 1);
+        long catalog = fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, null);
+        long promotion = fragmentCacheService.getVersion(IFragmentCacheService.PROMOTION, 1);
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), new ArrayList<>(),
+                new ArrayList<>());
+
+        // Act
+        fragmentCacheService.onCatalogChanged(new CatalogChangedEvent(snapshot, snapshot, Set.of(), true));
+
+        // Assert
+        assertTrue(fragmentCacheService.getVersion(IFragmentCacheService.PRODUCT, 1) > product);
+        assertTrue(fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, null) > catalog);
+        assertEquals(promotion, fragmentCacheService.getVersion(IFragmentCacheService.PROMOTION, 1));
+    }
+
+    @Test
+    void onCatalogChanged_ChangedProduct_BumpsItsCatalogAndLatestVersions() {
+        // Arrange
+        long catalog1 = fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, 1);
+        long catalog2 = fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, 2);
+        long latestProduct = fragmentCacheService.getLatestVersion(IFragmentCacheService.PRODUCT);
+        long latestPromotion = fragmentCacheService.getLatestVersion(IFragmentCacheService.PROMOTION);
+        ProductCardDTO card = new ProductCardDTO(5, 1, "Sản phẩm 5", null, new BigDecimal("100000"), null,
+                null, 10, null);
+        CatalogSnapshot snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), List.of(card),
+                new ArrayList<>());
+
+        // Act
+        fragmentCacheService.onCatalogChanged(new CatalogChangedEvent(snapshot, snapshot, Set.of(5), false));
+
+        // Assert
+        assertTrue(fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, 1) > catalog1);
+        assertEquals(catalog2, fragmentCacheService.getVersion(IFragmentCacheService.CATALOG, 2));
+        assertTrue(fragmentCacheService.getLatestVersion(IFragmentCacheService.PRODUCT) > latestProduct);
+        assertEquals(latestPromotion, fragmentCacheService.getLatestVersion(IFragmentCacheService.PROMOTION));
+    }
+
+    @Test
+    void invalidate_OutsideTransaction_VersionIsChangeTime() {
+        // Arrange
+        long before = System.currentTimeMillis();
+
+        // Act
+        fragmentCacheService.invalidate(IFragmentCacheService.PROMOTION, 3);
+
+        // Assert
+        long version = fragmentCacheService.getVersion(IFragmentCacheService.PROMOTION, 3);
+        assertTrue(version >= before);
+        assertEquals(version, fragmentCacheService.getLatestVersion(IFragmentCacheService.PROMOTION));
+    }
+
+    @Test
+    void isEnabled_SnapshotDisabled_ReturnsFalse() {
+        // Arrange
+        when(catalogSnapshotService.isEnabled()).thenReturn(false);
+
+        // Act & Assert
+        assertFalse(fragmentCacheService.isEnabled());
+    }
+}
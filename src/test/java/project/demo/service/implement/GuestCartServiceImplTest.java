@@ -0,0 +1,214 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import project.demo.dto.StockPriceSnapshot;
+import project.demo.exception.CartException;
+import project.demo.model.Cart;
+import project.demo.repository.CartItemRepository;
+import project.demo.repository.CartRepository;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICartService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.IProductDetailService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GuestCartServiceImplTest {
+
+    private static final String TOKEN = "3f2b8c1e-7d4a-4e59-9b0c-2a6d8e1f4c7b";
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private CartItemRepository cartItemRepository;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    @Mock
+    private IProductDetailService productDetailService;
+
+    @Mock
+    private ICartService cartService;
+
+    @Mock
+    private ICartWriteBehindService cartWriteBehindService;
+
+    @Mock
+    private ICartBadgeService cartBadgeService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private GuestCartServiceImpl guestCartService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        guestCartService = new GuestCartServiceImpl(cartRepository, cartItemRepository, productRepository,
+                productDetailService, cartService, cartWriteBehindService, cartBadgeService, jdbcTemplate,
+                transactionManager, new SimpleMeterRegistry(), true, 100, 2, 30, 7200000);
+
+        when(cartRepository.findBySessionIdAndCustomerIdIsNull(anyString())).thenReturn(Optional.empty());
+        for (int productId = 1; productId <= 3; productId++) {
+            when(productDetailService.getStockAndPrice(productId))
+                    .thenReturn(new StockPriceSnapshot(productId, true, 10, new BigDecimal("50.00"), 1L));
+        }
+    }
+
+    @Test
+    void addItem_BelowPersistThreshold_StaysInMemory() {
+        // Act
+        guestCartService.addItem(TOKEN, 1, 2);
+        guestCartService.addItem(TOKEN, 1, 1);
+
+        // Assert
+        assertEquals(1, guestCartService.getItemCount(TOKEN));
+        verify(cartRepository, never()).save(any(Cart.class));
+        verify(cartItemRepository, never()).saveAll(anyList());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    void addItem_ReachesPersistThreshold_WritesCartOnce() {
+        // Arrange
+        when(cartRepository.save(any(Cart.class))).thenAnswer(invocation -> {
+            Cart cart = invocation.getArgument(0);
+            cart.setCartId(42);
+            return cart;
+        });
+        guestCartService.addItem(TOKEN, 1, 2);
+
+        // Act
+        guestCartService.addItem(TOKEN, 2, 1);
+
+        // Assert
+        ArgumentCaptor<Cart> captor = ArgumentCaptor.forClass(Cart.class);
+        verify(cartRepository, times(1)).save(captor.capture());
+        assertNull(captor.getValue().getCustomerId());
+        assertEquals(TOKEN, captor.getValue().getSessionId());
+        assertEquals(0, new BigDecimal("150.00").compareTo(captor.getValue().getTotalAmount()));
+        verify(cartItemRepository, times(1)).saveAll(anyList());
+    }
+
+    @Test
+    void addItem_ExceedsStock_ThrowsAndKeepsCart() {
+        // Arrange
+        guestCartService.addItem(TOKEN, 1, 8);
+
+        // Act & Assert
+        CartException exception = assertThrows(CartException.class, () -> guestCartService.addItem(TOKEN, 1, 3));
+        assertEquals("INSUFFICIENT_STOCK", exception.getErrorCode());
+        // Số lượng vẫn là 8 nên còn thêm được đúng 2 sản phẩm
+        assertEquals(10, guestCartService.addItem(TOKEN, 1, 2).getQuantity());
+    }
+
+    @Test
+    void mergeInto_GuestCart_RunsOneMergeStatement() {
+        // Arrange
+        Cart customerCart = new Cart();
+        customerCart.setCartId(7);
+        customerCart.setCustomerId(10);
+        when(cartService.getOrCreateCart(10)).thenReturn(customerCart);
+        when(jdbcTemplate.update(startsWith("MERGE"), any(Object[].class))).thenReturn(1);
+        guestCartService.addItem(TOKEN, 1, 2);
+
+        // Act
+        int merged = guestCartService.mergeInto(TOKEN, 10);
+
+        // Assert
+        assertEquals(1, merged);
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        assertTrue(sql.getValue().contains("StockReservation"));
+        assertArrayEquals(new Object[] { 1, 2, new BigDecimal("50.00"), 7, 7 }, args.getValue());
+        verify(cartService, times(1)).calculateTotal(7);
+        verify(cartBadgeService).evict(10);
+        assertEquals(0, guestCartService.getItemCount(TOKEN));
+    }
+
+    @Test
+    void mergeInto_WriteBehindEnabled_FlushesThenClaimsAndMergesInOneTransaction() {
+        // Arrange
+        Cart customerCart = new Cart();
+        customerCart.setCartId(7);
+        customerCart.setCustomerId(10);
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartRepository.findByCustomerIdAndStatus(10, "active")).thenReturn(Optional.of(customerCart));
+        when(cartService.getOrCreateCart(10)).thenReturn(customerCart);
+        guestCartService.addItem(TOKEN, 1, 2);
+
+        // Act
+        guestCartService.mergeInto(TOKEN, 10);
+
+        // Assert
+        InOrder inOrder = inOrder(cartWriteBehindService, transactionManager, cartService, jdbcTemplate);
+        inOrder.verify(cartWriteBehindService).flush(7);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(cartService).getOrCreateCart(10);
+        inOrder.verify(jdbcTemplate).update(startsWith("MERGE"), any(Object[].class));
+        inOrder.verify(cartService).calculateTotal(7);
+        inOrder.verify(transactionManager).commit(any());
+        verify(transactionManager, times(1)).getTransaction(any());
+    }
+
+    @Test
+    void getItemCount_UnknownToken_QueriesDatabaseOnce() {
+        // Act
+        int first = guestCartService.getItemCount(TOKEN);
+        int second = guestCartService.getItemCount(TOKEN);
+
+        // Assert
+        assertEquals(0, first);
+        assertEquals(0, second);
+        verify(cartRepository, times(1)).findBySessionIdAndCustomerIdIsNull(TOKEN);
+        // Mã đã được nhớ là không có giỏ hàng vẫn dùng được khi thêm sản phẩm
+        guestCartService.addItem(TOKEN, 1, 1);
+        assertEquals(1, guestCartService.getItemCount(TOKEN));
+    }
+
+    @Test
+    void purgeExpired_SeveralBatches_DeletesEachBatchWithTwoStatements() {
+        // Arrange
+        List<Integer> fullBatch = new ArrayList<>();
+        for (int cartId = 1; cartId <= GuestCartServiceImpl.PURGE_BATCH_SIZE; cartId++) {
+            fullBatch.add(cartId);
+        }
+        when(cartRepository.findExpiredGuestCartIds(any(), any()))
+                .thenReturn(fullBatch)
+                .thenReturn(List.of(501, 502))
+                .thenReturn(Collections.emptyList());
+
+        // Act
+        int purged = guestCartService.purgeExpired();
+
+        // Assert
+        assertEquals(GuestCartServiceImpl.PURGE_BATCH_SIZE + 2, purged);
+        verify(cartRepository, times(2)).findExpiredGuestCartIds(any(), any());
+        verify(cartItemRepository, times(2)).deleteByCartIdIn(anyCollection());
+        verify(cartRepository, times(2)).deleteByCartIdIn(anyCollection());
+        verify(transactionManager, times(2)).commit(any());
+    }
+}
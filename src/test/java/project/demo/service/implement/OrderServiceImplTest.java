@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -16,6 +17,7 @@ import org.junit.jupiter.api.Test;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import static org.mockito.Mockito.never;
@@ -23,7 +25,10 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 
+import project.demo.dto.KeysetPage;
 import project.demo.enums.CartStatus;
 import project.demo.enums.OrderStatus;
 import project.demo.exception.OrderException;
@@ -41,7 +46,13 @@ import project.demo.repository.OrderDetailRepository;
 import project.demo.repository.OrderRepository;
 import project.demo.repository.OrderTimelineEventRepository;
 import project.demo.repository.PaymentMethodRepository;
+import project.demo.repository.PaymentRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.repository.ShipmentRepository;
+import project.demo.service.ICartBadgeService;
+import project.demo.service.ICartWriteBehindService;
+import project.demo.service.IProductDetailService;
+import project.demo.service.IStockReservationService;
 
 class OrderServiceImplTest {
 
@@ -69,6 +80,24 @@ class OrderServiceImplTest {
     @Mock
     private PaymentMethodRepository paymentMethodRepository;
 
+    @Mock
+    private ICartWriteBehindService cartWriteBehindService;
+
+    @Mock
+    private ICartBadgeService cartBadgeService;
+
+    @Mock
+    private PaymentRepository paymentRepository;
+
+    @Mock
+    private ShipmentRepository shipmentRepository;
+
+    @Mock
+    private IProductDetailService productDetailService;
+
+    @Mock
+    private IStockReservationService stockReservationService;
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
@@ -173,6 +202,35 @@ class OrderServiceImplTest {
         verify(orderRepository, times(1)).findByCustomerIdOrderByOrderDateDesc(1);
     }
 
+    @Test
+    void findByCustomerIdAfter_NextCursor_SeeksBeforeLastOrder() {
+        // Arrange
+        Order older = new Order();
+        older.setOrderId(7);
+        older.setCustomerId(1);
+        older.setOrderDate(LocalDateTime.of(2024, 3, 1, 9, 30));
+        Order oldest = new Order();
+        oldest.setOrderId(3);
+        oldest.setCustomerId(1);
+        oldest.setOrderDate(LocalDateTime.of(2024, 2, 1, 8, 0));
+        when(orderRepository.findLatestByCustomerId(eq(1), any(Pageable.class)))
+                .thenReturn(List.of(testOrder, older));
+        when(orderRepository.findByCustomerIdBefore(eq(1), any(LocalDateTime.class), eq(testOrder.getOrderId()),
+                any(Pageable.class))).thenReturn(List.of(oldest));
+
+        // Act
+        KeysetPage<Order> first = orderService.findByCustomerIdAfter(1, null, 1);
+        KeysetPage<Order> second = orderService.findByCustomerIdAfter(1, first.getNextCursor(), 1);
+
+        // Assert
+        assertEquals(1, first.getContent().size());
+        assertTrue(first.hasNext());
+        assertEquals(3, second.getContent().get(0).getOrderId());
+        assertFalse(second.hasNext());
+        verify(orderRepository, times(1)).findByCustomerIdBefore(1, testOrder.getOrderDate(),
+                testOrder.getOrderId(), PageRequest.of(0, 2));
+    }
+
     @Test
     void createFromCart_ValidCart_CreatesOrder() {
         // Arrange
@@ -197,10 +255,31 @@ class OrderServiceImplTest {
         verify(orderRepository, times(1)).save(any(Order.class));
         verify(orderDetailRepository, times(1)).saveAll(anyList());
         verify(orderTimelineEventRepository, times(1)).save(any(OrderTimelineEvent.class));
-        verify(cartRepository, times(1)).save(testCart);
+        verify(cartRepository, times(1)).updateStatusAndActivity(eq(1), eq(CartStatus.CONVERTED.getValue()),
+                any(LocalDateTime.class));
+        verify(cartRepository, never()).save(any(Cart.class));
+    }
 
-        // Check that cart status was updated
-        assertEquals(CartStatus.CONVERTED.getValue(), testCart.getStatus());
+    @Test
+    void createFromCart_WriteBehindEnabled_ConvertsCartWithoutSavingLoadedTotal() {
+        // Arrange
+        when(cartRepository.findById(1)).thenReturn(Optional.of(testCart));
+        when(cartItemRepository.findByCartId(1)).thenReturn(testCartItems);
+        when(cartWriteBehindService.isEnabled()).thenReturn(true);
+        when(cartWriteBehindService.overlay(testCartItems)).thenReturn(testCartItems);
+        when(addressRepository.findById(1)).thenReturn(Optional.of(testAddress));
+        when(paymentMethodRepository.findById(1)).thenReturn(Optional.of(testPaymentMethod));
+        when(orderRepository.save(any(Order.class))).thenReturn(testOrder);
+
+        // Act
+        orderService.createFromCart(1, 1, 1, "standard", null);
+
+        // Assert
+        verify(cartWriteBehindService, times(1)).flush(1);
+        verify(cartRepository, times(1)).updateStatusAndActivity(eq(1), eq(CartStatus.CONVERTED.getValue()),
+                any(LocalDateTime.class));
+        verify(cartRepository, never()).save(any(Cart.class));
+        assertEquals(new BigDecimal("100.00"), testCart.getTotalAmount());
     }
 
     @Test
@@ -1,19 +1,33 @@
 package project.demo.service.implement;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import project.demo.dto.StockPriceSnapshot;
 import project.demo.exception.ProductDetailException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Product;
 import project.demo.model.ProductDetail;
 import project.demo.repository.ProductDetailRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IStockReservationService;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,7 +41,15 @@ class ProductDetailServiceImplTest {
     @Mock
     private ProductRepository productRepository;
 
-    @InjectMocks
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private IStockReservationService stockReservationService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
     private ProductDetailServiceImpl productDetailService;
 
     private ProductDetail testProductDetail;
@@ -36,6 +58,8 @@ class ProductDetailServiceImplTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        productDetailService = new ProductDetailServiceImpl(productDetailRepository, productRepository,
+                catalogSnapshotService, stockReservationService, jdbcTemplate, new SimpleMeterRegistry(), 5000);
 
         // Setup test product
         testProduct = new Product();
@@ -215,6 +239,7 @@ class ProductDetailServiceImplTest {
     void updateDiscountPrice_ValidPrice_UpdatesPrice() {
         // Arrange
         when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(productRepository.existsById(1)).thenReturn(true);
         when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
         when(productDetailRepository.save(any(ProductDetail.class))).thenReturn(testProductDetail);
 
@@ -235,6 +260,7 @@ class ProductDetailServiceImplTest {
     void updateDiscountPrice_InvalidPrice_ThrowsException() {
         // Arrange
         when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(productRepository.existsById(1)).thenReturn(true);
         when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
 
         BigDecimal invalidDiscountPrice = new BigDecimal("150.00"); // Greater than regular price
@@ -428,4 +454,211 @@ class ProductDetailServiceImplTest {
         verify(productRepository, times(1)).findById(1);
         verify(productDetailRepository, times(1)).findByProductId(1);
     }
+
+    @Test
+    void updateDiscountPrice_ValidPrice_RefreshesEffectivePrice() {
+        // Arrange
+        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(productRepository.existsById(1)).thenReturn(true);
+        when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
+        when(productDetailRepository.save(any(ProductDetail.class))).thenReturn(testProductDetail);
+
+        // Act
+        productDetailService.updateDiscountPrice(1, new BigDecimal("70.00"));
+
+        // Assert
+        assertEquals(new BigDecimal("70.00"), testProductDetail.getEffectivePrice());
+
+        // Act - removing the discount falls back to the regular price
+        productDetailService.updateDiscountPrice(1, null);
+
+        // Assert
+        assertEquals(new BigDecimal("100.00"), testProductDetail.getEffectivePrice());
+    }
+
+    @Test
+    void increaseStockQuantity_ValidQuantity_RefreshesCatalogSnapshot() {
+        // Arrange
+        when(productRepository.existsById(1)).thenReturn(true);
+        when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
+        when(productDetailRepository.save(any(ProductDetail.class))).thenReturn(testProductDetail);
+
+        // Act
+        productDetailService.increaseStockQuantity(1, 5);
+
+        // Assert
+        assertEquals(15, testProductDetail.getQuantityInStock());
+        verify(catalogSnapshotService, times(1)).refreshProduct(1);
+    }
+
+    @Test
+    void getStockAndPrice_ManyProducts_OneQueryThenCached() {
+        // Arrange
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 1, 10, new BigDecimal("80.00") });
+        rows.add(new Object[] { 2, null, new BigDecimal("30.00") });
+        when(productDetailRepository.findStockAndPriceByProductIds(anyCollection())).thenReturn(rows);
+
+        // Act
+        Map<Integer, StockPriceSnapshot> result = productDetailService.getStockAndPrice(List.of(1, 2, 3));
+        StockPriceSnapshot cached = productDetailService.getStockAndPrice(1);
+
+        // Assert
+        assertEquals(10, result.get(1).getQuantityInStock());
+        assertEquals(new BigDecimal("80.00"), result.get(1).getEffectivePrice());
+        assertEquals(0, result.get(2).getQuantityInStock());
+        assertFalse(result.get(3).exists());
+        assertSame(result.get(1), cached);
+        verify(productDetailRepository, times(1)).findStockAndPriceByProductIds(anyCollection());
+        verify(productRepository, never()).existsById(any());
+    }
+
+    @Test
+    void getStockAndPrice_AfterStockChange_ReloadsWithNewVersion() {
+        // Arrange
+        List<Object[]> before = new ArrayList<>();
+        before.add(new Object[] { 1, 10, new BigDecimal("80.00") });
+        List<Object[]> after = new ArrayList<>();
+        after.add(new Object[] { 1, 15, new BigDecimal("80.00") });
+        when(productDetailRepository.findStockAndPriceByProductIds(anyCollection())).thenReturn(before, after);
+        when(productRepository.existsById(1)).thenReturn(true);
+        when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
+        when(productDetailRepository.save(any(ProductDetail.class))).thenReturn(testProductDetail);
+        StockPriceSnapshot first = productDetailService.getStockAndPrice(1);
+
+        // Act
+        productDetailService.increaseStockQuantity(1, 5);
+        StockPriceSnapshot second = productDetailService.getStockAndPrice(1);
+
+        // Assert
+        assertEquals(15, second.getQuantityInStock());
+        assertTrue(second.getVersion() > first.getVersion());
+        verify(productDetailRepository, times(2)).findStockAndPriceByProductIds(anyCollection());
+    }
+
+    @Test
+    void getStockAndPrice_ReservedStock_ReturnsAvailableStock() {
+        // Arrange
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { 1, 10, new BigDecimal("80.00") });
+        when(productDetailRepository.findStockAndPriceByProductIds(anyCollection())).thenReturn(rows);
+        when(stockReservationService.getReservedQuantities(anyCollection())).thenReturn(Map.of(1, 4), Map.of(1, 12));
+
+        // Act
+        StockPriceSnapshot first = productDetailService.getStockAndPrice(1);
+        StockPriceSnapshot second = productDetailService.getStockAndPrice(1);
+
+        // Assert
+        assertEquals(6, first.getQuantityInStock());
+        assertEquals(0, second.getQuantityInStock());
+        verify(productDetailRepository, times(1)).findStockAndPriceByProductIds(anyCollection());
+        verify(stockReservationService, times(2)).getReservedQuantities(anyCollection());
+    }
+
+    @Test
+    void decreaseStockQuantities_SeveralProducts_OneBatchInProductIdOrder() {
+        // Arrange
+        Map<Integer, Integer> quantities = new HashMap<>();
+        quantities.put(7, 2);
+        quantities.put(3, 1);
+        quantities.put(5, 0);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 1 });
+
+        // Act
+        productDetailService.decreaseStockQuantities(quantities);
+
+        // Assert
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), argThat((List<Object[]> batchArgs) ->
+                batchArgs.size() == 2
+                        && batchArgs.get(0)[1].equals(3) && batchArgs.get(0)[0].equals(1)
+                        && batchArgs.get(1)[1].equals(7) && batchArgs.get(1)[0].equals(2)));
+        verify(catalogSnapshotService).refreshProduct(3);
+        verify(catalogSnapshotService).refreshProduct(7);
+        verify(productDetailRepository, never()).save(any(ProductDetail.class));
+        verify(productRepository, never()).existsById(any());
+    }
+
+    @Test
+    void decreaseStockQuantities_OneProductShort_ThrowsInsufficientStock() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 0 });
+
+        // Act & Assert
+        ProductDetailException exception = assertThrows(ProductDetailException.class,
+                () -> productDetailService.decreaseStockQuantities(Map.of(1, 1, 2, 5)));
+        assertTrue(exception.getMessage().contains("[2]"));
+        verify(catalogSnapshotService, never()).refreshProduct(any());
+    }
+
+    @Test
+    void decreaseStockQuantities_ConcurrentOrders_NeverOversell() throws Exception {
+        // Arrange: batchUpdate giả lập UPDATE có điều kiện; mỗi luồng giữ nhật ký hoàn tác như một giao dịch
+        Map<Integer, AtomicInteger> stocks = Map.of(1, new AtomicInteger(20), 2, new AtomicInteger(15));
+        ThreadLocal<List<Object[]>> undoLog = ThreadLocal.withInitial(ArrayList::new);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            List<Object[]> batchArgs = invocation.getArgument(1);
+            int[] updated = new int[batchArgs.size()];
+            for (int i = 0; i < batchArgs.size(); i++) {
+                int quantity = (Integer) batchArgs.get(i)[0];
+                AtomicInteger stock = stocks.get((Integer) batchArgs.get(i)[1]);
+                int current = stock.get();
+                while (current >= quantity && !stock.compareAndSet(current, current - quantity)) {
+                    current = stock.get();
+                }
+                if (current >= quantity) {
+                    updated[i] = 1;
+                    undoLog.get().add(batchArgs.get(i));
+                }
+            }
+            return updated;
+        });
+
+        int threads = 16;
+        int ordersPerThread = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int quantity = 1 + i % 3;
+            futures.add(executor.submit(() -> {
+                start.await();
+                // Số lượng đã bán của sản phẩm 1 và 2 theo các đơn hàng thành công
+                int[] sold = new int[2];
+                for (int order = 0; order < ordersPerThread; order++) {
+                    try {
+                        productDetailService.decreaseStockQuantities(Map.of(1, 1, 2, quantity));
+                        sold[0] += 1;
+                        sold[1] += quantity;
+                    } catch (ProductDetailException e) {
+                        // Rollback: trả lại các dòng đã trừ của đơn hàng bị từ chối
+                        for (Object[] row : undoLog.get()) {
+                            stocks.get((Integer) row[1]).addAndGet((Integer) row[0]);
+                        }
+                    }
+                    undoLog.get().clear();
+                }
+                return sold;
+            }));
+        }
+
+        // Act
+        start.countDown();
+        int[] sold = new int[2];
+        try {
+            for (Future<int[]> future : futures) {
+                int[] result = future.get(10, TimeUnit.SECONDS);
+                sold[0] += result[0];
+                sold[1] += result[1];
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Assert
+        assertTrue(stocks.get(1).get() >= 0);
+        assertTrue(stocks.get(2).get() >= 0);
+        assertEquals(20, stocks.get(1).get() + sold[0]);
+        assertEquals(15, stocks.get(2).get() + sold[1]);
+        assertTrue(sold[0] > 0);
+    }
 }
@@ -0,0 +1,111 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.dto.ProductFacets;
+import project.demo.model.Catalog;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductSearchService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductFacetServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private IProductSearchService productSearchService;
+
+    private ProductFacetServiceImpl productFacetService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productFacetService = new ProductFacetServiceImpl(catalogSnapshotService, productSearchService);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, 1, "Móc khóa", "50000", null, 10));
+        cards.add(card(2, 1, "Nón lá", "120000", "90000", 0));
+        cards.add(card(3, 2, "Áo dài mini", "300000", null, 3));
+        cards.add(card(4, 2, "Khăn lụa", "650000", null, 2));
+
+        List<Catalog> catalogs = new ArrayList<>();
+        catalogs.add(new Catalog(1, "Quà lưu niệm", "Test Description", true));
+        catalogs.add(new Catalog(2, "Thời trang", "Test Description", true));
+
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot())
+                .thenReturn(new CatalogSnapshot(1, System.currentTimeMillis(), cards, catalogs));
+    }
+
+    @Test
+    void computeFacets_NoFilters_CountsEveryFacetInOnePass() {
+        // Act
+        ProductFacets facets = productFacetService.computeFacets(null, null, null, null);
+
+        // Assert
+        assertEquals(4, facets.getAllCatalogsCount());
+        assertEquals(2, facets.getCatalogCount(1));
+        assertEquals(2, facets.getCatalogCount(2));
+        assertEquals(0, facets.getCatalogCount(99));
+        // Bounds are inclusive, so 300000 counts in both adjacent buckets like the BETWEEN filter
+        assertEquals(2, facets.getPriceBucketCount(0));
+        assertEquals(1, facets.getPriceBucketCount(1));
+        assertEquals(1, facets.getPriceBucketCount(2));
+        assertEquals(1, facets.getPriceBucketCount(3));
+        assertEquals(3, facets.getInStockCount());
+        assertEquals(1, facets.getOutOfStockCount());
+    }
+
+    @Test
+    void computeFacets_CatalogAndPriceRange_LeavesOwnFilterOut() {
+        // Act
+        ProductFacets facets = productFacetService.computeFacets(2, null, new BigDecimal("0"),
+                new BigDecimal("300000"));
+
+        // Assert
+        // Catalog counts ignore the selected catalog but keep the price range
+        assertEquals(2, facets.getCatalogCount(1));
+        assertEquals(1, facets.getCatalogCount(2));
+        // Price bucket counts ignore the price range but keep the catalog
+        assertEquals(0, facets.getPriceBucketCount(0));
+        assertEquals(1, facets.getPriceBucketCount(3));
+        assertEquals(1, facets.getInStockCount());
+        assertEquals(0, facets.getOutOfStockCount());
+    }
+
+    @Test
+    void computeFacets_Keyword_UsesSearchIndexMatches() {
+        // Arrange
+        BitSet matches = new BitSet();
+        matches.set(2);
+        when(productSearchService.isEnabled()).thenReturn(true);
+        when(productSearchService.findMatchingProductIds("non la")).thenReturn(matches);
+
+        // Act
+        ProductFacets facets = productFacetService.computeFacets(null, "non la", null, null);
+
+        // Assert
+        assertEquals(1, facets.getPriceBucketCount(0));
+        assertEquals(0, facets.getInStockCount());
+        assertEquals(1, facets.getOutOfStockCount());
+        verify(productSearchService, times(1)).findMatchingProductIds("non la");
+    }
+
+    private ProductCardDTO card(Integer productId, Integer catalogId, String name, String price,
+            String discountPrice, Integer stock) {
+        return new ProductCardDTO(productId, catalogId, name, new BigDecimal(price), null,
+                discountPrice == null ? null : new BigDecimal(discountPrice), stock, null);
+    }
+}
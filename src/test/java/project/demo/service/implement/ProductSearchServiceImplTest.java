@@ -0,0 +1,124 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.service.ICatalogSnapshotService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductSearchServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    private ProductSearchServiceImpl productSearchService;
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productSearchService = new ProductSearchServiceImpl(catalogSnapshotService, true);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, "Ly sứ Bát Tràng", "Ly uống trà men lam", "150000", null));
+        cards.add(card(2, "Móc khóa Hội An", "Quà tặng nhỏ kèm ly sứ mini", "30000", null));
+        cards.add(card(3, "Nón lá Huế", "Nón bài thơ truyền thống", "80000", "60000"));
+        snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), cards, new ArrayList<>());
+
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+    }
+
+    @Test
+    void searchProductCards_WithoutDiacritics_MatchesVietnameseText() {
+        // Act
+        Page<ProductCardDTO> result = productSearchService.searchProductCards("ly su", null, null,
+                PageRequest.of(0, 8));
+
+        // Assert
+        assertEquals(2, result.getTotalElements());
+        // Name matches outrank description matches
+        assertEquals(1, result.getContent().get(0).getProductId());
+        assertEquals(2, result.getContent().get(1).getProductId());
+    }
+
+    @Test
+    void searchProductCards_PartialLastWord_MatchesPrefix() {
+        // Act
+        Page<ProductCardDTO> result = productSearchService.searchProductCards("non l", null, null,
+                PageRequest.of(0, 8));
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals(3, result.getContent().get(0).getProductId());
+    }
+
+    @Test
+    void searchProductCards_PriceRangeAndSort_FiltersAllMatches() {
+        // Act
+        Page<ProductCardDTO> result = productSearchService.searchProductCards("ly", new BigDecimal("10000"),
+                new BigDecimal("100000"), PageRequest.of(0, 8, Sort.by("price")));
+
+        // Assert
+        assertEquals(1, result.getTotalElements());
+        assertEquals(2, result.getContent().get(0).getProductId());
+    }
+
+    @Test
+    void findMatchingProductIds_Keyword_ReturnsAllMatches() {
+        // Act
+        BitSet result = productSearchService.findMatchingProductIds("ly su");
+
+        // Assert
+        assertEquals(2, result.cardinality());
+        assertTrue(result.get(1));
+        assertTrue(result.get(2));
+    }
+
+    @Test
+    void onCatalogChanged_RenamedProduct_ReindexesIncrementally() {
+        // Arrange
+        productSearchService.searchProductCards("ly", null, null, PageRequest.of(0, 8));
+        CatalogSnapshot renamed = snapshot.withProducts(
+                List.of(card(3, "Quạt giấy Huế", "Quạt truyền thống", "80000", "60000")), Set.of(), 2,
+                System.currentTimeMillis());
+        when(catalogSnapshotService.getSnapshot()).thenReturn(renamed);
+
+        // Act
+        productSearchService.onCatalogChanged(new CatalogChangedEvent(snapshot, renamed, Set.of(3), false));
+
+        // Assert
+        assertEquals(0, productSearchService.searchProductCards("non la", null, null,
+                PageRequest.of(0, 8)).getTotalElements());
+        assertEquals(3, productSearchService.searchProductCards("quat giay", null, null,
+                PageRequest.of(0, 8)).getContent().get(0).getProductId());
+    }
+
+    @Test
+    void searchProductCards_EmptyKeyword_ThrowsException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> productSearchService.searchProductCards(" ", null, null, PageRequest.of(0, 8)));
+    }
+
+    private ProductCardDTO card(Integer productId, String name, String description, String price,
+            String discountPrice) {
+        return new ProductCardDTO(productId, 1, name, description, new BigDecimal(price), null,
+                discountPrice == null ? null : new BigDecimal(discountPrice), 10, null);
+    }
+}
@@ -5,6 +5,13 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import project.demo.dto.KeysetPage;
+import project.demo.dto.ProductCardDTO;
 import project.demo.exception.ProductException;
 import project.demo.exception.ResourceNotFoundException;
 import project.demo.model.Product;
@@ -13,6 +20,8 @@ import project.demo.repository.CatalogRepository;
 import project.demo.repository.OrderDetailRepository;
 import project.demo.repository.ProductDetailRepository;
 import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+import project.demo.service.IProductSearchService;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
@@ -37,6 +46,12 @@ class ProductServiceImplTest {
     @Mock
     private OrderDetailRepository orderDetailRepository;
 
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private IProductSearchService productSearchService;
+
     @InjectMocks
     private ProductServiceImpl productService;
 
@@ -371,4 +386,174 @@ class ProductServiceImplTest {
         verify(productDetailRepository, times(1)).findById(999);
         verify(productDetailRepository, never()).save(any(ProductDetail.class));
     }
+
+    @Test
+    void findProductCardsPaginated_UsesSingleQueryPerPage() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 48);
+        List<ProductCardDTO> cards = new ArrayList<>();
+        for (int i = 1; i <= 48; i++) {
+            cards.add(new ProductCardDTO(i, 1, "Product " + i, new BigDecimal("100.00"),
+                    "http://example.com/" + i + ".jpg", new BigDecimal("80.00"), i, "Catalog"));
+        }
+        when(productRepository.findProductCards(pageable)).thenReturn(new PageImpl<>(cards, pageable, 480));
+
+        // Act
+        Page<ProductCardDTO> result = productService.findProductCardsPaginated(pageable);
+
+        // Assert
+        assertEquals(48, result.getContent().size());
+        assertEquals(10, result.getTotalPages());
+        verify(productRepository, times(1)).findProductCards(pageable);
+        verifyNoMoreInteractions(productRepository);
+        verifyNoInteractions(productDetailRepository, catalogRepository);
+    }
+
+    @Test
+    void findProductCardsByCatalogIdPaginated_NonExistingCatalog_ThrowsException() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 8);
+        when(catalogRepository.existsById(999)).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class,
+                () -> productService.findProductCardsByCatalogIdPaginated(999, pageable));
+        verify(productRepository, never()).findProductCardsByCatalogId(anyInt(), any(Pageable.class));
+    }
+
+    @Test
+    void productCard_EffectivePrice_PrefersPositiveDiscount() {
+        // Arrange
+        ProductCardDTO discounted = new ProductCardDTO(1, 1, "A", new BigDecimal("100.00"), null,
+                new BigDecimal("80.00"), 5, "Catalog");
+        ProductCardDTO zeroDiscount = new ProductCardDTO(2, 1, "B", new BigDecimal("100.00"), null,
+                BigDecimal.ZERO, 0, "Catalog");
+        ProductCardDTO noDetail = new ProductCardDTO(3, 1, "C", new BigDecimal("100.00"), null,
+                null, null, "Catalog");
+
+        // Act & Assert
+        assertEquals(new BigDecimal("80.00"), discounted.getEffectivePrice());
+        assertTrue(discounted.isInStock());
+        // Giá giảm bằng 0 không phải là giảm giá: thẻ hiển thị giá gốc, đúng giá giỏ hàng tính
+        assertFalse(zeroDiscount.isDiscounted());
+        assertEquals(new BigDecimal("100.00"), zeroDiscount.getEffectivePrice());
+        assertFalse(zeroDiscount.isInStock());
+        assertEquals(new BigDecimal("100.00"), noDetail.getEffectivePrice());
+        assertFalse(noDetail.isInStock());
+    }
+
+    @Test
+    void update_ValidProduct_RefreshesEffectivePrice() {
+        // Arrange
+        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(catalogRepository.existsById(1)).thenReturn(true);
+        when(productRepository.save(any(Product.class))).thenReturn(testProduct);
+
+        // Act
+        productService.update(testProduct);
+
+        // Assert
+        verify(productDetailRepository, times(1)).refreshEffectivePrice(1, new BigDecimal("100.00"));
+    }
+
+    @Test
+    void findProductCardsByPriceRangePaginated_WithCatalog_FiltersInDatabase() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 8);
+        BigDecimal min = new BigDecimal("100000");
+        BigDecimal max = new BigDecimal("300000");
+        when(catalogRepository.existsById(1)).thenReturn(true);
+        when(productRepository.findProductCardsByCatalogIdAndEffectivePriceBetween(1, min, max, pageable))
+                .thenReturn(new PageImpl<>(new ArrayList<>(), pageable, 0));
+
+        // Act
+        Page<ProductCardDTO> result = productService.findProductCardsByPriceRangePaginated(1, null, min, max,
+                pageable);
+
+        // Assert
+        assertNotNull(result);
+        verify(productRepository, times(1)).findProductCardsByCatalogIdAndEffectivePriceBetween(1, min, max,
+                pageable);
+        verify(productRepository, never()).findProductCardsByEffectivePriceBetween(any(), any(), any());
+    }
+
+    @Test
+    void findProductCardsByPriceRangePaginated_InvertedRange_ThrowsException() {
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class,
+                () -> productService.findProductCardsByPriceRangePaginated(null, null,
+                        new BigDecimal("500"), new BigDecimal("100"), PageRequest.of(0, 8)));
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void findProductCardsPaginated_SnapshotEnabled_ServesFromSnapshot() {
+        // Arrange
+        Pageable pageable = PageRequest.of(0, 8);
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.findProductCards(null, null, null, null, pageable))
+                .thenReturn(new PageImpl<>(new ArrayList<>(), pageable, 0));
+
+        // Act
+        Page<ProductCardDTO> result = productService.findProductCardsPaginated(pageable);
+
+        // Assert
+        assertNotNull(result);
+        verifyNoInteractions(productRepository, productDetailRepository, catalogRepository);
+    }
+
+    @Test
+    void delete_ExistingProduct_RefreshesCatalogSnapshot() {
+        // Arrange
+        when(productRepository.findById(1)).thenReturn(Optional.of(testProduct));
+        when(orderDetailRepository.countByProductId(1)).thenReturn(0L);
+        when(productDetailRepository.findByProductId(1)).thenReturn(Optional.of(testProductDetail));
+
+        // Act
+        productService.delete(1);
+
+        // Assert
+        verify(productRepository, times(1)).deleteById(1);
+        verify(catalogSnapshotService, times(1)).refreshProduct(1);
+    }
+
+    @Test
+    void findProductCardsAfter_NameCursor_SeeksInDatabase() {
+        // Arrange
+        ProductCardDTO last = new ProductCardDTO(5, 1, "Móc khóa", new BigDecimal("50000"), null, null, 10,
+                "Quà lưu niệm");
+        String cursor = productService.getProductCardCursor(last, "productName", Sort.Direction.ASC);
+        List<ProductCardDTO> rows = new ArrayList<>();
+        rows.add(new ProductCardDTO(2, 1, "Nón lá", new BigDecimal("120000"), null, null, 5, "Quà lưu niệm"));
+        rows.add(new ProductCardDTO(9, 1, "Quạt giấy", new BigDecimal("30000"), null, null, 7, "Quà lưu niệm"));
+        when(productRepository.findProductCardsAfterNameAsc(eq("Móc khóa"), eq(5), any(Pageable.class)))
+                .thenReturn(rows);
+
+        // Act
+        KeysetPage<ProductCardDTO> result = productService.findProductCardsAfter(null, "productName",
+                Sort.Direction.ASC, cursor, 1);
+
+        // Assert
+        assertEquals(1, result.getContent().size());
+        assertEquals(2, result.getContent().get(0).getProductId());
+        assertTrue(result.hasNext());
+        verify(productRepository, times(1)).findProductCardsAfterNameAsc(eq("Móc khóa"), eq(5),
+                eq(PageRequest.of(0, 2)));
+        verify(productRepository, never()).findProductCards(any());
+    }
+
+    @Test
+    void findProductCardsAfter_CursorForOtherSort_ThrowsException() {
+        // Arrange
+        ProductCardDTO last = new ProductCardDTO(5, 1, "Móc khóa", new BigDecimal("50000"), null, null, 10,
+                "Quà lưu niệm");
+        String cursor = productService.getProductCardCursor(last, "price", Sort.Direction.ASC);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> productService.findProductCardsAfter(null,
+                "productName", Sort.Direction.ASC, cursor, 8));
+        assertThrows(IllegalArgumentException.class, () -> productService.findProductCardsAfter(null,
+                "productName", Sort.Direction.ASC, "not-a-cursor", 8));
+        verifyNoInteractions(productRepository);
+    }
 }
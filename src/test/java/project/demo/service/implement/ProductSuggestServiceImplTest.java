@@ -0,0 +1,136 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.dto.SuggestionDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.model.Catalog;
+import project.demo.repository.OrderDetailRepository;
+import project.demo.service.ICatalogSnapshotService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ProductSuggestServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private OrderDetailRepository orderDetailRepository;
+
+    private ProductSuggestServiceImpl productSuggestService;
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        productSuggestService = new ProductSuggestServiceImpl(catalogSnapshotService, orderDetailRepository, true, 8);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, 1, "Ly sứ Bát Tràng"));
+        cards.add(card(2, 1, "Lọ hoa Bát Tràng"));
+        cards.add(card(3, 2, "Nón lá Huế"));
+        List<Catalog> catalogs = new ArrayList<>();
+        catalogs.add(catalog(1, "Gốm sứ"));
+        catalogs.add(catalog(2, "Nón lá"));
+        snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), cards, catalogs);
+
+        List<Object[]> sales = new ArrayList<>();
+        sales.add(new Object[] { 1, 5L });
+        sales.add(new Object[] { 2, 20L });
+        when(orderDetailRepository.getTotalQuantityGroupByProductId()).thenReturn(sales);
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+    }
+
+    @Test
+    void suggest_WordPrefixWithoutDiacritics_RanksBySales() {
+        // Act
+        List<SuggestionDTO> result = productSuggestService.suggest("bat tr");
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(2, result.get(0).getId());
+        assertEquals(1, result.get(1).getId());
+        assertEquals("/products/2", result.get(0).getUrl());
+    }
+
+    @Test
+    void suggest_CatalogName_WeightedByCatalogSales() {
+        // Act
+        List<SuggestionDTO> result = productSuggestService.suggest("go");
+
+        // Assert
+        assertEquals(1, result.size());
+        assertEquals(SuggestionDTO.TYPE_CATALOG, result.get(0).getType());
+        assertEquals("/products?category=1", result.get(0).getUrl());
+    }
+
+    @Test
+    void suggest_RepeatedQueries_ReadSalesOnce() {
+        // Act
+        productSuggestService.suggest("ly");
+        productSuggestService.suggest("non");
+
+        // Assert
+        verify(orderDetailRepository, times(1)).getTotalQuantityGroupByProductId();
+        verify(orderDetailRepository, never()).getTotalQuantityByProductId(any());
+    }
+
+    @Test
+    void onCatalogChanged_RenamedProduct_UpdatesTrieAndRefreshesSales() {
+        // Arrange
+        productSuggestService.suggest("ly");
+        CatalogSnapshot renamed = snapshot.withProducts(List.of(card(3, 2, "Quạt giấy Huế")), Set.of(), 2,
+                System.currentTimeMillis());
+        when(catalogSnapshotService.getSnapshot()).thenReturn(renamed);
+        when(orderDetailRepository.getTotalQuantityByProductId(3)).thenReturn(50);
+
+        // Act
+        productSuggestService.onCatalogChanged(new CatalogChangedEvent(snapshot, renamed, Set.of(3), false));
+        productSuggestService.refreshWeights();
+
+        // Assert
+        assertTrue(productSuggestService.suggest("non la").stream()
+                .noneMatch(s -> SuggestionDTO.TYPE_PRODUCT.equals(s.getType())));
+        assertEquals(3, productSuggestService.suggest("quat").get(0).getId());
+        // Doanh số mới đưa sản phẩm 3 lên trước các sản phẩm khác có chữ "h"
+        assertEquals(3, productSuggestService.suggest("h").get(0).getId());
+        verify(orderDetailRepository, times(1)).getTotalQuantityByProductId(3);
+    }
+
+    @Test
+    void suggest_SnapshotDisabled_ReturnsEmptyWithoutDatabase() {
+        // Arrange
+        when(catalogSnapshotService.isEnabled()).thenReturn(false);
+
+        // Act
+        List<SuggestionDTO> result = productSuggestService.suggest("ly");
+
+        // Assert
+        assertTrue(result.isEmpty());
+        verifyNoInteractions(orderDetailRepository);
+    }
+
+    private ProductCardDTO card(Integer productId, Integer catalogId, String name) {
+        return new ProductCardDTO(productId, catalogId, name, null, new BigDecimal("100000"), null, null, 10, null);
+    }
+
+    private Catalog catalog(Integer catalogId, String name) {
+        Catalog catalog = new Catalog();
+        catalog.setCatalogId(catalogId);
+        catalog.setCatalogName(name);
+        catalog.setStatus(true);
+        return catalog;
+    }
+}
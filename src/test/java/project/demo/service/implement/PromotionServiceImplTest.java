@@ -14,6 +14,7 @@ import project.demo.model.OrderPromotion;
 import project.demo.model.ProductPromotion;
 import project.demo.model.Promotion;
 import project.demo.repository.*;
+import project.demo.service.IFragmentCacheService;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
@@ -42,6 +43,9 @@ class PromotionServiceImplTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private IFragmentCacheService fragmentCacheService;
+
     @InjectMocks
     private PromotionServiceImpl promotionService;
 
@@ -143,6 +147,8 @@ class PromotionServiceImplTest {
         assertNotNull(result);
         assertEquals(testPromotion.getPromotionId(), result.getPromotionId());
         verify(promotionRepository, times(1)).save(testPromotion);
+        verify(fragmentCacheService, times(1)).invalidate(IFragmentCacheService.PROMOTION,
+                testPromotion.getPromotionId());
     }
 
     @Test
@@ -319,26 +325,28 @@ class PromotionServiceImplTest {
     @Test
     void removePromotionFromProduct_ExistingPromotion_RemovesPromotion() {
         // Arrange
-        when(productPromotionRepository.existsById(1)).thenReturn(true);
+        when(productPromotionRepository.findById(1)).thenReturn(Optional.of(testProductPromotion));
         doNothing().when(productPromotionRepository).deleteById(1);
 
         // Act
         promotionService.removePromotionFromProduct(1);
 
         // Assert
-        verify(productPromotionRepository, times(1)).existsById(1);
+        verify(productPromotionRepository, times(1)).findById(1);
         verify(productPromotionRepository, times(1)).deleteById(1);
+        verify(fragmentCacheService, times(1)).invalidate(IFragmentCacheService.PROMOTION, 1);
     }
 
     @Test
     void removePromotionFromProduct_NonExistingPromotion_ThrowsException() {
         // Arrange
-        when(productPromotionRepository.existsById(999)).thenReturn(false);
+        when(productPromotionRepository.findById(999)).thenReturn(Optional.empty());
 
         // Act & Assert
         assertThrows(ResourceNotFoundException.class, () -> promotionService.removePromotionFromProduct(999));
-        verify(productPromotionRepository, times(1)).existsById(999);
+        verify(productPromotionRepository, times(1)).findById(999);
         verify(productPromotionRepository, never()).deleteById(anyInt());
+        verify(fragmentCacheService, never()).invalidate(anyString(), any());
     }
 
     @Test
@@ -512,5 +520,6 @@ class PromotionServiceImplTest {
         assertEquals(PromotionStatus.INACTIVE.getValue(), testPromotion.getStatus());
         verify(promotionRepository, times(1)).findById(1);
         verify(promotionRepository, times(1)).save(testPromotion);
+        verify(fragmentCacheService, times(1)).invalidate(IFragmentCacheService.PROMOTION, 1);
     }
 }
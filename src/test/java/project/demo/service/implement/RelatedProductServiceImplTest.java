@@ -0,0 +1,109 @@
+package project.demo.service.implement;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import project.demo.dto.CatalogSnapshot;
+import project.demo.dto.ProductCardDTO;
+import project.demo.event.CatalogChangedEvent;
+import project.demo.exception.ResourceNotFoundException;
+import project.demo.repository.ProductRepository;
+import project.demo.service.ICatalogSnapshotService;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class RelatedProductServiceImplTest {
+
+    @Mock
+    private ICatalogSnapshotService catalogSnapshotService;
+
+    @Mock
+    private ProductRepository productRepository;
+
+    private RelatedProductServiceImpl relatedProductService;
+    private CatalogSnapshot snapshot;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        relatedProductService = new RelatedProductServiceImpl(catalogSnapshotService, productRepository, 2);
+
+        List<ProductCardDTO> cards = new ArrayList<>();
+        cards.add(card(1, 1, "100000", 10));
+        cards.add(card(2, 1, "500000", 10));
+        cards.add(card(3, 1, "110000", 0));
+        cards.add(card(4, 1, "150000", 5));
+        cards.add(card(5, 2, "100000", 5));
+        snapshot = new CatalogSnapshot(1, System.currentTimeMillis(), cards, new ArrayList<>());
+
+        when(catalogSnapshotService.isEnabled()).thenReturn(true);
+        when(catalogSnapshotService.getSnapshot()).thenReturn(snapshot);
+    }
+
+    @Test
+    void findRelatedProductCards_SameCatalog_InStockAndClosestPriceFirst() {
+        // Act
+        List<ProductCardDTO> result = relatedProductService.findRelatedProductCards(1);
+
+        // Assert
+        assertEquals(2, result.size());
+        assertEquals(4, result.get(0).getProductId());
+        assertEquals(2, result.get(1).getProductId());
+        verifyNoInteractions(productRepository);
+    }
+
+    @Test
+    void findRelatedProductCards_CatalogChanged_RecomputesOnlyAfterChange() {
+        // Arrange
+        List<ProductCardDTO> first = relatedProductService.findRelatedProductCards(1);
+        CatalogSnapshot restocked = snapshot.withProducts(List.of(card(3, 1, "110000", 8)), Set.of(), 2,
+                System.currentTimeMillis());
+        when(catalogSnapshotService.getSnapshot()).thenReturn(restocked);
+
+        // Act
+        List<ProductCardDTO> cached = relatedProductService.findRelatedProductCards(1);
+        relatedProductService.onCatalogChanged(new CatalogChangedEvent(snapshot, restocked, Set.of(3), false));
+        List<ProductCardDTO> recomputed = relatedProductService.findRelatedProductCards(1);
+
+        // Assert
+        assertSame(first, cached);
+        assertEquals(3, recomputed.get(0).getProductId());
+        assertEquals(4, recomputed.get(1).getProductId());
+    }
+
+    @Test
+    void findRelatedProductCards_SnapshotDisabled_UsesBoundedQuery() {
+        // Arrange
+        when(catalogSnapshotService.isEnabled()).thenReturn(false);
+        when(productRepository.findProductCardsByProductIdIn(List.of(1)))
+                .thenReturn(List.of(card(1, 1, "100000", 10)));
+        when(productRepository.findRelatedProductCards(eq(1), eq(1), eq(new BigDecimal("100000")), any()))
+                .thenReturn(List.of(card(4, 1, "150000", 5)));
+
+        // Act
+        List<ProductCardDTO> result = relatedProductService.findRelatedProductCards(1);
+
+        // Assert
+        assertEquals(1, result.size());
+        verify(productRepository, never()).findByCatalogId(any());
+    }
+
+    @Test
+    void findRelatedProductCards_UnknownProduct_ThrowsException() {
+        // Act & Assert
+        assertThrows(ResourceNotFoundException.class, () -> relatedProductService.findRelatedProductCards(99));
+    }
+
+    private ProductCardDTO card(Integer productId, Integer catalogId, String price, Integer stock) {
+        return new ProductCardDTO(productId, catalogId, "Sản phẩm " + productId, new BigDecimal(price), null, null,
+                stock, null);
+    }
+}
@@ -0,0 +1,182 @@
+package project.demo.service.implement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import project.demo.exception.ProductDetailException;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StockReservationServiceImplTest {
+
+    private static final long TTL_MILLIS = 60_000;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StockReservationServiceImpl stockReservationService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        // Giữ hàng 1 phút, bánh xe quay mỗi giây
+        stockReservationService = new StockReservationServiceImpl(jdbcTemplate, transactionManager,
+                meterRegistry, true, 1, 1000);
+    }
+
+    private int activeReservations() {
+        return (int) meterRegistry.get("stock.reservations.active").gauge().value();
+    }
+
+    @Test
+    void reserve_EnoughStock_InsertsInProductIdOrderAndIndexes() {
+        // Arrange
+        Map<Integer, Integer> quantities = new HashMap<>();
+        quantities.put(9, 1);
+        quantities.put(4, 3);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 1 });
+
+        // Act
+        stockReservationService.reserve("VNP1", quantities);
+
+        // Assert
+        verify(jdbcTemplate, times(1)).batchUpdate(contains("UPDLOCK"), argThat((List<Object[]> batchArgs) ->
+                batchArgs.size() == 2 && batchArgs.get(0)[3].equals(4) && batchArgs.get(1)[3].equals(9)));
+        verify(transactionManager, times(1)).commit(any());
+        assertEquals(1, activeReservations());
+    }
+
+    @Test
+    void reserve_OneProductShort_RollsBackAndReservesNothing() {
+        // Arrange
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1, 0 });
+
+        // Act
+        ProductDetailException exception = assertThrows(ProductDetailException.class,
+                () -> stockReservationService.reserve("VNP1", Map.of(1, 1, 2, 1)));
+
+        // Assert
+        assertTrue(exception.getMessage().contains("[2]"));
+        verify(transactionManager, times(1)).rollback(any());
+        assertEquals(0, activeReservations());
+    }
+
+    @Test
+    void releaseExpired_AfterTtl_ReleasesAndDeletesRows() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1 });
+        stockReservationService.reserve("VNP1", Map.of(1, 2));
+        stockReservationService.reserve("VNP2", Map.of(1, 1));
+        clearInvocations(jdbcTemplate);
+
+        // Act
+        int beforeTtl = stockReservationService.releaseExpired(now + TTL_MILLIS - 2000);
+        int afterTtl = stockReservationService.releaseExpired(now + 2 * TTL_MILLIS);
+
+        // Assert
+        assertEquals(0, beforeTtl);
+        assertEquals(2, afterTtl);
+        assertEquals(0, activeReservations());
+        verify(jdbcTemplate, times(1)).batchUpdate(startsWith("DELETE"),
+                argThat((List<Object[]> batchArgs) -> batchArgs.size() == 2));
+    }
+
+    @Test
+    void commit_ActiveReservation_LeavesIndexAndDoesNotExpireLater() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1 });
+        when(jdbcTemplate.update(startsWith("DELETE"), eq("VNP1"))).thenReturn(1);
+        stockReservationService.reserve("VNP1", Map.of(1, 2));
+
+        // Act
+        boolean committed = stockReservationService.commit("VNP1");
+        int expired = stockReservationService.releaseExpired(now + 2 * TTL_MILLIS);
+
+        // Assert
+        assertTrue(committed);
+        assertEquals(0, expired);
+        assertEquals(0, activeReservations());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void releaseExpired_FirstRun_LoadsActiveReservationsWithRemainingTime() {
+        // Arrange
+        long now = System.currentTimeMillis();
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[] { "VNP7", 3, 2, 30_000L });
+        rows.add(new Object[] { "VNP7", 5, 1, 30_000L });
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class))).thenReturn(rows);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] { 1 });
+
+        // Act
+        int atStartup = stockReservationService.releaseExpired(now);
+        int activeAfterLoad = activeReservations();
+        int afterRemainingTime = stockReservationService.releaseExpired(now + 32_000);
+
+        // Assert
+        assertEquals(0, atStartup);
+        assertEquals(1, activeAfterLoad);
+        assertEquals(1, afterRemainingTime);
+        assertEquals(0, activeReservations());
+        verify(jdbcTemplate, times(1)).update(contains("expires_at <="));
+        verify(jdbcTemplate, times(1)).query(anyString(), any(RowMapper.class));
+    }
+
+    @Test
+    void getReservedQuantities_SeveralProducts_SumsActiveRowsWithOneQuery() throws Exception {
+        // Arrange
+        ResultSet resultSet = mock(ResultSet.class);
+        when(resultSet.getInt(1)).thenReturn(4);
+        when(resultSet.getInt(2)).thenReturn(3);
+        doAnswer(invocation -> {
+            ((RowCallbackHandler) invocation.getArgument(1)).processRow(resultSet);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), eq(4), eq(9));
+
+        // Act
+        Map<Integer, Integer> reserved = stockReservationService.getReservedQuantities(List.of(4, 9));
+
+        // Assert
+        assertEquals(Map.of(4, 3), reserved);
+        verify(jdbcTemplate, times(1)).query(argThat((String sql) -> sql.contains("IN (?, ?)")
+                && sql.contains("expires_at > SYSDATETIME()")),
+                any(RowCallbackHandler.class), eq(4), eq(9));
+    }
+
+    @Test
+    void getReservedQuantities_Disabled_RunsNoQuery() {
+        // Arrange
+        StockReservationServiceImpl disabled = new StockReservationServiceImpl(jdbcTemplate, transactionManager,
+                new SimpleMeterRegistry(), false, 1, 1000);
+
+        // Act
+        Map<Integer, Integer> reserved = disabled.getReservedQuantities(List.of(4));
+
+        // Assert
+        assertTrue(reserved.isEmpty());
+        verifyNoInteractions(jdbcTemplate);
+    }
+}